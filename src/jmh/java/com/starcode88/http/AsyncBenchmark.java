@@ -0,0 +1,57 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * One thread which fans out a number of concurrent async GET requests
+ * and waits for all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AsyncBenchmark {
+
+	@Param({ "16", "256" })
+	public int fanOut;
+
+	private LocalServer server;
+
+	private HttpClient client;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new LocalServer();
+		client = new HttpClient(server.getBaseUrl());
+		client.setWireLogPolicy(WireLogPolicy.OFF);
+		client.setMaxAsyncRequestsInFlight(fanOut);
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.close();
+	}
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public int getFanOut() throws Exception {
+		CompletableFuture<HttpResponse<String>>[] futures = new CompletableFuture[fanOut];
+		for (int i = 0; i < fanOut; i++) {
+			futures[i] = client.GETAsync("/small", String.class);
+		}
+		CompletableFuture.allOf(futures).join();
+		return futures.length;
+	}
+}
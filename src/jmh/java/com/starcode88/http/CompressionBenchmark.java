@@ -0,0 +1,78 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Bytes on the wire and CPU cost of compression. On the loopback interface
+ * the network is almost free, so the difference in throughput is the CPU
+ * cost of compressing and decompressing. The counter "wireBytes" reports
+ * the bytes of the response bodies written by the server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompressionBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean compression;
+
+	private LocalServer server;
+
+	private HttpClient client;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new LocalServer();
+		client = new HttpClient(server.getBaseUrl());
+		client.setWireLogPolicy(WireLogPolicy.OFF);
+		if (compression) {
+			client.setCompressionPolicy(CompressionPolicy.newBuilder().requestCompressionThreshold(1024).build());
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.close();
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class WireBytes {
+
+		public long wireBytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			wireBytes = 0;
+		}
+	}
+
+	@Benchmark
+	public String getLarge(WireBytes counters) throws Exception {
+		long before = server.getBytesWritten();
+		String body = client.GET("/large", String.class).body();
+		counters.wireBytes += server.getBytesWritten() - before;
+		return body;
+	}
+
+	@Benchmark
+	public byte[] postLarge(WireBytes counters) throws Exception {
+		long before = server.getBytesWritten();
+		byte[] body = client.POST("/echo", LocalServer.LARGE_BODY, byte[].class).body();
+		counters.wireBytes += server.getBytesWritten() - before;
+		return body;
+	}
+}
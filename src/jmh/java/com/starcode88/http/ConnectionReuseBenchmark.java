@@ -0,0 +1,73 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares one shared client, which reuses its pooled connections, with a
+ * new client per request, which opens a new connection and transport for
+ * every request. The counter "connections" reports the connections opened
+ * to the server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConnectionReuseBenchmark {
+
+	private LocalServer server;
+
+	private HttpClient sharedClient;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new LocalServer();
+		sharedClient = new HttpClient(server.getBaseUrl());
+		sharedClient.setWireLogPolicy(WireLogPolicy.OFF);
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.close();
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Connections {
+
+		public long connections;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			connections = 0;
+		}
+	}
+
+	@Benchmark
+	public String sharedClient(Connections counters) throws Exception {
+		long before = server.getConnections();
+		String body = sharedClient.GET("/small", String.class).body();
+		counters.connections += server.getConnections() - before;
+		return body;
+	}
+
+	@Benchmark
+	public String clientPerRequest(Connections counters) throws Exception {
+		long before = server.getConnections();
+		HttpClient client = new HttpClient(server.getBaseUrl());
+		client.setWireLogPolicy(WireLogPolicy.OFF);
+		String body = client.GET("/small", String.class).body();
+		counters.connections += server.getConnections() - before;
+		return body;
+	}
+}
@@ -0,0 +1,70 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Throughput and latency of GET and POST with small and large bodies,
+ * with the wire log on and off. The wire log is written to a file, see
+ * log4j2.xml of the benchmarks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExchangeBenchmark {
+
+	@Param({ "small", "large" })
+	public String size;
+
+	@Param({ "false", "true" })
+	public boolean wireLog;
+
+	private LocalServer server;
+
+	private HttpClient client;
+
+	private String path;
+
+	private byte[] body;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new LocalServer();
+		client = new HttpClient(server.getBaseUrl());
+		client.setWireLogPolicy(wireLog ? WireLogPolicy.DEFAULT : WireLogPolicy.OFF);
+		path = "/" + size;
+		body = "small".equals(size) ? LocalServer.SMALL_BODY : LocalServer.LARGE_BODY;
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.close();
+	}
+
+	@Benchmark
+	public String get() throws Exception {
+		return client.GET(path, String.class).body();
+	}
+
+	@Benchmark
+	public byte[] post() throws Exception {
+		return client.POST("/echo", body, byte[].class).body();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public String getConcurrent() throws Exception {
+		return client.GET(path, String.class).body();
+	}
+}
@@ -0,0 +1,185 @@
+package com.starcode88.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP server for the benchmarks. It listens on a random port of
+ * the loopback interface, so the benchmarks need no network access.
+ * <ul>
+ * <li>{@code /small} returns a JSON object of about 60 bytes</li>
+ * <li>{@code /large} returns a JSON array of about 600 KB</li>
+ * <li>{@code /echo} returns the request body</li>
+ * <li>{@code /delay} returns a small body after {@link #DELAY_MILLIS}</li>
+ * <li>{@code /binary?size=n} returns n bytes of binary data, uncompressed</li>
+ * </ul>
+ * A request with "Accept-Encoding: gzip" gets a gzipped response body and
+ * a gzipped request body is decoded. The server counts the connections
+ * and the bytes of the bodies it has written.
+ */
+final class LocalServer implements AutoCloseable {
+
+	static final int DELAY_MILLIS = 10;
+
+	static final byte[] SMALL_BODY = json(1);
+
+	static final byte[] LARGE_BODY = json(10_000);
+
+	/** Written repeatedly for /binary */
+	private static final byte[] BINARY_PATTERN = binary(1024 * 1024);
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+	private final Set<SocketAddress> clients = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong connections = new AtomicLong();
+
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	private final byte[] gzippedSmall = gzip(SMALL_BODY);
+
+	private final byte[] gzippedLarge = gzip(LARGE_BODY);
+
+	LocalServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+		// The server must never be the bottleneck, virtual threads would
+		// make the results depend on the JDK
+		executor = Executors.newFixedThreadPool(256);
+		server.setExecutor(executor);
+		server.createContext("/small", exchange -> respond(exchange, SMALL_BODY, gzippedSmall));
+		server.createContext("/large", exchange -> respond(exchange, LARGE_BODY, gzippedLarge));
+		server.createContext("/echo", exchange -> respond(exchange, readBody(exchange), null));
+		server.createContext("/binary", this::respondBinary);
+		server.createContext("/delay", exchange -> {
+			try {
+				Thread.sleep(DELAY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			respond(exchange, SMALL_BODY, gzippedSmall);
+		});
+		server.start();
+	}
+
+	/**
+	 * @return The base URL of the server, e.g. "http://127.0.0.1:49152"
+	 */
+	String getBaseUrl() {
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+	}
+
+	/**
+	 * @return Number of connections which have been opened to the server
+	 */
+	long getConnections() {
+		return connections.get();
+	}
+
+	/**
+	 * @return Number of bytes of the response bodies which have been written
+	 */
+	long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void respond(HttpExchange exchange, byte[] body, byte[] gzipped) throws IOException {
+		if (clients.add(exchange.getRemoteAddress())) {
+			connections.incrementAndGet();
+		}
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+			body = gzipped != null ? gzipped : gzip(body);
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+		bytesWritten.addAndGet(body.length);
+	}
+
+	private void respondBinary(HttpExchange exchange) throws IOException {
+		String query = exchange.getRequestURI().getQuery();
+		long size = Long.parseLong(query.substring(query.indexOf('=') + 1));
+		exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+		exchange.sendResponseHeaders(200, size == 0 ? -1 : size);
+		try (OutputStream out = exchange.getResponseBody()) {
+			for (long remaining = size; remaining > 0; remaining -= BINARY_PATTERN.length) {
+				out.write(BINARY_PATTERN, 0, (int) Math.min(remaining, BINARY_PATTERN.length));
+			}
+		}
+		bytesWritten.addAndGet(size);
+	}
+
+	private static byte[] readBody(HttpExchange exchange) throws IOException {
+		InputStream in = exchange.getRequestBody();
+		if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+			in = new GZIPInputStream(in);
+		}
+		try (InputStream body = in) {
+			return body.readAllBytes();
+		}
+	}
+
+	private static byte[] json(int items) {
+		StringBuilder json = new StringBuilder(items == 1 ? "" : "[");
+		for (int i = 0; i < items; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i)
+					.append("\",\"price\":").append(i * 7 % 1000).append(".99,\"tags\":[\"a\",\"b\"]}");
+		}
+		if (items != 1) {
+			json.append(']');
+		}
+		return json.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] binary(int size) {
+		byte[] bytes = new byte[size];
+		new Random(88).nextBytes(bytes);
+		return bytes;
+	}
+
+	static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(data);
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,93 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.starcode88.http.buffer.BufferPool;
+import com.starcode88.http.buffer.BufferPoolConfig;
+import com.starcode88.http.buffer.PooledBody;
+
+/**
+ * Allocation of large binary bodies received as byte[] and as
+ * {@link PooledBody} with heap and direct buffers. Compare
+ * "gc.alloc.rate.norm" of the gc profiler: byte[] allocates the body
+ * twice, as chunks and as the joined array, which is a humongous object
+ * for G1. A pooled body reuses its buffers, only the chunks of the
+ * transport are allocated. Every 4096th byte of each body is read, so the
+ * cost of reaching the bytes in the buffers is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PooledBodyBenchmark {
+
+	@Param({ "1048576", "16777216", "67108864" })
+	public long size;
+
+	private LocalServer server;
+
+	private HttpClient client;
+
+	private HttpClient directClient;
+
+	private String path;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new LocalServer();
+		client = new HttpClient(server.getBaseUrl());
+		client.setWireLogPolicy(WireLogPolicy.OFF);
+		directClient = new HttpClient(server.getBaseUrl());
+		directClient.setWireLogPolicy(WireLogPolicy.OFF);
+		directClient.setBufferPool(new BufferPool(BufferPoolConfig.newBuilder().direct(true).build()));
+		path = "/binary?size=" + size;
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.close();
+	}
+
+	@Benchmark
+	public long byteArray() throws Exception {
+		byte[] body = client.GET(path, byte[].class).body();
+		long sum = 0;
+		for (int i = 0; i < body.length; i += 4096) {
+			sum += body[i];
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long pooledHeap() throws Exception {
+		return read(client);
+	}
+
+	@Benchmark
+	public long pooledDirect() throws Exception {
+		return read(directClient);
+	}
+
+	private long read(HttpClient client) throws Exception {
+		try (PooledBody body = client.GET(path, PooledBody.class).body()) {
+			long sum = 0;
+			for (ByteBuffer buffer : body.buffers()) {
+				for (int i = buffer.position(); i < buffer.limit(); i += 4096) {
+					sum += buffer.get(i);
+				}
+			}
+			return sum;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.starcode88.http;
+
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of building a request: URI, default headers and timeout. Nothing
+ * is sent. The path is either concatenated by hand or expanded from a
+ * compiled {@link UriTemplate}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestBuildBenchmark {
+
+	@Param({ "0", "5", "20" })
+	public int headers;
+
+	private static final UriTemplate ORDERS = UriTemplate.compile("/users/{id}/orders{?limit,query}");
+
+	private HttpClient client;
+
+	@Setup
+	public void setUp() {
+		client = new HttpClient("http://localhost:8080/api");
+		client.setWireLogPolicy(WireLogPolicy.OFF);
+		for (int i = 0; i < headers; i++) {
+			client.addHeader("X-Header-" + i, "value-" + i);
+		}
+	}
+
+	@Benchmark
+	public HttpRequest buildGet() throws URISyntaxException {
+		return client.newRequestBuilder("/users/42/orders?limit=10").GET().build();
+	}
+
+	@Benchmark
+	public HttpRequest buildGetWithEncodedQuery() throws Exception {
+		String path = "/users/" + 42 + "/orders?limit=" + 10 + "&query="
+				+ URLEncoder.encode("name:a b", StandardCharsets.UTF_8.name()).replace("+", "%20");
+		return client.newRequestBuilder(path).GET().build();
+	}
+
+	@Benchmark
+	public HttpRequest buildGetFromTemplate() throws URISyntaxException {
+		return client.newRequestBuilder(ORDERS.expand(42, 10, "name:a b")).GET().build();
+	}
+}
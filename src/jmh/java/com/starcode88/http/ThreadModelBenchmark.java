@@ -0,0 +1,110 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Runs a batch of blocking GET requests, each on its own thread, against
+ * an endpoint which answers after {@link LocalServer#DELAY_MILLIS}. With
+ * platform threads every call and the transport use platform threads, with
+ * virtual threads both use virtual threads. The counter "peakThreads"
+ * reports the peak number of live platform threads, which is the memory
+ * that matters: each platform thread reserves its own stack.
+ * <p>
+ * The virtual variant needs JDK 21 or later, on older JDKs it fails.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ThreadModelBenchmark {
+
+	@Param({ "platform", "virtual" })
+	public String threads;
+
+	@Param({ "1000" })
+	public int calls;
+
+	private LocalServer server;
+
+	private HttpClient client;
+
+	private List<Callable<String>> batch;
+
+	@Setup
+	public void setUp() throws IOException {
+		boolean virtual = "virtual".equals(threads);
+		if (virtual && !VirtualThreads.isSupported()) {
+			throw new IllegalStateException("Virtual threads need JDK 21 or later");
+		}
+		server = new LocalServer();
+		client = new HttpClient(server.getBaseUrl(),
+				HttpTransportConfig.newBuilder().virtualThreads(virtual).build());
+		client.setWireLogPolicy(WireLogPolicy.OFF);
+		batch = new ArrayList<Callable<String>>();
+		for (int i = 0; i < calls; i++) {
+			batch.add(() -> client.GET("/delay", String.class).body());
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.close();
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class PeakThreads {
+
+		private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+		public long peakThreads;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			threadBean.resetPeakThreadCount();
+			peakThreads = 0;
+		}
+
+		void update() {
+			peakThreads = Math.max(peakThreads, threadBean.getPeakThreadCount());
+		}
+	}
+
+	@Benchmark
+	public int blockingBatch(PeakThreads counters) throws Exception {
+		ExecutorService executor = "virtual".equals(threads)
+				? VirtualThreads.newVirtualThreadPerTaskExecutor()
+				: Executors.newCachedThreadPool();
+		try {
+			int completed = 0;
+			for (Future<String> future : executor.invokeAll(batch)) {
+				future.get();
+				completed++;
+			}
+			return completed;
+		} finally {
+			executor.shutdown();
+			counters.update();
+		}
+	}
+}
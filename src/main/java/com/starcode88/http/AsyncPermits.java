@@ -0,0 +1,99 @@
+package com.starcode88.http;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Limits the number of async requests in flight without blocking a
+ * thread. A request which finds no free permit gets a future which is
+ * completed when a running request releases its permit, on the thread
+ * which releases it. The limit can be changed while requests are in
+ * flight: they keep their permits and count against the new limit.
+ */
+final class AsyncPermits {
+
+	private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<CompletableFuture<Void>>();
+
+	/** Maximum number of permits, 0 means unlimited */
+	private int limit = 0;
+
+	private int inFlight = 0;
+
+	/**
+	 * Takes a permit. If the future is cancelled before it has been
+	 * completed, no permit is taken.
+	 *
+	 * @return A future which is completed when the permit has been taken,
+	 *         it must be given back with {@link #release()}
+	 */
+	CompletableFuture<Void> acquire() {
+		CompletableFuture<Void> waiter = new CompletableFuture<Void>();
+		synchronized (this) {
+			if (limit == 0 || inFlight < limit) {
+				inFlight++;
+				return CompletableFuture.completedFuture(null);
+			}
+			waiters.add(waiter);
+		}
+		waiter.whenComplete((ignored, throwable) -> {
+			if (throwable != null) {
+				synchronized (this) {
+					waiters.remove(waiter);
+				}
+			}
+		});
+		return waiter;
+	}
+
+	/**
+	 * Gives back a permit and passes it on to the next waiter.
+	 */
+	void release() {
+		synchronized (this) {
+			inFlight--;
+		}
+		grant();
+	}
+
+	/**
+	 * @param limit Maximum number of permits, 0 means unlimited
+	 */
+	void setLimit(int limit) {
+		synchronized (this) {
+			this.limit = limit;
+		}
+		grant();
+	}
+
+	synchronized int getLimit() {
+		return limit;
+	}
+
+	synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	synchronized int getQueueDepth() {
+		return waiters.size();
+	}
+
+	private void grant() {
+		while (true) {
+			CompletableFuture<Void> waiter;
+			synchronized (this) {
+				if (waiters.isEmpty() || (limit != 0 && inFlight >= limit)) {
+					return;
+				}
+				waiter = waiters.poll();
+				inFlight++;
+			}
+			// The future is completed outside of the lock, it starts the request
+			if (!waiter.complete(null)) {
+				// Cancelled in the meantime, the permit is free again
+				synchronized (this) {
+					inFlight--;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.starcode88.http;
+
+/**
+ * Settings of a batch, see {@link HttpClient#executeBatch(java.util.List, BatchConfig)}.
+ * An instance is immutable, use {@link #newBuilder()} to create one.
+ */
+public class BatchConfig {
+
+	private static final BatchConfig DEFAULTS = newBuilder().build();
+
+	private final int parallelism;
+
+	private final boolean cancelOnFailure;
+
+	private BatchConfig(Builder builder) {
+		this.parallelism = builder.parallelism;
+		this.cancelOnFailure = builder.cancelOnFailure;
+	}
+
+	/**
+	 * @return A parallelism of 8 and no cancellation on failure
+	 */
+	public static BatchConfig defaults() {
+		return DEFAULTS;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return Maximum number of requests of the batch which are in flight at the same time
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @return true if the first failed request cancels the rest of the batch
+	 */
+	public boolean isCancelOnFailure() {
+		return cancelOnFailure;
+	}
+
+	public static class Builder {
+
+		private int parallelism = 8;
+
+		private boolean cancelOnFailure = false;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param parallelism Maximum number of requests in flight, at least 1
+		 * @return this builder
+		 */
+		public Builder parallelism(int parallelism) {
+			if (parallelism < 1) {
+				throw new IllegalArgumentException("The argument <parallelism> must be at least 1");
+			}
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		/**
+		 * @param cancelOnFailure true if the first failed request interrupts
+		 *                        the requests in flight and the requests
+		 *                        which have not been sent are not sent
+		 * @return this builder
+		 */
+		public Builder cancelOnFailure(boolean cancelOnFailure) {
+			this.cancelOnFailure = cancelOnFailure;
+			return this;
+		}
+
+		public BatchConfig build() {
+			return new BatchConfig(this);
+		}
+	}
+}
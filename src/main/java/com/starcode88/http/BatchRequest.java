@@ -0,0 +1,133 @@
+package com.starcode88.http;
+
+/**
+ * The description of one request of a batch, see
+ * {@link HttpClient#executeBatch(java.util.List, BatchConfig)}. An instance
+ * is immutable:
+ * <pre>
+ * List&lt;BatchRequest&lt;Item&gt;&gt; requests = new ArrayList&lt;&gt;();
+ * for (String id : ids) {
+ *     requests.add(BatchRequest.GET("/items/" + id, Item.class));
+ * }
+ * </pre>
+ *
+ * @param <R> The type of the response body
+ */
+public final class BatchRequest<R> {
+
+	private final String method;
+
+	private final String path;
+
+	private final Route route;
+
+	private final Object body;
+
+	private final Class<R> responseBodyClass;
+
+	private final RequestHeaders headers;
+
+	private BatchRequest(String method, String path, Route route, Object body, Class<R> responseBodyClass,
+			RequestHeaders headers) {
+		if (path == null && route == null) {
+			throw new IllegalArgumentException("The argument <path> must not be null");
+		}
+		this.method = method;
+		this.path = path;
+		this.route = route;
+		this.body = body;
+		this.responseBodyClass = responseBodyClass;
+		this.headers = headers;
+	}
+
+	/**
+	 * @param <R> The type of the response body
+	 * @param path Path which will be added to the URL
+	 * @param responseBodyClass The type of the response, see {@link HttpClient#GET(String, Class)}
+	 * @return The request
+	 */
+	public static <R> BatchRequest<R> GET(String path, Class<R> responseBodyClass) {
+		return new BatchRequest<R>("GET", path, null, null, responseBodyClass, null);
+	}
+
+	public static <R> BatchRequest<R> GET(Route route, Class<R> responseBodyClass) {
+		return new BatchRequest<R>("GET", null, route, null, responseBodyClass, null);
+	}
+
+	public static <R> BatchRequest<R> DELETE(String path, Class<R> responseBodyClass) {
+		return new BatchRequest<R>("DELETE", path, null, null, responseBodyClass, null);
+	}
+
+	public static <R> BatchRequest<R> DELETE(Route route, Class<R> responseBodyClass) {
+		return new BatchRequest<R>("DELETE", null, route, null, responseBodyClass, null);
+	}
+
+	/**
+	 * @param <R> The type of the response body
+	 * @param path Path which will be added to the URL
+	 * @param body The request body, see {@link HttpClient#POST(String, Object, Class)}
+	 * @param responseBodyClass The type of the response
+	 * @return The request
+	 */
+	public static <R> BatchRequest<R> POST(String path, Object body, Class<R> responseBodyClass) {
+		return new BatchRequest<R>("POST", path, null, body, responseBodyClass, null);
+	}
+
+	public static <R> BatchRequest<R> POST(Route route, Object body, Class<R> responseBodyClass) {
+		return new BatchRequest<R>("POST", null, route, body, responseBodyClass, null);
+	}
+
+	public static <R> BatchRequest<R> PUT(String path, Object body, Class<R> responseBodyClass) {
+		return new BatchRequest<R>("PUT", path, null, body, responseBodyClass, null);
+	}
+
+	public static <R> BatchRequest<R> PUT(Route route, Object body, Class<R> responseBodyClass) {
+		return new BatchRequest<R>("PUT", null, route, body, responseBodyClass, null);
+	}
+
+	/**
+	 * @param headers Headers of this request, they replace default headers with the same name
+	 * @return A copy of this request with the headers
+	 */
+	public BatchRequest<R> headers(RequestHeaders headers) {
+		return new BatchRequest<R>(method, path, route, body, responseBodyClass, headers);
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * @return The path or the path of the route
+	 */
+	public String getPath() {
+		return route != null ? route.getPath() : path;
+	}
+
+	/**
+	 * @return The route or null if the request has been created with a path
+	 */
+	public Route getRoute() {
+		return route;
+	}
+
+	public Object getBody() {
+		return body;
+	}
+
+	public Class<R> getResponseBodyClass() {
+		return responseBodyClass;
+	}
+
+	/**
+	 * @return The headers of this request or null
+	 */
+	public RequestHeaders getHeaders() {
+		return headers;
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + getPath();
+	}
+}
@@ -0,0 +1,96 @@
+package com.starcode88.http;
+
+import java.net.http.HttpResponse;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The outcome of one request of a batch: either its response or the
+ * exception which it has thrown, e.g. a
+ * {@link com.starcode88.http.exception.HttpStatusCodeException}. A request
+ * which has not been sent or has been interrupted because the batch was
+ * cancelled fails with a CancellationException.
+ *
+ * @param <R> The type of the response body
+ */
+public final class BatchResult<R> {
+
+	private final int index;
+
+	private final BatchRequest<R> request;
+
+	private final HttpResponse<R> response;
+
+	private final Exception exception;
+
+	private BatchResult(int index, BatchRequest<R> request, HttpResponse<R> response, Exception exception) {
+		this.index = index;
+		this.request = request;
+		this.response = response;
+		this.exception = exception;
+	}
+
+	static <R> BatchResult<R> success(int index, BatchRequest<R> request, HttpResponse<R> response) {
+		return new BatchResult<R>(index, request, response, null);
+	}
+
+	static <R> BatchResult<R> failure(int index, BatchRequest<R> request, Exception exception) {
+		return new BatchResult<R>(index, request, null, exception);
+	}
+
+	static <R> BatchResult<R> cancelled(int index, BatchRequest<R> request) {
+		return failure(index, request, new CancellationException("The batch has been cancelled"));
+	}
+
+	/**
+	 * @return The position of the request in the batch
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public BatchRequest<R> getRequest() {
+		return request;
+	}
+
+	/**
+	 * @return true if the request has returned a response
+	 */
+	public boolean isSuccess() {
+		return exception == null;
+	}
+
+	/**
+	 * @return true if the request has not been sent or has been interrupted
+	 *         because the batch was cancelled
+	 */
+	public boolean isCancelled() {
+		return exception instanceof CancellationException;
+	}
+
+	/**
+	 * @return The response or null if the request has failed
+	 */
+	public HttpResponse<R> getResponse() {
+		return response;
+	}
+
+	/**
+	 * @return The body of the response or null if the request has failed
+	 */
+	public R getBody() {
+		return response == null ? null : response.body();
+	}
+
+	/**
+	 * @return The exception or null if the request has succeeded
+	 */
+	public Exception getException() {
+		return exception;
+	}
+
+	@Override
+	public String toString() {
+		return "#" + index + " " + request + " -> "
+				+ (exception == null ? String.valueOf(response.statusCode()) : exception.toString());
+	}
+}
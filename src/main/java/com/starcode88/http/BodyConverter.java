@@ -0,0 +1,21 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+
+/**
+ * Converts a response body, which has been received or cached as bytes,
+ * into the type requested by the caller.
+ *
+ * @param <R> The type of the body
+ */
+interface BodyConverter<R> {
+
+	/**
+	 * @param body The body, it may be shared and must not be changed
+	 * @param headers The headers of the response
+	 * @return The converted body
+	 * @throws IOException Will be thrown if the body can not be converted
+	 */
+	R convert(byte[] body, HttpHeaders headers) throws IOException;
+}
@@ -0,0 +1,86 @@
+package com.starcode88.http;
+
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An OutputStream which collects the written bytes in a list of chunks.
+ * Unlike ByteArrayOutputStream it never copies the data to grow, and the
+ * chunks can be published directly with
+ * {@link java.net.http.HttpRequest.BodyPublishers#ofByteArrays(Iterable)}.
+ */
+final class ByteChunksOutputStream extends OutputStream {
+
+	private static final int FIRST_CHUNK_SIZE = 512;
+
+	private static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+	private final List<byte[]> chunks = new ArrayList<byte[]>();
+
+	private byte[] current = new byte[FIRST_CHUNK_SIZE];
+
+	private int position = 0;
+
+	private long size = 0;
+
+	@Override
+	public void write(int b) {
+		if (position == current.length) {
+			nextChunk();
+		}
+		current[position++] = (byte) b;
+		size++;
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) {
+		while (length > 0) {
+			if (position == current.length) {
+				nextChunk();
+			}
+			int count = Math.min(length, current.length - position);
+			System.arraycopy(bytes, offset, current, position, count);
+			position += count;
+			offset += count;
+			length -= count;
+			size += count;
+		}
+	}
+
+	private void nextChunk() {
+		chunks.add(current);
+		current = new byte[Math.min(current.length * 2, MAX_CHUNK_SIZE)];
+		position = 0;
+	}
+
+	/**
+	 * @return The number of bytes which have been written
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * @return The written bytes, only the last chunk is copied to cut it to its length
+	 */
+	List<byte[]> toChunks() {
+		List<byte[]> result = new ArrayList<byte[]>(chunks.size() + 1);
+		result.addAll(chunks);
+		if (position > 0) {
+			result.add(position == current.length ? current : Arrays.copyOf(current, position));
+		}
+		return result;
+	}
+
+	/**
+	 * @return A publisher of the written bytes with known Content-Length
+	 */
+	BodyPublisher toBodyPublisher() {
+		return HttpRequest.BodyPublishers.fromPublisher(
+				HttpRequest.BodyPublishers.ofByteArrays(toChunks()), size);
+	}
+}
@@ -0,0 +1,79 @@
+package com.starcode88.http;
+
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Optional;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * A response which has not been received from the server for this request,
+ * but has been created from a stored response, e.g. from the response cache.
+ *
+ * @param <T> The type of the body
+ */
+class CachedHttpResponse<T> implements HttpResponse<T> {
+
+	private final HttpRequest request;
+
+	private final int statusCode;
+
+	private final HttpHeaders headers;
+
+	private final T body;
+
+	CachedHttpResponse(HttpRequest request, int statusCode, HttpHeaders headers, T body) {
+		this.request = request;
+		this.statusCode = statusCode;
+		this.headers = headers;
+		this.body = body;
+	}
+
+	@Override
+	public int statusCode() {
+		return statusCode;
+	}
+
+	@Override
+	public HttpRequest request() {
+		return request;
+	}
+
+	@Override
+	public Optional<HttpResponse<T>> previousResponse() {
+		return Optional.empty();
+	}
+
+	@Override
+	public HttpHeaders headers() {
+		return headers;
+	}
+
+	@Override
+	public T body() {
+		return body;
+	}
+
+	@Override
+	public Optional<SSLSession> sslSession() {
+		return Optional.empty();
+	}
+
+	@Override
+	public URI uri() {
+		return request.uri();
+	}
+
+	@Override
+	public Version version() {
+		return request.version().orElse(Version.HTTP_1_1);
+	}
+
+	@Override
+	public String toString() {
+		return "(" + request.method() + " " + request.uri() + ") " + statusCode + " (cached)";
+	}
+}
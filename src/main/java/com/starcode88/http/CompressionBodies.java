@@ -0,0 +1,265 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Handlers and publishers for gzip and deflate encoded bodies, see
+ * {@link CompressionPolicy}.
+ */
+final class CompressionBodies {
+
+	static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	private CompressionBodies() {
+	}
+
+	/**
+	 * Wraps a handler, so that a gzip or deflate encoded body is decoded
+	 * before it reaches the subscriber of the handler.
+	 *
+	 * @param <T> The type of the body
+	 * @param handler The handler for the decoded body
+	 * @return The handler
+	 */
+	static <T> BodyHandler<T> decoding(BodyHandler<T> handler) {
+		return responseInfo -> {
+			BodySubscriber<T> subscriber = handler.apply(responseInfo);
+			ContentDecoder decoder = ContentDecoder.forEncoding(
+					responseInfo.headers().firstValue("Content-Encoding").orElse(null));
+			return decoder == null ? subscriber : new DecodingSubscriber<T>(subscriber, decoder);
+		};
+	}
+
+	/**
+	 * Compresses the given bytes with gzip.
+	 *
+	 * @param chunks The uncompressed bytes
+	 * @param level The compression level
+	 * @return The compressed bytes
+	 */
+	static ByteChunksOutputStream gzip(Iterable<byte[]> chunks, int level) {
+		ByteChunksOutputStream out = new ByteChunksOutputStream();
+		try (GZIPOutputStream gzip = new LeveledGZIPOutputStream(out, level)) {
+			for (byte[] chunk : chunks) {
+				gzip.write(chunk);
+			}
+		} catch (IOException e) {
+			// ByteChunksOutputStream never throws
+			throw new UncheckedIOException(e);
+		}
+		return out;
+	}
+
+	/**
+	 * Creates a publisher which compresses a file while it is sent. The
+	 * compressed size is not known in advance, so the body is sent chunked.
+	 *
+	 * @param file The file
+	 * @param level The compression level
+	 * @return The publisher
+	 */
+	static BodyPublisher gzipFile(Path file, int level) {
+		return HttpRequest.BodyPublishers.ofInputStream(() -> {
+			try {
+				return new GzipCompressingInputStream(Files.newInputStream(file), level);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	private static final class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+		LeveledGZIPOutputStream(ByteChunksOutputStream out, int level) throws IOException {
+			super(out, 8192);
+			def.setLevel(level);
+		}
+	}
+
+	/**
+	 * Decodes the buffers before they are passed to the downstream
+	 * subscriber. The subscription of the transport is passed through,
+	 * so demand and cancellation are handled by the downstream subscriber.
+	 * If an encoded buffer produces no output, one more buffer is requested
+	 * to keep the demand of the downstream subscriber.
+	 */
+	static final class DecodingSubscriber<T> implements BodySubscriber<T> {
+
+		private final BodySubscriber<T> downstream;
+
+		private final ContentDecoder decoder;
+
+		private Flow.Subscription subscription;
+
+		private boolean failed = false;
+
+		DecodingSubscriber(BodySubscriber<T> downstream, ContentDecoder decoder) {
+			this.downstream = downstream;
+			this.decoder = decoder;
+		}
+
+		@Override
+		public CompletionStage<T> getBody() {
+			return downstream.getBody();
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			downstream.onSubscribe(subscription);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			if (failed) {
+				return;
+			}
+			List<ByteBuffer> decoded = new ArrayList<ByteBuffer>(buffers.size() + 1);
+			try {
+				for (ByteBuffer buffer : buffers) {
+					decoder.decode(buffer, decoded);
+				}
+			} catch (ZipException e) {
+				failed = true;
+				decoder.close();
+				subscription.cancel();
+				downstream.onError(e);
+				return;
+			}
+			if (decoded.isEmpty()) {
+				subscription.request(1);
+			} else {
+				downstream.onNext(decoded);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			if (!failed) {
+				failed = true;
+				decoder.close();
+				downstream.onError(throwable);
+			}
+		}
+
+		@Override
+		public void onComplete() {
+			if (failed) {
+				return;
+			}
+			try {
+				decoder.finish();
+			} catch (ZipException e) {
+				failed = true;
+				downstream.onError(e);
+				return;
+			}
+			downstream.onComplete();
+		}
+	}
+
+	/**
+	 * Reads an InputStream and returns its content gzip compressed.
+	 */
+	static final class GzipCompressingInputStream extends InputStream {
+
+		private static final byte[] HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+		private final InputStream in;
+
+		private final Deflater deflater;
+
+		private final CRC32 crc = new CRC32();
+
+		private final byte[] input = new byte[8192];
+
+		private byte[] prefix = HEADER;
+
+		private int prefixPosition = 0;
+
+		private boolean trailerWritten = false;
+
+		GzipCompressingInputStream(InputStream in, int level) {
+			this.in = in;
+			this.deflater = new Deflater(level, true);
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] one = new byte[1];
+			int count = read(one, 0, 1);
+			return count < 0 ? -1 : one[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			while (true) {
+				if (prefix != null) {
+					if (prefixPosition < prefix.length) {
+						int count = Math.min(length, prefix.length - prefixPosition);
+						System.arraycopy(prefix, prefixPosition, bytes, offset, count);
+						prefixPosition += count;
+						return count;
+					}
+					prefix = null;
+				}
+				if (trailerWritten) {
+					return -1;
+				}
+				if (deflater.finished()) {
+					prefix = trailer();
+					prefixPosition = 0;
+					trailerWritten = true;
+					continue;
+				}
+				if (deflater.needsInput()) {
+					int count = in.read(input);
+					if (count < 0) {
+						deflater.finish();
+					} else if (count > 0) {
+						crc.update(input, 0, count);
+						deflater.setInput(input, 0, count);
+					}
+				}
+				int count = deflater.deflate(bytes, offset, length);
+				if (count > 0) {
+					return count;
+				}
+			}
+		}
+
+		private byte[] trailer() {
+			long value = crc.getValue();
+			long size = deflater.getBytesRead();
+			return new byte[] {
+					(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24),
+					(byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24) };
+		}
+
+		@Override
+		public void close() throws IOException {
+			deflater.end();
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.starcode88.http;
+
+import java.util.zip.Deflater;
+
+/**
+ * Defines how {@link HttpClient} uses HTTP compression. An instance is
+ * immutable, use {@link #newBuilder()} to create one and pass it to
+ * {@link HttpClient#setCompressionPolicy(CompressionPolicy)}.
+ * <p>
+ * If responses are decompressed, the header "Accept-Encoding: gzip, deflate"
+ * is sent and gzip or deflate encoded bodies are decoded while they are
+ * received, for all response body types. The headers of the response still
+ * show the original Content-Encoding and Content-Length.
+ * <p>
+ * If request compression is enabled, request bodies with at least
+ * {@link #getRequestCompressionThreshold()} bytes are sent gzip encoded
+ * with the header "Content-Encoding: gzip". The server must support this.
+ */
+public class CompressionPolicy {
+
+	/** Responses are decompressed, requests are not compressed */
+	public static final CompressionPolicy DEFAULT = newBuilder().build();
+
+	private final boolean decompressResponses;
+
+	private final long requestCompressionThreshold;
+
+	private final int compressionLevel;
+
+	private CompressionPolicy(Builder builder) {
+		this.decompressResponses = builder.decompressResponses;
+		this.requestCompressionThreshold = builder.requestCompressionThreshold;
+		this.compressionLevel = builder.compressionLevel;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	public boolean isDecompressResponses() {
+		return decompressResponses;
+	}
+
+	/**
+	 * @return The minimum size of a request body in bytes which will be
+	 *         compressed or -1 if requests are not compressed
+	 */
+	public long getRequestCompressionThreshold() {
+		return requestCompressionThreshold;
+	}
+
+	/**
+	 * @return The level for compressing request bodies, see {@link Deflater}
+	 */
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * @param size The size of a request body in bytes
+	 * @return true if the body should be compressed
+	 */
+	boolean shouldCompress(long size) {
+		return requestCompressionThreshold >= 0 && size >= requestCompressionThreshold;
+	}
+
+	public static class Builder {
+
+		private boolean decompressResponses = true;
+
+		private long requestCompressionThreshold = -1;
+
+		private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+		private Builder() {
+		}
+
+		public Builder decompressResponses(boolean decompressResponses) {
+			this.decompressResponses = decompressResponses;
+			return this;
+		}
+
+		/**
+		 * @param threshold Request bodies with at least this number of bytes
+		 *                  are sent gzip encoded, -1 disables it
+		 * @return this builder
+		 */
+		public Builder requestCompressionThreshold(long threshold) {
+			if (threshold < -1) {
+				throw new IllegalArgumentException("The argument <threshold> must be -1 or greater");
+			}
+			this.requestCompressionThreshold = threshold;
+			return this;
+		}
+
+		/**
+		 * @param level 0-9 or Deflater.DEFAULT_COMPRESSION
+		 * @return this builder
+		 */
+		public Builder compressionLevel(int level) {
+			if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+				throw new IllegalArgumentException("The argument <level> must be between 0 and 9");
+			}
+			this.compressionLevel = level;
+			return this;
+		}
+
+		public CompressionPolicy build() {
+			return new CompressionPolicy(this);
+		}
+	}
+}
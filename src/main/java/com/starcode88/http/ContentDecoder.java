@@ -0,0 +1,270 @@
+package com.starcode88.http;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes a gzip or deflate encoded body chunk by chunk, without
+ * buffering the whole body. An instance decodes exactly one body
+ * and is not thread safe.
+ */
+final class ContentDecoder {
+
+	private static final int OUTPUT_BUFFER_SIZE = 16 * 1024;
+
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private enum State {
+		/** deflate: the first two bytes decide between zlib and raw deflate */
+		DEFLATE_START,
+		/** gzip: the fixed 10 bytes of the member header */
+		GZIP_HEADER,
+		GZIP_EXTRA_LENGTH,
+		GZIP_SKIP,
+		GZIP_NAME,
+		GZIP_COMMENT,
+		GZIP_HEADER_CRC,
+		DATA,
+		GZIP_TRAILER,
+		DONE
+	}
+
+	private final boolean gzip;
+
+	private Inflater inflater;
+
+	private final CRC32 crc = new CRC32();
+
+	private State state;
+
+	/** Collects the bytes of a header, trailer or the deflate start */
+	private final byte[] pending = new byte[10];
+
+	private int pendingCount = 0;
+
+	private int flags;
+
+	private int skip;
+
+	private boolean hasMember = false;
+
+	private ContentDecoder(boolean gzip) {
+		this.gzip = gzip;
+		this.state = gzip ? State.GZIP_HEADER : State.DEFLATE_START;
+	}
+
+	/**
+	 * @param contentEncoding The value of the Content-Encoding header
+	 * @return The decoder or null if the encoding is not gzip or deflate
+	 */
+	static ContentDecoder forEncoding(String contentEncoding) {
+		if (contentEncoding == null) {
+			return null;
+		}
+		String encoding = contentEncoding.trim();
+		if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+			return new ContentDecoder(true);
+		}
+		if (encoding.equalsIgnoreCase("deflate")) {
+			return new ContentDecoder(false);
+		}
+		return null;
+	}
+
+	/**
+	 * Decodes the given input and adds the decoded buffers to out.
+	 *
+	 * @param in The encoded input, it will be consumed completely
+	 * @param out Receives the decoded buffers, ready to be read
+	 * @throws ZipException Will be thrown if the input is corrupt
+	 */
+	void decode(ByteBuffer in, List<ByteBuffer> out) throws ZipException {
+		while (in.hasRemaining()) {
+			switch (state) {
+			case DEFLATE_START:
+				if (collect(in, 2)) {
+					int cmf = pending[0] & 0xff;
+					int flg = pending[1] & 0xff;
+					boolean zlib = (cmf & 0x0f) == 8 && (cmf * 256 + flg) % 31 == 0;
+					inflater = new Inflater(!zlib);
+					state = State.DATA;
+					inflate(ByteBuffer.wrap(pending, 0, 2), out);
+				}
+				break;
+			case GZIP_HEADER:
+				if (collect(in, 10)) {
+					if ((pending[0] & 0xff) != 0x1f || (pending[1] & 0xff) != 0x8b || pending[2] != 8) {
+						throw new ZipException("Not in gzip format");
+					}
+					flags = pending[3] & 0xff;
+					nextHeaderField(FEXTRA - 1);
+				}
+				break;
+			case GZIP_EXTRA_LENGTH:
+				if (collect(in, 2)) {
+					skip = (pending[0] & 0xff) | ((pending[1] & 0xff) << 8);
+					state = State.GZIP_SKIP;
+				}
+				break;
+			case GZIP_SKIP:
+				int count = Math.min(skip, in.remaining());
+				in.position(in.position() + count);
+				skip -= count;
+				if (skip == 0) {
+					nextHeaderField(FEXTRA);
+				}
+				break;
+			case GZIP_NAME:
+				if (skipZeroTerminated(in)) {
+					nextHeaderField(FNAME);
+				}
+				break;
+			case GZIP_COMMENT:
+				if (skipZeroTerminated(in)) {
+					nextHeaderField(FCOMMENT);
+				}
+				break;
+			case GZIP_HEADER_CRC:
+				if (collect(in, 2)) {
+					nextHeaderField(Integer.MAX_VALUE);
+				}
+				break;
+			case DATA:
+				inflate(in, out);
+				break;
+			case GZIP_TRAILER:
+				if (collect(in, 8)) {
+					long expectedCrc = readInt(0);
+					long expectedSize = readInt(4);
+					if (expectedCrc != crc.getValue()) {
+						throw new ZipException("Corrupt gzip trailer (CRC mismatch)");
+					}
+					if (expectedSize != (inflater.getBytesWritten() & 0xffffffffL)) {
+						throw new ZipException("Corrupt gzip trailer (size mismatch)");
+					}
+					inflater.end();
+					hasMember = true;
+					// another member may follow (concatenated gzip)
+					state = State.GZIP_HEADER;
+				}
+				break;
+			case DONE:
+				// trailing garbage after a deflate stream is ignored
+				in.position(in.limit());
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Checks that the body has been completely decoded. An empty body is
+	 * complete, e.g. of 204, 304 or a HEAD request which carry the
+	 * Content-Encoding header of the representation.
+	 *
+	 * @throws ZipException Will be thrown if the body has been truncated
+	 */
+	void finish() throws ZipException {
+		boolean empty = state == (gzip ? State.GZIP_HEADER : State.DEFLATE_START) && pendingCount == 0
+				&& !hasMember;
+		boolean complete = empty || (gzip ? (state == State.GZIP_HEADER && pendingCount == 0 && hasMember)
+				: state == State.DONE);
+		if (inflater != null) {
+			inflater.end();
+		}
+		if (!complete) {
+			throw new ZipException("Unexpected end of " + (gzip ? "gzip" : "deflate") + " stream");
+		}
+	}
+
+	/**
+	 * Releases the native resources if decoding is aborted.
+	 */
+	void close() {
+		if (inflater != null) {
+			inflater.end();
+		}
+	}
+
+	private void inflate(ByteBuffer in, List<ByteBuffer> out) throws ZipException {
+		inflater.setInput(in);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+			while (true) {
+				int count = inflater.inflate(buffer);
+				if (count > 0) {
+					buffer.flip();
+					if (gzip) {
+						crc.update(buffer.duplicate());
+					}
+					out.add(buffer);
+					buffer = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+				}
+				if (inflater.finished()) {
+					in.position(in.limit() - inflater.getRemaining());
+					state = gzip ? State.GZIP_TRAILER : State.DONE;
+					return;
+				}
+				if (inflater.needsDictionary()) {
+					throw new ZipException("Deflate stream with preset dictionary is not supported");
+				}
+				if (count == 0 && inflater.needsInput()) {
+					in.position(in.limit());
+					return;
+				}
+			}
+		} catch (DataFormatException e) {
+			throw new ZipException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Moves to the next optional part of the gzip header after the given flag.
+	 */
+	private void nextHeaderField(int afterFlag) {
+		if (afterFlag < FEXTRA && (flags & FEXTRA) != 0) {
+			state = State.GZIP_EXTRA_LENGTH;
+		} else if (afterFlag < FNAME && (flags & FNAME) != 0) {
+			state = State.GZIP_NAME;
+		} else if (afterFlag < FCOMMENT && (flags & FCOMMENT) != 0) {
+			state = State.GZIP_COMMENT;
+		} else if (afterFlag < Integer.MAX_VALUE && (flags & FHCRC) != 0) {
+			state = State.GZIP_HEADER_CRC;
+		} else {
+			crc.reset();
+			inflater = new Inflater(true);
+			state = State.DATA;
+		}
+	}
+
+	private boolean collect(ByteBuffer in, int length) {
+		while (pendingCount < length && in.hasRemaining()) {
+			pending[pendingCount++] = in.get();
+		}
+		if (pendingCount < length) {
+			return false;
+		}
+		pendingCount = 0;
+		return true;
+	}
+
+	private static boolean skipZeroTerminated(ByteBuffer in) {
+		while (in.hasRemaining()) {
+			if (in.get() == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private long readInt(int offset) {
+		return (pending[offset] & 0xffL) | ((pending[offset + 1] & 0xffL) << 8)
+				| ((pending[offset + 2] & 0xffL) << 16) | ((pending[offset + 3] & 0xffL) << 24);
+	}
+}
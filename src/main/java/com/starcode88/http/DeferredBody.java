@@ -0,0 +1,23 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+
+/**
+ * A response body which has been received, but not yet converted into its
+ * final type because the conversion blocks, e.g. reading JSON from the
+ * InputStream of the body. The transport completes the response with a
+ * DeferredBody and {@link HttpClient} resolves it on the calling thread,
+ * so that no thread of the transport is blocked.
+ *
+ * @param <T> The final type of the body
+ */
+interface DeferredBody<T> {
+
+	/**
+	 * Converts the body into its final type.
+	 *
+	 * @return The body
+	 * @throws IOException Will be thrown if reading or converting the body fails
+	 */
+	T resolve() throws IOException;
+}
@@ -0,0 +1,74 @@
+package com.starcode88.http;
+
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Optional;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * A response which has all properties of another response, except the body.
+ * It is used when the body has been converted after it was received.
+ *
+ * @param <T> The type of the body
+ */
+class DelegatingHttpResponse<T> implements HttpResponse<T> {
+
+	private final HttpResponse<?> delegate;
+
+	private final T body;
+
+	DelegatingHttpResponse(HttpResponse<?> delegate, T body) {
+		this.delegate = delegate;
+		this.body = body;
+	}
+
+	@Override
+	public int statusCode() {
+		return delegate.statusCode();
+	}
+
+	@Override
+	public HttpRequest request() {
+		return delegate.request();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked") // The previous response is only informational
+	public Optional<HttpResponse<T>> previousResponse() {
+		return delegate.previousResponse().map(response -> (HttpResponse<T>) response);
+	}
+
+	@Override
+	public HttpHeaders headers() {
+		return delegate.headers();
+	}
+
+	@Override
+	public T body() {
+		return body;
+	}
+
+	@Override
+	public Optional<SSLSession> sslSession() {
+		return delegate.sslSession();
+	}
+
+	@Override
+	public URI uri() {
+		return delegate.uri();
+	}
+
+	@Override
+	public Version version() {
+		return delegate.version();
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+}
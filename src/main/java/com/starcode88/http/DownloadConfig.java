@@ -0,0 +1,112 @@
+package com.starcode88.http;
+
+/**
+ * Settings of parallel downloads by {@link HttpClient#GET(String, java.nio.file.Path)}.
+ * An instance is immutable, use {@link #newBuilder()} to create one and
+ * pass it to {@link HttpClient#setDownloadConfig(DownloadConfig)}.
+ * <p>
+ * Before the download a HEAD request asks for Accept-Ranges and
+ * Content-Length. If the server supports byte ranges, the file is split
+ * into at most {@link #getConnections()} ranges of at least
+ * {@link #getMinRangeSize()} bytes which are fetched concurrently, each
+ * over its own HTTP/1.1 connection. The ranges are written directly into
+ * their position of a preallocated file "&lt;file&gt;.part", which is
+ * renamed to the file when all ranges are complete. Otherwise the file is
+ * downloaded with a single request as without this config.
+ * <p>
+ * If resume is enabled and the server sends an ETag or Last-Modified
+ * header, the progress is stored in a small sidecar file
+ * "&lt;file&gt;.progress". A download which has been interrupted, e.g. by a
+ * dropped connection or a restart of the application, continues where it
+ * stopped as long as the resource has not changed.
+ */
+public class DownloadConfig {
+
+	private final int connections;
+
+	private final long minRangeSize;
+
+	private final boolean resume;
+
+	private DownloadConfig(Builder builder) {
+		this.connections = builder.connections;
+		this.minRangeSize = builder.minRangeSize;
+		this.resume = builder.resume;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return Maximum number of ranges which are fetched concurrently
+	 */
+	public int getConnections() {
+		return connections;
+	}
+
+	/**
+	 * @return Minimum size of a range in bytes, smaller files are
+	 *         downloaded with a single request
+	 */
+	public long getMinRangeSize() {
+		return minRangeSize;
+	}
+
+	/**
+	 * @return true if interrupted downloads are resumed
+	 */
+	public boolean isResume() {
+		return resume;
+	}
+
+	public static class Builder {
+
+		private int connections = 4;
+
+		private long minRangeSize = 4L * 1024 * 1024;
+
+		private boolean resume = true;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param connections Maximum number of ranges which are fetched concurrently, at least 1
+		 * @return this builder
+		 */
+		public Builder connections(int connections) {
+			if (connections < 1) {
+				throw new IllegalArgumentException("The argument <connections> must be at least 1");
+			}
+			this.connections = connections;
+			return this;
+		}
+
+		/**
+		 * @param minRangeSize Minimum size of a range in bytes, at least 1
+		 * @return this builder
+		 */
+		public Builder minRangeSize(long minRangeSize) {
+			if (minRangeSize < 1) {
+				throw new IllegalArgumentException("The argument <minRangeSize> must be at least 1");
+			}
+			this.minRangeSize = minRangeSize;
+			return this;
+		}
+
+		/**
+		 * @param resume true to store the progress in a sidecar file and to
+		 *               resume interrupted downloads
+		 * @return this builder
+		 */
+		public Builder resume(boolean resume) {
+			this.resume = resume;
+			return this;
+		}
+
+		public DownloadConfig build() {
+			return new DownloadConfig(this);
+		}
+	}
+}
@@ -0,0 +1,386 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Incremental parsers of event streams. They are fed with the buffers of
+ * the response body as they arrive and emit each complete event, so no
+ * part of the stream is buffered beyond the current event. A parser is
+ * used by one thread at a time.
+ */
+final class EventParsers {
+
+	private EventParsers() {
+	}
+
+	/**
+	 * Parses the events of one stream.
+	 *
+	 * @param <T> The type of the events
+	 */
+	interface Parser<T> {
+
+		/**
+		 * Parses a buffer and passes the events which it completes to the sink.
+		 *
+		 * @param buffer The next bytes of the body, they are consumed
+		 * @param sink Receives the events
+		 * @throws IOException Will be thrown if the stream is invalid or an
+		 *                     event exceeds the maximum size
+		 */
+		void parse(ByteBuffer buffer, Consumer<? super T> sink) throws IOException;
+
+		/**
+		 * Called when the server has closed the stream normally, before
+		 * {@link #reset()}.
+		 *
+		 * @param sink Receives the last event if the stream ended without
+		 *             its terminator and the format allows that
+		 * @throws IOException Will be thrown if the last event is invalid
+		 */
+		default void finish(Consumer<? super T> sink) throws IOException {
+		}
+
+		/**
+		 * Discards the incomplete event when the connection has ended.
+		 */
+		void reset();
+
+		/**
+		 * @return The ID which is sent as Last-Event-ID when the stream is
+		 *         reconnected, or null
+		 */
+		default String getLastEventId() {
+			return null;
+		}
+
+		/**
+		 * @return The reconnect delay which has been sent by the server in
+		 *         milliseconds, or -1
+		 */
+		default long getRetryMillis() {
+			return -1;
+		}
+
+		/**
+		 * @return true if the stream is reconnected when the server closes it
+		 */
+		boolean isReconnectOnEnd();
+	}
+
+	/**
+	 * Receives the lines of a stream.
+	 */
+	interface LineHandler {
+
+		/**
+		 * @param bytes The bytes, only valid during the call
+		 * @param offset The start of the line
+		 * @param length The length of the line without its terminator
+		 */
+		void line(byte[] bytes, int offset, int length) throws IOException;
+	}
+
+	/**
+	 * Splits bytes into lines terminated by LF, CR or CRLF. A line which
+	 * lies completely in a heap buffer is passed without copying. Only a
+	 * line which spans buffers is copied into a buffer of at most maxLength
+	 * bytes, which is allocated once and grows as needed.
+	 */
+	static final class LineSplitter {
+
+		private final int maxLength;
+
+		private byte[] pending = new byte[256];
+
+		private int pendingLength = 0;
+
+		/** The last line ended with CR, so a following LF belongs to it */
+		private boolean skipLf = false;
+
+		LineSplitter(int maxLength) {
+			this.maxLength = maxLength;
+		}
+
+		void split(ByteBuffer buffer, LineHandler handler) throws IOException {
+			if (!buffer.hasArray()) {
+				byte[] copy = new byte[buffer.remaining()];
+				buffer.get(copy);
+				buffer = ByteBuffer.wrap(copy);
+			}
+			byte[] array = buffer.array();
+			int start = buffer.arrayOffset() + buffer.position();
+			int end = buffer.arrayOffset() + buffer.limit();
+			buffer.position(buffer.limit());
+			int lineStart = start;
+			for (int i = start; i < end; i++) {
+				byte b = array[i];
+				if (b != '\n' && b != '\r') {
+					continue;
+				}
+				if (b == '\n' && skipLf && i == lineStart) {
+					skipLf = false;
+					lineStart = i + 1;
+					continue;
+				}
+				skipLf = b == '\r';
+				if (pendingLength == 0) {
+					checkLength(i - lineStart);
+					handler.line(array, lineStart, i - lineStart);
+				} else {
+					append(array, lineStart, i - lineStart);
+					int length = pendingLength;
+					pendingLength = 0;
+					handler.line(pending, 0, length);
+				}
+				lineStart = i + 1;
+			}
+			if (lineStart < end) {
+				skipLf = false;
+				append(array, lineStart, end - lineStart);
+			}
+		}
+
+		private void append(byte[] bytes, int offset, int length) throws IOException {
+			checkLength(pendingLength + length);
+			if (pendingLength + length > pending.length) {
+				byte[] grown = new byte[Math.min(maxLength, Math.max(pending.length * 2, pendingLength + length))];
+				System.arraycopy(pending, 0, grown, 0, pendingLength);
+				pending = grown;
+			}
+			System.arraycopy(bytes, offset, pending, pendingLength, length);
+			pendingLength += length;
+		}
+
+		private void checkLength(int length) throws IOException {
+			if (length > maxLength) {
+				throw new IOException("Line of the event stream exceeds " + maxLength + " bytes");
+			}
+		}
+
+		/**
+		 * Passes the last line if the bytes did not end with a terminator.
+		 */
+		void flush(LineHandler handler) throws IOException {
+			if (pendingLength > 0) {
+				int length = pendingLength;
+				pendingLength = 0;
+				handler.line(pending, 0, length);
+			}
+		}
+
+		void reset() {
+			pendingLength = 0;
+			skipLf = false;
+		}
+	}
+
+	/**
+	 * Parser of text/event-stream as specified by the HTML Living Standard.
+	 */
+	static final class ServerSentEvents implements Parser<ServerSentEvent>, LineHandler {
+
+		private static final byte[] DATA = "data".getBytes(StandardCharsets.US_ASCII);
+
+		private static final byte[] EVENT = "event".getBytes(StandardCharsets.US_ASCII);
+
+		private static final byte[] ID = "id".getBytes(StandardCharsets.US_ASCII);
+
+		private static final byte[] RETRY = "retry".getBytes(StandardCharsets.US_ASCII);
+
+		private final int maxEventSize;
+
+		private final LineSplitter splitter;
+
+		private final StringBuilder data = new StringBuilder();
+
+		private boolean hasData = false;
+
+		private String event = null;
+
+		private String lastEventId;
+
+		private long retryMillis = -1;
+
+		/** The byte order mark is only allowed at the start of the stream */
+		private boolean firstLine = true;
+
+		private Consumer<? super ServerSentEvent> sink;
+
+		ServerSentEvents(int maxEventSize, String lastEventId) {
+			this.maxEventSize = maxEventSize;
+			this.splitter = new LineSplitter(maxEventSize);
+			this.lastEventId = lastEventId;
+		}
+
+		@Override
+		public void parse(ByteBuffer buffer, Consumer<? super ServerSentEvent> sink) throws IOException {
+			this.sink = sink;
+			splitter.split(buffer, this);
+		}
+
+		@Override
+		public void line(byte[] bytes, int offset, int length) throws IOException {
+			if (firstLine) {
+				firstLine = false;
+				if (length >= 3 && bytes[offset] == (byte) 0xEF && bytes[offset + 1] == (byte) 0xBB
+						&& bytes[offset + 2] == (byte) 0xBF) {
+					offset += 3;
+					length -= 3;
+				}
+			}
+			if (length == 0) {
+				dispatch();
+				return;
+			}
+			if (bytes[offset] == ':') {
+				return;
+			}
+			int colon = offset;
+			int end = offset + length;
+			while (colon < end && bytes[colon] != ':') {
+				colon++;
+			}
+			int nameLength = colon - offset;
+			int valueStart = Math.min(colon + 1, end);
+			if (valueStart < end && bytes[valueStart] == ' ') {
+				valueStart++;
+			}
+			int valueLength = end - valueStart;
+			if (is(DATA, bytes, offset, nameLength)) {
+				if (data.length() + valueLength + 1 > maxEventSize) {
+					throw new IOException("Event of the event stream exceeds " + maxEventSize + " bytes");
+				}
+				if (hasData) {
+					data.append('\n');
+				}
+				data.append(new String(bytes, valueStart, valueLength, StandardCharsets.UTF_8));
+				hasData = true;
+			} else if (is(EVENT, bytes, offset, nameLength)) {
+				event = new String(bytes, valueStart, valueLength, StandardCharsets.UTF_8);
+			} else if (is(ID, bytes, offset, nameLength)) {
+				String id = new String(bytes, valueStart, valueLength, StandardCharsets.UTF_8);
+				if (id.indexOf('\0') < 0) {
+					lastEventId = id;
+				}
+			} else if (is(RETRY, bytes, offset, nameLength)) {
+				long retry = 0;
+				for (int i = valueStart; i < end; i++) {
+					if (bytes[i] < '0' || bytes[i] > '9' || retry > Integer.MAX_VALUE) {
+						return;
+					}
+					retry = retry * 10 + (bytes[i] - '0');
+				}
+				if (valueLength > 0) {
+					retryMillis = retry;
+				}
+			}
+		}
+
+		private static boolean is(byte[] name, byte[] bytes, int offset, int length) {
+			if (name.length != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (bytes[offset + i] != name[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void dispatch() {
+			if (hasData) {
+				sink.accept(new ServerSentEvent(lastEventId, event == null || event.isEmpty() ? "message" : event,
+						data.toString()));
+			}
+			data.setLength(0);
+			hasData = false;
+			event = null;
+		}
+
+		@Override
+		public void reset() {
+			splitter.reset();
+			data.setLength(0);
+			hasData = false;
+			event = null;
+			firstLine = true;
+		}
+
+		@Override
+		public String getLastEventId() {
+			return lastEventId;
+		}
+
+		@Override
+		public long getRetryMillis() {
+			return retryMillis;
+		}
+
+		@Override
+		public boolean isReconnectOnEnd() {
+			return true;
+		}
+	}
+
+	/**
+	 * Parser of newline delimited JSON. Each line is bound by Jackson
+	 * directly from the bytes, without a String per line. Empty lines are
+	 * skipped, the last line needs no terminator.
+	 *
+	 * @param <T> The type of the records
+	 */
+	static final class JsonLines<T> implements Parser<T>, LineHandler {
+
+		private final ObjectReader reader;
+
+		private final LineSplitter splitter;
+
+		private Consumer<? super T> sink;
+
+		JsonLines(ObjectReader reader, int maxLineSize) {
+			this.reader = reader;
+			this.splitter = new LineSplitter(maxLineSize);
+		}
+
+		@Override
+		public void parse(ByteBuffer buffer, Consumer<? super T> sink) throws IOException {
+			this.sink = sink;
+			splitter.split(buffer, this);
+		}
+
+		@Override
+		public void line(byte[] bytes, int offset, int length) throws IOException {
+			for (int i = offset; i < offset + length; i++) {
+				byte b = bytes[i];
+				if (b != ' ' && b != '\t') {
+					T record = reader.readValue(bytes, offset, length);
+					sink.accept(record);
+					return;
+				}
+			}
+		}
+
+		@Override
+		public void finish(Consumer<? super T> sink) throws IOException {
+			this.sink = sink;
+			splitter.flush(this);
+		}
+
+		@Override
+		public void reset() {
+			splitter.reset();
+		}
+
+		@Override
+		public boolean isReconnectOnEnd() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.starcode88.http;
+
+import java.time.Duration;
+
+/**
+ * Settings of the event streams of
+ * {@link HttpClient#streamEvents(String, EventStreamConfig)} and
+ * {@link HttpClient#streamJsonLines(String, Class, EventStreamConfig)}.
+ * An instance is immutable, use {@link #newBuilder()} to create one.
+ * <p>
+ * A stream whose connection fails (IOException, 429 or 5xx status code)
+ * is reconnected after the reconnect delay, which doubles with each failed
+ * attempt up to the maximum. A text/event-stream is also reconnected when
+ * the server closes it, with the Last-Event-ID header and the delay which
+ * the server has sent with "retry:". An NDJSON stream completes when the
+ * server closes it. A 204 response ends any stream.
+ */
+public class EventStreamConfig {
+
+	private static final EventStreamConfig DEFAULTS = newBuilder().build();
+
+	private final int maxEventSize;
+
+	private final boolean reconnect;
+
+	private final Duration reconnectDelay;
+
+	private final Duration maxReconnectDelay;
+
+	private final int maxReconnects;
+
+	private EventStreamConfig(Builder builder) {
+		this.maxEventSize = builder.maxEventSize;
+		this.reconnect = builder.reconnect;
+		this.reconnectDelay = builder.reconnectDelay;
+		this.maxReconnectDelay = builder.maxReconnectDelay;
+		this.maxReconnects = builder.maxReconnects;
+	}
+
+	/**
+	 * @return Events of at most 1 MiB, reconnects without limit after 1 to 30 seconds
+	 */
+	public static EventStreamConfig defaults() {
+		return DEFAULTS;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return Maximum number of bytes of one event or line. A larger event
+	 *         fails the stream, so memory per stream stays bounded.
+	 */
+	public int getMaxEventSize() {
+		return maxEventSize;
+	}
+
+	public boolean isReconnect() {
+		return reconnect;
+	}
+
+	public Duration getReconnectDelay() {
+		return reconnectDelay;
+	}
+
+	public Duration getMaxReconnectDelay() {
+		return maxReconnectDelay;
+	}
+
+	/**
+	 * @return Maximum number of reconnects without an event in between, -1 for no limit
+	 */
+	public int getMaxReconnects() {
+		return maxReconnects;
+	}
+
+	public static class Builder {
+
+		private int maxEventSize = 1024 * 1024;
+
+		private boolean reconnect = true;
+
+		private Duration reconnectDelay = Duration.ofSeconds(1);
+
+		private Duration maxReconnectDelay = Duration.ofSeconds(30);
+
+		private int maxReconnects = -1;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param maxEventSize Maximum number of bytes of one event or line
+		 * @return this builder
+		 */
+		public Builder maxEventSize(int maxEventSize) {
+			if (maxEventSize < 1) {
+				throw new IllegalArgumentException("The argument <maxEventSize> must be positive");
+			}
+			this.maxEventSize = maxEventSize;
+			return this;
+		}
+
+		/**
+		 * @param reconnect false if the stream ends with its first connection
+		 * @return this builder
+		 */
+		public Builder reconnect(boolean reconnect) {
+			this.reconnect = reconnect;
+			return this;
+		}
+
+		/**
+		 * @param delay The delay before the first reconnect
+		 * @param maxDelay The longest delay
+		 * @return this builder
+		 */
+		public Builder reconnectDelay(Duration delay, Duration maxDelay) {
+			if (delay == null || maxDelay == null || delay.isNegative() || maxDelay.compareTo(delay) < 0) {
+				throw new IllegalArgumentException("The arguments <delay> and <maxDelay> must be a valid range");
+			}
+			this.reconnectDelay = delay;
+			this.maxReconnectDelay = maxDelay;
+			return this;
+		}
+
+		/**
+		 * @param maxReconnects Maximum number of reconnects without an event
+		 *                      in between, -1 for no limit
+		 * @return this builder
+		 */
+		public Builder maxReconnects(int maxReconnects) {
+			if (maxReconnects < -1) {
+				throw new IllegalArgumentException("The argument <maxReconnects> must be -1 or positive");
+			}
+			this.maxReconnects = maxReconnects;
+			return this;
+		}
+
+		public EventStreamConfig build() {
+			return new EventStreamConfig(this);
+		}
+	}
+}
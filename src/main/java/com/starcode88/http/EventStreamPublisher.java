@@ -0,0 +1,439 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.starcode88.http.exception.HttpCircuitOpenException;
+import com.starcode88.http.exception.HttpLimitExceededException;
+import com.starcode88.http.exception.HttpStatusCodeException;
+
+/**
+ * Publishes the events of a long-lived response, see
+ * {@link HttpClient#streamEvents(String, EventStreamConfig)}. Each
+ * subscriber gets its own connection, which is reconnected according to
+ * the {@link EventStreamConfig}.
+ * <p>
+ * The demand of the subscriber is passed on to the transport: the next
+ * buffer of the body is requested only when the events of the previous
+ * buffer have been delivered, so a slow subscriber slows down the
+ * connection instead of filling memory. Parsing and delivery run in one
+ * drain loop, so the subscriber is never called concurrently.
+ *
+ * @param <T> The type of the events
+ */
+final class EventStreamPublisher<T> implements Flow.Publisher<T> {
+
+	private static Logger logger = LogManager.getLogger(EventStreamPublisher.class);
+
+	/**
+	 * Opens one connection of the stream.
+	 */
+	interface Connector {
+
+		/**
+		 * @param lastEventId The ID which must be sent as Last-Event-ID or null
+		 * @param handler The handler for the response body
+		 * @return The response, it completes when the headers have arrived
+		 */
+		CompletableFuture<HttpResponse<Void>> connect(String lastEventId, BodyHandler<Void> handler);
+	}
+
+	private final Connector connector;
+
+	private final Function<String, EventParsers.Parser<T>> parsers;
+
+	private final EventStreamConfig config;
+
+	/**
+	 * @param connector Opens the connections
+	 * @param parsers Creates the parser of a subscription from the last
+	 *                event ID, which is null for the first connection
+	 * @param config The settings of the stream
+	 */
+	EventStreamPublisher(Connector connector, Function<String, EventParsers.Parser<T>> parsers,
+			EventStreamConfig config) {
+		this.connector = connector;
+		this.parsers = parsers;
+		this.config = config;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		EventSubscription subscription = new EventSubscription(subscriber, parsers.apply(null));
+		subscriber.onSubscribe(subscription);
+		subscription.connect();
+	}
+
+	/**
+	 * How a connection has ended.
+	 */
+	private static final class Ending {
+
+		final Throwable failure;
+
+		final boolean retryable;
+
+		Ending(Throwable failure, boolean retryable) {
+			this.failure = failure;
+			this.retryable = retryable;
+		}
+	}
+
+	private final class EventSubscription implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super T> downstream;
+
+		private final EventParsers.Parser<T> parser;
+
+		private final AtomicLong demand = new AtomicLong();
+
+		private final AtomicInteger wip = new AtomicInteger();
+
+		/** Buffers received from the transport, at most one list at a time */
+		private final ConcurrentLinkedQueue<List<ByteBuffer>> received = new ConcurrentLinkedQueue<List<ByteBuffer>>();
+
+		/** Events of the current buffer which have not been delivered, only used in the drain loop */
+		private final ArrayDeque<T> events = new ArrayDeque<T>();
+
+		/** true while a buffer has been requested from the transport and not received */
+		private final AtomicBoolean awaiting = new AtomicBoolean();
+
+		private volatile ConnectionSubscriber connection;
+
+		private volatile CompletableFuture<HttpResponse<Void>> response;
+
+		private volatile Ending ending;
+
+		private volatile Throwable error;
+
+		private volatile boolean cancelled = false;
+
+		/** Set by the drain loop when the subscriber has been completed */
+		private boolean done = false;
+
+		/** The parser has been finished after the connection ended, only used in the drain loop */
+		private boolean finished = false;
+
+		/** Number of reconnects since the last event, only used in the drain loop */
+		private int reconnects = 0;
+
+		EventSubscription(Flow.Subscriber<? super T> downstream, EventParsers.Parser<T> parser) {
+			this.downstream = downstream;
+			this.parser = parser;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				error = new IllegalArgumentException("The number of requested events must be positive");
+				drain();
+				return;
+			}
+			long current;
+			long next;
+			do {
+				current = demand.get();
+				next = current + n < 0 ? Long.MAX_VALUE : current + n;
+			} while (!demand.compareAndSet(current, next));
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			closeConnection();
+			drain();
+		}
+
+		private void closeConnection() {
+			ConnectionSubscriber connection = this.connection;
+			if (connection != null) {
+				connection.cancel();
+			}
+			CompletableFuture<HttpResponse<Void>> response = this.response;
+			if (response != null) {
+				response.cancel(true);
+			}
+		}
+
+		void connect() {
+			if (cancelled) {
+				return;
+			}
+			ConnectionSubscriber connection = new ConnectionSubscriber(this);
+			this.connection = connection;
+			CompletableFuture<HttpResponse<Void>> response;
+			try {
+				// The body of 204 No Content is discarded, so only the response ends the connection
+				response = connector.connect(parser.getLastEventId(),
+						StreamingBodyHandlers.onSuccess(responseInfo -> responseInfo.statusCode() == 204
+								? HttpResponse.BodySubscribers.replacing(null) : connection));
+			} catch (RuntimeException e) {
+				connection.end(e, false);
+				return;
+			}
+			this.response = response;
+			response.whenComplete((received, throwable) -> {
+				if (throwable != null) {
+					Throwable cause = HttpClient.causeOf(throwable);
+					connection.end(cause, cause instanceof IOException || cause instanceof HttpCircuitOpenException
+							|| cause instanceof HttpLimitExceededException);
+				} else if (received.statusCode() == 204) {
+					connection.end(null, false);
+				} else if (received.statusCode() < 200 || received.statusCode() >= 300) {
+					int status = received.statusCode();
+					connection.end(new HttpStatusCodeException(received), status == 429 || status >= 500);
+				}
+			});
+			if (cancelled) {
+				closeConnection();
+			}
+		}
+
+		void onEnding(ConnectionSubscriber from, Ending ending) {
+			if (from == connection) {
+				this.ending = ending;
+				drain();
+			}
+		}
+
+		void onBuffers(ConnectionSubscriber from, List<ByteBuffer> buffers) {
+			if (from == connection) {
+				received.offer(buffers);
+				awaiting.set(false);
+				drain();
+			}
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				drainLoop();
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void drainLoop() {
+			while (!done) {
+				if (cancelled) {
+					done = true;
+					events.clear();
+					received.clear();
+					return;
+				}
+				Throwable error = this.error;
+				if (error != null) {
+					terminate(error);
+					return;
+				}
+				if (!events.isEmpty()) {
+					if (demand.get() == 0) {
+						return;
+					}
+					T event = events.poll();
+					if (demand.get() != Long.MAX_VALUE) {
+						demand.decrementAndGet();
+					}
+					reconnects = 0;
+					try {
+						downstream.onNext(event);
+					} catch (RuntimeException e) {
+						logger.error("Subscriber of the event stream failed", e);
+						cancel();
+					}
+					continue;
+				}
+				List<ByteBuffer> buffers = received.poll();
+				if (buffers != null) {
+					try {
+						for (ByteBuffer buffer : buffers) {
+							parser.parse(buffer, events::add);
+						}
+					} catch (IOException | RuntimeException e) {
+						terminate(e);
+						return;
+					}
+					continue;
+				}
+				Ending ending = this.ending;
+				if (ending != null) {
+					if (ending.failure == null && !finished) {
+						finished = true;
+						try {
+							parser.finish(events::add);
+						} catch (IOException | RuntimeException e) {
+							terminate(e);
+							return;
+						}
+						continue;
+					}
+					this.ending = null;
+					finished = false;
+					onConnectionEnded(ending);
+					return;
+				}
+				ConnectionSubscriber connection = this.connection;
+				if (demand.get() > 0 && connection != null && awaiting.compareAndSet(false, true)) {
+					if (!connection.requestNext()) {
+						awaiting.set(false);
+					}
+				}
+				return;
+			}
+		}
+
+		/**
+		 * Reconnects or ends the stream after its connection has ended.
+		 * Called in the drain loop when all events of the connection have
+		 * been delivered.
+		 */
+		private void onConnectionEnded(Ending ending) {
+			parser.reset();
+			awaiting.set(false);
+			boolean reconnect = config.isReconnect() && ending.retryable
+					&& (ending.failure != null || parser.isReconnectOnEnd());
+			if (!reconnect) {
+				if (ending.failure == null) {
+					done = true;
+					downstream.onComplete();
+				} else {
+					terminate(ending.failure);
+				}
+				return;
+			}
+			int maxReconnects = config.getMaxReconnects();
+			if (maxReconnects >= 0 && reconnects >= maxReconnects) {
+				terminate(ending.failure != null ? ending.failure
+						: new IOException("The event stream has been closed " + reconnects + " times without an event"));
+				return;
+			}
+			long delayNanos = reconnectDelayNanos();
+			reconnects++;
+			logger.debug("Event stream ended ({}), reconnect {} in {} ms", ending.failure, reconnects,
+					TimeUnit.NANOSECONDS.toMillis(delayNanos));
+			CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(this::connect);
+		}
+
+		private long reconnectDelayNanos() {
+			long retryMillis = parser.getRetryMillis();
+			long baseNanos = retryMillis >= 0 ? TimeUnit.MILLISECONDS.toNanos(retryMillis)
+					: config.getReconnectDelay().toNanos();
+			long maxNanos = Math.max(baseNanos, config.getMaxReconnectDelay().toNanos());
+			// The first reconnect after events is immediate with the base delay
+			long delayNanos = reconnects >= 30 ? maxNanos : baseNanos << reconnects;
+			return delayNanos < 0 || delayNanos > maxNanos ? maxNanos : delayNanos;
+		}
+
+		private void terminate(Throwable failure) {
+			done = true;
+			closeConnection();
+			events.clear();
+			received.clear();
+			downstream.onError(failure);
+		}
+	}
+
+	/**
+	 * Receives the body of one connection and passes its buffers to the
+	 * subscription. The body completes at once, so the response is
+	 * available when its headers have arrived.
+	 */
+	private final class ConnectionSubscriber implements BodySubscriber<Void> {
+
+		private final EventSubscription owner;
+
+		private final AtomicBoolean ended = new AtomicBoolean();
+
+		private volatile Flow.Subscription subscription;
+
+		private volatile boolean cancelled = false;
+
+		ConnectionSubscriber(EventSubscription owner) {
+			this.owner = owner;
+		}
+
+		@Override
+		public CompletionStage<Void> getBody() {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			if (this.subscription != null) {
+				subscription.cancel();
+				return;
+			}
+			this.subscription = subscription;
+			if (cancelled) {
+				subscription.cancel();
+				return;
+			}
+			owner.drain();
+		}
+
+		/**
+		 * @return false if the body has not been subscribed yet
+		 */
+		boolean requestNext() {
+			Flow.Subscription subscription = this.subscription;
+			if (subscription == null) {
+				return false;
+			}
+			subscription.request(1);
+			return true;
+		}
+
+		void cancel() {
+			cancelled = true;
+			Flow.Subscription subscription = this.subscription;
+			if (subscription != null) {
+				subscription.cancel();
+			}
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			owner.onBuffers(this, buffers);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			Throwable cause = HttpClient.causeOf(throwable);
+			end(cause, cause instanceof IOException);
+		}
+
+		@Override
+		public void onComplete() {
+			end(null, true);
+		}
+
+		/**
+		 * Ends the connection, only the first call counts.
+		 */
+		void end(Throwable failure, boolean retryable) {
+			if (ended.compareAndSet(false, true)) {
+				owner.onEnding(this, new Ending(failure, retryable));
+			}
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.starcode88.http.circuitbreaker.CircuitBreaker;
+import com.starcode88.http.exception.HttpCircuitOpenException;
+import com.starcode88.http.exception.HttpLimitExceededException;
+import com.starcode88.http.limit.ConcurrencyLimiter;
+import com.starcode88.http.loadbalancer.Endpoint;
+import com.starcode88.http.loadbalancer.LoadBalancer;
+import com.starcode88.http.metrics.MetricsRecorder;
+
+/**
+ * Guards one exchange with the circuit breaker and the concurrency limiter
+ * of its host and records its metrics and, if the client has several base
+ * URLs, the outcome for the {@link LoadBalancer}. It is acquired before the request
+ * is sent and must be completed exactly once, with the response or with
+ * the failure.
+ */
+final class ExchangeGuard {
+
+	/** Guard for exchanges without circuit breaker, limiter and metrics */
+	static final ExchangeGuard NONE = new ExchangeGuard(null, 0, null, 0, null, 0, null, null);
+
+	private final CircuitBreaker circuitBreaker;
+
+	private final long permission;
+
+	private final ConcurrencyLimiter limiter;
+
+	private final int slot;
+
+	private final MetricsRecorder.Sample sample;
+
+	private final long startNanos;
+
+	private final LoadBalancer loadBalancer;
+
+	private final Endpoint endpoint;
+
+	private ExchangeGuard(CircuitBreaker circuitBreaker, long permission, ConcurrencyLimiter limiter, int slot,
+			MetricsRecorder.Sample sample, long startNanos, LoadBalancer loadBalancer, Endpoint endpoint) {
+		this.circuitBreaker = circuitBreaker;
+		this.permission = permission;
+		this.limiter = limiter;
+		this.slot = slot;
+		this.sample = sample;
+		this.startNanos = startNanos;
+		this.loadBalancer = loadBalancer;
+		this.endpoint = endpoint;
+	}
+
+	/**
+	 * Asks the circuit breaker for permission and takes a slot of the limiter.
+	 *
+	 * @param circuitBreaker The circuit breaker or null
+	 * @param limiter The concurrency limiter or null
+	 * @param sample The sample of the metrics or null. A rejection is
+	 *               recorded as failure.
+	 * @param loadBalancer The load balancer or null
+	 * @param endpoint The endpoint of the load balancer to which the
+	 *                 request is sent, or null
+	 * @return The guard
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker is open
+	 * @throws HttpLimitExceededException Will be thrown if the limiter rejects the exchange
+	 * @throws InterruptedException Will be thrown if the thread is interrupted
+	 *                              while it waits for a slot
+	 */
+	static ExchangeGuard acquire(CircuitBreaker circuitBreaker, ConcurrencyLimiter limiter,
+				MetricsRecorder.Sample sample, LoadBalancer loadBalancer, Endpoint endpoint)
+				throws HttpCircuitOpenException, HttpLimitExceededException, InterruptedException {
+		if (circuitBreaker == null && limiter == null && sample == null && endpoint == null) {
+			return NONE;
+		}
+		long startNanos = System.nanoTime();
+		long permission = 0;
+		if (circuitBreaker != null) {
+			try {
+				permission = circuitBreaker.acquirePermission();
+			} catch (HttpCircuitOpenException e) {
+				if (sample != null) {
+					sample.onFailure(e, System.nanoTime() - startNanos);
+				}
+				throw e;
+			}
+		}
+		int slot = 0;
+		if (limiter != null) {
+			try {
+				slot = limiter.acquire();
+			} catch (HttpLimitExceededException | InterruptedException e) {
+				if (circuitBreaker != null) {
+					circuitBreaker.releasePermission(permission);
+				}
+				if (sample != null) {
+					sample.onFailure(e, System.nanoTime() - startNanos);
+				}
+				throw e;
+			}
+		}
+		if (endpoint != null) {
+			loadBalancer.onStart(endpoint);
+		}
+		return new ExchangeGuard(circuitBreaker, permission, limiter, slot, sample, startNanos, loadBalancer,
+				endpoint);
+	}
+
+	/**
+	 * Like {@link #acquire(CircuitBreaker, ConcurrencyLimiter, MetricsRecorder.Sample, LoadBalancer, Endpoint)},
+	 * but a request above the concurrency limit waits without blocking the
+	 * thread, see {@link ConcurrencyLimiter#acquireAsync()}.
+	 *
+	 * @return The guard. The future fails with {@link HttpCircuitOpenException}
+	 *         if the circuit breaker is open or with {@link HttpLimitExceededException}
+	 *         if the limiter rejects the exchange.
+	 */
+	static CompletableFuture<ExchangeGuard> acquireAsync(CircuitBreaker circuitBreaker, ConcurrencyLimiter limiter,
+				MetricsRecorder.Sample sample, LoadBalancer loadBalancer, Endpoint endpoint) {
+		if (limiter == null) {
+			try {
+				return CompletableFuture.completedFuture(acquire(circuitBreaker, null, sample, loadBalancer, endpoint));
+			} catch (HttpCircuitOpenException | HttpLimitExceededException | InterruptedException e) {
+				return CompletableFuture.failedFuture(e);
+			}
+		}
+		long startNanos = System.nanoTime();
+		long permission = 0;
+		if (circuitBreaker != null) {
+			try {
+				permission = circuitBreaker.acquirePermission();
+			} catch (HttpCircuitOpenException e) {
+				if (sample != null) {
+					sample.onFailure(e, System.nanoTime() - startNanos);
+				}
+				return CompletableFuture.failedFuture(e);
+			}
+		}
+		long taken = permission;
+		return limiter.acquireAsync().handle((slot, throwable) -> {
+			if (throwable != null) {
+				if (circuitBreaker != null) {
+					circuitBreaker.releasePermission(taken);
+				}
+				Throwable cause = HttpClient.causeOf(throwable);
+				if (sample != null) {
+					sample.onFailure(cause, System.nanoTime() - startNanos);
+				}
+				throw new CompletionException(cause);
+			}
+			if (endpoint != null) {
+				loadBalancer.onStart(endpoint);
+			}
+			return new ExchangeGuard(circuitBreaker, taken, limiter, slot, sample, startNanos, loadBalancer,
+					endpoint);
+		});
+	}
+
+	/**
+	 * Completes the guard with a received response.
+	 *
+	 * @param response The response, its body may not have been read yet
+	 */
+	void onResponse(HttpResponse<?> response) {
+		if (this == NONE) {
+			return;
+		}
+		long durationNanos = System.nanoTime() - startNanos;
+		int statusCode = response.statusCode();
+		if (sample != null) {
+			long responseBytes = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+			sample.onResponse(statusCode, responseBytes, durationNanos);
+		}
+		if (circuitBreaker != null) {
+			circuitBreaker.onResponse(permission, durationNanos, statusCode);
+		}
+		if (limiter != null) {
+			// The server tells us that it is overloaded
+			boolean dropped = statusCode == 429 || statusCode == 503;
+			limiter.release(slot, durationNanos, dropped);
+		}
+		if (endpoint != null) {
+			loadBalancer.onResponse(endpoint, statusCode, durationNanos);
+		}
+	}
+
+	/**
+	 * Completes the guard with a failure. An IOException counts as failed
+	 * exchange for the circuit breaker, the limiter and the load balancer, other exceptions
+	 * (e.g. cancellation) are only recorded in the metrics.
+	 *
+	 * @param failure The exception of the exchange
+	 */
+	void onFailure(Throwable failure) {
+		if (this == NONE) {
+			return;
+		}
+		long durationNanos = System.nanoTime() - startNanos;
+		Throwable cause = HttpClient.causeOf(failure);
+		if (sample != null) {
+			sample.onFailure(cause, durationNanos);
+		}
+		boolean failed = cause instanceof IOException;
+		if (circuitBreaker != null) {
+			if (failed) {
+				circuitBreaker.onResult(permission, durationNanos, true);
+			} else {
+				circuitBreaker.releasePermission(permission);
+			}
+		}
+		if (limiter != null) {
+			if (failed) {
+				limiter.release(slot, durationNanos, true);
+			} else {
+				limiter.release();
+			}
+		}
+		if (endpoint != null) {
+			if (failed) {
+				loadBalancer.onFailure(endpoint);
+			} else {
+				loadBalancer.onRelease(endpoint);
+			}
+		}
+	}
+
+	/**
+	 * Completes the guard when the async exchange completes.
+	 *
+	 * @param <R> The type of the response body
+	 * @param future The exchange
+	 * @return The exchange
+	 */
+	<R> CompletableFuture<HttpResponse<R>> track(CompletableFuture<HttpResponse<R>> future) {
+		if (this == NONE) {
+			return future;
+		}
+		future.whenComplete((response, throwable) -> {
+			if (response != null) {
+				onResponse(response);
+			} else {
+				onFailure(throwable);
+			}
+		});
+		return future;
+	}
+}
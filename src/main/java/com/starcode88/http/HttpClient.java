@@ -1,22 +1,57 @@
 package com.starcode88.http;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
 import java.net.Socket;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.GeneralSecurityException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
@@ -27,16 +62,50 @@ import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
+import com.starcode88.http.buffer.BufferPool;
+import com.starcode88.http.buffer.BufferPoolConfig;
+import com.starcode88.http.buffer.PooledBody;
+import com.starcode88.http.cache.CacheControl;
+import com.starcode88.http.cache.CacheEntry;
+import com.starcode88.http.cache.CacheStatistics;
+import com.starcode88.http.cache.LruResponseCache;
+import com.starcode88.http.cache.ResponseCache;
+import com.starcode88.http.circuitbreaker.CircuitBreakerConfig;
+import com.starcode88.http.circuitbreaker.CircuitBreakerRegistry;
+import com.starcode88.http.exception.HttpCircuitOpenException;
+import com.starcode88.http.exception.HttpException;
 import com.starcode88.http.exception.HttpInvalidRequestBodyType;
 import com.starcode88.http.exception.HttpInvalidResponseBodyType;
+import com.starcode88.http.exception.HttpLimitExceededException;
+import com.starcode88.http.exception.HttpRangeMismatchException;
 import com.starcode88.http.exception.HttpStatusCodeException;
+import com.starcode88.http.hedge.Hedger;
+import com.starcode88.http.hedge.HedgingPolicy;
+import com.starcode88.http.limit.ConcurrencyLimitConfig;
+import com.starcode88.http.limit.ConcurrencyLimiterRegistry;
+import com.starcode88.http.loadbalancer.Endpoint;
+import com.starcode88.http.loadbalancer.LoadBalancer;
+import com.starcode88.http.loadbalancer.LoadBalancerConfig;
+import com.starcode88.http.metrics.JmxMetricsRecorder;
+import com.starcode88.http.metrics.MetricsRecorder;
+import com.starcode88.http.retry.RetryBudget;
+import com.starcode88.http.retry.RetryContext;
+import com.starcode88.http.retry.RetryPolicy;
 
-public class HttpClient {
+public class HttpClient implements AutoCloseable {
 	
 	private static Logger logger = LogManager.getLogger(HttpClient.class);
 	
-	/** This list contains headers that will be automatically added to all HTTP requests */
-	private LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+	/**
+	 * The headers that will be automatically added to all HTTP requests.
+	 * The snapshot is replaced on every change, so requests read it
+	 * without locking.
+	 */
+	private volatile RequestHeaders headers = RequestHeaders.EMPTY;
 
 	/** 
 	 * Base path of the server. The final URL will be build
@@ -45,6 +114,21 @@ public class HttpClient {
 	 */
 	String baseUrl;
 	
+	/**
+	 * {@link #baseUrl} parsed once, with a "/" at the end of its path.
+	 * Paths are resolved against it, so only the path is parsed per
+	 * request. null if the base URL cannot be used like that, then the
+	 * whole URL is parsed per request.
+	 */
+	private URI baseUri;
+	
+	/**
+	 * Selects one of several base URLs per exchange, null if the client
+	 * has one base URL. Requests are built with {@link #baseUrl}, the first
+	 * of the base URLs, and sent to the URL of the selected endpoint.
+	 */
+	private final LoadBalancer loadBalancer;
+	
 	/** SSL context is used to disable SSL verification for HTTPS */
 	private static SSLContext sslContext = null; 
 	
@@ -53,6 +137,84 @@ public class HttpClient {
 	 */
 	private boolean validateSSLCertificate = true;
 	
+	/** Settings which are used to build the transport */
+	private HttpTransportConfig transportConfig;
+	
+	/**
+	 * The underlying java.net.http.HttpClient. It is built lazily on the
+	 * first request and then shared by all requests of this instance, so
+	 * that connections and TLS sessions are reused. It will be rebuilt
+	 * after the transport settings have been changed.
+	 */
+	private volatile java.net.http.HttpClient transport = null;
+	
+	/**
+	 * Runs the tasks of the transport if virtual threads are enabled, built
+	 * with the first such transport and reused when it is rebuilt. Guarded
+	 * by the transportLock.
+	 */
+	private ExecutorService virtualThreadExecutor = null;
+	
+	/** true after {@link #close()}, guarded by the transportLock */
+	private boolean closed = false;
+	
+	/** Writes the wire log of requests and responses */
+	private volatile WireLogger wireLogger = new WireLogger(WireLogPolicy.DEFAULT);
+	
+	/** Converts bodies from and to JSON, null if JSON is disabled */
+	private volatile JsonBodies jsonBodies = new JsonBodies(new ObjectMapper());
+	
+	/** Compression of requests and responses, null if disabled */
+	private volatile CompressionPolicy compressionPolicy = null;
+	
+	/** Cache for GET responses, null if responses are not cached */
+	private volatile ResponseCache responseCache = null;
+	
+	/** Counters of the response cache */
+	private volatile CacheStatistics cacheStatistics = new CacheStatistics();
+	
+	/** Shares exchanges of identical GET requests, null if disabled */
+	private volatile RequestCoalescer requestCoalescer = null;
+	
+	/** Repeats failed requests, null if requests are not repeated */
+	private volatile RetryPolicy retryPolicy = null;
+	
+	/** Limits the retries of all requests of this client */
+	private volatile RetryBudget retryBudget = null;
+	
+	/** Set while the thread sends the warm-up requests, they are not repeated */
+	private final ThreadLocal<Boolean> warmingUp = new ThreadLocal<Boolean>();
+	
+	/** Circuit breakers per host, null if disabled */
+	private volatile CircuitBreakerRegistry circuitBreakers = null;
+	
+	/** Concurrency limiters per host, null if disabled */
+	private volatile ConcurrencyLimiterRegistry concurrencyLimiters = null;
+	
+	/** Receives the metrics of all exchanges, null if disabled */
+	private volatile MetricsRecorder metricsRecorder = null;
+	
+	/** Settings of parallel downloads, null if files are downloaded with one request */
+	private volatile DownloadConfig downloadConfig = null;
+	
+	/** Sends hedges of slow GET requests, null if disabled */
+	private volatile Hedger hedger = null;
+	
+	/** Receives bodies of type PooledBody, created when it is first needed */
+	private volatile BufferPool bufferPool = null;
+	
+	/** Timeout of each request or null for no timeout */
+	private volatile Duration requestTimeout = null;
+	
+	/** Guards building of the transport */
+	private final Object transportLock = new Object();
+	
+	/** Serializes changes of the default headers */
+	private final Object headersLock = new Object();
+	
+	/** Permits for async requests in flight */
+	private final AsyncPermits asyncPermits = new AsyncPermits();
+	
 	/**
 	 * Constructor with base URL. Later the base URL will be used for 
 	 * all HTTP requests. It is recommended to set the base URL
@@ -61,30 +223,406 @@ public class HttpClient {
 	 * @param baseUrl
 	 */
 	public HttpClient(String baseUrl) {
+		this(baseUrl, HttpTransportConfig.defaults());
+	}
+	
+	/**
+	 * Constructor with base URL and transport settings.
+	 * @param baseUrl See {@link #HttpClient(String)}
+	 * @param transportConfig Settings of the underlying transport
+	 */
+	public HttpClient(String baseUrl, HttpTransportConfig transportConfig) {
 		String version = System.getProperty("java.version");
 		logger.debug("Current Java version = {}", version);
 		this.baseUrl = baseUrl;
+		this.baseUri = parseBaseUri(baseUrl);
+		this.loadBalancer = null;
+		setTransportConfig(transportConfig);
+	}
+	
+	/**
+	 * Constructor with several base URLs of replicas of the same service.
+	 * Each exchange, including each retry, is sent to the base URL which
+	 * is selected by the load balancer, see {@link LoadBalancerConfig}.
+	 * @param baseUrls The base URLs, see {@link #HttpClient(String)}
+	 * @param config The settings of the load balancer
+	 */
+	public HttpClient(List<String> baseUrls, LoadBalancerConfig config) {
+		this(baseUrls, config, HttpTransportConfig.defaults());
+	}
+	
+	/**
+	 * Constructor with several base URLs and transport settings.
+	 * @param baseUrls The base URLs, see {@link #HttpClient(String)}
+	 * @param config The settings of the load balancer
+	 * @param transportConfig Settings of the underlying transport
+	 */
+	public HttpClient(List<String> baseUrls, LoadBalancerConfig config, HttpTransportConfig transportConfig) {
+		String version = System.getProperty("java.version");
+		logger.debug("Current Java version = {}", version);
+		try {
+			this.loadBalancer = new LoadBalancer(baseUrls, config);
+		} catch (IllegalArgumentException e) {
+			throw logger.throwing(e);
+		}
+		this.baseUrl = baseUrls.get(0);
+		this.baseUri = parseBaseUri(baseUrl);
+		setTransportConfig(transportConfig);
+		this.loadBalancer.startHealthChecks(this::getTransport);
+	}
+	
+	/**
+	 * Sets the transport settings. The transport will be rebuilt
+	 * with the new settings on the next request.
+	 * @param transportConfig The new settings, must not be null
+	 */
+	public void setTransportConfig(HttpTransportConfig transportConfig) {
+		if (transportConfig == null) {
+			throw logger.throwing(new IllegalArgumentException("The argument <transportConfig> must not be null"));
+		}
+		synchronized (transportLock) {
+			this.transportConfig = transportConfig;
+			this.transport = null;
+		}
+	}
+	
+	public HttpTransportConfig getTransportConfig() {
+		return this.transportConfig;
 	}
 	
 	public void setValidateSSLCertificate(boolean validate) throws GeneralSecurityException {
-		this.validateSSLCertificate = validate;
 		if (validate == false && sslContext == null) {
 			createSSLContextTrustAllCerts();
 		}
+		synchronized (transportLock) {
+			if (this.validateSSLCertificate != validate) {
+				this.validateSSLCertificate = validate;
+				this.transport = null;
+			}
+		}
 	}
 	
 	public boolean getValidateSSLCertificate() {
 		return this.validateSSLCertificate;
 	}
 	
+	/**
+	 * Sets the policy for logging requests and responses. The default
+	 * is {@link WireLogPolicy#DEFAULT}, use {@link WireLogPolicy#OFF}
+	 * to switch the wire log off on high volume paths.
+	 * @param policy The new policy, must not be null
+	 */
+	public void setWireLogPolicy(WireLogPolicy policy) {
+		if (policy == null) {
+			throw logger.throwing(new IllegalArgumentException("The argument <policy> must not be null"));
+		}
+		this.wireLogger = new WireLogger(policy);
+	}
+	
+	public WireLogPolicy getWireLogPolicy() {
+		return this.wireLogger.getPolicy();
+	}
+	
+	/**
+	 * Sets the ObjectMapper which converts request and response bodies
+	 * from and to JSON. Request bodies which are not String, byte[],
+	 * Iterable&lt;byte[]&gt;, Path, MultipartBody or BodyPublisher, and
+	 * response body classes which are not supported otherwise are handled
+	 * as JSON. By default a plain ObjectMapper is used.
+	 * @param mapper The mapper or null to disable JSON. Then unsupported
+	 *               body types are rejected with HttpInvalidRequestBodyType
+	 *               and HttpInvalidResponseBodyType.
+	 */
+	public void setObjectMapper(ObjectMapper mapper) {
+		this.jsonBodies = mapper == null ? null : new JsonBodies(mapper);
+	}
+	
+	public ObjectMapper getObjectMapper() {
+		JsonBodies jsonBodies = this.jsonBodies;
+		return jsonBodies == null ? null : jsonBodies.getMapper();
+	}
+	
+	/**
+	 * Enables HTTP compression. By default compression is disabled.
+	 * @param policy The policy, e.g. {@link CompressionPolicy#DEFAULT},
+	 *               or null to disable compression
+	 */
+	public void setCompressionPolicy(CompressionPolicy policy) {
+		this.compressionPolicy = policy;
+	}
+	
+	public CompressionPolicy getCompressionPolicy() {
+		return this.compressionPolicy;
+	}
+	
+	/**
+	 * Sets the cache for responses of GET requests. Only responses whose
+	 * body is String, byte[] or JSON are cached, files and streamed bodies
+	 * are not. The rules of the Cache-Control header (max-age, no-store,
+	 * no-cache) are honored and stale responses are revalidated with
+	 * If-None-Match and If-Modified-Since. The counters are reset.
+	 * <p>
+	 * The key of a response is the URL and all headers of the request,
+	 * including the default headers, so a response is only reused for
+	 * the same Authorization and Accept headers. Responses with a Vary
+	 * header are not stored.
+	 * @param cache The cache, e.g. a {@link LruResponseCache}, or null to disable caching
+	 */
+	public void setResponseCache(ResponseCache cache) {
+		this.responseCache = cache;
+		this.cacheStatistics = new CacheStatistics();
+	}
+	
+	public ResponseCache getResponseCache() {
+		return this.responseCache;
+	}
+	
+	/**
+	 * @return The hit, miss and revalidation counters of the response cache
+	 */
+	public CacheStatistics getCacheStatistics() {
+		return this.cacheStatistics;
+	}
+	
+	/**
+	 * Enables or disables request coalescing. If it is enabled, GET requests
+	 * with the same URI and the same headers which are sent while an
+	 * identical request is still in flight do not cause another request to
+	 * the server. Instead they wait for the response of the request in
+	 * flight. This reduces the load of the server if many threads ask for
+	 * the same resource at the same time, e.g. after a cache entry has
+	 * expired.
+	 * <p>
+	 * Only responses whose body is String, byte[] or JSON are shared. Each
+	 * caller gets its own body object and waits with its own timeout, see
+	 * {@link #setRequestTimeout(Duration)}. A caller which times out or is
+	 * interrupted does not affect the other callers.
+	 * 
+	 * @param enabled true to enable request coalescing
+	 */
+	public void setRequestCoalescing(boolean enabled) {
+		if (enabled) {
+			if (this.requestCoalescer == null) {
+				this.requestCoalescer = new RequestCoalescer();
+			}
+		} else {
+			this.requestCoalescer = null;
+		}
+	}
+	
+	public boolean isRequestCoalescing() {
+		return this.requestCoalescer != null;
+	}
+	
+	/**
+	 * @return Number of GET requests which have been answered by the
+	 *         exchange of an identical request in flight
+	 */
+	public long getCoalescedRequestCount() {
+		RequestCoalescer coalescer = this.requestCoalescer;
+		return coalescer == null ? 0 : coalescer.getCoalescedCount();
+	}
+	
+	/**
+	 * Sets the retry policy. Failed requests are repeated according to the
+	 * policy, for blocking and for async requests. The retry budget is
+	 * reset.
+	 * @param policy The policy or null if failed requests must not be repeated
+	 */
+	public void setRetryPolicy(RetryPolicy policy) {
+		if (policy != null) {
+			// The budget is set first, so a request which sees the policy also sees its budget
+			this.retryBudget = new RetryBudget(policy);
+		}
+		this.retryPolicy = policy;
+	}
+	
+	public RetryPolicy getRetryPolicy() {
+		return this.retryPolicy;
+	}
+	
+	/**
+	 * @return The retry budget which is shared by all requests, or null if
+	 *         there is no retry policy
+	 */
+	public RetryBudget getRetryBudget() {
+		return this.retryPolicy == null ? null : this.retryBudget;
+	}
+	
+	/**
+	 * Enables circuit breakers. Each host gets its own circuit breaker. While
+	 * the circuit breaker of a host is open, requests to it fail immediately
+	 * with {@link HttpCircuitOpenException} (async requests complete
+	 * exceptionally with it) instead of waiting for a connect failure or
+	 * timeout. Such requests are not retried.
+	 * @param config The settings of the circuit breakers or null to disable them
+	 */
+	public void setCircuitBreakerConfig(CircuitBreakerConfig config) {
+		this.circuitBreakers = config == null ? null : new CircuitBreakerRegistry(config);
+	}
+	
+	/**
+	 * @return The circuit breakers of all hosts which have been used,
+	 *         or null if circuit breakers are disabled
+	 */
+	public CircuitBreakerRegistry getCircuitBreakers() {
+		return this.circuitBreakers;
+	}
+	
+	/**
+	 * Enables adaptive concurrency limits. Each host gets its own limiter
+	 * which adjusts the number of requests in flight to the round trip
+	 * times and overload signals (timeouts, status codes 429 and 503) of
+	 * the host. Requests above the limit wait in a bounded queue; if the
+	 * queue is full or the wait time is over, they fail with
+	 * {@link HttpLimitExceededException}. A streamed response body does
+	 * not hold a slot while it is read.
+	 * @param config The settings of the limiters or null to disable them
+	 */
+	public void setConcurrencyLimitConfig(ConcurrencyLimitConfig config) {
+		this.concurrencyLimiters = config == null ? null : new ConcurrencyLimiterRegistry(config);
+	}
+	
+	/**
+	 * @return The concurrency limiters of all hosts which have been used,
+	 *         or null if concurrency limits are disabled
+	 */
+	public ConcurrencyLimiterRegistry getConcurrencyLimiters() {
+		return this.concurrencyLimiters;
+	}
+	
+	/**
+	 * Enables metrics. Every exchange with the server is recorded per
+	 * method and route: latency until the response headers have been
+	 * received, body sizes, status code class, exception and requests in
+	 * flight. Responses from the cache and coalesced requests are not
+	 * exchanges and are not recorded. The route of a request which has been
+	 * sent with a {@link Route} is its {@link UriTemplate}, otherwise it is the
+	 * path of the request without query.
+	 * <p>
+	 * Use {@link JmxMetricsRecorder} to publish the metrics as MBeans.
+	 * @param recorder The recorder or null to disable metrics
+	 */
+	public void setMetricsRecorder(MetricsRecorder recorder) {
+		this.metricsRecorder = recorder;
+	}
+	
+	public MetricsRecorder getMetricsRecorder() {
+		return this.metricsRecorder;
+	}
+	
+	/**
+	 * Enables parallel downloads of large files by {@link #GET(String, Path)}
+	 * with byte ranges over several connections and resume of interrupted
+	 * downloads, see {@link DownloadConfig}.
+	 * @param config The settings or null to download files with one request
+	 */
+	public void setDownloadConfig(DownloadConfig config) {
+		this.downloadConfig = config;
+	}
+	
+	public DownloadConfig getDownloadConfig() {
+		return this.downloadConfig;
+	}
+	
+	/**
+	 * Enables hedged GET requests. If the response has not arrived after
+	 * the hedge delay, a second copy of the request is sent and the first
+	 * successful response is used, see {@link HedgingPolicy}. Only
+	 * blocking GET requests whose body is received completely (String,
+	 * byte[] and JSON) are hedged. Misses of the response cache are hedged
+	 * too, and with request coalescing the exchange which is shared by
+	 * identical requests is hedged once. The state of the hedges is reset.
+	 * @param policy The policy or null to disable hedging
+	 */
+	public void setHedgingPolicy(HedgingPolicy policy) {
+		this.hedger = policy == null ? null : new Hedger(policy);
+	}
+	
+	public HedgingPolicy getHedgingPolicy() {
+		Hedger hedger = this.hedger;
+		return hedger == null ? null : hedger.getPolicy();
+	}
+	
+	/**
+	 * @return The current hedge delay and the counters of the hedges, or
+	 *         null if hedging is disabled
+	 */
+	public Hedger getHedger() {
+		return this.hedger;
+	}
+	
+	/**
+	 * Sets the pool of the buffers which receive response bodies of type
+	 * {@link PooledBody}. A pool can be shared by several clients. If no
+	 * pool is set, the client creates one with {@link BufferPoolConfig#defaults()}
+	 * when the first PooledBody is requested.
+	 * @param pool The pool or null to use the default pool
+	 */
+	public void setBufferPool(BufferPool pool) {
+		this.bufferPool = pool;
+	}
+	
+	/**
+	 * @return The pool which receives bodies of type {@link PooledBody}
+	 */
+	public BufferPool getBufferPool() {
+		BufferPool pool = this.bufferPool;
+		if (pool == null) {
+			synchronized (transportLock) {
+				pool = this.bufferPool;
+				if (pool == null) {
+					pool = new BufferPool(BufferPoolConfig.defaults());
+					this.bufferPool = pool;
+				}
+			}
+		}
+		return pool;
+	}
+	
+	/**
+	 * @return The load balancer with the state of the endpoints, or null
+	 *         if the client has one base URL. Call its
+	 *         {@link LoadBalancer#close()} to stop the health checks.
+	 */
+	public LoadBalancer getLoadBalancer() {
+		return this.loadBalancer;
+	}
+	
+	/**
+	 * Sets the timeout of each request. If the response has not been
+	 * received within the timeout, an {@link java.net.http.HttpTimeoutException}
+	 * is thrown.
+	 * @param timeout The timeout or null for no timeout
+	 */
+	public void setRequestTimeout(Duration timeout) {
+		if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+			throw logger.throwing(new IllegalArgumentException("The argument <timeout> must be positive"));
+		}
+		this.requestTimeout = timeout;
+	}
+	
+	public Duration getRequestTimeout() {
+		return this.requestTimeout;
+	}
+	
 	/**
 	 * Adds a header. The headers will be added later to all our following HTTP requests.
 	 * That is more convenient to set them once and later use them for all requests.
+	 * A header with the same name (in any case) is replaced, so a token can be
+	 * refreshed while other threads send requests with the client.
 	 * @param key
 	 * @param value
+	 * @throws IllegalArgumentException Will be thrown if the name or the value is invalid
 	 */
 	public void addHeader(String key, String value) {
-		this.headers.put(key, value);
+		synchronized (headersLock) {
+			try {
+				this.headers = this.headers.with(key, value);
+			} catch (IllegalArgumentException e) {
+				throw logger.throwing(e);
+			}
+		}
 	}
 	
 	/**
@@ -94,26 +632,49 @@ public class HttpClient {
 	 * it again.
 	 */
 	public String removeHeader(String key) {
-		return this.headers.remove(key);
+		synchronized (headersLock) {
+			String value = this.headers.get(key);
+			this.headers = this.headers.without(key);
+			return value;
+		}
 	}
 	
 	/**
 	 * Gets the value of the header given by key
-	 * @param key
-	 * @return
+	 * @param key The name of the header, case-insensitive
+	 * @return The value or null if there is no such header
 	 */
 	public String getHeader(String key) {
 		return this.headers.get(key);
 	}
+	
+	/**
+	 * Replaces all headers which are added to the requests.
+	 * @param headers The new headers, must not be null
+	 */
+	public void setHeaders(RequestHeaders headers) {
+		if (headers == null) {
+			throw logger.throwing(new IllegalArgumentException("The argument <headers> must not be null"));
+		}
+		synchronized (headersLock) {
+			this.headers = headers;
+		}
+	}
+	
+	/**
+	 * @return A snapshot of the headers which are added to the requests
+	 */
+	public RequestHeaders getHeaders() {
+		return this.headers;
+	}
 
 	public <R> HttpResponse<R> DELETE(String path, Class<R> responseBodyClass) 
 					throws URISyntaxException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException,
 					HttpInvalidResponseBodyType, IOException,
 					InterruptedException {
 		
-		HttpRequest.Builder requestBuilder = HttpRequest.newBuilder();
-		setUri(requestBuilder, path);
-		addHeaders(requestBuilder);
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
 		requestBuilder.DELETE();
 
 		HttpResponse<R> httpResponse = (HttpResponse<R>) 
@@ -125,181 +686,2296 @@ public class HttpClient {
 	
 	/**
 	 * 
-	 * @param <R> The return type, it must be <String> or <byte[]>
+	 * @param <R> The return type, it must be <String> or <byte[]>, or for
+	 *            streaming <InputStream> or <Stream> (the lines of the body).
+	 *            A streamed body must be closed by the caller.
 	 * @param path The path of the URL. It will be added to the URL given in the constructor
 	 * @param responseBodyClass The type of the response
 	 * @return The HTTP response
 	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
 	 * @throws HttpStatusCodeException Will be thrown if the status code is not 200
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
 	 * @throws HttpInvalidResponseBodyType Will be thrown if the argument <responseBodyClass> is not String.class or byte[].class
 	 * @throws IOException Will be thrown if there is a problem to access the URL, for example server can not be reached (connection timeout)
 	 * @throws InterruptedException Will be thrown if the send request will be interrupted
 	 */
 	public <R> HttpResponse<R> GET(String path, Class<R> responseBodyClass)
-			throws URISyntaxException, HttpStatusCodeException, 
+			throws URISyntaxException, HttpStatusCodeException,
+			HttpCircuitOpenException, HttpLimitExceededException,
 			HttpInvalidResponseBodyType, IOException, InterruptedException {
 		
-		HttpRequest.Builder requestBuilder = HttpRequest.newBuilder();
-		setUri(requestBuilder, path);
-		addHeaders(requestBuilder);
-		requestBuilder.GET();
-
-		HttpResponse<R> httpResponse = (HttpResponse<R>) send(requestBuilder.build(), null, responseBodyClass, null);
-		return httpResponse;
+		return sendGet(newRequestBuilder(path), responseBodyClass);
+	}
+	
+	/**
+	 * Sends a GET request and reads the response body as JSON into a
+	 * generic type, e.g. {@code new TypeReference<List<MyDto>>() {}}.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param path The path of the URL. It will be added to the URL given in the constructor
+	 * @param responseBodyType The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidResponseBodyType Will be thrown if JSON has been disabled
+	 * @throws IOException Will be thrown if there is a problem to access the URL or to read the JSON
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 */
+	public <R> HttpResponse<R> GET(String path, TypeReference<R> responseBodyType)
+			throws URISyntaxException, HttpStatusCodeException,
+			HttpCircuitOpenException, HttpLimitExceededException,
+			HttpInvalidResponseBodyType, IOException, InterruptedException {
+		
+		return sendGet(newRequestBuilder(path), responseBodyType);
 	}
 	
 	/**
+	 * Downloads a file. If a {@link DownloadConfig} is set and the server
+	 * supports byte ranges, the file is fetched in parallel ranges and an
+	 * interrupted download is resumed. The response is then the response
+	 * of the HEAD request which has probed the file.
+	 * 
 	 * @param path Path which will be added to the URL
 	 * @param file File to which the response will be stored
 	 * @return The HTTP response
 	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
 	 * @throws HttpStatusCodeException Will be thrown if the status code is not 200
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
 	 * @throws HttpInvalidResponseBodyType Will be thrown if the argument <responseBodyClass> is not String.class or byte[].class
 	 * @throws IOException Will be thrown if there is a problem to access the URL, for example server can not be reached (connection timeout)
 	 * @throws InterruptedException Will be thrown if the send request will be interrupted
 	 */
 	public HttpResponse<Path> GET(String path, Path file) 
 			    throws URISyntaxException, HttpStatusCodeException,
+			    HttpCircuitOpenException, HttpLimitExceededException,
 			    HttpInvalidResponseBodyType, IOException, InterruptedException {
 		
-		HttpRequest.Builder requestBuilder = HttpRequest.newBuilder();
-		setUri(requestBuilder, path);
-		addHeaders(requestBuilder);
+		DownloadConfig config = this.downloadConfig;
+		if (config != null) {
+			return download(path, file, config);
+		}
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
 		requestBuilder.GET();
 
 		HttpResponse<Path> httpResponse = send(requestBuilder.build(), null, Path.class, file);
 		return httpResponse;
 	}
-
 	
 	/**
-	 * Sends a POST request
-	 * @param <R> The response type, must be <String> or <byte[]>
-	 * @param <T> 
-	 * @param path
-	 * @param body
-	 * @param responseBodyClass
-	 * @return
-	 * @throws URISyntaxException
-	 * @throws IOException
-	 * @throws InterruptedException
-	 * @throws HttpStatusCodeException
-	 * @throws HttpInvalidRequestBodyType
-	 * @throws HttpInvalidResponseBodyType
+	 * Sends a GET request and passes the body chunk by chunk to a consumer
+	 * while it is received. Memory use is constant, no matter how large the
+	 * body is. The next chunk is requested only after the consumer has
+	 * returned, so a slow consumer slows down the transfer (backpressure).
+	 * The consumer is called on a thread of the transport.
+	 * 
+	 * @param path Path which will be added to the URL
+	 * @param chunkConsumer Receives the chunks of the body if the status code is 2xx
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx,
+	 *         the body of its response is a String with the beginning of the error body
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidResponseBodyType Never thrown, declared for symmetry with GET
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 *         or if the consumer has thrown an exception
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
 	 */
-	public <R, T> HttpResponse<R>
-				POST(String path, T body, Class<R> responseBodyClass)
-					throws URISyntaxException, IOException,
-					InterruptedException, HttpStatusCodeException,
-					HttpInvalidRequestBodyType,	HttpInvalidResponseBodyType {
-		
-		HttpRequest.Builder requestBuilder = HttpRequest.newBuilder();
-		setUri(requestBuilder, path);
-		addHeaders(requestBuilder);
-																																	
-		if (body instanceof String) {
-			requestBuilder.POST(HttpRequest.BodyPublishers.ofString((String)body));
-		} else if (body instanceof byte[]) {
-			requestBuilder.POST(HttpRequest.BodyPublishers.ofByteArray((byte[])body));
-		} else if (body instanceof Iterable<?>) {
-			Iterable<?> iterable = (Iterable<?>) body;
-			if (iterable.iterator().hasNext() && iterable.iterator().next() instanceof byte[])
-			{
-				requestBuilder.POST(HttpRequest.BodyPublishers.ofByteArrays((Iterable<byte[]>) body));
-			}
-			else {
-				throw logger.throwing(new HttpInvalidRequestBodyType(body.getClass()));
-			}
-	
-		} else if (body instanceof Path) {
-			requestBuilder.POST(HttpRequest.BodyPublishers.ofFile((Path)body));
-		} else if (body == null) {
-			requestBuilder.POST(HttpRequest.BodyPublishers.noBody());
-		} else {
-			throw logger.throwing(new HttpInvalidRequestBodyType(body.getClass()));
-		}
+	public HttpResponse<Void> GET(String path, Consumer<ByteBuffer> chunkConsumer)
+			    throws URISyntaxException, HttpStatusCodeException,
+			    HttpCircuitOpenException, HttpLimitExceededException,
+			    HttpInvalidResponseBodyType, IOException, InterruptedException {
 		
-		HttpResponse<R> response = (HttpResponse<R>) send(requestBuilder.build(), body, responseBodyClass, null);
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
+		requestBuilder.GET();
 		
+		return send(requestBuilder.build(), null, StreamingBodyHandlers.ofChunks(chunkConsumer));
+	}
+
+	/**
+	 * Subscribes to a text/event-stream (Server-Sent Events) with the
+	 * default {@link EventStreamConfig}.
+	 * 
+	 * @param path Path which will be added to the URL
+	 * @return The publisher of the events, see {@link #streamEvents(String, EventStreamConfig)}
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 */
+	public Flow.Publisher<ServerSentEvent> streamEvents(String path) throws URISyntaxException {
+		return streamEvents(path, EventStreamConfig.defaults());
+	}
+	
+	/**
+	 * Subscribes to a text/event-stream (Server-Sent Events). The events are
+	 * parsed while the body is received. Each subscriber opens its own
+	 * connection when it subscribes, the request is sent with the default
+	 * headers of this client.
+	 * <p>
+	 * The next part of the body is only read when the subscriber has
+	 * requested more events, so a slow subscriber slows down the stream
+	 * (backpressure). The memory of a stream is bounded by the maximum
+	 * event size of the config. If the connection ends, the stream is
+	 * reconnected with the Last-Event-ID header, see {@link EventStreamConfig}.
+	 * The subscriber receives {@link HttpStatusCodeException} if the server
+	 * rejects the stream and IOException if the stream can not be reconnected.
+	 * 
+	 * @param path Path which will be added to the URL
+	 * @param config The settings of the stream
+	 * @return The publisher of the events
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 */
+	public Flow.Publisher<ServerSentEvent> streamEvents(String path, EventStreamConfig config)
+					throws URISyntaxException {
+		if (config == null) {
+			throw logger.throwing(new IllegalArgumentException("The argument <config> must not be null"));
+		}
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path, RequestHeaders.of("Accept", "text/event-stream")
+				.with("Cache-Control", "no-cache").with("Accept-Encoding", "identity"));
+		requestBuilder.GET();
+		int maxEventSize = config.getMaxEventSize();
+		return new EventStreamPublisher<ServerSentEvent>((lastEventId, handler) -> connectStream(
+				lastEventId == null ? requestBuilder.copy() : requestBuilder.copy().setHeader("Last-Event-ID", lastEventId),
+				handler),
+				lastEventId -> new EventParsers.ServerSentEvents(maxEventSize, lastEventId), config);
+	}
+	
+	/**
+	 * Subscribes to a stream of newline delimited JSON (NDJSON, JSON Lines)
+	 * with the default {@link EventStreamConfig}.
+	 * 
+	 * @param <R> The type of the records
+	 * @param path Path which will be added to the URL
+	 * @param recordClass The class of the records
+	 * @return The publisher of the records, see {@link #streamJsonLines(String, Class, EventStreamConfig)}
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpInvalidResponseBodyType Will be thrown if JSON has been disabled
+	 */
+	public <R> Flow.Publisher<R> streamJsonLines(String path, Class<R> recordClass)
+					throws URISyntaxException, HttpInvalidResponseBodyType {
+		return streamJsonLines(path, recordClass, EventStreamConfig.defaults());
+	}
+	
+	/**
+	 * Subscribes to a stream of newline delimited JSON (NDJSON, JSON Lines).
+	 * Each line is bound to one record directly from the received bytes,
+	 * empty lines are skipped. Backpressure and memory bounds are the same
+	 * as with {@link #streamEvents(String, EventStreamConfig)}. The stream
+	 * completes when the server closes it; it is only reconnected if the
+	 * connection fails, so records may be received twice after a reconnect.
+	 * 
+	 * @param <R> The type of the records
+	 * @param path Path which will be added to the URL
+	 * @param recordClass The class of the records
+	 * @param config The settings of the stream
+	 * @return The publisher of the records
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpInvalidResponseBodyType Will be thrown if JSON has been disabled
+	 */
+	public <R> Flow.Publisher<R> streamJsonLines(String path, Class<R> recordClass, EventStreamConfig config)
+					throws URISyntaxException, HttpInvalidResponseBodyType {
+		if (recordClass == null || config == null) {
+			throw logger.throwing(new IllegalArgumentException("The arguments <recordClass> and <config> must not be null"));
+		}
+		JsonBodies jsonBodies = this.jsonBodies;
+		if (jsonBodies == null) {
+			throw logger.throwing(new HttpInvalidResponseBodyType(recordClass));
+		}
+		ObjectReader reader = jsonBodies.reader(recordClass);
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path, RequestHeaders.of("Accept", "application/x-ndjson")
+				.with("Accept-Encoding", "identity"));
+		requestBuilder.GET();
+		int maxLineSize = config.getMaxEventSize();
+		return new EventStreamPublisher<R>((lastEventId, handler) -> connectStream(requestBuilder.copy(), handler),
+				lastEventId -> new EventParsers.JsonLines<R>(reader, maxLineSize), config);
+	}
+	
+	/**
+	 * Opens one connection of an event stream. The response completes when
+	 * its headers have arrived, so the guard only covers the connect and
+	 * not the lifetime of the stream.
+	 * 
+	 * @param requestBuilder The builder of the request
+	 * @param handler The handler of the body
+	 * @return The response, it completes exceptionally if the circuit breaker
+	 *         is open or the concurrency limit is exceeded
+	 */
+	private CompletableFuture<HttpResponse<Void>> connectStream(HttpRequest.Builder requestBuilder,
+			BodyHandler<Void> handler) {
+		HttpRequest request = target(requestBuilder.build(), null);
+		WireLogger wireLogger = this.wireLogger.sample() ? this.wireLogger : null;
+		if (wireLogger != null) {
+			wireLogger.logRequest(request, null);
+		}
+		return sendGuardedAsync(getTransport(), request, decodeIfCompressed(handler))
+				.whenComplete((response, throwable) -> {
+					if (response != null && wireLogger != null) {
+						wireLogger.logResponse(response);
+					}
+				});
+	}
+
+	
+	/**
+	 * Sends a POST request
+	 * @param <R> The response type, must be <String> or <byte[]>
+	 * @param <T> 
+	 * @param path
+	 * @param body
+	 * @param responseBodyClass
+	 * @return
+	 * @throws URISyntaxException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws HttpStatusCodeException
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidRequestBodyType
+	 * @throws HttpInvalidResponseBodyType
+	 */
+	public <R, T> HttpResponse<R>
+				POST(String path, T body, Class<R> responseBodyClass)
+					throws URISyntaxException, IOException,
+					InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException,
+					HttpInvalidRequestBodyType,	HttpInvalidResponseBodyType {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
+		requestBuilder.POST(createBodyPublisher(requestBuilder, body));
+		
+		HttpResponse<R> response = (HttpResponse<R>) send(requestBuilder.build(), body, responseBodyClass, null);
+		
+		return response;
+	}
+	
+	/**
+	 * Sends a POST request and reads the response body as JSON into a
+	 * generic type, see {@link #GET(String, TypeReference)}. It has its own
+	 * name, so that {@code POST(path, body, null)} still selects
+	 * {@link #POST(String, Object, Class)}.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param <T> The type of the body, see {@link #POST(String, Object, Class)}
+	 * @param path The path of the URL
+	 * @param body The request body
+	 * @param responseBodyType The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws IOException Will be thrown if there is a problem to access the URL or to read the JSON
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidRequestBodyType Will be thrown if the type of the body is not supported
+	 * @throws HttpInvalidResponseBodyType Will be thrown if JSON has been disabled
+	 */
+	public <R, T> HttpResponse<R>
+				POSTJson(String path, T body, TypeReference<R> responseBodyType)
+					throws URISyntaxException, IOException,
+					InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException,
+					HttpInvalidRequestBodyType,	HttpInvalidResponseBodyType {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
+		requestBuilder.POST(createBodyPublisher(requestBuilder, body));
+		
+		return send(requestBuilder.build(), body, createJsonBodyHandler(responseBodyType));
+	}
+	
+	public <R, T> HttpResponse<R> 
+					PUT(String path, T body, Class<R> responseBodyClass) 
+						throws URISyntaxException, HttpInvalidRequestBodyType,
+						HttpStatusCodeException,
+						HttpCircuitOpenException, HttpLimitExceededException, HttpInvalidResponseBodyType,
+						IOException, InterruptedException {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
+		requestBuilder.PUT(createBodyPublisher(requestBuilder, body));
+		
+		HttpResponse<R> response = (HttpResponse<R>)
+				send(requestBuilder.build(), body, responseBodyClass, null);
+		
+		return response;
+	}
+	
+	/**
+	 * Sends a PUT request and reads the response body as JSON into a
+	 * generic type, see {@link #GET(String, TypeReference)} and
+	 * {@link #POSTJson(String, Object, TypeReference)}.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param <T> The type of the body, see {@link #PUT(String, Object, Class)}
+	 * @param path The path of the URL
+	 * @param body The request body
+	 * @param responseBodyType The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpInvalidRequestBodyType Will be thrown if the type of the body is not supported
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidResponseBodyType Will be thrown if JSON has been disabled
+	 * @throws IOException Will be thrown if there is a problem to access the URL or to read the JSON
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 */
+	public <R, T> HttpResponse<R> 
+					PUTJson(String path, T body, TypeReference<R> responseBodyType) 
+						throws URISyntaxException, HttpInvalidRequestBodyType,
+						HttpStatusCodeException,
+						HttpCircuitOpenException, HttpLimitExceededException, HttpInvalidResponseBodyType,
+						IOException, InterruptedException {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
+		requestBuilder.PUT(createBodyPublisher(requestBuilder, body));
+		
+		return send(requestBuilder.build(), body, createJsonBodyHandler(responseBodyType));
+	}
+	/**
+	 * Sends a DELETE request to an expanded {@link UriTemplate}, see
+	 * {@link #GET(Route, Class)}.
+	 * 
+	 * @param <R> The response type, see {@link #GET(String, Class)}
+	 * @param route The path and query of the URL
+	 * @param responseBodyClass The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 */
+	public <R> HttpResponse<R> DELETE(Route route, Class<R> responseBodyClass)
+			throws URISyntaxException, HttpStatusCodeException,
+			HttpCircuitOpenException, HttpLimitExceededException,
+			HttpInvalidResponseBodyType, IOException, InterruptedException {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(route);
+		requestBuilder.DELETE();
+		
+		return send(requestBuilder.build(), null, responseBodyClass, null);
+	}
+	
+	/**
+	 * Sends a GET request to an expanded {@link UriTemplate}, e.g.
+	 * {@code client.GET(USER.expand(id), String.class)}. The path of the
+	 * route is added to the base URL as it is, because it is already
+	 * encoded. Metrics record the request under the template of the route.
+	 * 
+	 * @param <R> The response type, see {@link #GET(String, Class)}
+	 * @param route The path and query of the URL
+	 * @param responseBodyClass The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 */
+	public <R> HttpResponse<R> GET(Route route, Class<R> responseBodyClass)
+			throws URISyntaxException, HttpStatusCodeException,
+			HttpCircuitOpenException, HttpLimitExceededException,
+			HttpInvalidResponseBodyType, IOException, InterruptedException {
+		
+		return sendGet(newRequestBuilder(route), responseBodyClass);
+	}
+	
+	/**
+	 * Sends a GET request to an expanded {@link UriTemplate} and reads the
+	 * response body as JSON into a generic type, see {@link #GET(Route, Class)}.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param route The path and query of the URL
+	 * @param responseBodyType The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidResponseBodyType Will be thrown if JSON has been disabled
+	 * @throws IOException Will be thrown if there is a problem to access the URL or to read the JSON
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 */
+	public <R> HttpResponse<R> GET(Route route, TypeReference<R> responseBodyType)
+			throws URISyntaxException, HttpStatusCodeException,
+			HttpCircuitOpenException, HttpLimitExceededException,
+			HttpInvalidResponseBodyType, IOException, InterruptedException {
+		
+		return sendGet(newRequestBuilder(route), responseBodyType);
+	}
+	
+	/**
+	 * Sends a POST request to an expanded {@link UriTemplate}, see
+	 * {@link #POST(String, Object, Class)} and {@link #GET(Route, Class)}.
+	 * 
+	 * @param <R> The response type
+	 * @param <T> The type of the body
+	 * @param route The path and query of the URL
+	 * @param body The request body
+	 * @param responseBodyClass The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidRequestBodyType Will be thrown if the type of the body is not supported
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 */
+	public <R, T> HttpResponse<R>
+				POST(Route route, T body, Class<R> responseBodyClass)
+					throws URISyntaxException, IOException,
+					InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException,
+					HttpInvalidRequestBodyType,	HttpInvalidResponseBodyType {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(route);
+		requestBuilder.POST(createBodyPublisher(requestBuilder, body));
+		
+		return send(requestBuilder.build(), body, responseBodyClass, null);
+	}
+	
+	/**
+	 * Sends a PUT request to an expanded {@link UriTemplate}, see
+	 * {@link #POST(String, Object, Class)} and {@link #GET(Route, Class)}.
+	 * 
+	 * @param <R> The response type
+	 * @param <T> The type of the body
+	 * @param route The path and query of the URL
+	 * @param body The request body
+	 * @param responseBodyClass The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidRequestBodyType Will be thrown if the type of the body is not supported
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 */
+	public <R, T> HttpResponse<R>
+				PUT(Route route, T body, Class<R> responseBodyClass)
+					throws URISyntaxException, IOException,
+					InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException,
+					HttpInvalidRequestBodyType,	HttpInvalidResponseBodyType {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(route);
+		requestBuilder.PUT(createBodyPublisher(requestBuilder, body));
+		
+		return send(requestBuilder.build(), body, responseBodyClass, null);
+	}
+	
+	/**
+	 * Sends a DELETE request with additional headers, see
+	 * {@link #GET(String, RequestHeaders, Class)}.
+	 * 
+	 * @param <R> The response type, see {@link #GET(String, Class)}
+	 * @param path The path of the URL
+	 * @param headers Headers of this request, they replace default headers with the same name
+	 * @param responseBodyClass The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 */
+	public <R> HttpResponse<R> DELETE(String path, RequestHeaders headers, Class<R> responseBodyClass)
+			throws URISyntaxException, HttpStatusCodeException,
+			HttpCircuitOpenException, HttpLimitExceededException,
+			HttpInvalidResponseBodyType, IOException, InterruptedException {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path, headers);
+		requestBuilder.DELETE();
+		
+		return send(requestBuilder.build(), null, responseBodyClass, null);
+	}
+	
+	/**
+	 * Sends a GET request with additional headers, e.g. the Authorization
+	 * header of the user on whose behalf the request is sent. One client
+	 * can so be shared by requests with different credentials. The headers
+	 * are part of the key of the response cache, so a cached response is
+	 * only returned for the same headers.
+	 * 
+	 * @param <R> The response type, see {@link #GET(String, Class)}
+	 * @param path The path of the URL
+	 * @param headers Headers of this request, they replace default headers with the same name
+	 * @param responseBodyClass The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 */
+	public <R> HttpResponse<R> GET(String path, RequestHeaders headers, Class<R> responseBodyClass)
+			throws URISyntaxException, HttpStatusCodeException,
+			HttpCircuitOpenException, HttpLimitExceededException,
+			HttpInvalidResponseBodyType, IOException, InterruptedException {
+		
+		return sendGet(newRequestBuilder(path, headers), responseBodyClass);
+	}
+	
+	/**
+	 * Sends a POST request with additional headers, see
+	 * {@link #POST(String, Object, Class)} and {@link #GET(String, RequestHeaders, Class)}.
+	 * 
+	 * @param <R> The response type
+	 * @param <T> The type of the body
+	 * @param path The path of the URL
+	 * @param headers Headers of this request, they replace default headers with the same name
+	 * @param body The request body
+	 * @param responseBodyClass The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidRequestBodyType Will be thrown if the type of the body is not supported
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 */
+	public <R, T> HttpResponse<R>
+				POST(String path, RequestHeaders headers, T body, Class<R> responseBodyClass)
+					throws URISyntaxException, IOException,
+					InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException,
+					HttpInvalidRequestBodyType,	HttpInvalidResponseBodyType {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path, headers);
+		requestBuilder.POST(createBodyPublisher(requestBuilder, body, headers));
+		
+		return send(requestBuilder.build(), body, responseBodyClass, null);
+	}
+	
+	/**
+	 * Sends a PUT request with additional headers, see
+	 * {@link #POST(String, Object, Class)} and {@link #GET(String, RequestHeaders, Class)}.
+	 * 
+	 * @param <R> The response type
+	 * @param <T> The type of the body
+	 * @param path The path of the URL
+	 * @param headers Headers of this request, they replace default headers with the same name
+	 * @param body The request body
+	 * @param responseBodyClass The type of the response
+	 * @return The HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws InterruptedException Will be thrown if the send request will be interrupted
+	 * @throws HttpStatusCodeException Will be thrown if the status code is not 2xx
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws HttpInvalidRequestBodyType Will be thrown if the type of the body is not supported
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 */
+	public <R, T> HttpResponse<R>
+				PUT(String path, RequestHeaders headers, T body, Class<R> responseBodyClass)
+					throws URISyntaxException, IOException,
+					InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException,
+					HttpInvalidRequestBodyType,	HttpInvalidResponseBodyType {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path, headers);
+		requestBuilder.PUT(createBodyPublisher(requestBuilder, body, headers));
+		
+		return send(requestBuilder.build(), body, responseBodyClass, null);
+	}
+	
+	/**
+	 * Sends a DELETE request without blocking the calling thread.
+	 * See {@link #GETAsync(String, Class)} for the details.
+	 * 
+	 * @param <R> The response type
+	 * @param path The path of the URL
+	 * @param responseBodyClass The type of the response
+	 * @return The future HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 */
+	public <R> CompletableFuture<HttpResponse<R>> DELETEAsync(String path, Class<R> responseBodyClass)
+					throws URISyntaxException, HttpInvalidResponseBodyType {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
+		requestBuilder.DELETE();
+		
+		return sendAsync(requestBuilder.build(), null, createBodyHandler(responseBodyClass, null, false));
+	}
+	
+	/**
+	 * Sends a GET request without blocking the calling thread. The returned
+	 * future completes with the response if the status code is 2xx. Otherwise
+	 * it completes exceptionally with a {@link HttpStatusCodeException}, or with
+	 * an IOException if the server can not be reached.
+	 * <p>
+	 * If the limit given by {@link #setMaxAsyncRequestsInFlight(int)} is reached,
+	 * the request is sent when one of the running requests has completed. The
+	 * calling thread is not blocked in the meantime.
+	 * 
+	 * @param <R> The response type, see {@link #GET(String, Class)}
+	 * @param path The path of the URL. It will be added to the URL given in the constructor
+	 * @param responseBodyClass The type of the response
+	 * @return The future HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 */
+	public <R> CompletableFuture<HttpResponse<R>> GETAsync(String path, Class<R> responseBodyClass)
+			throws URISyntaxException, HttpInvalidResponseBodyType {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
+		requestBuilder.GET();
+		
+		return sendAsync(requestBuilder.build(), null, createBodyHandler(responseBodyClass, null, false));
+	}
+	
+	/**
+	 * Sends a GET request to an expanded {@link UriTemplate} without
+	 * blocking the calling thread, see {@link #GETAsync(String, Class)}.
+	 * 
+	 * @param <R> The response type, see {@link #GET(String, Class)}
+	 * @param route The path and query of the URL
+	 * @param responseBodyClass The type of the response
+	 * @return The future HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 */
+	public <R> CompletableFuture<HttpResponse<R>> GETAsync(Route route, Class<R> responseBodyClass)
+			throws URISyntaxException, HttpInvalidResponseBodyType {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(route);
+		requestBuilder.GET();
+		
+		return sendAsync(requestBuilder.build(), null, createBodyHandler(responseBodyClass, null, false));
+	}
+	
+	/**
+	 * Sends a GET request without blocking the calling thread and stores
+	 * the response body in a file.
+	 * 
+	 * @param path The path of the URL
+	 * @param file File to which the response will be stored
+	 * @return The future HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpInvalidResponseBodyType Never thrown, declared for symmetry with GET
+	 */
+	public CompletableFuture<HttpResponse<Path>> GETAsync(String path, Path file)
+			throws URISyntaxException, HttpInvalidResponseBodyType {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
+		requestBuilder.GET();
+		
+		return sendAsync(requestBuilder.build(), null, createBodyHandler(Path.class, file, false));
+	}
+	
+	/**
+	 * Sends a POST request without blocking the calling thread.
+	 * See {@link #GETAsync(String, Class)} for the details.
+	 * 
+	 * @param <R> The response type
+	 * @param <T> The type of the body, see {@link #POST(String, Object, Class)}
+	 * @param path The path of the URL
+	 * @param body The request body
+	 * @param responseBodyClass The type of the response
+	 * @return The future HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpInvalidRequestBodyType Will be thrown if the type of the body is not supported
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 * @throws IOException Will be thrown if the body is a Path which does not exist
+	 *                     or if it can not be serialized as JSON
+	 */
+	public <R, T> CompletableFuture<HttpResponse<R>>
+				POSTAsync(String path, T body, Class<R> responseBodyClass)
+					throws URISyntaxException, HttpInvalidRequestBodyType,
+					HttpInvalidResponseBodyType, IOException {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
+		requestBuilder.POST(createBodyPublisher(requestBuilder, body));
+		
+		return sendAsync(requestBuilder.build(), body, createBodyHandler(responseBodyClass, null, false));
+	}
+	
+	/**
+	 * Sends a PUT request without blocking the calling thread.
+	 * See {@link #GETAsync(String, Class)} for the details.
+	 * 
+	 * @param <R> The response type
+	 * @param <T> The type of the body, see {@link #PUT(String, Object, Class)}
+	 * @param path The path of the URL
+	 * @param body The request body
+	 * @param responseBodyClass The type of the response
+	 * @return The future HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpInvalidRequestBodyType Will be thrown if the type of the body is not supported
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 * @throws IOException Will be thrown if the body is a Path which does not exist
+	 *                     or if it can not be serialized as JSON
+	 */
+	public <R, T> CompletableFuture<HttpResponse<R>>
+				PUTAsync(String path, T body, Class<R> responseBodyClass)
+					throws URISyntaxException, HttpInvalidRequestBodyType,
+					HttpInvalidResponseBodyType, IOException {
+		
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path);
+		requestBuilder.PUT(createBodyPublisher(requestBuilder, body));
+		
+		return sendAsync(requestBuilder.build(), body, createBodyHandler(responseBodyClass, null, false));
+	}
+	
+	/**
+	 * Limits the number of asynchronous requests which are in flight at the
+	 * same time. If the limit is reached, the *Async methods still return at
+	 * once: the request waits in a queue and is sent when a running request
+	 * has completed. The calling thread is never blocked, so it is safe to
+	 * send requests from the completion of another request. Use
+	 * {@link #getAsyncRequestsQueued()} to see how many requests wait.
+	 * <p>
+	 * The limit may be changed while requests are in flight. They keep
+	 * running and count against the new limit, a higher limit sends waiting
+	 * requests at once.
+	 * 
+	 * @param maxInFlight The maximum number of requests in flight, 0 means unlimited
+	 */
+	public void setMaxAsyncRequestsInFlight(int maxInFlight) {
+		if (maxInFlight < 0) {
+			throw logger.throwing(new IllegalArgumentException("The argument <maxInFlight> must not be negative"));
+		}
+		this.asyncPermits.setLimit(maxInFlight);
+	}
+	
+	public int getMaxAsyncRequestsInFlight() {
+		return this.asyncPermits.getLimit();
+	}
+	
+	/**
+	 * @return Number of async requests which wait for a free slot, see
+	 *         {@link #setMaxAsyncRequestsInFlight(int)}
+	 */
+	public int getAsyncRequestsQueued() {
+		return this.asyncPermits.getQueueDepth();
+	}
+	
+	/**
+	 * Runs a batch of blocking calls concurrently and waits until all
+	 * of them have completed. On JDK 21 and later every call runs on its
+	 * own virtual thread, so that tens of thousands of blocking calls like
+	 * {@code () -> client.GET("/item/" + id, String.class)} can be in
+	 * flight at the same time. On older JDKs every call needs a platform
+	 * thread, so at most {@link BatchConfig#getParallelism()} of
+	 * {@link BatchConfig#defaults()} calls run at the same time, see
+	 * {@link #execute(Collection, int)}.
+	 * <p>
+	 * Together with {@link HttpTransportConfig.Builder#virtualThreads(boolean)}
+	 * no platform thread is blocked while waiting for a response.
+	 * 
+	 * @param <T> The result type of the calls
+	 * @param calls The calls to run
+	 * @return One completed future per call, in the order of the calls.
+	 *         A failed call is reported by its future and does not affect
+	 *         the other calls.
+	 * @throws InterruptedException Will be thrown if the thread is
+	 *                              interrupted while waiting, the calls
+	 *                              which have not completed are cancelled
+	 */
+	public <T> List<Future<T>> execute(Collection<? extends Callable<T>> calls)
+					throws InterruptedException {
+		if (VirtualThreads.isSupported()) {
+			return execute(calls, Integer.MAX_VALUE);
+		}
+		return execute(calls, BatchConfig.defaults().getParallelism());
+	}
+	
+	/**
+	 * Runs a batch of blocking calls with at most the given number of
+	 * calls at the same time and waits until all of them have completed.
+	 * The calls run on virtual threads on JDK 21 and later, otherwise on
+	 * a pool of at most parallelism platform threads.
+	 * 
+	 * @param <T> The result type of the calls
+	 * @param calls The calls to run
+	 * @param parallelism The maximum number of calls which run at the same time
+	 * @return One completed future per call, in the order of the calls.
+	 *         A failed call is reported by its future and does not affect
+	 *         the other calls.
+	 * @throws InterruptedException Will be thrown if the thread is
+	 *                              interrupted while waiting, the calls
+	 *                              which have not completed are cancelled
+	 */
+	public <T> List<Future<T>> execute(Collection<? extends Callable<T>> calls, int parallelism)
+					throws InterruptedException {
+		if (calls == null) {
+			throw logger.throwing(new IllegalArgumentException("The argument <calls> must not be null"));
+		}
+		if (parallelism < 1) {
+			throw logger.throwing(new IllegalArgumentException("The argument <parallelism> must be positive"));
+		}
+		List<Callable<T>> tasks = new ArrayList<Callable<T>>(calls);
+		ExecutorService executor;
+		if (VirtualThreads.isSupported()) {
+			executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+			if (parallelism < tasks.size()) {
+				Semaphore permits = new Semaphore(parallelism);
+				for (int i = 0; i < tasks.size(); i++) {
+					Callable<T> call = tasks.get(i);
+					tasks.set(i, () -> {
+						permits.acquire();
+						try {
+							return call.call();
+						} finally {
+							permits.release();
+						}
+					});
+				}
+			}
+		} else {
+			executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, tasks.size())));
+		}
+		try {
+			return executor.invokeAll(tasks);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Sends a batch of requests, see {@link #executeBatch(List, BatchConfig, Consumer)}.
+	 * 
+	 * @param <R> The type of the response bodies
+	 * @param requests The requests
+	 * @param config The parallelism and whether a failure cancels the batch
+	 * @return One result per request, in the order of the requests
+	 * @throws InterruptedException Will be thrown if the thread is
+	 *                              interrupted while waiting, the requests
+	 *                              in flight are interrupted
+	 */
+	public <R> List<BatchResult<R>> executeBatch(List<BatchRequest<R>> requests, BatchConfig config)
+					throws InterruptedException {
+		return executeBatch(requests, config, null);
+	}
+	
+	/**
+	 * Sends a batch of requests with at most {@link BatchConfig#getParallelism()}
+	 * requests in flight and waits until all of them have completed. A
+	 * failed request, e.g. with a status code which is not 2xx, does not
+	 * fail the batch. It is reported by its result, unless
+	 * {@link BatchConfig#isCancelOnFailure()} is set. Then the requests in
+	 * flight are interrupted and the rest is not sent, their results are
+	 * cancelled.
+	 * <p>
+	 * The requests run on virtual threads on JDK 21 and later, otherwise on
+	 * one platform thread per parallel request.
+	 * 
+	 * @param <R> The type of the response bodies
+	 * @param requests The requests
+	 * @param config The parallelism and whether a failure cancels the batch
+	 * @param resultConsumer Receives each result as soon as it is complete,
+	 *                       in the order of completion, or null. It is called
+	 *                       on the calling thread, one result at a time.
+	 * @return One result per request, in the order of the requests
+	 * @throws InterruptedException Will be thrown if the thread is
+	 *                              interrupted while waiting, the requests
+	 *                              in flight are interrupted
+	 */
+	public <R> List<BatchResult<R>> executeBatch(List<BatchRequest<R>> requests, BatchConfig config,
+					Consumer<? super BatchResult<R>> resultConsumer) throws InterruptedException {
+		if (requests == null || config == null) {
+			throw logger.throwing(new IllegalArgumentException("The arguments <requests> and <config> must not be null"));
+		}
+		int count = requests.size();
+		int workers = Math.min(config.getParallelism(), count);
+		AtomicInteger nextIndex = new AtomicInteger();
+		AtomicBoolean cancelled = new AtomicBoolean();
+		AtomicReferenceArray<Thread> workerThreads = new AtomicReferenceArray<Thread>(workers);
+		BlockingQueue<BatchResult<R>> completed = new LinkedBlockingQueue<BatchResult<R>>();
+		
+		Runnable cancel = () -> {
+			if (cancelled.compareAndSet(false, true)) {
+				for (int i = 0; i < workerThreads.length(); i++) {
+					Thread thread = workerThreads.get(i);
+					if (thread != null) {
+						thread.interrupt();
+					}
+				}
+			}
+		};
+		
+		ExecutorService executor = VirtualThreads.isSupported()
+				? VirtualThreads.newVirtualThreadPerTaskExecutor()
+				: Executors.newFixedThreadPool(Math.max(workers, 1));
+		try {
+			for (int i = 0; i < workers; i++) {
+				int worker = i;
+				executor.execute(() -> {
+					workerThreads.set(worker, Thread.currentThread());
+					if (cancelled.get()) {
+						Thread.currentThread().interrupt();
+					}
+					int index;
+					while ((index = nextIndex.getAndIncrement()) < count) {
+						BatchRequest<R> request = requests.get(index);
+						BatchResult<R> result;
+						if (cancelled.get()) {
+							result = BatchResult.cancelled(index, request);
+						} else {
+							try {
+								result = BatchResult.success(index, request, sendBatchRequest(request));
+							} catch (Exception e) {
+								if (cancelled.get() && (e instanceof InterruptedException
+										|| Thread.currentThread().isInterrupted())) {
+									result = BatchResult.cancelled(index, request);
+								} else {
+									result = BatchResult.failure(index, request, e);
+									if (config.isCancelOnFailure()) {
+										cancel.run();
+									}
+								}
+							}
+						}
+						completed.add(result);
+					}
+				});
+			}
+			
+			List<BatchResult<R>> results = new ArrayList<BatchResult<R>>(Collections.nCopies(count, null));
+			for (int received = 0; received < count; received++) {
+				BatchResult<R> result = completed.take();
+				results.set(result.getIndex(), result);
+				if (resultConsumer != null) {
+					resultConsumer.accept(result);
+				}
+			}
+			return Collections.unmodifiableList(results);
+		} catch (InterruptedException e) {
+			cancel.run();
+			throw logger.throwing(e);
+		} catch (RuntimeException e) {
+			// The consumer has failed
+			cancel.run();
+			throw logger.throwing(e);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Sends one request described by a {@link BatchRequest} without blocking
+	 * the calling thread, like {@link #GETAsync(String, Class)}. Unlike the
+	 * other async methods it sends the headers of the request. This is the
+	 * path of the {@link com.starcode88.http.loadtest.LoadTest}.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param request The request
+	 * @return The future HTTP response
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 * @throws HttpInvalidRequestBodyType Will be thrown if the type of the body is not supported
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the responseBodyClass is not supported
+	 * @throws IOException Will be thrown if the body is a Path which does not exist
+	 *                     or if it can not be serialized as JSON
+	 */
+	public <R> CompletableFuture<HttpResponse<R>> executeAsync(BatchRequest<R> request)
+					throws URISyntaxException, HttpInvalidRequestBodyType, HttpInvalidResponseBodyType,
+					IOException {
+		if (request == null) {
+			throw logger.throwing(new IllegalArgumentException("The argument <request> must not be null"));
+		}
+		RequestHeaders requestHeaders = request.getHeaders();
+		HttpRequest.Builder requestBuilder = request.getRoute() != null
+				? newRequestBuilder(request.getRoute(), requestHeaders)
+				: newRequestBuilder(request.getPath(), requestHeaders);
+		
+		switch (request.getMethod()) {
+		case "GET":
+			requestBuilder.GET();
+			break;
+		case "DELETE":
+			requestBuilder.DELETE();
+			break;
+		case "POST":
+			requestBuilder.POST(createBodyPublisher(requestBuilder, request.getBody(), requestHeaders));
+			break;
+		default:
+			requestBuilder.PUT(createBodyPublisher(requestBuilder, request.getBody(), requestHeaders));
+			break;
+		}
+		return sendAsync(requestBuilder.build(), request.getBody(),
+				createBodyHandler(request.getResponseBodyClass(), null, false));
+	}
+	
+	/**
+	 * Sends one request of a batch like the method of the same name.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param request The request
+	 * @return The response
+	 */
+	private <R> HttpResponse<R> sendBatchRequest(BatchRequest<R> request)
+					throws URISyntaxException, IOException, InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException,
+					HttpInvalidRequestBodyType, HttpInvalidResponseBodyType {
+		
+		RequestHeaders requestHeaders = request.getHeaders();
+		HttpRequest.Builder requestBuilder = request.getRoute() != null
+				? newRequestBuilder(request.getRoute(), requestHeaders)
+				: newRequestBuilder(request.getPath(), requestHeaders);
+		
+		switch (request.getMethod()) {
+		case "GET":
+			return sendGet(requestBuilder, request.getResponseBodyClass());
+		case "DELETE":
+			requestBuilder.DELETE();
+			break;
+		case "POST":
+			requestBuilder.POST(createBodyPublisher(requestBuilder, request.getBody(), requestHeaders));
+			break;
+		default:
+			requestBuilder.PUT(createBodyPublisher(requestBuilder, request.getBody(), requestHeaders));
+			break;
+		}
+		return send(requestBuilder.build(), request.getBody(), request.getResponseBodyClass(), null);
+	}
+	
+	/**
+	 * Sends the HTTP request. This is the most important functions because
+	 * here happens all the HTTP communication.
+	 * 
+	 * @param <R> The return type of the HttpResponse. This must be of type String or byte[].
+	 * @param <T>
+	 * @param request The prepared HttpRequest
+	 * @param body The request body. The argument is only used for logging purpose. 
+	 * @param responseBodyClass Must be String.class, byte[].class or Path.class
+	 *        or null. The value null means that you don't want to get the
+	 *        body of the response.
+	 * @param file If the responseBodyClass is type of Path.class then you must
+	 *             provide here a filename to which the response will be written
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException Will be thrown if the send function will be interrupted
+	 * @throws HttpStatusCodeException Will be thrown if response status code is not 200.
+	 * @throws HttpInvalidResponseBodyType Will be thrown if the
+	 * 									   responseBodyClass is not String.class
+	 * 									   or byte[].class. Other types are
+	 *                                     not supported.
+	 */
+	private <R, T> HttpResponse<R>
+				send(HttpRequest request, T body, Class<R> responseBodyClass,
+					Path file) throws IOException, InterruptedException,
+						HttpStatusCodeException,
+						HttpCircuitOpenException, HttpLimitExceededException, HttpInvalidResponseBodyType {
+		
+		return send(request, body, createBodyHandler(responseBodyClass, file, true));
+	}
+	
+	/**
+	 * Sends the HTTP request with the given handler for the response body.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param <T> The type of the request body
+	 * @param request The prepared HttpRequest
+	 * @param body The request body, it is only used for logging
+	 * @param bodyHandler The handler for the response body
+	 * @return The response
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws InterruptedException Will be thrown if the send function will be interrupted
+	 * @throws HttpStatusCodeException Will be thrown if response status code is not 2xx.
+	 */
+	private <R, T> HttpResponse<R>
+				send(HttpRequest request, T body, BodyHandler<R> bodyHandler)
+					throws IOException, InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException {
+		
+		return withRetries(request.method(), remaining -> {
+			WireLogger wireLogger = this.wireLogger.sample() ? this.wireLogger : null;
+			
+			HttpResponse<R> response = exchange(request, body, bodyHandler, wireLogger, remaining);
+			
+			return handleResponse(response, wireLogger);
+		});
+	}
+	
+	/**
+	 * Downloads a file in parallel ranges, see {@link DownloadConfig}. A
+	 * HEAD request probes whether the server supports ranges, otherwise
+	 * the file is downloaded with one GET request.
+	 * 
+	 * @param path Path which will be added to the URL
+	 * @param file File to which the response will be stored
+	 * @param config The settings of the download
+	 * @return The response of the HEAD request with the file as body, or
+	 *         the response of the GET request
+	 */
+	private HttpResponse<Path> download(String path, Path file, DownloadConfig config)
+					throws URISyntaxException, IOException, InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException, HttpInvalidResponseBodyType {
+		
+		// Content-Length and ranges refer to the unencoded body
+		RequestHeaders identity = RequestHeaders.of("Accept-Encoding", "identity");
+		HttpRequest.Builder requestBuilder = newRequestBuilder(path, identity);
+		
+		HttpResponse<Void> probe = null;
+		try {
+			probe = send(requestBuilder.copy().method("HEAD", HttpRequest.BodyPublishers.noBody()).build(), null,
+					HttpResponse.BodyHandlers.discarding());
+		} catch (HttpStatusCodeException e) {
+			// The server does not support HEAD, the GET request tells the real status
+			logger.debug("HEAD request for {} failed with status code {}", path, e.getResponse().statusCode());
+		}
+		
+		long length = probe == null ? -1 : probe.headers().firstValueAsLong("Content-Length").orElse(-1);
+		boolean ranges = probe != null
+				&& probe.headers().allValues("Accept-Ranges").stream().anyMatch(value -> value.contains("bytes"))
+				&& probe.headers().firstValue("Content-Encoding").orElse("identity").equals("identity");
+		if (!ranges || length <= 0 || RangedDownload.rangeCount(length, config) < 2) {
+			logger.debug("Download {} with one request, ranges supported = {}, length = {}", path, ranges, length);
+			requestBuilder.GET();
+			return send(requestBuilder.build(), null, Path.class, file);
+		}
+		
+		// If-Range needs a strong validator
+		HttpHeaders probeHeaders = probe.headers();
+		String validator = probeHeaders.firstValue("ETag").filter(etag -> !etag.startsWith("W/"))
+				.or(() -> probeHeaders.firstValue("Last-Modified")).orElse(null);
+		if (validator != null) {
+			requestBuilder.header("If-Range", validator);
+		}
+		// Separate connections, HTTP/2 would multiplex all ranges over one
+		requestBuilder.version(java.net.http.HttpClient.Version.HTTP_1_1).GET();
+		
+		try (RangedDownload download = RangedDownload.open(file, probe.uri(), length, validator, config)) {
+			if (download.getCompletedBytes() > 0) {
+				logger.debug("Resume download of {} at {} of {} bytes", path, download.getCompletedBytes(), length);
+			}
+			List<Callable<Void>> calls = new ArrayList<Callable<Void>>();
+			for (RangedDownload.Segment segment : download.getSegments()) {
+				if (!segment.isComplete()) {
+					calls.add(() -> downloadRange(requestBuilder, download, segment));
+				}
+			}
+			Throwable failure = null;
+			for (Future<Void> future : execute(calls, config.getConnections())) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+			}
+			if (failure != null) {
+				rethrowDownloadFailure(failure);
+			}
+			download.complete();
+		}
+		return new DelegatingHttpResponse<Path>(probe, file);
+	}
+	
+	/**
+	 * Fetches the missing bytes of a range. A retry continues after the
+	 * last byte which has been written.
+	 * 
+	 * @param requestBuilder The GET request of the file
+	 * @param download The download
+	 * @param segment The range
+	 * @return null
+	 */
+	private Void downloadRange(HttpRequest.Builder requestBuilder, RangedDownload download,
+					RangedDownload.Segment segment)
+					throws IOException, InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException {
+		
+		withRetries("GET", remaining -> {
+			HttpRequest request = requestBuilder.copy().header("Range", segment.rangeHeader()).build();
+			WireLogger wireLogger = this.wireLogger.sample() ? this.wireLogger : null;
+			
+			HttpResponse<Void> response = handleResponse(
+					exchange(request, null, download.handler(segment), wireLogger, remaining), wireLogger);
+			
+			if (response.statusCode() != 206) {
+				throw logger.throwing(new HttpRangeMismatchException(request.uri(), response.statusCode()));
+			}
+			if (!segment.isComplete()) {
+				throw logger.throwing(new IOException("The range " + segment + " of " + request.uri()
+						+ " ended after " + segment.done + " bytes"));
+			}
+			return response;
+		});
+		return null;
+	}
+	
+	/**
+	 * Throws the exception of a failed range with its original type.
+	 * 
+	 * @param failure The exception of the range
+	 */
+	private static void rethrowDownloadFailure(Throwable failure)
+					throws IOException, InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException {
+		Throwable cause = causeOf(failure);
+		if (cause instanceof HttpStatusCodeException) {
+			throw (HttpStatusCodeException) cause;
+		}
+		if (cause instanceof HttpCircuitOpenException) {
+			throw (HttpCircuitOpenException) cause;
+		}
+		if (cause instanceof HttpLimitExceededException) {
+			throw (HttpLimitExceededException) cause;
+		}
+		if (cause instanceof InterruptedException) {
+			throw (InterruptedException) cause;
+		}
+		throw unwrap(cause);
+	}
+	
+	/**
+	 * Runs the attempts of a request according to the retry policy. Without
+	 * a retry policy and for the warm-up requests there is exactly one
+	 * attempt.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param method The HTTP method of the request
+	 * @param attempt Sends the request once
+	 * @return The response of the successful attempt
+	 * @throws IOException The exception of the last attempt
+	 * @throws InterruptedException Will be thrown if the thread is interrupted
+	 *                              while sending or waiting for the next attempt
+	 * @throws HttpStatusCodeException The exception of the last attempt
+	 */
+	private <R> HttpResponse<R> withRetries(String method, Attempt<R> attempt)
+					throws IOException, InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException {
+		
+		RetryPolicy policy = this.retryPolicy;
+		if (policy == null || warmingUp.get() != null) {
+			return attempt.run(null);
+		}
+		
+		RetryContext retry = new RetryContext(policy, this.retryBudget, method);
+		while (true) {
+			try {
+				return attempt.run(retry.remaining());
+			} catch (HttpStatusCodeException | IOException e) {
+				Duration delay = retry.nextDelay(e);
+				if (delay == null) {
+					throw e;
+				}
+				TimeUnit.NANOSECONDS.sleep(delay.toNanos());
+			}
+		}
+	}
+	
+	/**
+	 * One attempt of a blocking request.
+	 */
+	private interface Attempt<R> {
+		
+		/**
+		 * @param remaining Time left until the deadline of the request or null
+		 */
+		HttpResponse<R> run(Duration remaining)
+				throws IOException, InterruptedException, HttpStatusCodeException,
+				HttpCircuitOpenException, HttpLimitExceededException;
+	}
+	
+	/**
+	 * Sends the request with the shared transport and waits for the
+	 * response. The status code is not checked.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param <T> The type of the request body
+	 * @param request The prepared HttpRequest
+	 * @param body The request body, it is only used for logging
+	 * @param bodyHandler The handler for the response body
+	 * @param wireLogger The wire logger if this exchange has been sampled, otherwise null
+	 * @param remaining Time left until the deadline of the request or null
+	 * @return The response
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws HttpTimeoutException Will be thrown if the deadline is exceeded
+	 * @throws InterruptedException Will be thrown if the send function will be interrupted
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 */
+	private <R, T> HttpResponse<R>
+				exchange(HttpRequest request, T body, BodyHandler<R> bodyHandler, WireLogger wireLogger,
+						Duration remaining) throws IOException, InterruptedException,
+						HttpCircuitOpenException, HttpLimitExceededException {
+		
+		java.net.http.HttpClient httpClient = getTransport();
+		
+		bodyHandler = decodeIfCompressed(bodyHandler);
+		
+		request = target(request, null);
+		ExchangeGuard guard = guard(request);
+		
+		HttpResponse<R> response;
+		try {
+			if (wireLogger != null) {
+				wireLogger.logRequest(request, body);
+			}
+			if (remaining == null) {
+				response = httpClient.send(request, bodyHandler);
+			} else {
+				response = await(httpClient.sendAsync(request, bodyHandler), remaining);
+			}
+		} catch (IOException e) {
+			guard.onFailure(e);
+			throw logger.throwing(e);
+		} catch (InterruptedException e) {
+			guard.onFailure(e);
+			throw logger.throwing(e);
+		} catch (RuntimeException e) {
+			guard.onFailure(e);
+			throw logger.throwing(e);
+		}
+		guard.onResponse(response);
+		return response;
+	}
+	
+	/**
+	 * Sends a hedged GET request, see {@link HedgingPolicy}.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param hedger The state of the hedges
+	 * @param request The prepared HttpRequest
+	 * @param bodyHandler The handler for the response body, it must
+	 *                    receive the body completely
+	 * @return The response
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws InterruptedException Will be thrown if the send function will be interrupted
+	 * @throws HttpStatusCodeException Will be thrown if response status code is not 2xx.
+	 */
+	private <R> HttpResponse<R> sendHedged(Hedger hedger, HttpRequest request, BodyHandler<R> bodyHandler)
+					throws IOException, InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException {
+		
+		return withRetries(request.method(), remaining -> {
+			WireLogger wireLogger = this.wireLogger.sample() ? this.wireLogger : null;
+			
+			HttpResponse<R> response = hedgedExchange(hedger, request, bodyHandler, wireLogger, remaining);
+			
+			return handleResponse(response, wireLogger);
+		});
+	}
+	
+	/**
+	 * Sends the request and, if its response has not arrived after the
+	 * hedge delay and the hedge budget allows it, a second copy of it. The
+	 * first successful response is returned and the other exchange is
+	 * cancelled. If both fail, the outcome of the first request is used.
+	 * The status code is not checked.
+	 * <p>
+	 * Each copy has its own guard, so the circuit breaker, the limiter and
+	 * the metrics see both exchanges. A cancelled exchange does not count
+	 * as failure. If the circuit breaker or the limiter rejects the hedge,
+	 * only the first request is awaited.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param hedger The state of the hedges
+	 * @param request The prepared HttpRequest
+	 * @param bodyHandler The handler for the response body, it must
+	 *                    receive the body completely
+	 * @param wireLogger The wire logger if this exchange has been sampled, otherwise null
+	 * @param remaining Time left until the deadline of the request or null
+	 * @return The response
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws HttpTimeoutException Will be thrown if the deadline is exceeded
+	 * @throws InterruptedException Will be thrown if the send function will be interrupted
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 */
+	private <R> HttpResponse<R> hedgedExchange(Hedger hedger, HttpRequest request, BodyHandler<R> bodyHandler,
+					WireLogger wireLogger, Duration remaining) throws IOException, InterruptedException,
+					HttpCircuitOpenException, HttpLimitExceededException {
+		
+		java.net.http.HttpClient httpClient = getTransport();
+		BodyHandler<R> handler = decodeIfCompressed(bodyHandler);
+		long startNanos = System.nanoTime();
+		long deadlineNanos = remaining == null ? 0 : startNanos + remaining.toNanos();
+		hedger.recordRequest();
+		
+		HttpRequest primaryRequest = target(request, null);
+		if (wireLogger != null) {
+			wireLogger.logRequest(primaryRequest, null);
+		}
+		CompletableFuture<HttpResponse<R>> primary = sendGuarded(httpClient, guard(primaryRequest), primaryRequest,
+				handler);
+		primary.thenAccept(response -> hedger.recordLatency(System.nanoTime() - startNanos));
+		
+		long waitNanos = hedger.getDelayNanos();
+		if (remaining != null) {
+			waitNanos = Math.min(waitNanos, deadlineNanos - System.nanoTime());
+		}
+		try {
+			return primary.get(waitNanos, TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			// No response yet, send the hedge
+		} catch (InterruptedException e) {
+			primary.cancel(true);
+			throw logger.throwing(e);
+		} catch (ExecutionException e) {
+			throw logger.throwing(unwrap(e.getCause()));
+		}
+		
+		CompletableFuture<HttpResponse<R>> hedge = null;
+		if ((remaining == null || deadlineNanos - System.nanoTime() > 0) && hedger.tryAcquireHedge()) {
+			HttpRequest hedgeRequest = hedgeRequest(request, primaryRequest, hedger.getPolicy());
+			try {
+				ExchangeGuard guard = guard(hedgeRequest);
+				if (wireLogger != null) {
+					wireLogger.logRequest(hedgeRequest, null);
+				}
+				hedge = sendGuarded(httpClient, guard, hedgeRequest, handler);
+				logger.debug("Hedge of {} sent after {} us", request.uri(),
+						TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+			} catch (HttpException e) {
+				logger.debug("Hedge of {} not sent: {}", request.uri(), e.getMessage());
+			} catch (InterruptedException e) {
+				primary.cancel(true);
+				throw logger.throwing(e);
+			}
+		}
+		
+		CompletableFuture<HttpResponse<R>> winner = hedge == null ? primary : firstSuccess(primary, hedge);
+		HttpResponse<R> response;
+		try {
+			if (remaining == null) {
+				response = winner.get();
+			} else {
+				response = winner.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+			}
+		} catch (TimeoutException e) {
+			throw logger.throwing(new HttpTimeoutException("Deadline of the request exceeded"));
+		} catch (InterruptedException e) {
+			throw logger.throwing(e);
+		} catch (ExecutionException e) {
+			throw logger.throwing(unwrap(e.getCause()));
+		} finally {
+			// Aborts the exchanges which are still in flight, the winner is already complete
+			primary.cancel(true);
+			if (hedge != null) {
+				hedge.cancel(true);
+			}
+		}
+		if (hedge != null && hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.join() == response) {
+			hedger.recordWin();
+			// The latency of the first request is at least this long
+			hedger.recordLatency(System.nanoTime() - startNanos);
+		}
+		return response;
+	}
+	
+	/**
+	 * Sends the request and, if its response has not arrived after the
+	 * hedge delay and the hedge budget allows it, a second copy of it
+	 * without blocking, see {@link #hedgedExchange}. This is the hedged
+	 * exchange which is shared by coalesced requests. Cancelling the
+	 * returned future cancels both exchanges.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param hedger The state of the hedges
+	 * @param request The prepared HttpRequest
+	 * @param bodyHandler The handler for the response body, it must
+	 *                    receive the body completely
+	 * @param wireLogger The wire logger if this exchange has been sampled, otherwise null
+	 * @return The first successful response or the outcome of the first request
+	 */
+	private <R> CompletableFuture<HttpResponse<R>> hedgedExchangeAsync(Hedger hedger, HttpRequest request,
+					BodyHandler<R> bodyHandler, WireLogger wireLogger) {
+		
+		java.net.http.HttpClient httpClient = getTransport();
+		BodyHandler<R> handler = decodeIfCompressed(bodyHandler);
+		long startNanos = System.nanoTime();
+		hedger.recordRequest();
+		
+		HttpRequest primaryRequest = target(request, null);
+		if (wireLogger != null) {
+			wireLogger.logRequest(primaryRequest, null);
+		}
+		CompletableFuture<HttpResponse<R>> primary = sendGuardedAsync(httpClient, primaryRequest, handler);
+		primary.thenAccept(response -> hedger.recordLatency(System.nanoTime() - startNanos));
+		
+		// Completes with the hedge, or is cancelled if no hedge is sent
+		CompletableFuture<HttpResponse<R>> hedge = new CompletableFuture<HttpResponse<R>>();
+		CompletableFuture<HttpResponse<R>> winner = firstSuccess(primary, hedge);
+		// Either the first request completes within the hedge delay or the hedge is sent
+		AtomicBoolean decided = new AtomicBoolean();
+		primary.whenComplete((response, throwable) -> {
+			if (decided.compareAndSet(false, true)) {
+				hedge.cancel(false);
+			}
+		});
+		
+		CompletableFuture.delayedExecutor(hedger.getDelayNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+			if (!decided.compareAndSet(false, true)) {
+				return;
+			}
+			if (hedge.isDone() || !hedger.tryAcquireHedge()) {
+				hedge.cancel(false);
+				return;
+			}
+			HttpRequest hedgeRequest = hedgeRequest(request, primaryRequest, hedger.getPolicy());
+			if (wireLogger != null) {
+				wireLogger.logRequest(hedgeRequest, null);
+			}
+			CompletableFuture<HttpResponse<R>> exchange = sendGuardedAsync(httpClient, hedgeRequest, handler);
+			logger.debug("Hedge of {} sent after {} us", request.uri(),
+					TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+			exchange.whenComplete((response, throwable) -> {
+				if (throwable != null) {
+					hedge.completeExceptionally(causeOf(throwable));
+				} else {
+					hedge.complete(response);
+				}
+			});
+			// Aborts the hedge if the first request has won or all callers have given up
+			hedge.whenComplete((response, throwable) -> {
+				if (hedge.isCancelled()) {
+					exchange.cancel(true);
+				}
+			});
+		});
+		
+		// The result is completed after the hedge has been recorded
+		CompletableFuture<HttpResponse<R>> result = new CompletableFuture<HttpResponse<R>>();
+		winner.whenComplete((response, throwable) -> {
+			// Aborts the exchanges which are still in flight, the winner is already complete
+			primary.cancel(true);
+			hedge.cancel(false);
+			if (response != null && !hedge.isCompletedExceptionally() && hedge.join() == response) {
+				hedger.recordWin();
+				// The latency of the first request is at least this long
+				hedger.recordLatency(System.nanoTime() - startNanos);
+			}
+			if (throwable != null) {
+				result.completeExceptionally(throwable);
+			} else {
+				result.complete(response);
+			}
+		});
+		result.whenComplete((response, throwable) -> {
+			if (result.isCancelled()) {
+				winner.cancel(false);
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Sends an async exchange and completes the guard with its outcome.
+	 */
+	private static <R> CompletableFuture<HttpResponse<R>> sendGuarded(java.net.http.HttpClient httpClient,
+					ExchangeGuard guard, HttpRequest request, BodyHandler<R> handler) {
+		try {
+			return guard.track(httpClient.sendAsync(request, handler));
+		} catch (RuntimeException e) {
+			guard.onFailure(e);
+			throw logger.throwing(e);
+		}
+	}
+	
+	/**
+	 * Acquires the guard of an async exchange without blocking, then sends
+	 * the exchange and completes the guard with its outcome. If the returned
+	 * future is cancelled, the exchange is cancelled too.
+	 */
+	private <R> CompletableFuture<HttpResponse<R>> sendGuardedAsync(java.net.http.HttpClient httpClient,
+					HttpRequest request, BodyHandler<R> handler) {
+		CompletableFuture<HttpResponse<R>> result = new CompletableFuture<HttpResponse<R>>();
+		guardAsync(request).whenComplete((guard, throwable) -> {
+			if (throwable != null) {
+				result.completeExceptionally(causeOf(throwable));
+				return;
+			}
+			if (result.isDone()) {
+				guard.onFailure(new CancellationException());
+				return;
+			}
+			CompletableFuture<HttpResponse<R>> exchange;
+			try {
+				exchange = sendGuarded(httpClient, guard, request, handler);
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+				return;
+			}
+			exchange.whenComplete((response, failure) -> {
+				if (failure != null) {
+					result.completeExceptionally(causeOf(failure));
+				} else {
+					result.complete(response);
+				}
+			});
+			result.whenComplete((response, failure) -> {
+				if (result.isCancelled()) {
+					exchange.cancel(true);
+				}
+			});
+		});
+		return result;
+	}
+	
+	/**
+	 * @param request The request
+	 * @param primaryRequest The request as it has been sent first
+	 * @param policy The hedging policy
+	 * @return The copy of the request which is sent as hedge: the request
+	 *         with the alternate base URL, otherwise the request to another
+	 *         endpoint of the load balancer or the request itself
+	 */
+	private HttpRequest hedgeRequest(HttpRequest request, HttpRequest primaryRequest, HedgingPolicy policy) {
+		String alternateBaseUrl = policy.getAlternateBaseUrl();
+		if (alternateBaseUrl == null) {
+			return target(request, primaryRequest instanceof RetargetedRequest
+					? ((RetargetedRequest) primaryRequest).getEndpoint() : null);
+		}
+		String uri = request.uri().toString();
+		if (!uri.startsWith(baseUrl)) {
+			return request;
+		}
+		return new RetargetedRequest(request, URI.create(alternateBaseUrl + uri.substring(baseUrl.length())));
+	}
+	
+	/**
+	 * @return A future which completes with the first 2xx response of both
+	 *         exchanges, or with the outcome of the first exchange if none
+	 *         of them succeeds
+	 */
+	private static <R> CompletableFuture<HttpResponse<R>> firstSuccess(CompletableFuture<HttpResponse<R>> first,
+					CompletableFuture<HttpResponse<R>> second) {
+		CompletableFuture<HttpResponse<R>> winner = new CompletableFuture<HttpResponse<R>>();
+		BiConsumer<HttpResponse<R>, Throwable> decide = (response, throwable) -> {
+			if (response != null && response.statusCode() >= 200 && response.statusCode() < 300) {
+				winner.complete(response);
+			} else if (first.isDone() && second.isDone()) {
+				first.whenComplete((firstResponse, firstThrowable) -> {
+					if (firstResponse != null) {
+						winner.complete(firstResponse);
+					} else {
+						winner.completeExceptionally(firstThrowable);
+					}
+				});
+			}
+		};
+		first.whenComplete(decide);
+		second.whenComplete(decide);
+		return winner;
+	}
+	
+	/**
+	 * Waits for the response of an async exchange until the deadline.
+	 * 
+	 * @param future The exchange
+	 * @param remaining Time left until the deadline
+	 * @return The response
+	 * @throws IOException Will be thrown if the exchange failed
+	 * @throws HttpTimeoutException Will be thrown if the deadline is exceeded
+	 * @throws InterruptedException Will be thrown if the thread is interrupted
+	 */
+	private static <R> HttpResponse<R> await(CompletableFuture<HttpResponse<R>> future, Duration remaining)
+					throws IOException, InterruptedException {
+		try {
+			return future.get(remaining.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw new HttpTimeoutException("Deadline of the request exceeded");
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			throw e;
+		} catch (ExecutionException e) {
+			throw unwrap(e.getCause());
+		}
+	}
+	
+	/**
+	 * Asks the circuit breaker and the concurrency limiter of the host of
+	 * the request whether the request may be sent now and starts recording
+	 * the metrics of the exchange.
+	 * 
+	 * @param request The request
+	 * @return The guard which must be completed with the outcome of the exchange
+	 * @throws HttpCircuitOpenException Will be thrown if the circuit breaker of the host is open
+	 * @throws HttpLimitExceededException Will be thrown if the concurrency limit of the host is exceeded
+	 * @throws InterruptedException Will be thrown if the thread is interrupted
+	 *                              while waiting for the concurrency limiter
+	 */
+	private ExchangeGuard guard(HttpRequest request)
+					throws
+					HttpCircuitOpenException, HttpLimitExceededException, InterruptedException {
+		CircuitBreakerRegistry circuitBreakers = this.circuitBreakers;
+		ConcurrencyLimiterRegistry concurrencyLimiters = this.concurrencyLimiters;
+		MetricsRecorder metricsRecorder = this.metricsRecorder;
+		Endpoint endpoint = request instanceof RetargetedRequest ? ((RetargetedRequest) request).getEndpoint() : null;
+		if (circuitBreakers == null && concurrencyLimiters == null && metricsRecorder == null && endpoint == null) {
+			return ExchangeGuard.NONE;
+		}
+		return ExchangeGuard.acquire(
+				circuitBreakers == null ? null : circuitBreakers.forUri(request.uri()),
+				concurrencyLimiters == null ? null : concurrencyLimiters.forUri(request.uri()),
+				sample(metricsRecorder, request), loadBalancer, endpoint);
+	}
+	
+	/**
+	 * Like {@link #guard(HttpRequest)} for the async paths: a request above
+	 * the concurrency limit waits without blocking the calling thread, so
+	 * that a few threads can drive many requests.
+	 * 
+	 * @param request The request
+	 * @return The guard which must be completed with the outcome of the
+	 *         exchange. The future fails with HttpCircuitOpenException or
+	 *         HttpLimitExceededException.
+	 */
+	private CompletableFuture<ExchangeGuard> guardAsync(HttpRequest request) {
+		CircuitBreakerRegistry circuitBreakers = this.circuitBreakers;
+		ConcurrencyLimiterRegistry concurrencyLimiters = this.concurrencyLimiters;
+		MetricsRecorder metricsRecorder = this.metricsRecorder;
+		Endpoint endpoint = request instanceof RetargetedRequest ? ((RetargetedRequest) request).getEndpoint() : null;
+		if (circuitBreakers == null && concurrencyLimiters == null && metricsRecorder == null && endpoint == null) {
+			return CompletableFuture.completedFuture(ExchangeGuard.NONE);
+		}
+		return ExchangeGuard.acquireAsync(
+				circuitBreakers == null ? null : circuitBreakers.forUri(request.uri()),
+				concurrencyLimiters == null ? null : concurrencyLimiters.forUri(request.uri()),
+				sample(metricsRecorder, request), loadBalancer, endpoint);
+	}
+	
+	/**
+	 * @return The sample of the metrics of the exchange or null if metrics are disabled
+	 */
+	private MetricsRecorder.Sample sample(MetricsRecorder metricsRecorder, HttpRequest request) {
+		if (metricsRecorder == null) {
+			return null;
+		}
+		long requestBytes = request.bodyPublisher().map(BodyPublisher::contentLength).orElse(-1L);
+		return metricsRecorder.start(request.method(), routeOf(request), requestBytes);
+	}
+	
+	/**
+	 * Selects the endpoint of the load balancer for one exchange.
+	 * 
+	 * @param request The request, built with the first base URL
+	 * @param excluded An endpoint which should not be selected or null
+	 * @return The request to the selected endpoint, or the request itself
+	 *         if there is no load balancer
+	 */
+	private HttpRequest target(HttpRequest request, Endpoint excluded) {
+		LoadBalancer loadBalancer = this.loadBalancer;
+		if (loadBalancer == null || request instanceof RetargetedRequest) {
+			return request;
+		}
+		String uri = request.uri().toString();
+		if (!uri.startsWith(baseUrl)) {
+			return request;
+		}
+		Endpoint endpoint = loadBalancer.select(excluded);
+		return new RetargetedRequest(request, URI.create(endpoint.getBaseUrl() + uri.substring(baseUrl.length())),
+				endpoint);
+	}
+	
+	/**
+	 * @param request The request
+	 * @return The route of the request for the metrics: the template of its
+	 *         {@link Route} or otherwise the path
+	 */
+	private static String routeOf(HttpRequest request) {
+		if (request instanceof RetargetedRequest) {
+			request = ((RetargetedRequest) request).getRequest();
+		}
+		if (request instanceof RoutedRequest) {
+			return ((RoutedRequest) request).getRoute().getTemplate().getTemplate();
+		}
+		String path = request.uri().getRawPath();
+		return path == null || path.isEmpty() ? "/" : path;
+	}
+	
+	/**
+	 * Returns the IOException which caused the failure of an async exchange.
+	 * Unchecked exceptions are thrown as they are.
+	 * 
+	 * @param throwable The exception of the future
+	 * @return The IOException
+	 */
+	private static IOException unwrap(Throwable throwable) {
+		Throwable cause = causeOf(throwable);
+		if (cause instanceof IOException) {
+			return (IOException) cause;
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new IOException(cause);
+	}
+	
+	/**
+	 * Removes the wrappers which are added by futures and body handlers.
+	 * 
+	 * @param throwable The exception of a future
+	 * @return The original exception
+	 */
+	static Throwable causeOf(Throwable throwable) {
+		Throwable cause = (throwable instanceof CompletionException || throwable instanceof ExecutionException)
+				&& throwable.getCause() != null ? throwable.getCause() : throwable;
+		if (cause instanceof UncheckedIOException) {
+			cause = cause.getCause();
+		}
+		return cause;
+	}
+	
+	/**
+	 * Sends a GET request whose body is received completely as bytes and
+	 * converted afterwards. This is the path for the response cache and for
+	 * request coalescing.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param builder The request builder
+	 * @param converter Converts the received bytes into the body type
+	 * @return The response
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 *                     or to convert the body
+	 * @throws InterruptedException Will be thrown if the send function will be interrupted
+	 * @throws HttpStatusCodeException Will be thrown if response status code is not 2xx.
+	 */
+	private <R> HttpResponse<R> sendBuffered(HttpRequest.Builder builder, BodyConverter<R> converter)
+					throws IOException, InterruptedException, HttpStatusCodeException,
+					HttpCircuitOpenException, HttpLimitExceededException {
+		
+		return withRetries("GET", remaining -> {
+			if (responseCache != null) {
+				return sendCached(builder, converter, remaining);
+			}
+			
+			HttpResponse<byte[]> response = exchangeBytes(builder.build(), remaining);
+			checkStatus(response);
+			return new DelegatingHttpResponse<R>(response, converter.convert(response.body(), response.headers()));
+		});
+	}
+	
+	/**
+	 * Sends a request and receives the body as bytes. If request coalescing
+	 * is enabled, the exchange is shared with identical requests in flight.
+	 * The wire log is written once per exchange.
+	 * 
+	 * @param request The request
+	 * @param remaining Time left until the deadline of the request or null
+	 * @return The response, the status code is not checked
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 * @throws InterruptedException Will be thrown if the send function will be interrupted
+	 */
+	private HttpResponse<byte[]> exchangeBytes(HttpRequest request, Duration remaining)
+					throws IOException, InterruptedException,
+					HttpCircuitOpenException, HttpLimitExceededException {
+		RequestCoalescer coalescer = this.requestCoalescer;
+		if (coalescer == null) {
+			WireLogger wireLogger = this.wireLogger.sample() ? this.wireLogger : null;
+			Hedger hedger = this.hedger;
+			HttpResponse<byte[]> response = hedger != null
+					? hedgedExchange(hedger, request, HttpResponse.BodyHandlers.ofByteArray(), wireLogger, remaining)
+					: exchange(request, null, HttpResponse.BodyHandlers.ofByteArray(), wireLogger, remaining);
+			if (wireLogger != null) {
+				wireLogger.logResponse(response);
+			}
+			return response;
+		}
+		
+		HttpResponse<byte[]> response = coalescer.join(RequestCoalescer.key(request), () -> {
+			WireLogger wireLogger = this.wireLogger.sample() ? this.wireLogger : null;
+			Hedger hedger = this.hedger;
+			CompletableFuture<HttpResponse<byte[]>> future;
+			if (hedger != null) {
+				future = hedgedExchangeAsync(hedger, request, HttpResponse.BodyHandlers.ofByteArray(), wireLogger);
+			} else {
+				HttpRequest target = target(request, null);
+				if (wireLogger != null) {
+					wireLogger.logRequest(target, null);
+				}
+				future = sendGuardedAsync(getTransport(), target,
+						decodeIfCompressed(HttpResponse.BodyHandlers.ofByteArray()));
+			}
+			// The coalescer cancels this future when all callers have given up,
+			// so the wire log is written by a side stage and not returned
+			if (wireLogger != null) {
+				future.thenAccept(wireLogger::logResponse);
+			}
+			return future;
+		}, earliest(request.timeout().orElse(null), remaining));
 		return response;
 	}
 	
-	public <R, T> HttpResponse<R> 
-					PUT(String path, T body, Class<R> responseBodyClass) 
-						throws URISyntaxException, HttpInvalidRequestBodyType,
-						HttpStatusCodeException, HttpInvalidResponseBodyType,
-						IOException, InterruptedException {
-		
-		HttpRequest.Builder requestBuilder = HttpRequest.newBuilder();
-		setUri(requestBuilder, path);
-		addHeaders(requestBuilder);
+	/**
+	 * @return The shorter of both durations, null only if both are null
+	 */
+	private static Duration earliest(Duration a, Duration b) {
+		if (a == null || b == null) {
+			return a == null ? b : a;
+		}
+		return a.compareTo(b) <= 0 ? a : b;
+	}
+	
+	/**
+	 * Checks the status code of a response whose body has been received as
+	 * bytes. The exception contains the body as String, like the exceptions
+	 * of the other request methods.
+	 * 
+	 * @param response The response
+	 * @throws HttpStatusCodeException Will be thrown if response status code is not 2xx.
+	 */
+	private void checkStatus(HttpResponse<byte[]> response) throws HttpStatusCodeException {
+		if (response.statusCode() < 200 || response.statusCode() >= 300 ) {
+			String body = new String(response.body(), HttpUtils.getCharset(response.headers()));
+			throw logger.throwing(new HttpStatusCodeException(new DelegatingHttpResponse<String>(response, body)));
+		}
+	}
+	
+	/**
+	 * Sends a GET request through the response cache. A fresh cached
+	 * response is returned without asking the server. A stale cached
+	 * response with ETag or Last-Modified is revalidated with a conditional
+	 * request and a 304 response is answered with the cached body. Other
+	 * responses are stored according to their Cache-Control header.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param builder The request builder, it is copied for conditional requests
+	 * @param converter Converts the received or cached bytes into the body type
+	 * @param remaining Time left until the deadline of the request or null
+	 * @return The response
+	 * @throws IOException Will be thrown if there is a problem to access the URL
+	 *                     or to convert the body
+	 * @throws InterruptedException Will be thrown if the send function will be interrupted
+	 * @throws HttpStatusCodeException Will be thrown if response status code is not 2xx.
+	 */
+	private <R> HttpResponse<R> sendCached(HttpRequest.Builder builder, BodyConverter<R> converter,
+					Duration remaining) throws IOException, InterruptedException, HttpStatusCodeException,
+						HttpCircuitOpenException, HttpLimitExceededException {
+		
+		ResponseCache cache = this.responseCache;
+		CacheStatistics statistics = this.cacheStatistics;
+		
+		HttpRequest request = builder.build();
+		String key = cacheKey(request);
+		CacheEntry entry = cache.get(key);
+		
+		if (entry != null) {
+			if (entry.isFresh(System.currentTimeMillis())) {
+				HttpResponse<R> cached = fromCache(request, key, entry, converter);
+				if (cached != null) {
+					statistics.recordHit();
+					logger.debug("Response for {} served from cache", request.uri());
+					return cached;
+				}
+				entry = null;
+			} else if (entry.hasValidator()) {
+				HttpRequest.Builder conditional = builder.copy();
+				entry.getETag().ifPresent(etag -> conditional.header("If-None-Match", etag));
+				entry.getLastModified().ifPresent(date -> conditional.header("If-Modified-Since", date));
+				request = conditional.build();
+			} else {
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			statistics.recordMiss();
+		}
+		
+		HttpResponse<byte[]> response = exchangeBytes(request, remaining);
+		long now = System.currentTimeMillis();
+		
+		if (entry != null) {
+			boolean notModified = response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+			statistics.recordRevalidation(notModified);
+			if (notModified) {
+				HttpHeaders headers = CacheControl.merge(entry.getHeaders(), response.headers());
+				CacheEntry revalidated = entry.revalidated(headers, now,
+						CacheControl.of(headers).expiresAtMillis(headers, now));
+				cache.put(key, revalidated);
+				HttpResponse<R> cached = fromCache(request, key, revalidated, converter);
+				if (cached != null) {
+					return cached;
+				}
+				// The cached body is gone, fetch it again without condition
+				return sendCached(builder, converter, remaining);
+			}
+		}
+		
+		checkStatus(response);
+		
+		HttpHeaders headers = response.headers();
+		CacheControl cacheControl = CacheControl.of(headers);
+		if (response.statusCode() == HttpURLConnection.HTTP_OK && !cacheControl.isNoStore() && !cacheControl.isVarying()) {
+			CacheEntry stored = CacheEntry.of(response.statusCode(), headers, response.body(),
+					now, cacheControl.expiresAtMillis(headers, now));
+			if (stored.isFresh(now) || stored.hasValidator()) {
+				cache.put(key, stored);
+			} else {
+				cache.remove(key);
+			}
+		} else {
+			cache.remove(key);
+		}
+		
+		return new DelegatingHttpResponse<R>(response, converter.convert(response.body(), headers));
+	}
+	
+	/**
+	 * The key contains all headers which are sent: the default headers of
+	 * the client at the time the request was built, e.g. Authorization and
+	 * Accept, and the headers of the request. So a response is never shared
+	 * between principals or representations, also not after
+	 * {@link #setHeaders(RequestHeaders)}.
+	 * 
+	 * @param request The request, without the headers of a conditional request
+	 * @return The key of the request in the response cache
+	 */
+	private static String cacheKey(HttpRequest request) {
+		// The header map is sorted case insensitive, so the key does not
+		// depend on the order in which the headers have been added
+		return request.uri() + " " + request.headers().map();
+	}
+	
+	/**
+	 * Creates a response from a cache entry.
+	 * 
+	 * @return The response or null if the body of the entry can not be read anymore
+	 * @throws IOException Will be thrown if the body can not be converted
+	 */
+	private <R> HttpResponse<R> fromCache(HttpRequest request, String key, CacheEntry entry,
+					BodyConverter<R> converter) throws IOException {
+		byte[] body;
+		try {
+			body = entry.getBody();
+		} catch (IOException e) {
+			logger.debug("Cached body of {} is not readable anymore: {}", request.uri(), e.getMessage());
+			responseCache.remove(key);
+			return null;
+		}
+		return new CachedHttpResponse<R>(request, entry.getStatusCode(), entry.getHeaders(),
+				converter.convert(body, entry.getHeaders()));
+	}
+	
+	/**
+	 * Creates a converter from bytes to the response body type, it is used
+	 * if the response passes the response cache.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param responseBodyType The type of the response body
+	 * @return The converter or null if the body type can not be cached,
+	 *         which is the case for files, streamed and pooled bodies
+	 */
+	@SuppressWarnings("unchecked") // The converters return the type given by responseBodyType
+	private <R> BodyConverter<R> createBodyConverter(Type responseBodyType) {
+		if (responseBodyType == null || responseBodyType.equals(Path.class)
+				|| responseBodyType.equals(InputStream.class) || responseBodyType.equals(Stream.class)
+				|| responseBodyType.equals(PooledBody.class)) {
+			return null;
+		}
+		if (responseBodyType.equals(String.class)) {
+			return (body, headers) -> (R) new String(body, HttpUtils.getCharset(headers));
+		}
+		if (responseBodyType.equals(byte[].class)) {
+			// The cached array is shared, the caller gets its own copy
+			return (body, headers) -> (R) body.clone();
+		}
+		JsonBodies jsonBodies = this.jsonBodies;
+		if (jsonBodies == null) {
+			return null;
+		}
+		ObjectReader reader = jsonBodies.reader(responseBodyType);
+		// An empty body, e.g. of 204 No Content, is null
+		return (body, headers) -> body.length == 0 ? null : reader.readValue(body);
+	}
+	
+	/**
+	 * Sends the HTTP request asynchronously. The future completes
+	 * exceptionally with the same exceptions which are thrown by
+	 * {@link #send(HttpRequest, Object, Class, Path)}. If all async slots
+	 * are in use, the request is sent when a slot becomes free. Retries are
+	 * scheduled without blocking a thread, the async slot is held until
+	 * the last attempt has completed.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param <T> The type of the request body
+	 * @param request The prepared HttpRequest
+	 * @param body The request body, it is only used for logging
+	 * @param bodyHandler The handler for the response body
+	 * @return The future response
+	 */
+	private <R, T> CompletableFuture<HttpResponse<R>>
+				sendAsync(HttpRequest request, T body, BodyHandler<R> bodyHandler) {
+		
+		java.net.http.HttpClient httpClient = getTransport();
+		
+		BodyHandler<R> decodingHandler = decodeIfCompressed(bodyHandler);
+		
+		RetryPolicy policy = this.retryPolicy;
+		RetryContext retry = policy == null ? null : new RetryContext(policy, this.retryBudget, request.method());
+		
+		CompletableFuture<HttpResponse<R>> result = new CompletableFuture<HttpResponse<R>>();
+		AsyncPermits permits = this.asyncPermits;
+		CompletableFuture<Void> permit = permits.acquire();
+		permit.whenComplete((ignored, throwable) -> {
+			if (throwable != null) {
+				// The request has been cancelled while it waited
+				return;
+			}
+			result.whenComplete((response, failure) -> permits.release());
+			if (result.isDone()) {
+				return;
+			}
+			try {
+				attemptAsync(httpClient, request, body, decodingHandler, retry, result);
+			} catch (RuntimeException e) {
+				result.completeExceptionally(logger.throwing(e));
+			}
+		});
+		// A request which is cancelled while it waits gives up its place in the queue
+		result.whenComplete((response, throwable) -> permit.cancel(false));
+		return result;
+	}
+	
+	/**
+	 * Sends one attempt of an async request. If it fails and the retry
+	 * policy allows it, the next attempt is scheduled after the backoff.
+	 * 
+	 * @param retry The retry state or null if there is no retry policy
+	 * @param result Completed with the response of the last attempt
+	 */
+	private <R, T> void attemptAsync(java.net.http.HttpClient httpClient, HttpRequest request, T body,
+					BodyHandler<R> bodyHandler, RetryContext retry, CompletableFuture<HttpResponse<R>> result) {
+		
+		HttpRequest target = target(request, null);
+		guardAsync(target).whenComplete((guard, throwable) -> {
+			if (throwable != null) {
+				result.completeExceptionally(causeOf(throwable));
+			} else if (result.isDone()) {
+				// Cancelled while it waited for the concurrency limiter
+				guard.onFailure(new CancellationException());
+			} else {
+				try {
+					exchangeAsync(httpClient, request, target, guard, body, bodyHandler, retry, result);
+				} catch (RuntimeException e) {
+					guard.onFailure(e);
+					result.completeExceptionally(logger.throwing(e));
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Sends one attempt of an async request when its guard has been acquired.
+	 * 
+	 * @param request The request as it has been built, for the next attempt
+	 * @param target The request to the selected endpoint
+	 * @param guard The guard of this attempt
+	 */
+	private <R, T> void exchangeAsync(java.net.http.HttpClient httpClient, HttpRequest request, HttpRequest target,
+					ExchangeGuard guard, T body, BodyHandler<R> bodyHandler, RetryContext retry,
+					CompletableFuture<HttpResponse<R>> result) {
 		
-		if (body instanceof String) {
-			requestBuilder.PUT(HttpRequest.BodyPublishers.ofString((String)body));
-		} else if (body instanceof byte[]) {
-			requestBuilder.PUT(HttpRequest.BodyPublishers.ofByteArray((byte[])body));
-		} else if (body instanceof Path) {
-			requestBuilder.PUT(HttpRequest.BodyPublishers.ofFile((Path)body));
-		} else if (body == null) {
-			requestBuilder.PUT(HttpRequest.BodyPublishers.noBody());
-		} else {
-			throw logger.throwing(new HttpInvalidRequestBodyType(body.getClass()));
+		WireLogger wireLogger = this.wireLogger.sample() ? this.wireLogger : null;
+		if (wireLogger != null) {
+			wireLogger.logRequest(target, body);
 		}
 		
-		HttpResponse<R> response = (HttpResponse<R>)
-				send(requestBuilder.build(), body, responseBodyClass, null);
+		CompletableFuture<HttpResponse<R>> exchange = httpClient.sendAsync(target, bodyHandler);
+		AtomicBoolean timedOut = new AtomicBoolean();
+		Duration remaining = retry == null ? null : retry.remaining();
+		if (remaining != null) {
+			// Only cancel of the future of the JDK client aborts the exchange,
+			// and only as long as it is not done. The guard is completed when
+			// the exchange has actually been aborted.
+			CompletableFuture.delayedExecutor(remaining.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+				if (!exchange.isDone()) {
+					timedOut.set(true);
+					exchange.cancel(true);
+				}
+			});
+		}
 		
-		return response;
+		exchange.whenComplete((response, throwable) -> {
+			Throwable failure;
+			if (throwable != null) {
+				failure = timedOut.get()
+						? new HttpTimeoutException("Deadline of the request exceeded")
+						: causeOf(throwable);
+				guard.onFailure(failure);
+				logger.throwing(failure);
+			} else {
+				guard.onResponse(response);
+				try {
+					result.complete(handleResponse(response, wireLogger));
+					return;
+				} catch (HttpStatusCodeException | IOException e) {
+					failure = e;
+				}
+			}
+			Duration delay = retry == null ? null : retry.nextDelay(failure);
+			if (delay == null) {
+				result.completeExceptionally(failure);
+				return;
+			}
+			CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+				try {
+					attemptAsync(httpClient, request, body, bodyHandler, retry, result);
+				} catch (RuntimeException e) {
+					result.completeExceptionally(logger.throwing(e));
+				}
+			});
+		});
 	}
+	
 	/**
-	 * Sends the HTTP request. This is the most important functions because
-	 * here happens all the HTTP communication.
+	 * Wraps the handler so that compressed response bodies are decoded,
+	 * if this is enabled by the {@link CompressionPolicy}.
 	 * 
-	 * @param <R> The return type of the HttpResponse. This must be of type String or byte[].
-	 * @param <T>
-	 * @param request The prepared HttpRequest
-	 * @param body The request body. The argument is only used for logging purpose. 
-	 * @param responseBodyClass Must be String.class, byte[].class or Path.class
-	 *        or null. The value null means that you don't want to get the
-	 *        body of the response.
+	 * @param <R> The type of the response body
+	 * @param bodyHandler The handler for the decoded body
+	 * @return The handler which will be used
+	 */
+	private <R> BodyHandler<R> decodeIfCompressed(BodyHandler<R> bodyHandler) {
+		CompressionPolicy compression = this.compressionPolicy;
+		if (compression == null || !compression.isDecompressResponses()) {
+			return bodyHandler;
+		}
+		return CompressionBodies.decoding(bodyHandler);
+	}
+	
+	/**
+	 * Creates the handler for the response body.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param responseBodyClass Must be String.class, byte[].class, Path.class,
+	 *        InputStream.class, Stream.class, PooledBody.class or null. The value
+	 *        null means that you don't want to get the body of the response.
+	 *        InputStream and Stream (the lines of the body) are streamed, the
+	 *        caller must close them. A {@link PooledBody} is held in the buffers
+	 *        of the {@link BufferPool}, the caller must release it.
+	 *        Any other class is read as JSON, unless JSON has been disabled
+	 *        by {@link #setObjectMapper(ObjectMapper)}.
 	 * @param file If the responseBodyClass is type of Path.class then you must
 	 *             provide here a filename to which the response will be written
-	 * @return
-	 * @throws IOException
-	 * @throws InterruptedException Will be thrown if the send function will be interrupted
-	 * @throws HttpStatusCodeException Will be thrown if response status code is not 200.
+	 * @param blocking true if the response is received by a blocking call, then
+	 *                 a JSON body is parsed on the calling thread while it is
+	 *                 received, see {@link DeferredBody}
+	 * @return The handler
 	 * @throws HttpInvalidResponseBodyType Will be thrown if the
-	 * 									   responseBodyClass is not String.class
-	 * 									   or byte[].class. Other types are
-	 *                                     not supported.
+	 * 									   responseBodyClass is not supported
 	 */
 	@SuppressWarnings("unchecked") // Compiler doesn't understand that the
 								   // typecast to BodyHandler<R> is save
 								   // in our implementation 
-	private <R, T> HttpResponse<R>
-				send(HttpRequest request, T body, Class<R> responseBodyClass,
-					Path file) throws IOException, InterruptedException,
-						HttpStatusCodeException, HttpInvalidResponseBodyType {
-		
-		java.net.http.HttpClient.Builder httpClientBuilder = java.net.http.HttpClient.newBuilder();
-		
-		if (this.validateSSLCertificate == false) {
-			if (sslContext != null) {
-				logger.debug("Set SSL context ...");
-				httpClientBuilder.sslContext(sslContext);
-				logger.debug("SSL context had been set");
-			} else {
-				logger.error("SSL context is null");
-			}
-		} else {
-			logger.warn("Validation of SSL certificate is enabled, this might "
-				+ "cause an exception if SSL certificate does not exist "
-				+ "in local trust store");
-		}
-		
-		java.net.http.HttpClient httpClient = httpClientBuilder.build();
-		
-		HttpResponse<R> response = null;
+	private <R> BodyHandler<R> createBodyHandler(Class<R> responseBodyClass, Path file, boolean blocking)
+					throws HttpInvalidResponseBodyType {
 		
 		HttpResponse.BodyHandler<R> bodyHandler = null;
 		
@@ -316,28 +2992,209 @@ public class HttpClient {
 						+ "You must provide a valid path in case the responeBodyClass is type of Path.class"));
 			}
 			bodyHandler = (BodyHandler<R>) HttpResponse.BodyHandlers.ofFile(file);
+		} else if (responseBodyClass.equals(InputStream.class)) {
+			bodyHandler = (BodyHandler<R>) StreamingBodyHandlers.onSuccess(HttpResponse.BodyHandlers.ofInputStream());
+		} else if (responseBodyClass.equals(Stream.class)) {
+			bodyHandler = (BodyHandler<R>) StreamingBodyHandlers.onSuccess(HttpResponse.BodyHandlers.ofLines());
+		} else if (responseBodyClass.equals(PooledBody.class)) {
+			bodyHandler = (BodyHandler<R>) StreamingBodyHandlers.onSuccess(getBufferPool().bodyHandler());
+		} else if (jsonBodies != null) {
+			bodyHandler = jsonBodies.handler(responseBodyClass, blocking);
 		} else {
 			throw logger.throwing(new HttpInvalidResponseBodyType(responseBodyClass));
 		}
+		return bodyHandler;
+	}
+	
+	/**
+	 * Creates the handler for a JSON response body of a generic type.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param responseBodyType The type of the response
+	 * @return The handler, it parses the body on the calling thread
+	 * @throws HttpInvalidResponseBodyType Will be thrown if JSON has been disabled
+	 */
+	private <R> BodyHandler<R> createJsonBodyHandler(TypeReference<R> responseBodyType)
+					throws HttpInvalidResponseBodyType {
+		JsonBodies jsonBodies = this.jsonBodies;
+		if (jsonBodies == null) {
+			throw logger.throwing(new HttpInvalidResponseBodyType(TypeReference.class));
+		}
+		return jsonBodies.handler(responseBodyType.getType(), true);
+	}
+	
+	/**
+	 * Creates the publisher for the request body.
+	 * 
+	 * @param <T> The type of the body
+	 * @param builder The request builder, a Content-Type header is added
+	 *                to it if the body is sent as JSON
+	 * @param body String, byte[], Iterable&lt;byte[]&gt;, Path, {@link MultipartBody},
+	 *             a BodyPublisher, e.g. of {@link StreamingBodyPublishers},
+	 *             or null. Any other object is sent as JSON, unless JSON
+	 *             has been disabled by {@link #setObjectMapper(ObjectMapper)}.
+	 * @return The publisher
+	 * @throws HttpInvalidRequestBodyType Will be thrown if the type of the
+	 *                                    body is not supported
+	 * @throws IOException Will be thrown if the body is a Path which does
+	 *                     not exist or if it can not be serialized as JSON
+	 */
+	private <T> BodyPublisher createBodyPublisher(HttpRequest.Builder builder, T body)
+					throws HttpInvalidRequestBodyType, IOException {
+		return createBodyPublisher(builder, body, null);
+	}
+	
+	/**
+	 * Creates the publisher of a request body, see {@link #createBodyPublisher(HttpRequest.Builder, Object)}.
+	 * 
+	 * @param requestHeaders The headers of this request or null, the
+	 *                       Content-Type of a JSON or multipart body is only
+	 *                       set if neither they nor the default headers have one
+	 */
+	private <T> BodyPublisher createBodyPublisher(HttpRequest.Builder builder, T body,
+					RequestHeaders requestHeaders)
+					throws HttpInvalidRequestBodyType, IOException {
+		CompressionPolicy compression = this.compressionPolicy;
+		boolean compress = compression != null && compression.getRequestCompressionThreshold() >= 0;
+		List<byte[]> chunks;
+		
+		if (body instanceof String) {
+			if (compress) {
+				byte[] bytes = ((String)body).getBytes(StandardCharsets.UTF_8);
+				return compressIfLarge(builder, Collections.singletonList(bytes), bytes.length,
+						HttpRequest.BodyPublishers.ofByteArray(bytes));
+			}
+			return HttpRequest.BodyPublishers.ofString((String)body);
+		} else if (body instanceof byte[]) {
+			byte[] bytes = (byte[])body;
+			return compressIfLarge(builder, Collections.singletonList(bytes), bytes.length,
+					HttpRequest.BodyPublishers.ofByteArray(bytes));
+		} else if (body instanceof MultipartBody) {
+			MultipartBody multipart = (MultipartBody) body;
+			if (!headers.contains("Content-Type")
+					&& (requestHeaders == null || !requestHeaders.contains("Content-Type"))) {
+				builder.header("Content-Type", multipart.getContentType());
+			}
+			return multipart;
+		} else if (body instanceof BodyPublisher) {
+			return (BodyPublisher) body;
+		} else if (body instanceof Iterable<?> && (chunks = toByteArrays((Iterable<?>) body)) != null) {
+			long size = 0;
+			for (byte[] chunk : chunks) {
+				size += chunk.length;
+			}
+			return compressIfLarge(builder, chunks, size, HttpRequest.BodyPublishers.ofByteArrays(chunks));
+		} else if (body instanceof Path) {
+			Path file = (Path)body;
+			try {
+				if (compress && compression.shouldCompress(Files.size(file))) {
+					builder.header("Content-Encoding", "gzip");
+					return CompressionBodies.gzipFile(file, compression.getCompressionLevel());
+				}
+				return HttpRequest.BodyPublishers.ofFile(file);
+			} catch (IOException e) {
+				throw logger.throwing(e);
+			}
+		} else if (body == null) {
+			return HttpRequest.BodyPublishers.noBody();
+		}
 		
+		JsonBodies jsonBodies = this.jsonBodies;
+		if (jsonBodies == null) {
+			throw logger.throwing(new HttpInvalidRequestBodyType(body.getClass()));
+		}
+		ByteChunksOutputStream json;
 		try {
-			logSendingHttpRequest(request, body);
-			response = (HttpResponse<R>) httpClient.send(request, bodyHandler);
+			json = jsonBodies.serialize(body);
+		} catch (InvalidDefinitionException e) {
+			logger.error("Can not serialize {} as JSON: {}", body.getClass().getName(), e.getMessage());
+			throw logger.throwing(new HttpInvalidRequestBodyType(body.getClass()));
 		} catch (IOException e) {
 			throw logger.throwing(e);
-		} catch (InterruptedException e) {
-			throw logger.throwing(e);
 		}
+		if (!headers.contains("Content-Type")
+				&& (requestHeaders == null || !requestHeaders.contains("Content-Type"))) {
+			builder.header("Content-Type", JsonBodies.CONTENT_TYPE);
+		}
+		return compressIfLarge(builder, json.toChunks(), json.size(), json.toBodyPublisher());
+	}
+	
+	/**
+	 * Compresses the request body with gzip if request compression is
+	 * enabled and the body is large enough, see {@link CompressionPolicy}.
+	 * 
+	 * @param builder The request builder, the Content-Encoding header is
+	 *                added to it if the body is compressed
+	 * @param chunks The uncompressed body
+	 * @param size The size of the uncompressed body
+	 * @param uncompressed The publisher for the uncompressed body
+	 * @return The publisher which will be used
+	 */
+	private BodyPublisher compressIfLarge(HttpRequest.Builder builder, Iterable<byte[]> chunks,
+					long size, BodyPublisher uncompressed) {
+		CompressionPolicy compression = this.compressionPolicy;
+		if (compression == null || !compression.shouldCompress(size)) {
+			return uncompressed;
+		}
+		builder.header("Content-Encoding", "gzip");
+		return CompressionBodies.gzip(chunks, compression.getCompressionLevel()).toBodyPublisher();
+	}
+	
+	/**
+	 * Collects the chunks of a request body. The Iterable is iterated only
+	 * once, so it may be a one-shot view of a stream. Only the references
+	 * are collected, they allow to send the body again for a retry.
+	 * 
+	 * @param iterable The request body
+	 * @return The chunks or null if the first element is not a byte[]
+	 * @throws HttpInvalidRequestBodyType Will be thrown if a later element is not a byte[]
+	 */
+	private static List<byte[]> toByteArrays(Iterable<?> iterable) throws HttpInvalidRequestBodyType {
+		Iterator<?> iterator = iterable.iterator();
+		if (!iterator.hasNext()) {
+			return null;
+		}
+		Object first = iterator.next();
+		if (!(first instanceof byte[])) {
+			return null;
+		}
+		List<byte[]> chunks = new ArrayList<byte[]>();
+		chunks.add((byte[]) first);
+		while (iterator.hasNext()) {
+			Object chunk = iterator.next();
+			if (!(chunk instanceof byte[])) {
+				throw logger.throwing(new HttpInvalidRequestBodyType(chunk == null ? Object.class : chunk.getClass()));
+			}
+			chunks.add((byte[]) chunk);
+		}
+		return chunks;
+	}
+	
+	/**
+	 * Logs the received response and checks the status code.
+	 * 
+	 * @param <R> The type of the response body
+	 * @param response The received response
+	 * @param wireLogger The wire logger if this exchange has been sampled, otherwise null
+	 * @return The response
+	 * @throws HttpStatusCodeException Will be thrown if response status code is not 2xx.
+	 * @throws IOException Will be thrown if a deferred body can not be read
+	 */
+	@SuppressWarnings("unchecked") // A handler which returns a DeferredBody
+								   // is a handler for DeferredBody<R>
+	private <R> HttpResponse<R> handleResponse(HttpResponse<R> response, WireLogger wireLogger)
+					throws HttpStatusCodeException, IOException {
 		
-		logger.info("Received HTTP response:");
-		int statusCode = response.statusCode();
-		String statusText = HttpUtils.getStatusText(statusCode);
-		logger.info("    Status code = {} ({})", statusCode, statusText);
-		HttpHeaders headers = response.headers();
-		logHeaders(headers);
+		if (response.body() instanceof DeferredBody<?>) {
+			try {
+				response = new DelegatingHttpResponse<R>(response, ((DeferredBody<R>) response.body()).resolve());
+			} catch (IOException e) {
+				throw logger.throwing(e);
+			}
+		}
 		
-		if (response.body() instanceof String) {
-			logger.info("    Body = {}", (String)response.body());
+		if (wireLogger != null) {
+			wireLogger.logResponse(response);
 		}
 
 		if (response.statusCode() < 200 || response.statusCode() >= 300 ) {
@@ -347,12 +3204,328 @@ public class HttpClient {
 		return response;
 	}
 	
+	/**
+	 * Prepares the client for traffic, e.g. after a deploy, so the first
+	 * requests do not pay for handshakes, class loading and compilation.
+	 * The warm-up has three phases:
+	 * <ol>
+	 * <li>The transport is built, including its SSL context.</li>
+	 * <li>{@link WarmUpConfig#getConnections()} concurrent HEAD requests are
+	 *     sent to each target. This resolves the host, opens the connections
+	 *     and completes the TLS handshakes. The connections stay in the pool
+	 *     of the transport until their keep-alive timeout, see
+	 *     {@link HttpTransportConfig}. With HTTP/2 the requests to a target
+	 *     are multiplexed on one connection, so only one connection is
+	 *     opened per target.</li>
+	 * <li>The warm-up requests are sent like any GET request of the
+	 *     application, with the default headers, cache and metrics, but
+	 *     without the retry policy: a request which fails is reported and
+	 *     not repeated.</li>
+	 * </ol>
+	 * Failures are reported, not thrown.
+	 *
+	 * @param config The settings of the warm-up
+	 * @return The times of the phases and the failures
+	 * @throws InterruptedException Will be thrown if the thread is interrupted
+	 */
+	public WarmUpReport warmUp(WarmUpConfig config) throws InterruptedException {
+		if (config == null) {
+			throw logger.throwing(new IllegalArgumentException("The argument <config> must not be null"));
+		}
+		List<Exception> failures = new ArrayList<Exception>();
+	
+		long startNanos = System.nanoTime();
+		java.net.http.HttpClient httpClient = getTransport();
+		long transportNanos = System.nanoTime();
+	
+		Map<String, List<CompletableFuture<HttpResponse<Void>>>> probes =
+				new LinkedHashMap<String, List<CompletableFuture<HttpResponse<Void>>>>();
+		for (String target : warmUpTargets()) {
+			List<CompletableFuture<HttpResponse<Void>>> futures = new ArrayList<CompletableFuture<HttpResponse<Void>>>();
+			for (int i = 0; i < config.getConnections(); i++) {
+				try {
+					HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(target + config.getConnectionPath()));
+					addHeaders(builder, null);
+					builder.timeout(config.getTimeout()).method("HEAD", HttpRequest.BodyPublishers.noBody());
+					futures.add(httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.discarding()));
+				} catch (IllegalArgumentException e) {
+					futures.add(CompletableFuture.failedFuture(e));
+				}
+			}
+			probes.put(target, futures);
+		}
+		Map<String, Integer> connections = new LinkedHashMap<String, Integer>();
+		for (Map.Entry<String, List<CompletableFuture<HttpResponse<Void>>>> entry : probes.entrySet()) {
+			int opened = 0;
+			for (CompletableFuture<HttpResponse<Void>> future : entry.getValue()) {
+				try {
+					future.get();
+					opened++;
+				} catch (ExecutionException e) {
+					Throwable cause = causeOf(e);
+					failures.add(cause instanceof Exception ? (Exception) cause : e);
+				}
+			}
+			connections.put(entry.getKey(), opened);
+		}
+		long connectionNanos = System.nanoTime();
+	
+		int requests = 0;
+		warmingUp.set(Boolean.TRUE);
+		try {
+			for (WarmUpConfig.Request request : config.getRequests()) {
+				try {
+					for (int i = 0; i < request.getRepetitions(); i++) {
+						sendGet(newRequestBuilder(request.getPath(), null), request.getResponseBodyClass());
+						requests++;
+					}
+				} catch (IOException | URISyntaxException | HttpException e) {
+					failures.add(e);
+				}
+			}
+		} finally {
+			warmingUp.remove();
+		}
+		long requestNanos = System.nanoTime();
+	
+		WarmUpReport report = new WarmUpReport(Duration.ofNanos(transportNanos - startNanos),
+				Duration.ofNanos(connectionNanos - transportNanos), Duration.ofNanos(requestNanos - connectionNanos),
+				connections, requests, failures);
+		if (report.isSuccess()) {
+			logger.info("Warm-up done: {}", report);
+		} else {
+			logger.warn("Warm-up done with failures: {}, first failure: {}", report, failures.get(0).toString());
+		}
+		return report;
+	}
+	
+	/**
+	 * @return The base URLs to which the warm-up opens connections
+	 */
+	private Set<String> warmUpTargets() {
+		Set<String> targets = new LinkedHashSet<String>();
+		LoadBalancer loadBalancer = this.loadBalancer;
+		if (loadBalancer != null) {
+			for (Endpoint endpoint : loadBalancer.getEndpoints()) {
+				targets.add(endpoint.getBaseUrl());
+			}
+		} else {
+			targets.add(baseUrl);
+		}
+		Hedger hedger = this.hedger;
+		if (hedger != null && hedger.getPolicy().getAlternateBaseUrl() != null) {
+			targets.add(hedger.getPolicy().getAlternateBaseUrl());
+		}
+		return targets;
+	}
+	
+	/**
+	 * Returns the shared transport and builds it if necessary.
+	 * 
+	 * @return The transport
+	 */
+	java.net.http.HttpClient getTransport() {
+		java.net.http.HttpClient httpClient = this.transport;
+		if (httpClient != null) {
+			return httpClient;
+		}
+		synchronized (transportLock) {
+			if (closed) {
+				throw logger.throwing(new IllegalStateException("The client has been closed"));
+			}
+			if (this.transport == null) {
+				this.transport = buildTransport();
+			}
+			return this.transport;
+		}
+	}
+	
+	/**
+	 * Stops the health checks of the load balancer and releases the
+	 * transport. On JDK 21 and later the transport is closed, which waits
+	 * for the requests in flight. The virtual thread executor of the
+	 * transport is shut down, an executor of the
+	 * {@link HttpTransportConfig} belongs to the application and is not.
+	 * The client must not be used for new requests afterwards.
+	 */
+	@Override
+	public void close() {
+		if (loadBalancer != null) {
+			loadBalancer.close();
+		}
+		java.net.http.HttpClient httpClient;
+		ExecutorService executor;
+		synchronized (transportLock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			httpClient = this.transport;
+			executor = this.virtualThreadExecutor;
+			this.transport = null;
+			this.virtualThreadExecutor = null;
+		}
+		// java.net.http.HttpClient implements AutoCloseable since JDK 21
+		if (httpClient instanceof AutoCloseable) {
+			try {
+				((AutoCloseable) httpClient).close();
+			} catch (Exception e) {
+				logger.warn("Closing the transport failed", e);
+			}
+		}
+		if (executor != null) {
+			executor.shutdown();
+		}
+		logger.debug("Client has been closed");
+	}
+	
+	/**
+	 * Builds a new transport from the transport settings and the
+	 * SSL settings. Must be called while holding the transportLock.
+	 * 
+	 * @return The new transport
+	 */
+	private java.net.http.HttpClient buildTransport() {
+		logger.debug("Build transport ...");
+		SSLContext context = null;
+		if (this.validateSSLCertificate == false) {
+			if (sslContext != null) {
+				context = sslContext;
+				logger.debug("SSL context will be set");
+			} else {
+				logger.error("SSL context is null");
+			}
+		} else {
+			logger.warn("Validation of SSL certificate is enabled, this might "
+				+ "cause an exception if SSL certificate does not exist "
+				+ "in local trust store");
+		}
+		java.net.http.HttpClient httpClient = transportConfig.buildTransport(context, this::virtualThreadExecutor);
+		logger.debug("Transport had been built");
+		return httpClient;
+	}
+	
+	/**
+	 * Returns the virtual thread executor of the transport and creates it
+	 * if necessary. Must be called while holding the transportLock.
+	 * 
+	 * @return The executor
+	 */
+	private ExecutorService virtualThreadExecutor() {
+		if (virtualThreadExecutor == null) {
+			virtualThreadExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+		}
+		return virtualThreadExecutor;
+	}
+	
+	/**
+	 * Creates the builder of a request with URI, headers and timeout set.
+	 * It is package-private for the benchmarks of request construction.
+	 * 
+	 * @param path The path of the URL
+	 * @return The request builder
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 */
+	HttpRequest.Builder newRequestBuilder(String path) throws URISyntaxException {
+		return newRequestBuilder(path, null);
+	}
+	
+	/**
+	 * Creates the builder of a request with URI, headers and timeout set.
+	 * 
+	 * @param path The path of the URL
+	 * @param requestHeaders Headers of this request which replace default
+	 *                       headers with the same name, or null
+	 * @return The request builder
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 */
+	private HttpRequest.Builder newRequestBuilder(String path, RequestHeaders requestHeaders)
+					throws URISyntaxException {
+		HttpRequest.Builder requestBuilder = HttpRequest.newBuilder();
+		setUri(requestBuilder, path);
+		addHeaders(requestBuilder, requestHeaders);
+		return requestBuilder;
+	}
+	
+	/**
+	 * Creates the builder of a request for a route. The requests it builds
+	 * carry the route, so the metrics can record them under the template.
+	 * 
+	 * @param route The path and query of the URL
+	 * @return The request builder
+	 * @throws URISyntaxException Will be thrown if the syntax of the URL is invalid
+	 */
+	HttpRequest.Builder newRequestBuilder(Route route) throws URISyntaxException {
+		return newRequestBuilder(route, null);
+	}
+	
+	private HttpRequest.Builder newRequestBuilder(Route route, RequestHeaders requestHeaders)
+					throws URISyntaxException {
+		if (route == null) {
+			throw logger.throwing(new IllegalArgumentException("The argument <route> must not be null"));
+		}
+		HttpRequest.Builder requestBuilder = new RoutedRequest.Builder(HttpRequest.newBuilder(), route);
+		setUri(requestBuilder, route.getPath());
+		addHeaders(requestBuilder, requestHeaders);
+		return requestBuilder;
+	}
+	
+	/**
+	 * Sends a GET request, through the cache and the coalescer if they are enabled.
+	 */
+	private <R> HttpResponse<R> sendGet(HttpRequest.Builder requestBuilder, Class<R> responseBodyClass)
+			throws HttpStatusCodeException,
+			HttpCircuitOpenException, HttpLimitExceededException,
+			HttpInvalidResponseBodyType, IOException, InterruptedException {
+		
+		requestBuilder.GET();
+		
+		if (responseCache != null || requestCoalescer != null) {
+			BodyConverter<R> converter = createBodyConverter(responseBodyClass);
+			if (converter != null) {
+				return sendBuffered(requestBuilder, converter);
+			}
+		}
+
+		Hedger hedger = this.hedger;
+		if (hedger != null && responseBodyClass != null && !responseBodyClass.equals(InputStream.class)
+				&& !responseBodyClass.equals(Stream.class) && !responseBodyClass.equals(PooledBody.class)) {
+			return sendHedged(hedger, requestBuilder.build(), createBodyHandler(responseBodyClass, null, false));
+		}
 
+		HttpResponse<R> httpResponse = (HttpResponse<R>) send(requestBuilder.build(), null, responseBodyClass, null);
+		return httpResponse;
+	}
+	
+	/**
+	 * Sends a GET request with a JSON response, through the cache and the
+	 * coalescer if they are enabled.
+	 */
+	private <R> HttpResponse<R> sendGet(HttpRequest.Builder requestBuilder, TypeReference<R> responseBodyType)
+			throws HttpStatusCodeException,
+			HttpCircuitOpenException, HttpLimitExceededException,
+			HttpInvalidResponseBodyType, IOException, InterruptedException {
+		
+		requestBuilder.GET();
+		
+		if ((responseCache != null || requestCoalescer != null) && jsonBodies != null) {
+			return sendBuffered(requestBuilder, createBodyConverter(responseBodyType.getType()));
+		}
+		
+		Hedger hedger = this.hedger;
+		JsonBodies jsonBodies = this.jsonBodies;
+		if (hedger != null && jsonBodies != null) {
+			return sendHedged(hedger, requestBuilder.build(), jsonBodies.<R>handler(responseBodyType.getType(), false));
+		}
+		
+		return send(requestBuilder.build(), null, createJsonBodyHandler(responseBodyType));
+	}
 	
 	/**
 	 * Sets the URI in the request builder. It will be set as baseUrl + path.
 	 * The path is given as argument and the baseUrl has been given in the
-	 * constructor.
+	 * constructor. If possible the path is resolved against the parsed base
+	 * URL, so only the path is parsed.
 	 * 
 	 * @param builder The builder object on which the URL will be set.
 	 * 
@@ -365,6 +3538,11 @@ public class HttpClient {
 	private void setUri(HttpRequest.Builder builder, String path)
 					throws URISyntaxException {
 		try {
+			URI baseUri = this.baseUri;
+			if (baseUri != null && path != null && isResolvable(path)) {
+				builder.uri(baseUri.resolve(new URI(path.substring(1))));
+				return;
+			}
 			String uri = baseUrl;
 			if (path != null) {
 				uri += path;
@@ -376,51 +3554,95 @@ public class HttpClient {
 	}
 	
 	/**
-	 * Adds the headers to the request builder.
+	 * Parses the base URL for {@link #setUri(HttpRequest.Builder, String)}.
 	 * 
-	 * @param builder
+	 * @param baseUrl The base URL
+	 * @return The base URL with a "/" at the end of its path, or null if
+	 *         resolving a path against it could give another URL than
+	 *         appending the path
 	 */
-	private void addHeaders(HttpRequest.Builder builder) {
-		Set<String> keys = headers.keySet();
-		for (String key : keys) {
-			String value = headers.get(key);
-			logger.debug("Add header '" + key + "' with value '" + value + "'");
-			builder.header(key, value);
+	private static URI parseBaseUri(String baseUrl) {
+		if (baseUrl == null || baseUrl.endsWith("/")) {
+			return null;
+		}
+		try {
+			URI uri = new URI(baseUrl + "/");
+			if (!uri.isAbsolute() || uri.isOpaque() || uri.getRawAuthority() == null
+					|| uri.getRawQuery() != null || uri.getRawFragment() != null
+					|| !uri.normalize().equals(uri)) {
+				return null;
+			}
+			return uri;
+		} catch (URISyntaxException e) {
+			// The error is reported when a request is built
+			return null;
 		}
 	}
 	
-	private void logHeaders(HttpHeaders headers) {
-		if (headers == null) {
-			return;
+	/**
+	 * Checks whether resolving the path against {@link #baseUri} gives the
+	 * same URL as appending it to {@link #baseUrl}. This is the case for an
+	 * absolute path without empty, "." and ".." segments whose first
+	 * segment contains no ":", which would be read as scheme.
+	 * 
+	 * @param path The path and query
+	 * @return true if the path can be resolved
+	 */
+	private static boolean isResolvable(String path) {
+		if (path.isEmpty() || path.charAt(0) != '/') {
+			return false;
+		}
+		int segmentStart = 1;
+		boolean firstSegment = true;
+		for (int i = 1; i <= path.length(); i++) {
+			char c = i < path.length() ? path.charAt(i) : '?';
+			if (c == '#') {
+				return false;
+			}
+			if (c == ':' && firstSegment) {
+				return false;
+			}
+			if (c == '/' || c == '?') {
+				int length = i - segmentStart;
+				boolean dots = length == 1 && path.charAt(segmentStart) == '.'
+						|| length == 2 && path.startsWith("..", segmentStart);
+				if ((length == 0 && c == '/') || dots) {
+					return false;
+				}
+				if (c == '?') {
+					// The query is taken as it is, but must not contain a fragment
+					return path.indexOf('#', i) < 0;
+				}
+				segmentStart = i + 1;
+				firstSegment = false;
+			}
 		}
-		logger.info("    Headers:");
-    	String keyWithValues = "";
-    	Map<String, List<String>> map = headers.map();
-    	Set<String> keys = map.keySet();
-    	for (String key : keys) {
-    		keyWithValues = key + " = ";
-    		for (String value : map.get(key)) {
-    			keyWithValues += value;
-    		}
-    		logger.info("        {}", keyWithValues);
-    	}
+		return true;
 	}
 	
 	/**
-	 * Logs the HTTP request
-	 * @param <T>
-	 * @param request
-	 * @param body
+	 * Adds the headers and the request timeout to the request builder.
+	 * 
+	 * @param builder
+	 * @param requestHeaders Headers of this request which replace default
+	 *                       headers with the same name, or null
 	 */
-	private <T> void logSendingHttpRequest(HttpRequest request, T body) {
-		logger.info("Sending HTTP request: ");
-		logger.info("    {}", request.uri());
-		logger.info("    {}", request.method());
-		logHeaders(request.headers());
-		if (body != null) {
-			if (body instanceof String) {
-				logger.info("    Body = {}", body);
-			}
+	private void addHeaders(HttpRequest.Builder builder, RequestHeaders requestHeaders) {
+		WireLogger wireLogger = this.wireLogger;
+		RequestHeaders headers = this.headers;
+		headers.applyTo(builder, requestHeaders, wireLogger);
+		if (requestHeaders != null) {
+			requestHeaders.applyTo(builder, null, wireLogger);
+		}
+		CompressionPolicy compression = this.compressionPolicy;
+		if (compression != null && compression.isDecompressResponses()
+				&& !headers.contains("Accept-Encoding")
+				&& (requestHeaders == null || !requestHeaders.contains("Accept-Encoding"))) {
+			builder.header("Accept-Encoding", CompressionBodies.ACCEPT_ENCODING);
+		}
+		Duration timeout = this.requestTimeout;
+		if (timeout != null) {
+			builder.timeout(timeout);
 		}
 	}
 	
@@ -479,6 +3701,9 @@ public class HttpClient {
 			    },
 			    null);
 			logger.debug("SSL context created");
+			synchronized (transportLock) {
+				this.transport = null;
+			}
 		} catch (NoSuchAlgorithmException | KeyManagementException e) {
 			logger.fatal("Failed to create SSL context");
 			sslContext = null;
@@ -0,0 +1,216 @@
+package com.starcode88.http;
+
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Settings of the underlying java.net.http.HttpClient (the "transport").
+ * An instance is immutable, use {@link #newBuilder()} to create one and
+ * pass it to {@link HttpClient#setTransportConfig(HttpTransportConfig)}.
+ * The transport is built once from these settings and then reused for
+ * all requests, so that connections and TLS sessions are kept alive.
+ * <p>
+ * The keep-alive timeout and the size of the connection pool are not part
+ * of these settings. The JDK reads them only from the system properties
+ * {@code jdk.httpclient.keepalive.timeout} (seconds, default 1200) and
+ * {@code jdk.httpclient.connectionPoolSize} (default 0, unlimited), once
+ * when the first transport of the JVM is built. They apply to all clients
+ * of the JVM, so the application sets them itself, e.g. with
+ * {@code -Djdk.httpclient.keepalive.timeout=30}.
+ */
+public class HttpTransportConfig {
+
+	private static final HttpTransportConfig DEFAULTS = newBuilder().build();
+
+	private final Executor executor;
+
+	private final Version version;
+
+	private final Duration connectTimeout;
+
+	private final Redirect followRedirects;
+
+	private final boolean virtualThreads;
+
+	private HttpTransportConfig(Builder builder) {
+		this.executor = builder.executor;
+		this.version = builder.version;
+		this.connectTimeout = builder.connectTimeout;
+		this.followRedirects = builder.followRedirects;
+		this.virtualThreads = builder.virtualThreads;
+	}
+
+	/**
+	 * @return The default settings, they are the same as the defaults of
+	 *         java.net.http.HttpClient.newBuilder()
+	 */
+	public static HttpTransportConfig defaults() {
+		return DEFAULTS;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return A builder which is initialized with the values of this config
+	 */
+	public Builder toBuilder() {
+		Builder builder = new Builder();
+		builder.executor = this.executor;
+		builder.version = this.version;
+		builder.connectTimeout = this.connectTimeout;
+		builder.followRedirects = this.followRedirects;
+		builder.virtualThreads = this.virtualThreads;
+		return builder;
+	}
+
+	/**
+	 * @return The executor for asynchronous tasks of the transport or null
+	 *         if the default executor of the JDK will be used
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @return The preferred HTTP version or null for the JDK default (HTTP/2
+	 *         with fallback to HTTP/1.1)
+	 */
+	public Version getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The connect timeout or null if there is no timeout
+	 */
+	public Duration getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public Redirect getFollowRedirects() {
+		return followRedirects;
+	}
+
+	/**
+	 * @return true if the transport runs its tasks on virtual threads
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * @return true if the running JDK supports virtual threads, see
+	 *         {@link Builder#virtualThreads(boolean)}
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		return VirtualThreads.isSupported();
+	}
+
+	/**
+	 * Builds a new transport from these settings.
+	 *
+	 * @param sslContext SSL context to use or null for the default context
+	 * @param virtualThreadExecutor Supplies the virtual thread executor if
+	 *        virtual threads are enabled and no executor is set. The owner
+	 *        of the transport reuses it for rebuilt transports and shuts it
+	 *        down when it is closed.
+	 * @return The transport
+	 */
+	java.net.http.HttpClient buildTransport(javax.net.ssl.SSLContext sslContext,
+			Supplier<? extends Executor> virtualThreadExecutor) {
+		java.net.http.HttpClient.Builder builder = java.net.http.HttpClient.newBuilder();
+		if (executor != null) {
+			builder.executor(executor);
+		} else if (virtualThreads) {
+			builder.executor(virtualThreadExecutor.get());
+		}
+		if (version != null) {
+			builder.version(version);
+		}
+		if (connectTimeout != null) {
+			builder.connectTimeout(connectTimeout);
+		}
+		builder.followRedirects(followRedirects);
+		if (sslContext != null) {
+			builder.sslContext(sslContext);
+		}
+		return builder.build();
+	}
+
+	public static class Builder {
+
+		private Executor executor;
+
+		private Version version;
+
+		private Duration connectTimeout;
+
+		private Redirect followRedirects = Redirect.NEVER;
+
+		private boolean virtualThreads;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param executor Executor for the asynchronous tasks of the
+		 *                 transport, null means the default executor
+		 * @return this builder
+		 */
+		public Builder executor(Executor executor) {
+			this.executor = executor;
+			return this;
+		}
+
+		public Builder version(Version version) {
+			this.version = version;
+			return this;
+		}
+
+		public Builder connectTimeout(Duration connectTimeout) {
+			if (connectTimeout != null && (connectTimeout.isNegative() || connectTimeout.isZero())) {
+				throw new IllegalArgumentException("Connect timeout must be positive: " + connectTimeout);
+			}
+			this.connectTimeout = connectTimeout;
+			return this;
+		}
+
+		public Builder followRedirects(Redirect followRedirects) {
+			if (followRedirects == null) {
+				throw new IllegalArgumentException("The argument <followRedirects> must not be null");
+			}
+			this.followRedirects = followRedirects;
+			return this;
+		}
+
+		/**
+		 * Runs the tasks of the transport on virtual threads, one per task.
+		 * Blocking calls like {@link HttpClient#GET(String, Class)} then
+		 * scale to many thousands of concurrent requests, if the callers
+		 * themselves run on virtual threads, see
+		 * {@link HttpClient#execute(java.util.Collection)}. An executor set by
+		 * {@link #executor(Executor)} takes precedence.
+		 *
+		 * @param virtualThreads true to enable virtual threads
+		 * @return this builder
+		 * @throws UnsupportedOperationException Will be thrown if virtual
+		 *         threads are enabled but the JDK is older than 21
+		 */
+		public Builder virtualThreads(boolean virtualThreads) {
+			if (virtualThreads && !VirtualThreads.isSupported()) {
+				throw new UnsupportedOperationException("Virtual threads require JDK 21 or later, current version is "
+						+ System.getProperty("java.version"));
+			}
+			this.virtualThreads = virtualThreads;
+			return this;
+		}
+
+		public HttpTransportConfig build() {
+			return new HttpTransportConfig(this);
+		}
+	}
+}
@@ -1,9 +1,66 @@
 package com.starcode88.http;
 
 import java.net.HttpURLConnection;
+import java.net.http.HttpHeaders;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Optional;
 
 public class HttpUtils {
 
+	/**
+	 * Gets the charset from the Content-Type header, e.g.
+	 * "text/plain; charset=ISO-8859-1".
+	 * 
+	 * @param headers The headers of a request or response
+	 * @return The charset or UTF-8 if the header has no or an unknown charset
+	 */
+	public static Charset getCharset(HttpHeaders headers) {
+		Optional<String> contentType = headers.firstValue("Content-Type");
+		if (contentType.isEmpty()) {
+			return StandardCharsets.UTF_8;
+		}
+		String value = contentType.get();
+		int index = value.toLowerCase().indexOf("charset=");
+		if (index < 0) {
+			return StandardCharsets.UTF_8;
+		}
+		int start = index + "charset=".length();
+		int end = value.indexOf(';', start);
+		String name = (end < 0 ? value.substring(start) : value.substring(start, end)).trim();
+		if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"")) {
+			name = name.substring(1, name.length() - 1);
+		}
+		try {
+			return Charset.forName(name);
+		} catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+			return StandardCharsets.UTF_8;
+		}
+	}
+
+	/**
+	 * Percent-encodes a path segment as UTF-8, '/' is encoded too.
+	 *
+	 * @param segment The segment, e.g. "a b/c"
+	 * @return The encoded segment, e.g. "a%20b%2Fc"
+	 */
+	public static String encodePathSegment(String segment) {
+		return PercentEncoder.encode(segment, PercentEncoder.PATH_SEGMENT);
+	}
+
+	/**
+	 * Percent-encodes the name or value of a query parameter as UTF-8.
+	 * Unlike URLEncoder a space becomes "%20" and not "+".
+	 *
+	 * @param value The name or value, e.g. "a&b=c"
+	 * @return The encoded value, e.g. "a%26b%3Dc"
+	 */
+	public static String encodeQueryParameter(String value) {
+		return PercentEncoder.encode(value, PercentEncoder.UNRESERVED);
+	}
+
 	public static String getStatusText(int statusCode) {
 	    switch (statusCode) {
 	        case HttpURLConnection.HTTP_OK:
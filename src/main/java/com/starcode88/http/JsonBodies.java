@@ -0,0 +1,110 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Converts request and response bodies from and to JSON with Jackson.
+ * The ObjectReader and ObjectWriter of each type are created once and
+ * cached. Bodies are written to and read from bytes directly, there is
+ * no intermediate String.
+ */
+final class JsonBodies {
+
+	static final String CONTENT_TYPE = "application/json";
+
+	private final ObjectMapper mapper;
+
+	private final ConcurrentHashMap<Type, ObjectReader> readers = new ConcurrentHashMap<Type, ObjectReader>();
+
+	private final ConcurrentHashMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<Class<?>, ObjectWriter>();
+
+	JsonBodies(ObjectMapper mapper) {
+		this.mapper = mapper;
+	}
+
+	ObjectMapper getMapper() {
+		return mapper;
+	}
+
+	ObjectReader reader(Type type) {
+		ObjectReader reader = readers.get(type);
+		if (reader == null) {
+			reader = readers.computeIfAbsent(type, t -> mapper.readerFor(mapper.getTypeFactory().constructType(t)));
+		}
+		return reader;
+	}
+
+	ObjectWriter writer(Class<?> type) {
+		ObjectWriter writer = writers.get(type);
+		if (writer == null) {
+			writer = writers.computeIfAbsent(type, t -> mapper.writerFor(t));
+		}
+		return writer;
+	}
+
+	/**
+	 * Serializes the body into chunks of bytes.
+	 *
+	 * @param body The body
+	 * @return The serialized body
+	 * @throws IOException Will be thrown if the body can not be serialized
+	 */
+	ByteChunksOutputStream serialize(Object body) throws IOException {
+		ByteChunksOutputStream out = new ByteChunksOutputStream();
+		writer(body.getClass()).writeValue(out, body);
+		return out;
+	}
+
+	/**
+	 * Creates a handler which reads the body as JSON. A 204 response has
+	 * the body null. A response whose status code is not 2xx has a preview
+	 * of the error body as String, see {@link StreamingBodyHandlers}.
+	 *
+	 * @param <R> The type of the body
+	 * @param type The type of the body
+	 * @param blocking If true the body is parsed from the InputStream
+	 *                 of the response when it is resolved on the calling
+	 *                 thread, see {@link DeferredBody}. Otherwise it is
+	 *                 received as byte[] and parsed by the transport.
+	 * @return The handler
+	 */
+	@SuppressWarnings("unchecked") // A DeferredBody is resolved to R before
+								   // the response is given to the caller
+	<R> BodyHandler<R> handler(Type type, boolean blocking) {
+		ObjectReader reader = reader(type);
+		return StreamingBodyHandlers.onSuccess(responseInfo -> {
+			if (responseInfo.statusCode() == 204) {
+				return BodySubscribers.replacing(null);
+			}
+			if (blocking) {
+				BodySubscriber<?> subscriber = BodySubscribers.mapping(BodySubscribers.ofInputStream(),
+						in -> (DeferredBody<R>) () -> readValue(reader, in));
+				return (BodySubscriber<R>) subscriber;
+			}
+			return BodySubscribers.mapping(BodySubscribers.ofByteArray(), bytes -> {
+				try {
+					return reader.readValue(bytes);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		});
+	}
+
+	private static <R> R readValue(ObjectReader reader, InputStream in) throws IOException {
+		try (InputStream body = in) {
+			return reader.readValue(body);
+		}
+	}
+}
@@ -0,0 +1,273 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * A multipart/form-data body (RFC 7578) which is streamed while it is
+ * sent. Files are read through a FileChannel and streams chunk by chunk,
+ * so memory use does not depend on the size of the parts:
+ * <pre>
+ * MultipartBody body = MultipartBody.newBuilder()
+ *     .field("description", "Nightly build")
+ *     .file("artifact", Paths.get("build/app.zip"), "application/zip")
+ *     .build();
+ * client.POST("/uploads", body, String.class);
+ * </pre>
+ * {@link HttpClient} sets the Content-Type header with the boundary,
+ * unless the request already has one. The Content-Length is known in
+ * advance if every stream part has a length, otherwise the body is sent
+ * chunked. The body can be sent more than once, e.g. for a retry, the
+ * supplier of a stream part is then called again.
+ */
+public final class MultipartBody implements BodyPublisher {
+
+	private static final String BOUNDARY_CHARACTERS =
+			"0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+	private final String boundary;
+
+	private final int parts;
+
+	private final StreamingBodyPublishers.SourcePublisher publisher;
+
+	private MultipartBody(Builder builder) {
+		this.boundary = builder.boundary;
+		this.parts = builder.parts;
+		List<StreamingBodyPublishers.Source> sources = new ArrayList<StreamingBodyPublishers.Source>(builder.sources);
+		sources.add(StreamingBodyPublishers.bytes(
+				("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII)));
+		this.publisher = new StreamingBodyPublishers.SourcePublisher(StreamingBodyPublishers.sequence(sources));
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	public String getBoundary() {
+		return boundary;
+	}
+
+	/**
+	 * @return The value of the Content-Type header, e.g.
+	 *         "multipart/form-data; boundary=..."
+	 */
+	public String getContentType() {
+		return "multipart/form-data; boundary=" + boundary;
+	}
+
+	/**
+	 * @return The number of bytes of the body or -1 if a stream part has
+	 *         no length
+	 */
+	@Override
+	public long contentLength() {
+		return publisher.contentLength();
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+		publisher.subscribe(subscriber);
+	}
+
+	@Override
+	public String toString() {
+		return "multipart/form-data, " + parts + " parts, " + contentLength() + " bytes";
+	}
+
+	public static class Builder {
+
+		private final List<StreamingBodyPublishers.Source> sources = new ArrayList<StreamingBodyPublishers.Source>();
+
+		private String boundary;
+
+		private int parts = 0;
+
+		private Builder() {
+			StringBuilder random = new StringBuilder("----starcode88");
+			ThreadLocalRandom generator = ThreadLocalRandom.current();
+			for (int i = 0; i < 24; i++) {
+				random.append(BOUNDARY_CHARACTERS.charAt(generator.nextInt(BOUNDARY_CHARACTERS.length())));
+			}
+			this.boundary = random.toString();
+		}
+
+		/**
+		 * @param boundary The boundary between the parts, 1 to 70
+		 *                 characters which must not occur in any part.
+		 *                 By default a random boundary is used.
+		 * @return this builder
+		 */
+		public Builder boundary(String boundary) {
+			if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+				throw new IllegalArgumentException("The argument <boundary> must have 1 to 70 characters");
+			}
+			for (int i = 0; i < boundary.length(); i++) {
+				char c = boundary.charAt(i);
+				if (c < 0x20 || c > 0x7E || c == '"') {
+					throw new IllegalArgumentException("Invalid character in the argument <boundary>");
+				}
+			}
+			if (parts > 0) {
+				throw new IllegalStateException("The boundary must be set before the first part");
+			}
+			this.boundary = boundary;
+			return this;
+		}
+
+		/**
+		 * Adds a text field, the value is sent as UTF-8.
+		 *
+		 * @param name The name of the field
+		 * @param value The value
+		 * @return this builder
+		 */
+		public Builder field(String name, String value) {
+			if (value == null) {
+				throw new IllegalArgumentException("The argument <value> must not be null");
+			}
+			return add(name, null, null, StreamingBodyPublishers.bytes(value.getBytes(StandardCharsets.UTF_8)));
+		}
+
+		/**
+		 * Adds bytes as file part.
+		 *
+		 * @param name The name of the field
+		 * @param filename The filename or null
+		 * @param contentType The content type, e.g. "application/json"
+		 * @param bytes The content, it is not copied
+		 * @return this builder
+		 */
+		public Builder part(String name, String filename, String contentType, byte[] bytes) {
+			if (bytes == null) {
+				throw new IllegalArgumentException("The argument <bytes> must not be null");
+			}
+			return add(name, filename, contentType, StreamingBodyPublishers.bytes(bytes));
+		}
+
+		/**
+		 * Adds a file as application/octet-stream, the filename is the name
+		 * of the file.
+		 *
+		 * @param name The name of the field
+		 * @param file The file
+		 * @return this builder
+		 * @throws IOException Will be thrown if the size of the file can not be read
+		 */
+		public Builder file(String name, Path file) throws IOException {
+			return file(name, file, "application/octet-stream");
+		}
+
+		/**
+		 * Adds a file. Its size is read now, the content while the body is
+		 * sent.
+		 *
+		 * @param name The name of the field
+		 * @param file The file
+		 * @param contentType The content type, e.g. "application/zip"
+		 * @return this builder
+		 * @throws IOException Will be thrown if the size of the file can not be read
+		 */
+		public Builder file(String name, Path file, String contentType) throws IOException {
+			if (file == null) {
+				throw new IllegalArgumentException("The argument <file> must not be null");
+			}
+			return add(name, file.getFileName().toString(), contentType,
+					StreamingBodyPublishers.file(file, Files.size(file)));
+		}
+
+		/**
+		 * Adds a stream. The supplier is called each time the body is sent,
+		 * the stream is closed after its part.
+		 *
+		 * @param name The name of the field
+		 * @param filename The filename or null
+		 * @param contentType The content type, e.g. "text/plain"
+		 * @param streamSupplier Opens the stream
+		 * @param length The number of bytes of the stream or -1 if unknown,
+		 *               then the body is sent chunked
+		 * @return this builder
+		 */
+		public Builder stream(String name, String filename, String contentType,
+				Supplier<? extends InputStream> streamSupplier, long length) {
+			if (streamSupplier == null) {
+				throw new IllegalArgumentException("The argument <streamSupplier> must not be null");
+			}
+			if (length < -1) {
+				throw new IllegalArgumentException("The argument <length> must be -1 or positive");
+			}
+			return add(name, filename, contentType, StreamingBodyPublishers.inputStream(streamSupplier, length));
+		}
+
+		private Builder add(String name, String filename, String contentType, StreamingBodyPublishers.Source content) {
+			if (name == null || name.isEmpty()) {
+				throw new IllegalArgumentException("The argument <name> must not be empty");
+			}
+			StringBuilder header = new StringBuilder();
+			if (parts > 0) {
+				header.append("\r\n");
+			}
+			header.append("--").append(boundary).append("\r\n");
+			header.append("Content-Disposition: form-data; name=\"");
+			appendQuoted(name, header);
+			header.append('"');
+			if (filename != null) {
+				header.append("; filename=\"");
+				appendQuoted(filename, header);
+				header.append('"');
+			}
+			header.append("\r\n");
+			if (contentType != null) {
+				if (contentType.indexOf('\r') >= 0 || contentType.indexOf('\n') >= 0) {
+					throw new IllegalArgumentException("Invalid character in the argument <contentType>");
+				}
+				header.append("Content-Type: ").append(contentType).append("\r\n");
+			}
+			header.append("\r\n");
+			sources.add(StreamingBodyPublishers.bytes(header.toString().getBytes(StandardCharsets.UTF_8)));
+			sources.add(content);
+			parts++;
+			return this;
+		}
+
+		/**
+		 * Escapes a name like browsers do (WHATWG HTML), so it can not end
+		 * the quoted string or the header.
+		 */
+		private static void appendQuoted(String value, StringBuilder out) {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"') {
+					out.append("%22");
+				} else if (c == '\r') {
+					out.append("%0D");
+				} else if (c == '\n') {
+					out.append("%0A");
+				} else {
+					out.append(c);
+				}
+			}
+		}
+
+		/**
+		 * @return The body
+		 * @throws IllegalStateException Will be thrown if no part has been added
+		 */
+		public MultipartBody build() {
+			if (parts == 0) {
+				throw new IllegalStateException("A multipart body needs at least one part");
+			}
+			return new MultipartBody(this);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.starcode88.http;
+
+/**
+ * Percent-encoding of URI components (RFC 3986) as UTF-8. The characters
+ * are appended to a StringBuilder one by one, without regular expressions,
+ * intermediate Strings or byte arrays.
+ */
+final class PercentEncoder {
+
+	/** Only the unreserved characters are kept, e.g. for query parameters */
+	static final boolean[] UNRESERVED = allowed("");
+
+	/** Characters which may appear in a path segment, '/' is encoded */
+	static final boolean[] PATH_SEGMENT = allowed("!$&'()*+,;=:@");
+
+	/** Unreserved and reserved characters are kept */
+	static final boolean[] RESERVED = allowed("!$&'()*+,;=:@/?#[]");
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private PercentEncoder() {
+	}
+
+	private static boolean[] allowed(String extra) {
+		boolean[] allowed = new boolean[128];
+		for (char c = 'a'; c <= 'z'; c++) {
+			allowed[c] = true;
+		}
+		for (char c = 'A'; c <= 'Z'; c++) {
+			allowed[c] = true;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			allowed[c] = true;
+		}
+		allowed['-'] = true;
+		allowed['.'] = true;
+		allowed['_'] = true;
+		allowed['~'] = true;
+		for (int i = 0; i < extra.length(); i++) {
+			allowed[extra.charAt(i)] = true;
+		}
+		return allowed;
+	}
+
+	/**
+	 * Appends the percent-encoded text.
+	 *
+	 * @param text The text to encode
+	 * @param allowed The ASCII characters which are not encoded, e.g. {@link #UNRESERVED}
+	 * @param keepEncoded true to keep valid percent-encoded triplets like "%2F" as they are
+	 * @param out Receives the encoded text
+	 */
+	static void encode(CharSequence text, boolean[] allowed, boolean keepEncoded, StringBuilder out) {
+		encode(text, 0, allowed, keepEncoded, out);
+	}
+
+	private static void encode(CharSequence text, int start, boolean[] allowed, boolean keepEncoded,
+			StringBuilder out) {
+		int length = text.length();
+		for (int i = start; i < length; i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				if (allowed[c] || (keepEncoded && c == '%' && isEncoded(text, i))) {
+					out.append(c);
+				} else {
+					appendByte(c, out);
+				}
+			} else if (c < 0x800) {
+				appendByte(0xC0 | (c >> 6), out);
+				appendByte(0x80 | (c & 0x3F), out);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(text.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, text.charAt(++i));
+				appendByte(0xF0 | (codePoint >> 18), out);
+				appendByte(0x80 | ((codePoint >> 12) & 0x3F), out);
+				appendByte(0x80 | ((codePoint >> 6) & 0x3F), out);
+				appendByte(0x80 | (codePoint & 0x3F), out);
+			} else if (Character.isSurrogate(c)) {
+				// A lone surrogate can not be encoded as UTF-8, like String.getBytes() we use '?'
+				appendByte('?', out);
+			} else {
+				appendByte(0xE0 | (c >> 12), out);
+				appendByte(0x80 | ((c >> 6) & 0x3F), out);
+				appendByte(0x80 | (c & 0x3F), out);
+			}
+		}
+	}
+
+	/**
+	 * @param text The text to encode
+	 * @param allowed The ASCII characters which are not encoded
+	 * @return The encoded text, the text itself if nothing has to be encoded
+	 */
+	static String encode(String text, boolean[] allowed) {
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c >= 0x80 || !allowed[c]) {
+				StringBuilder out = new StringBuilder(length + 16);
+				out.append(text, 0, i);
+				encode(text, i, allowed, false, out);
+				return out.toString();
+			}
+		}
+		return text;
+	}
+
+	private static boolean isEncoded(CharSequence text, int index) {
+		return index + 2 < text.length() && isHex(text.charAt(index + 1)) && isHex(text.charAt(index + 2));
+	}
+
+	private static boolean isHex(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F') || (c >= 'a' && c <= 'f');
+	}
+
+	private static void appendByte(int b, StringBuilder out) {
+		out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+	}
+}
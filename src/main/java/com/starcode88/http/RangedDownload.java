@@ -0,0 +1,360 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The file side of a parallel download: the preallocated part file, its
+ * ranges and the sidecar file with the progress of each range. The
+ * requests are sent by {@link HttpClient}.
+ * <p>
+ * Each range is written by one exchange at a time, the received buffers
+ * are written with positional writes into the shared channel without
+ * copying them. The progress is saved after the data has been forced to
+ * the disk, so the sidecar never claims bytes which could be lost.
+ */
+final class RangedDownload implements AutoCloseable {
+
+	/** Bytes received by all ranges after which the progress is saved */
+	static final long PROGRESS_INTERVAL = 8L * 1024 * 1024;
+
+	private final Path file;
+
+	private final Path partFile;
+
+	private final Path progressFile;
+
+	private final URI uri;
+
+	private final long length;
+
+	/** ETag or Last-Modified of the resource, null if unknown */
+	private final String validator;
+
+	/** true if the progress is saved */
+	private final boolean resumable;
+
+	private final List<Segment> segments;
+
+	private final FileChannel channel;
+
+	private final AtomicLong unsavedBytes = new AtomicLong();
+
+	private RangedDownload(Path file, URI uri, long length, String validator, boolean resumable,
+			List<Segment> segments, FileChannel channel) {
+		this.file = file;
+		this.partFile = partFileOf(file);
+		this.progressFile = progressFileOf(file);
+		this.uri = uri;
+		this.length = length;
+		this.validator = validator;
+		this.resumable = resumable;
+		this.segments = segments;
+		this.channel = channel;
+	}
+
+	/**
+	 * Opens the part file of a download. If the config allows it and the
+	 * sidecar file matches the resource, the progress of an earlier
+	 * download is loaded, otherwise the file is split into new ranges.
+	 *
+	 * @param file The file which receives the download
+	 * @param uri The URI of the resource
+	 * @param length The length of the resource in bytes
+	 * @param validator ETag or Last-Modified of the resource or null
+	 * @param config The settings of the download
+	 * @return The download
+	 * @throws IOException Will be thrown if the part file can not be created
+	 */
+	static RangedDownload open(Path file, URI uri, long length, String validator, DownloadConfig config)
+			throws IOException {
+		boolean resumable = config.isResume() && validator != null;
+		Path partFile = partFileOf(file);
+		List<Segment> segments = resumable ? loadProgress(file, uri, length, validator) : null;
+		FileChannel channel;
+		if (segments != null) {
+			channel = FileChannel.open(partFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} else {
+			Files.deleteIfExists(progressFileOf(file));
+			segments = split(length, config);
+			channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				// Allocates the file, the last byte is overwritten by the last range
+				channel.write(ByteBuffer.wrap(new byte[1]), length - 1);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+		return new RangedDownload(file, uri, length, validator, resumable, segments, channel);
+	}
+
+	static Path partFileOf(Path file) {
+		return file.resolveSibling(file.getFileName() + ".part");
+	}
+
+	static Path progressFileOf(Path file) {
+		return file.resolveSibling(file.getFileName() + ".progress");
+	}
+
+	/**
+	 * @return The number of ranges which are needed to cover the length
+	 */
+	static int rangeCount(long length, DownloadConfig config) {
+		return (int) Math.max(1, Math.min(config.getConnections(), length / config.getMinRangeSize()));
+	}
+
+	private static List<Segment> split(long length, DownloadConfig config) {
+		int count = rangeCount(length, config);
+		List<Segment> segments = new ArrayList<Segment>(count);
+		long size = length / count;
+		long start = 0;
+		for (int i = 0; i < count; i++) {
+			long end = i == count - 1 ? length - 1 : start + size - 1;
+			segments.add(new Segment(start, end, 0));
+			start = end + 1;
+		}
+		return segments;
+	}
+
+	/**
+	 * @return The ranges of the sidecar file or null if there is none or
+	 *         it belongs to another resource or another version of it
+	 */
+	private static List<Segment> loadProgress(Path file, URI uri, long length, String validator) {
+		Path progressFile = progressFileOf(file);
+		Path partFile = partFileOf(file);
+		try {
+			if (!Files.exists(progressFile) || !Files.exists(partFile) || Files.size(partFile) != length) {
+				return null;
+			}
+			Properties progress = new Properties();
+			try (InputStream in = Files.newInputStream(progressFile)) {
+				progress.load(in);
+			}
+			if (!uri.toString().equals(progress.getProperty("uri"))
+					|| !String.valueOf(length).equals(progress.getProperty("length"))
+					|| !validator.equals(progress.getProperty("validator"))) {
+				return null;
+			}
+			List<Segment> segments = new ArrayList<Segment>();
+			long expectedStart = 0;
+			for (String range : progress.getProperty("ranges", "").split(",")) {
+				int dash = range.indexOf('-');
+				int colon = range.indexOf(':');
+				long start = Long.parseLong(range.substring(0, dash));
+				long end = Long.parseLong(range.substring(dash + 1, colon));
+				long done = Long.parseLong(range.substring(colon + 1));
+				if (start != expectedStart || end < start || done < 0 || done > end - start + 1) {
+					return null;
+				}
+				segments.add(new Segment(start, end, done));
+				expectedStart = end + 1;
+			}
+			return expectedStart == length ? segments : null;
+		} catch (IOException | RuntimeException e) {
+			// A damaged sidecar file only costs the progress
+			return null;
+		}
+	}
+
+	List<Segment> getSegments() {
+		return segments;
+	}
+
+	/**
+	 * @return The number of bytes which have been written
+	 */
+	long getCompletedBytes() {
+		long completed = 0;
+		for (Segment segment : segments) {
+			completed += segment.done;
+		}
+		return completed;
+	}
+
+	/**
+	 * Creates the handler for the response of a range request. Only a 206
+	 * response for the requested range is written to the file. The body of
+	 * any other 2xx response is dropped, the caller detects it by the
+	 * status code. Other responses get the usual error preview.
+	 *
+	 * @param segment The range
+	 * @return The handler
+	 */
+	@SuppressWarnings("unchecked") // The dropped body is never read
+	BodyHandler<Void> handler(Segment segment) {
+		long position = segment.position();
+		return StreamingBodyHandlers.onSuccess(responseInfo -> {
+			if (isRange(responseInfo, position)) {
+				return new StreamingBodyHandlers.ChunkSubscriber(buffer -> write(segment, buffer));
+			}
+			return (BodySubscriber<Void>) (BodySubscriber<?>) new StreamingBodyHandlers.ErrorPreviewSubscriber(
+					0, StandardCharsets.ISO_8859_1);
+		});
+	}
+
+	/**
+	 * @param responseInfo The response
+	 * @param position The first byte which has been requested
+	 * @return true if the response is the range which starts at the position
+	 */
+	static boolean isRange(ResponseInfo responseInfo, long position) {
+		if (responseInfo.statusCode() != 206) {
+			return false;
+		}
+		String contentRange = responseInfo.headers().firstValue("Content-Range").orElse("");
+		return contentRange.startsWith("bytes " + position + "-");
+	}
+
+	private void write(Segment segment, ByteBuffer buffer) {
+		try {
+			long remaining = segment.end + 1 - segment.position();
+			if (buffer.remaining() > remaining) {
+				throw new IOException("The server sent more bytes than the range " + segment);
+			}
+			int written = 0;
+			while (buffer.hasRemaining()) {
+				written += channel.write(buffer, segment.position() + written);
+			}
+			segment.done += written;
+			if (unsavedBytes.addAndGet(written) >= PROGRESS_INTERVAL) {
+				unsavedBytes.set(0);
+				saveProgress();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Forces the written data to the disk and then stores the progress of
+	 * the ranges in the sidecar file.
+	 *
+	 * @throws IOException Will be thrown if the sidecar file can not be written
+	 */
+	synchronized void saveProgress() throws IOException {
+		if (!resumable || !channel.isOpen()) {
+			return;
+		}
+		StringBuilder ranges = new StringBuilder();
+		for (Segment segment : segments) {
+			if (ranges.length() > 0) {
+				ranges.append(',');
+			}
+			ranges.append(segment.start).append('-').append(segment.end).append(':').append(segment.done);
+		}
+		channel.force(false);
+		Properties progress = new Properties();
+		progress.setProperty("uri", uri.toString());
+		progress.setProperty("length", String.valueOf(length));
+		progress.setProperty("validator", validator);
+		progress.setProperty("ranges", ranges.toString());
+		Path tempFile = progressFile.resolveSibling(progressFile.getFileName() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(tempFile)) {
+			progress.store(out, null);
+		}
+		move(tempFile, progressFile);
+	}
+
+	/**
+	 * Moves the complete part file to the file and removes the sidecar file.
+	 *
+	 * @throws IOException Will be thrown if a range is incomplete or the
+	 *                     file can not be moved
+	 */
+	synchronized void complete() throws IOException {
+		for (Segment segment : segments) {
+			if (!segment.isComplete()) {
+				throw new IOException("The range " + segment + " is incomplete");
+			}
+		}
+		channel.force(true);
+		channel.close();
+		move(partFile, file);
+		Files.deleteIfExists(progressFile);
+	}
+
+	/**
+	 * Saves the progress of an incomplete download and closes the part file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!channel.isOpen()) {
+			return;
+		}
+		try {
+			saveProgress();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * One range of the file. It is written by one exchange at a time,
+	 * a retry continues after the last written byte.
+	 */
+	static final class Segment {
+
+		final long start;
+
+		/** The last byte of the range, inclusive like the Range header */
+		final long end;
+
+		/** Bytes of the range which have been written */
+		volatile long done;
+
+		Segment(long start, long end, long done) {
+			this.start = start;
+			this.end = end;
+			this.done = done;
+		}
+
+		long position() {
+			return start + done;
+		}
+
+		boolean isComplete() {
+			return position() > end;
+		}
+
+		/**
+		 * @return The value of the Range header for the missing bytes
+		 */
+		String rangeHeader() {
+			return "bytes=" + position() + "-" + end;
+		}
+
+		@Override
+		public String toString() {
+			return start + "-" + end;
+		}
+	}
+}
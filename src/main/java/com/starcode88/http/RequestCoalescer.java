@@ -0,0 +1,208 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.starcode88.http.exception.HttpCircuitOpenException;
+import com.starcode88.http.exception.HttpLimitExceededException;
+
+/**
+ * Lets identical GET requests which are in flight at the same time share
+ * one exchange. The first caller starts the exchange, all other callers
+ * with the same key wait for its response. The exchange is not owned by
+ * any caller: each caller waits with its own timeout and may be
+ * interrupted without affecting the others. The exchange is cancelled
+ * only when all callers have given up.
+ * <p>
+ * The shared response contains the raw bytes of the body. Every caller
+ * converts them into its own body object, so callers never share
+ * mutable state.
+ */
+final class RequestCoalescer {
+
+	private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+
+	/** Number of callers which have joined an exchange of another caller */
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * Creates the key of a request. Requests with the same key are expected
+	 * to return the same response.
+	 *
+	 * @param request The request
+	 * @return The key, built from method, URI and all headers
+	 */
+	static String key(HttpRequest request) {
+		// The header map is sorted case insensitive, so the key does not
+		// depend on the order in which the headers have been added
+		return request.method() + ' ' + request.uri() + ' ' + request.headers().map();
+	}
+
+	/**
+	 * Joins the exchange for the given key or starts it if there is none.
+	 *
+	 * @param key The key of the request, see {@link #key(HttpRequest)}
+	 * @param exchange Starts the exchange, it is only called if no exchange
+	 *                 with this key is in flight. Cancelling the returned
+	 *                 future must cancel the exchange.
+	 * @param timeout Maximum time this caller waits, null to wait without limit
+	 * @return The shared response
+	 * @throws IOException Will be thrown if the exchange failed or the timeout elapsed
+	 * @throws InterruptedException Will be thrown if this caller is interrupted while waiting
+	 * @throws HttpCircuitOpenException Will be thrown if the exchange has not been
+	 *                                  started because the circuit breaker is open
+	 * @throws HttpLimitExceededException Will be thrown if the exchange has not been
+	 *                                    started because the concurrency limit is exceeded
+	 */
+	HttpResponse<byte[]> join(String key, Supplier<CompletableFuture<HttpResponse<byte[]>>> exchange,
+				Duration timeout) throws IOException, InterruptedException, HttpCircuitOpenException, HttpLimitExceededException {
+		Flight flight;
+		while (true) {
+			flight = flights.get(key);
+			if (flight == null) {
+				// The flight counts its first caller already, so no other caller
+				// can leave it as last one before it has been started
+				Flight created = new Flight();
+				flight = flights.putIfAbsent(key, created);
+				if (flight == null) {
+					flight = created;
+					start(key, flight, exchange);
+					break;
+				}
+			}
+			if (flight.enter()) {
+				coalesced.incrementAndGet();
+				break;
+			}
+			// All callers of this flight have given up, it is being cancelled
+			flights.remove(key, flight);
+		}
+		return await(key, flight, timeout);
+	}
+
+	/**
+	 * @return Number of callers which did not send their own request
+	 */
+	long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	private void start(String key, Flight flight, Supplier<CompletableFuture<HttpResponse<byte[]>>> exchange) {
+		CompletableFuture<HttpResponse<byte[]>> future;
+		try {
+			future = exchange.get();
+		} catch (RuntimeException e) {
+			flights.remove(key, flight);
+			flight.result.completeExceptionally(e);
+			return;
+		}
+		flight.exchange = future;
+		future.whenComplete((response, throwable) -> {
+			// Requests which arrive from now on start a new exchange
+			flights.remove(key, flight);
+			if (throwable != null) {
+				flight.result.completeExceptionally(throwable);
+			} else {
+				flight.result.complete(response);
+			}
+		});
+	}
+
+	private HttpResponse<byte[]> await(String key, Flight flight, Duration timeout)
+				throws IOException, InterruptedException, HttpCircuitOpenException, HttpLimitExceededException {
+		try {
+			if (timeout == null) {
+				return flight.result.get();
+			}
+			return flight.result.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			leave(key, flight);
+			throw new HttpTimeoutException("request timed out");
+		} catch (InterruptedException e) {
+			leave(key, flight);
+			throw e;
+		} catch (CancellationException e) {
+			throw new IOException("Shared request has been cancelled", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof HttpCircuitOpenException) {
+				throw (HttpCircuitOpenException) cause;
+			}
+			if (cause instanceof HttpLimitExceededException) {
+				throw (HttpLimitExceededException) cause;
+			}
+			if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Removes a caller which does not wait anymore. The last one cancels
+	 * the exchange.
+	 */
+	private void leave(String key, Flight flight) {
+		if (flight.leave()) {
+			flights.remove(key, flight);
+			CompletableFuture<HttpResponse<byte[]>> exchange = flight.exchange;
+			if (exchange != null) {
+				exchange.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * One shared exchange and the number of callers waiting for it.
+	 */
+	private static final class Flight {
+
+		final CompletableFuture<HttpResponse<byte[]>> result = new CompletableFuture<HttpResponse<byte[]>>();
+
+		volatile CompletableFuture<HttpResponse<byte[]>> exchange;
+
+		/** Number of waiting callers, -1 after the last one has left */
+		private int waiters = 1;
+
+		synchronized boolean enter() {
+			if (waiters < 0) {
+				return false;
+			}
+			waiters++;
+			return true;
+		}
+
+		/**
+		 * @return true if this was the last caller and the exchange is not done yet
+		 */
+		synchronized boolean leave() {
+			waiters--;
+			if (waiters == 0 && !result.isDone()) {
+				waiters = -1;
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package com.starcode88.http;
+
+import java.net.http.HttpRequest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable list of request headers, e.g. the default headers of a
+ * {@link HttpClient} or the headers of a single request:
+ * <pre>
+ * RequestHeaders auth = RequestHeaders.of("Authorization", "Bearer " + token);
+ * client.GET("/orders", auth, String.class);
+ * </pre>
+ * Names and values are validated when a header is added, so applying
+ * the headers to a request can not fail. Names are case-insensitive: a
+ * header replaces an existing header with the same name in any case.
+ * <p>
+ * An instance can be shared by any number of threads. Changes create a
+ * copy, which is cheap for the few headers a request usually has.
+ */
+public final class RequestHeaders {
+
+	/** No headers */
+	public static final RequestHeaders EMPTY = new RequestHeaders(new String[0], new String[0]);
+
+	/** Headers which are set by the transport, see java.net.http.HttpRequest.Builder#header */
+	private static final String[] RESTRICTED = { "Connection", "Content-Length", "Expect", "Host", "Upgrade" };
+
+	private final String[] names;
+
+	private final String[] values;
+
+	private RequestHeaders(String[] names, String[] values) {
+		this.names = names;
+		this.values = values;
+	}
+
+	/**
+	 * @param name The name of the header
+	 * @param value The value of the header
+	 * @return The headers with one header
+	 * @throws IllegalArgumentException Will be thrown if the name or the value is invalid
+	 */
+	public static RequestHeaders of(String name, String value) {
+		return EMPTY.with(name, value);
+	}
+
+	/**
+	 * @param headers The headers by name, in the order of the map
+	 * @return The headers
+	 * @throws IllegalArgumentException Will be thrown if a name or a value is invalid
+	 */
+	public static RequestHeaders of(Map<String, String> headers) {
+		RequestHeaders result = EMPTY;
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			result = result.with(header.getKey(), header.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy with the header added, an existing header with the
+	 * same name is replaced.
+	 *
+	 * @param name The name of the header
+	 * @param value The value of the header
+	 * @return The new headers
+	 * @throws IllegalArgumentException Will be thrown if the name or the value is invalid
+	 */
+	public RequestHeaders with(String name, String value) {
+		validateName(name);
+		validateValue(name, value);
+		int index = indexOf(name);
+		if (index >= 0) {
+			String[] newValues = values.clone();
+			String[] newNames = names.clone();
+			newNames[index] = name;
+			newValues[index] = value;
+			return new RequestHeaders(newNames, newValues);
+		}
+		String[] newNames = Arrays.copyOf(names, names.length + 1);
+		String[] newValues = Arrays.copyOf(values, values.length + 1);
+		newNames[names.length] = name;
+		newValues[values.length] = value;
+		return new RequestHeaders(newNames, newValues);
+	}
+
+	/**
+	 * @param name The name of the header
+	 * @return A copy without the header, or this if there is no such header
+	 */
+	public RequestHeaders without(String name) {
+		int index = indexOf(name);
+		if (index < 0) {
+			return this;
+		}
+		String[] newNames = new String[names.length - 1];
+		String[] newValues = new String[values.length - 1];
+		System.arraycopy(names, 0, newNames, 0, index);
+		System.arraycopy(values, 0, newValues, 0, index);
+		System.arraycopy(names, index + 1, newNames, index, names.length - index - 1);
+		System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+		return new RequestHeaders(newNames, newValues);
+	}
+
+	/**
+	 * @param name The name of the header, case-insensitive
+	 * @return The value or null if there is no such header
+	 */
+	public String get(String name) {
+		int index = indexOf(name);
+		return index < 0 ? null : values[index];
+	}
+
+	/**
+	 * @param name The name of the header, case-insensitive
+	 * @return true if there is a header with the name
+	 */
+	public boolean contains(String name) {
+		return indexOf(name) >= 0;
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	public boolean isEmpty() {
+		return names.length == 0;
+	}
+
+	/**
+	 * @return The headers by name in the order they have been added
+	 */
+	public Map<String, String> toMap() {
+		Map<String, String> map = new LinkedHashMap<String, String>();
+		for (int i = 0; i < names.length; i++) {
+			map.put(names[i], values[i]);
+		}
+		return Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * Adds the headers to a request builder, except those which are
+	 * overridden.
+	 *
+	 * @param builder The request builder
+	 * @param overrides Headers which replace these headers or null
+	 * @param wireLogger Logs each added header
+	 */
+	void applyTo(HttpRequest.Builder builder, RequestHeaders overrides, WireLogger wireLogger) {
+		for (int i = 0; i < names.length; i++) {
+			if (overrides == null || !overrides.contains(names[i])) {
+				wireLogger.logHeaderAdded(names[i], values[i]);
+				builder.header(names[i], values[i]);
+			}
+		}
+	}
+
+	private int indexOf(String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void validateName(String name) {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("The name of a header must not be empty");
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			// RFC 7230 token characters
+			if (c > 0x7E || c <= 0x20 || "\"(),/:;<=>?@[\\]{}".indexOf(c) >= 0) {
+				throw new IllegalArgumentException("Invalid character in the name of header " + name);
+			}
+		}
+		for (String restricted : RESTRICTED) {
+			if (restricted.equalsIgnoreCase(name)) {
+				throw new IllegalArgumentException("The header " + name + " is set by the transport");
+			}
+		}
+	}
+
+	private static void validateValue(String name, String value) {
+		if (value == null) {
+			throw new IllegalArgumentException("The value of header " + name + " must not be null");
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\r' || c == '\n' || c == 0 || c > 0xFF) {
+				throw new IllegalArgumentException("Invalid character in the value of header " + name);
+			}
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof RequestHeaders)) {
+			return false;
+		}
+		RequestHeaders other = (RequestHeaders) obj;
+		return Arrays.equals(names, other.names) && Arrays.equals(values, other.values);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(names) + Arrays.hashCode(values);
+	}
+
+	/**
+	 * @return The names of the headers, the values are left out because
+	 *         they often carry credentials
+	 */
+	@Override
+	public String toString() {
+		return "RequestHeaders " + Arrays.toString(names);
+	}
+}
@@ -0,0 +1,91 @@
+package com.starcode88.http;
+
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Optional;
+
+import com.starcode88.http.loadbalancer.Endpoint;
+
+/**
+ * A request which is sent to another URI than the original request, e.g.
+ * a hedge to a replica or a request to an {@link Endpoint} of the load
+ * balancer. Everything else, including the {@link Route} of a
+ * {@link RoutedRequest}, is taken from the original request, so the copy
+ * is made without building the request again.
+ */
+final class RetargetedRequest extends HttpRequest {
+
+	private final HttpRequest request;
+
+	private final URI uri;
+
+	private final Endpoint endpoint;
+
+	RetargetedRequest(HttpRequest request, URI uri) {
+		this(request, uri, null);
+	}
+
+	RetargetedRequest(HttpRequest request, URI uri, Endpoint endpoint) {
+		this.request = request;
+		this.uri = uri;
+		this.endpoint = endpoint;
+	}
+
+	/**
+	 * @return The original request
+	 */
+	HttpRequest getRequest() {
+		return request;
+	}
+
+	/**
+	 * @return The endpoint of the load balancer to which the request is
+	 *         sent, or null
+	 */
+	Endpoint getEndpoint() {
+		return endpoint;
+	}
+
+	@Override
+	public Optional<BodyPublisher> bodyPublisher() {
+		return request.bodyPublisher();
+	}
+
+	@Override
+	public String method() {
+		return request.method();
+	}
+
+	@Override
+	public Optional<Duration> timeout() {
+		return request.timeout();
+	}
+
+	@Override
+	public boolean expectContinue() {
+		return request.expectContinue();
+	}
+
+	@Override
+	public URI uri() {
+		return uri;
+	}
+
+	@Override
+	public Optional<Version> version() {
+		return request.version();
+	}
+
+	@Override
+	public HttpHeaders headers() {
+		return request.headers();
+	}
+
+	@Override
+	public String toString() {
+		return uri + " " + method();
+	}
+}
@@ -0,0 +1,73 @@
+package com.starcode88.http;
+
+/**
+ * The path and query of a request, expanded from a {@link UriTemplate}.
+ * The path is already percent-encoded and is added to the base URL of the
+ * client as it is. Metrics record the request under the template.
+ */
+public final class Route {
+
+	private final UriTemplate template;
+
+	private final String path;
+
+	Route(UriTemplate template, String path) {
+		this.template = template;
+		this.path = path;
+	}
+
+	/**
+	 * @return The template of the route
+	 */
+	public UriTemplate getTemplate() {
+		return template;
+	}
+
+	/**
+	 * @return The encoded path with query, e.g. "/users/42/orders?limit=10"
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Adds a query parameter which is not part of the template.
+	 *
+	 * @param name The name of the parameter
+	 * @param value The value, null returns this route
+	 * @return A new route with the parameter
+	 */
+	public Route query(String name, Object value) {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("The argument <name> must not be empty");
+		}
+		if (value == null) {
+			return this;
+		}
+		StringBuilder out = new StringBuilder(path.length() + name.length() + 16);
+		out.append(path).append(path.indexOf('?') < 0 ? '?' : '&');
+		PercentEncoder.encode(name, PercentEncoder.UNRESERVED, false, out);
+		out.append('=');
+		PercentEncoder.encode(String.valueOf(value), PercentEncoder.UNRESERVED, false, out);
+		return new Route(template, out.toString());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Route)) {
+			return false;
+		}
+		Route other = (Route) obj;
+		return other.path.equals(path) && other.template.equals(template);
+	}
+
+	@Override
+	public int hashCode() {
+		return path.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+}
@@ -0,0 +1,168 @@
+package com.starcode88.http;
+
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A request which knows the {@link Route} it has been built from. The
+ * transport accepts any implementation of HttpRequest, so the route
+ * travels with the request through retries, coalescing and the async
+ * path to the metrics.
+ */
+final class RoutedRequest extends HttpRequest {
+
+	private final HttpRequest request;
+
+	private final Route route;
+
+	private RoutedRequest(HttpRequest request, Route route) {
+		this.request = request;
+		this.route = route;
+	}
+
+	Route getRoute() {
+		return route;
+	}
+
+	@Override
+	public Optional<BodyPublisher> bodyPublisher() {
+		return request.bodyPublisher();
+	}
+
+	@Override
+	public String method() {
+		return request.method();
+	}
+
+	@Override
+	public Optional<Duration> timeout() {
+		return request.timeout();
+	}
+
+	@Override
+	public boolean expectContinue() {
+		return request.expectContinue();
+	}
+
+	@Override
+	public URI uri() {
+		return request.uri();
+	}
+
+	@Override
+	public Optional<Version> version() {
+		return request.version();
+	}
+
+	@Override
+	public HttpHeaders headers() {
+		return request.headers();
+	}
+
+	@Override
+	public String toString() {
+		return request.toString();
+	}
+
+	/**
+	 * Builds routed requests, all other settings are passed to a builder
+	 * of the JDK.
+	 */
+	static final class Builder implements HttpRequest.Builder {
+
+		private final HttpRequest.Builder builder;
+
+		private final Route route;
+
+		Builder(HttpRequest.Builder builder, Route route) {
+			this.builder = builder;
+			this.route = route;
+		}
+
+		@Override
+		public Builder uri(URI uri) {
+			builder.uri(uri);
+			return this;
+		}
+
+		@Override
+		public Builder expectContinue(boolean enable) {
+			builder.expectContinue(enable);
+			return this;
+		}
+
+		@Override
+		public Builder version(Version version) {
+			builder.version(version);
+			return this;
+		}
+
+		@Override
+		public Builder header(String name, String value) {
+			builder.header(name, value);
+			return this;
+		}
+
+		@Override
+		public Builder headers(String... headers) {
+			builder.headers(headers);
+			return this;
+		}
+
+		@Override
+		public Builder timeout(Duration duration) {
+			builder.timeout(duration);
+			return this;
+		}
+
+		@Override
+		public Builder setHeader(String name, String value) {
+			builder.setHeader(name, value);
+			return this;
+		}
+
+		@Override
+		public Builder GET() {
+			builder.GET();
+			return this;
+		}
+
+		@Override
+		public Builder POST(BodyPublisher bodyPublisher) {
+			builder.POST(bodyPublisher);
+			return this;
+		}
+
+		@Override
+		public Builder PUT(BodyPublisher bodyPublisher) {
+			builder.PUT(bodyPublisher);
+			return this;
+		}
+
+		@Override
+		public Builder DELETE() {
+			builder.DELETE();
+			return this;
+		}
+
+		@Override
+		public Builder method(String method, BodyPublisher bodyPublisher) {
+			builder.method(method, bodyPublisher);
+			return this;
+		}
+
+		@Override
+		public HttpRequest build() {
+			return new RoutedRequest(builder.build(), route);
+		}
+
+		@Override
+		public Builder copy() {
+			return new Builder(builder.copy(), route);
+		}
+	}
+}
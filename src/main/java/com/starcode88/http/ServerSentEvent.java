@@ -0,0 +1,50 @@
+package com.starcode88.http;
+
+/**
+ * One event of a text/event-stream, see
+ * {@link HttpClient#streamEvents(String, EventStreamConfig)}. An instance
+ * is immutable.
+ */
+public final class ServerSentEvent {
+
+	private final String id;
+
+	private final String event;
+
+	private final String data;
+
+	ServerSentEvent(String id, String event, String data) {
+		this.id = id;
+		this.event = event;
+		this.data = data;
+	}
+
+	/**
+	 * @return The last event ID of the stream when the event was received,
+	 *         or null if the server has not sent an ID yet. It is sent as
+	 *         Last-Event-ID header when the stream is reconnected.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return The type of the event, "message" if the server has not set one
+	 */
+	public String getEvent() {
+		return event;
+	}
+
+	/**
+	 * @return The data of the event, the lines of multi-line data are
+	 *         joined with "\n"
+	 */
+	public String getData() {
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return "ServerSentEvent [id=" + id + ", event=" + event + ", data=" + data + "]";
+	}
+}
@@ -0,0 +1,196 @@
+package com.starcode88.http;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Body handlers for streaming response types. The body of a successful
+ * response is handed to the caller while it is received, so that memory
+ * use does not depend on the size of the body. The body of an error
+ * response (status code is not 2xx) is not streamed. Instead at most
+ * {@link #ERROR_BODY_PREVIEW_LIMIT} bytes are read into a String and the
+ * rest is discarded by closing the connection. This String is the body
+ * of the response which is given to {@link com.starcode88.http.exception.HttpStatusCodeException}.
+ */
+final class StreamingBodyHandlers {
+
+	/** Maximum number of bytes of an error body which are read */
+	static final int ERROR_BODY_PREVIEW_LIMIT = 64 * 1024;
+
+	private StreamingBodyHandlers() {
+	}
+
+	/**
+	 * Uses the given handler for 2xx responses and reads a bounded preview
+	 * of the body as String for all other responses.
+	 *
+	 * @param <T> The type of the streamed body
+	 * @param handler Handler for successful responses
+	 * @return The handler
+	 */
+	@SuppressWarnings("unchecked") // The error body is only visible through
+								   // HttpStatusCodeException as HttpResponse<?>
+	static <T> BodyHandler<T> onSuccess(BodyHandler<T> handler) {
+		return responseInfo -> {
+			if (isSuccess(responseInfo)) {
+				return handler.apply(responseInfo);
+			}
+			return (BodySubscriber<T>) (BodySubscriber<?>) new ErrorPreviewSubscriber(
+					ERROR_BODY_PREVIEW_LIMIT, HttpUtils.getCharset(responseInfo.headers()));
+		};
+	}
+
+	/**
+	 * Creates a handler which passes the chunks of the body to a consumer.
+	 * The next chunk is requested only after the consumer has returned, so
+	 * a slow consumer slows down the transfer instead of buffering data.
+	 *
+	 * @param chunkConsumer Receives the chunks of the body
+	 * @return The handler
+	 */
+	static BodyHandler<Void> ofChunks(Consumer<ByteBuffer> chunkConsumer) {
+		return onSuccess(responseInfo -> new ChunkSubscriber(chunkConsumer));
+	}
+
+	static boolean isSuccess(ResponseInfo responseInfo) {
+		return responseInfo.statusCode() >= 200 && responseInfo.statusCode() < 300;
+	}
+
+	/**
+	 * Passes each received buffer to a consumer and requests one
+	 * list of buffers at a time.
+	 */
+	static final class ChunkSubscriber implements BodySubscriber<Void> {
+
+		private final Consumer<ByteBuffer> chunkConsumer;
+
+		private final CompletableFuture<Void> result = new CompletableFuture<Void>();
+
+		private Flow.Subscription subscription;
+
+		ChunkSubscriber(Consumer<ByteBuffer> chunkConsumer) {
+			this.chunkConsumer = chunkConsumer;
+		}
+
+		@Override
+		public CompletionStage<Void> getBody() {
+			return result;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			if (this.subscription != null) {
+				subscription.cancel();
+				return;
+			}
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			if (result.isDone()) {
+				return;
+			}
+			try {
+				for (ByteBuffer buffer : buffers) {
+					chunkConsumer.accept(buffer);
+				}
+			} catch (RuntimeException e) {
+				subscription.cancel();
+				result.completeExceptionally(e);
+				return;
+			}
+			subscription.request(1);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			result.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			result.complete(null);
+		}
+	}
+
+	/**
+	 * Reads at most limit bytes of a body into a String. If the body is
+	 * longer, the subscription is cancelled after limit bytes.
+	 */
+	static final class ErrorPreviewSubscriber implements BodySubscriber<String> {
+
+		private final int limit;
+
+		private final Charset charset;
+
+		private final ByteArrayOutputStream preview = new ByteArrayOutputStream();
+
+		private final CompletableFuture<String> result = new CompletableFuture<String>();
+
+		private Flow.Subscription subscription;
+
+		ErrorPreviewSubscriber(int limit, Charset charset) {
+			this.limit = limit;
+			this.charset = charset;
+		}
+
+		@Override
+		public CompletionStage<String> getBody() {
+			return result;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			if (this.subscription != null) {
+				subscription.cancel();
+				return;
+			}
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			if (result.isDone()) {
+				return;
+			}
+			for (ByteBuffer buffer : buffers) {
+				int length = Math.min(buffer.remaining(), limit - preview.size());
+				if (buffer.hasArray()) {
+					preview.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+				} else {
+					byte[] bytes = new byte[length];
+					buffer.get(bytes);
+					preview.write(bytes, 0, length);
+				}
+				if (preview.size() >= limit) {
+					subscription.cancel();
+					onComplete();
+					return;
+				}
+			}
+			subscription.request(1);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			result.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			result.complete(new String(preview.toByteArray(), charset));
+		}
+	}
+}
@@ -0,0 +1,360 @@
+package com.starcode88.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Request bodies which are read while they are sent, so that memory use
+ * does not depend on the size of the body. At most one chunk of
+ * {@link #CHUNK_SIZE} bytes is read per request of the transport. A
+ * publisher can be sent more than once, e.g. for a retry or a redirect,
+ * each subscription reads its source from the beginning.
+ * <p>
+ * The publishers can be passed as body to the POST and PUT methods of
+ * {@link HttpClient}.
+ */
+public final class StreamingBodyPublishers {
+
+	/** Size of the chunks which are read from a stream or file */
+	static final int CHUNK_SIZE = 16 * 1024;
+
+	private StreamingBodyPublishers() {
+	}
+
+	/**
+	 * Creates a publisher which reads a stream while it is sent. The
+	 * supplier is called once per subscription, the stream is closed at
+	 * the end of the body or when the exchange is cancelled.
+	 *
+	 * @param streamSupplier Opens the stream
+	 * @param contentLength The number of bytes of the stream or -1 if
+	 *                      unknown, then the body is sent chunked
+	 * @return The publisher
+	 */
+	public static BodyPublisher ofInputStream(Supplier<? extends InputStream> streamSupplier, long contentLength) {
+		if (streamSupplier == null) {
+			throw new IllegalArgumentException("The argument <streamSupplier> must not be null");
+		}
+		if (contentLength < -1) {
+			throw new IllegalArgumentException("The argument <contentLength> must be -1 or positive");
+		}
+		return new SourcePublisher(inputStream(streamSupplier, contentLength));
+	}
+
+	/**
+	 * Creates a publisher which reads a stream of unknown length while it
+	 * is sent, see {@link #ofInputStream(Supplier, long)}.
+	 *
+	 * @param streamSupplier Opens the stream
+	 * @return The publisher
+	 */
+	public static BodyPublisher ofInputStream(Supplier<? extends InputStream> streamSupplier) {
+		return ofInputStream(streamSupplier, -1);
+	}
+
+	static Source bytes(byte[] bytes) {
+		return new Source() {
+			@Override
+			public long length() {
+				return bytes.length;
+			}
+
+			@Override
+			public Reader open() {
+				return new Reader() {
+					private boolean read = false;
+
+					@Override
+					public ByteBuffer read() {
+						if (read || bytes.length == 0) {
+							return null;
+						}
+						read = true;
+						return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+					}
+
+					@Override
+					public void close() {
+					}
+				};
+			}
+		};
+	}
+
+	static Source file(Path file, long length) {
+		return new Source() {
+			@Override
+			public long length() {
+				return length;
+			}
+
+			@Override
+			public Reader open() throws IOException {
+				FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+				return new Reader() {
+					@Override
+					public ByteBuffer read() throws IOException {
+						ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+						if (channel.read(buffer) < 0) {
+							return null;
+						}
+						return buffer.flip();
+					}
+
+					@Override
+					public void close() throws IOException {
+						channel.close();
+					}
+				};
+			}
+		};
+	}
+
+	static Source inputStream(Supplier<? extends InputStream> streamSupplier, long length) {
+		return new Source() {
+			@Override
+			public long length() {
+				return length;
+			}
+
+			@Override
+			public Reader open() throws IOException {
+				InputStream in = streamSupplier.get();
+				if (in == null) {
+					throw new IOException("The supplier returned no stream");
+				}
+				return new Reader() {
+					@Override
+					public ByteBuffer read() throws IOException {
+						byte[] chunk = new byte[CHUNK_SIZE];
+						int count = in.read(chunk);
+						while (count == 0) {
+							count = in.read(chunk);
+						}
+						return count < 0 ? null : ByteBuffer.wrap(chunk, 0, count);
+					}
+
+					@Override
+					public void close() throws IOException {
+						in.close();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * @param sources The sources in the order they are read
+	 * @return A source which reads the sources one after the other
+	 */
+	static Source sequence(List<Source> sources) {
+		long total = 0;
+		for (Source source : sources) {
+			if (source.length() < 0) {
+				total = -1;
+				break;
+			}
+			total += source.length();
+		}
+		long length = total;
+		return new Source() {
+			@Override
+			public long length() {
+				return length;
+			}
+
+			@Override
+			public Reader open() {
+				return new Reader() {
+					private int index = 0;
+
+					private Reader current;
+
+					@Override
+					public ByteBuffer read() throws IOException {
+						while (index < sources.size()) {
+							if (current == null) {
+								current = sources.get(index).open();
+							}
+							ByteBuffer buffer = current.read();
+							if (buffer != null) {
+								return buffer;
+							}
+							current.close();
+							current = null;
+							index++;
+						}
+						return null;
+					}
+
+					@Override
+					public void close() throws IOException {
+						if (current != null) {
+							current.close();
+							current = null;
+						}
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Bytes of a body which can be read more than once.
+	 */
+	interface Source {
+
+		/**
+		 * @return The number of bytes or -1 if unknown
+		 */
+		long length();
+
+		/**
+		 * @return A reader from the first byte
+		 * @throws IOException Will be thrown if the source can not be opened
+		 */
+		Reader open() throws IOException;
+	}
+
+	/**
+	 * Reads a source chunk by chunk. Each chunk is a new buffer, because
+	 * the transport may still hold the previous one.
+	 */
+	interface Reader extends Closeable {
+
+		/**
+		 * @return The next chunk or null at the end
+		 * @throws IOException Will be thrown if the source can not be read
+		 */
+		ByteBuffer read() throws IOException;
+	}
+
+	/**
+	 * Publishes a source, each subscriber gets its own reader.
+	 */
+	static class SourcePublisher implements BodyPublisher {
+
+		private final Source source;
+
+		SourcePublisher(Source source) {
+			this.source = source;
+		}
+
+		@Override
+		public long contentLength() {
+			return source.length();
+		}
+
+		@Override
+		public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+			SourceSubscription subscription = new SourceSubscription(source, subscriber);
+			subscriber.onSubscribe(subscription);
+		}
+	}
+
+	/**
+	 * Reads one chunk per requested item on the thread which requests it.
+	 * Requests while a chunk is delivered only increase the demand, the
+	 * running loop delivers them, so the subscriber is never called
+	 * concurrently or recursively.
+	 */
+	private static final class SourceSubscription implements Flow.Subscription {
+
+		private final Source source;
+
+		private final Flow.Subscriber<? super ByteBuffer> subscriber;
+
+		private final AtomicLong demand = new AtomicLong();
+
+		/** Number of pending calls of drain, only the first one runs the loop */
+		private final AtomicInteger pending = new AtomicInteger();
+
+		private volatile boolean cancelled = false;
+
+		/** Set if the subscriber has violated the protocol */
+		private volatile Throwable error = null;
+
+		private Reader reader;
+
+		private boolean done = false;
+
+		SourceSubscription(Source source, Flow.Subscriber<? super ByteBuffer> subscriber) {
+			this.source = source;
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				error = new IllegalArgumentException("The number of requested items must be positive");
+			} else {
+				demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			drain();
+		}
+
+		private void drain() {
+			if (pending.getAndIncrement() != 0) {
+				return;
+			}
+			do {
+				if (error != null && !done) {
+					finish();
+					subscriber.onError(error);
+				}
+				while (!done && !cancelled && demand.get() > 0) {
+					ByteBuffer buffer;
+					try {
+						if (reader == null) {
+							reader = source.open();
+						}
+						buffer = reader.read();
+					} catch (IOException | RuntimeException e) {
+						finish();
+						subscriber.onError(e);
+						break;
+					}
+					if (buffer == null) {
+						finish();
+						subscriber.onComplete();
+						break;
+					}
+					demand.decrementAndGet();
+					subscriber.onNext(buffer);
+				}
+				if (cancelled && !done) {
+					finish();
+				}
+			} while (pending.decrementAndGet() != 0);
+		}
+
+		private void finish() {
+			done = true;
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					// The body has been sent or the exchange has failed anyway
+				}
+				reader = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package com.starcode88.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled URI template (a subset of RFC 6570) for the path and query
+ * of a request, e.g.
+ * <pre>
+ * static final UriTemplate ORDERS = UriTemplate.compile("/users/{id}/orders{?limit,offset}");
+ * ...
+ * client.GET(ORDERS.expand(userId, 10, null), String.class);
+ * </pre>
+ * The template is parsed once, expanding it only appends the literal parts
+ * and the percent-encoded values to one StringBuilder. Supported expressions:
+ * <ul>
+ * <li>{@code {name}} the value with all reserved characters encoded, e.g. "a/b" becomes "a%2Fb"</li>
+ * <li>{@code {+name}} the value with reserved characters and percent-encoded triplets kept</li>
+ * <li>{@code {?a,b}} query parameters "?a=1&amp;b=2", parameters with null values are left out</li>
+ * <li>{@code {&amp;a,b}} further query parameters "&amp;a=1&amp;b=2"</li>
+ * </ul>
+ * A query value can be an Iterable, each element becomes its own parameter.
+ * Path variables must not be null.
+ * <p>
+ * Metrics use the template as route, so the number of routes stays bounded
+ * no matter how many different values are sent.
+ */
+public final class UriTemplate {
+
+	private final String template;
+
+	/** The literal parts (already encoded) and the expressions in order */
+	private final Object[] parts;
+
+	/** The distinct variable names in the order of appearance */
+	private final String[] variables;
+
+	private final int literalLength;
+
+	private UriTemplate(String template, Object[] parts, String[] variables, int literalLength) {
+		this.template = template;
+		this.parts = parts;
+		this.variables = variables;
+		this.literalLength = literalLength;
+	}
+
+	/**
+	 * Compiles a template.
+	 *
+	 * @param template The template, e.g. "/users/{id}/orders{?limit}"
+	 * @return The compiled template
+	 * @throws IllegalArgumentException Will be thrown if the syntax of the template is invalid
+	 */
+	public static UriTemplate compile(String template) {
+		if (template == null) {
+			throw new IllegalArgumentException("The argument <template> must not be null");
+		}
+		List<Object> parts = new ArrayList<Object>();
+		List<String> variables = new ArrayList<String>();
+		StringBuilder literal = new StringBuilder();
+		int literalLength = 0;
+		int index = 0;
+		while (index < template.length()) {
+			int open = template.indexOf('{', index);
+			int close = template.indexOf('}', index);
+			if (close >= 0 && (open < 0 || close < open)) {
+				throw new IllegalArgumentException("Unexpected '}' at index " + close + " of template " + template);
+			}
+			if (open < 0) {
+				open = template.length();
+			}
+			PercentEncoder.encode(template.subSequence(index, open), PercentEncoder.RESERVED, true, literal);
+			if (open == template.length()) {
+				break;
+			}
+			close = template.indexOf('}', open);
+			if (close < 0) {
+				throw new IllegalArgumentException("Missing '}' of expression at index " + open + " of template " + template);
+			}
+			if (literal.length() > 0) {
+				parts.add(literal.toString());
+				literalLength += literal.length();
+				literal.setLength(0);
+			}
+			parts.add(Expression.parse(template, open + 1, close, variables));
+			index = close + 1;
+		}
+		if (literal.length() > 0) {
+			parts.add(literal.toString());
+			literalLength += literal.length();
+		}
+		return new UriTemplate(template, parts.toArray(), variables.toArray(new String[0]), literalLength);
+	}
+
+	/**
+	 * @return The template as it has been given to {@link #compile(String)}
+	 */
+	public String getTemplate() {
+		return template;
+	}
+
+	/**
+	 * @return The distinct variable names in the order of their first appearance
+	 */
+	public List<String> getVariables() {
+		return Collections.unmodifiableList(Arrays.asList(variables));
+	}
+
+	/**
+	 * Expands the template with values in the order of {@link #getVariables()}.
+	 *
+	 * @param values One value per variable, query values may be null
+	 * @return The expanded route
+	 * @throws IllegalArgumentException Will be thrown if the number of values
+	 *                                  is wrong or a path variable is null
+	 */
+	public Route expand(Object... values) {
+		if (values.length != variables.length) {
+			throw new IllegalArgumentException("The template " + template + " has " + variables.length
+					+ " variables, but " + values.length + " values were given");
+		}
+		StringBuilder out = new StringBuilder(literalLength + 16 * variables.length);
+		for (Object part : parts) {
+			if (part instanceof String) {
+				out.append((String) part);
+			} else {
+				((Expression) part).expand(values, null, out);
+			}
+		}
+		return new Route(this, out.toString());
+	}
+
+	/**
+	 * Expands the template with named values.
+	 *
+	 * @param values The values by variable name, missing query values are left out
+	 * @return The expanded route
+	 * @throws IllegalArgumentException Will be thrown if a path variable is missing
+	 */
+	public Route expand(Map<String, ?> values) {
+		StringBuilder out = new StringBuilder(literalLength + 16 * variables.length);
+		for (Object part : parts) {
+			if (part instanceof String) {
+				out.append((String) part);
+			} else {
+				((Expression) part).expand(null, values, out);
+			}
+		}
+		return new Route(this, out.toString());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof UriTemplate && ((UriTemplate) obj).template.equals(template);
+	}
+
+	@Override
+	public int hashCode() {
+		return template.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return template;
+	}
+
+	/**
+	 * One expression in braces.
+	 */
+	private static final class Expression {
+
+		/** 0 for simple expansion, otherwise '+', '?' or '&amp;' */
+		private final char operator;
+
+		private final String[] names;
+
+		/** Index of each name in the variables of the template */
+		private final int[] indexes;
+
+		private Expression(char operator, String[] names, int[] indexes) {
+			this.operator = operator;
+			this.names = names;
+			this.indexes = indexes;
+		}
+
+		static Expression parse(String template, int start, int end, List<String> variables) {
+			char operator = 0;
+			if (start < end && "+?&".indexOf(template.charAt(start)) >= 0) {
+				operator = template.charAt(start++);
+			}
+			String[] names = template.substring(start, end).split(",", -1);
+			int[] indexes = new int[names.length];
+			for (int i = 0; i < names.length; i++) {
+				String name = names[i];
+				if (!isValidName(name)) {
+					throw new IllegalArgumentException("Invalid variable name '" + name + "' in template " + template);
+				}
+				int index = variables.indexOf(name);
+				if (index < 0) {
+					index = variables.size();
+					variables.add(name);
+				}
+				indexes[i] = index;
+			}
+			return new Expression(operator, names, indexes);
+		}
+
+		private static boolean isValidName(String name) {
+			if (name.isEmpty()) {
+				return false;
+			}
+			for (int i = 0; i < name.length(); i++) {
+				char c = name.charAt(i);
+				if (!(Character.isLetterOrDigit(c) || c == '_' || c == '.')) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void expand(Object[] positional, Map<String, ?> named, StringBuilder out) {
+			boolean query = operator == '?' || operator == '&';
+			boolean first = true;
+			for (int i = 0; i < names.length; i++) {
+				Object value = positional != null ? positional[indexes[i]] : named.get(names[i]);
+				if (query) {
+					if (value instanceof Iterable) {
+						for (Object element : (Iterable<?>) value) {
+							if (element != null) {
+								out.append(first && operator == '?' ? '?' : '&');
+								appendParameter(names[i], element, out);
+								first = false;
+							}
+						}
+					} else if (value != null) {
+						out.append(first && operator == '?' ? '?' : '&');
+						appendParameter(names[i], value, out);
+						first = false;
+					}
+				} else {
+					if (value == null) {
+						throw new IllegalArgumentException("No value for path variable <" + names[i] + ">");
+					}
+					if (!first) {
+						out.append(',');
+					}
+					appendValue(value, operator == '+' ? PercentEncoder.RESERVED : PercentEncoder.UNRESERVED,
+							operator == '+', out);
+					first = false;
+				}
+			}
+		}
+
+		private static void appendParameter(String name, Object value, StringBuilder out) {
+			PercentEncoder.encode(name, PercentEncoder.UNRESERVED, false, out);
+			out.append('=');
+			appendValue(value, PercentEncoder.UNRESERVED, false, out);
+		}
+
+		private static void appendValue(Object value, boolean[] allowed, boolean keepEncoded, StringBuilder out) {
+			if (value instanceof Integer || value instanceof Long) {
+				// Digits and '-' never need encoding
+				out.append(((Number) value).longValue());
+			} else if (value instanceof CharSequence) {
+				PercentEncoder.encode((CharSequence) value, allowed, keepEncoded, out);
+			} else {
+				PercentEncoder.encode(String.valueOf(value), allowed, keepEncoded, out);
+			}
+		}
+	}
+}
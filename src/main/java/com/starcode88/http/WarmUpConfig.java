@@ -0,0 +1,195 @@
+package com.starcode88.http;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings of {@link HttpClient#warmUp(WarmUpConfig)}. An instance is
+ * immutable, use {@link #newBuilder()} to create one:
+ * <pre>
+ * WarmUpReport report = client.warmUp(WarmUpConfig.newBuilder()
+ *     .connections(8)
+ *     .request("/health", 20)
+ *     .request("/items/1", Item.class, 200)
+ *     .build());
+ * </pre>
+ * The targets are the base URL of the client, all base URLs of its load
+ * balancer and the alternate base URL of its hedging policy.
+ */
+public class WarmUpConfig {
+
+	private final int connections;
+
+	private final String connectionPath;
+
+	private final Duration timeout;
+
+	private final List<Request> requests;
+
+	private WarmUpConfig(Builder builder) {
+		this.connections = builder.connections;
+		this.connectionPath = builder.connectionPath;
+		this.timeout = builder.timeout;
+		this.requests = Collections.unmodifiableList(new ArrayList<Request>(builder.requests));
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return Number of connections which are opened to each target
+	 */
+	public int getConnections() {
+		return connections;
+	}
+
+	/**
+	 * @return The path of the HEAD requests which open the connections
+	 */
+	public String getConnectionPath() {
+		return connectionPath;
+	}
+
+	/**
+	 * @return The time after which a connection which has not been
+	 *         opened counts as failed
+	 */
+	public Duration getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * @return The warm-up requests in the order in which they are sent
+	 */
+	public List<Request> getRequests() {
+		return requests;
+	}
+
+	/**
+	 * A GET request which is sent a number of times during the warm-up.
+	 */
+	public static final class Request {
+
+		private final String path;
+
+		private final Class<?> responseBodyClass;
+
+		private final int repetitions;
+
+		private Request(String path, Class<?> responseBodyClass, int repetitions) {
+			this.path = path;
+			this.responseBodyClass = responseBodyClass;
+			this.repetitions = repetitions;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public Class<?> getResponseBodyClass() {
+			return responseBodyClass;
+		}
+
+		public int getRepetitions() {
+			return repetitions;
+		}
+
+		@Override
+		public String toString() {
+			return "GET " + path + " x" + repetitions;
+		}
+	}
+
+	public static class Builder {
+
+		private int connections = 1;
+
+		private String connectionPath = "/";
+
+		private Duration timeout = Duration.ofSeconds(10);
+
+		private final List<Request> requests = new ArrayList<Request>();
+
+		private Builder() {
+		}
+
+		/**
+		 * @param connections Number of connections which are opened
+		 *                    concurrently to each target, at least 1. Over
+		 *                    HTTP/2 the requests share one connection.
+		 * @return this builder
+		 */
+		public Builder connections(int connections) {
+			if (connections < 1) {
+				throw new IllegalArgumentException("The argument <connections> must be at least 1");
+			}
+			this.connections = connections;
+			return this;
+		}
+
+		/**
+		 * @param path The path of the HEAD requests which open the
+		 *             connections, default "/". Any status code counts as
+		 *             opened connection.
+		 * @return this builder
+		 */
+		public Builder connectionPath(String path) {
+			if (path == null) {
+				throw new IllegalArgumentException("The argument <path> must not be null");
+			}
+			this.connectionPath = path;
+			return this;
+		}
+
+		/**
+		 * @param timeout The time after which a connection which has not
+		 *                been opened counts as failed
+		 * @return this builder
+		 */
+		public Builder timeout(Duration timeout) {
+			if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+				throw new IllegalArgumentException("The argument <timeout> must be positive");
+			}
+			this.timeout = timeout;
+			return this;
+		}
+
+		/**
+		 * Adds a warm-up request whose body is received as byte[].
+		 *
+		 * @param path Path which will be added to the URL
+		 * @param repetitions How often the request is sent
+		 * @return this builder
+		 */
+		public Builder request(String path, int repetitions) {
+			return request(path, byte[].class, repetitions);
+		}
+
+		/**
+		 * Adds a warm-up request, e.g. with a JSON response, so that its
+		 * reader is created and its code is compiled before the traffic.
+		 *
+		 * @param path Path which will be added to the URL
+		 * @param responseBodyClass The type of the response, see {@link HttpClient#GET(String, Class)}
+		 * @param repetitions How often the request is sent
+		 * @return this builder
+		 */
+		public Builder request(String path, Class<?> responseBodyClass, int repetitions) {
+			if (path == null) {
+				throw new IllegalArgumentException("The argument <path> must not be null");
+			}
+			if (repetitions < 1) {
+				throw new IllegalArgumentException("The argument <repetitions> must be at least 1");
+			}
+			requests.add(new Request(path, responseBodyClass, repetitions));
+			return this;
+		}
+
+		public WarmUpConfig build() {
+			return new WarmUpConfig(this);
+		}
+	}
+}
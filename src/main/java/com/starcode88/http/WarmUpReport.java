@@ -0,0 +1,97 @@
+package com.starcode88.http;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of {@link HttpClient#warmUp(WarmUpConfig)}: how long each
+ * phase took and what has failed. A warm-up does not throw if a target
+ * can not be reached, the caller decides whether to admit traffic.
+ */
+public final class WarmUpReport {
+
+	private final Duration transportTime;
+
+	private final Duration connectionTime;
+
+	private final Duration requestTime;
+
+	private final Map<String, Integer> connections;
+
+	private final int requests;
+
+	private final List<Exception> failures;
+
+	WarmUpReport(Duration transportTime, Duration connectionTime, Duration requestTime,
+			Map<String, Integer> connections, int requests, List<Exception> failures) {
+		this.transportTime = transportTime;
+		this.connectionTime = connectionTime;
+		this.requestTime = requestTime;
+		this.connections = Collections.unmodifiableMap(connections);
+		this.requests = requests;
+		this.failures = Collections.unmodifiableList(failures);
+	}
+
+	/**
+	 * @return Time to build the transport, including its SSL context
+	 */
+	public Duration getTransportTime() {
+		return transportTime;
+	}
+
+	/**
+	 * @return Time to open the connections, including DNS lookups and TLS
+	 *         handshakes, to all targets
+	 */
+	public Duration getConnectionTime() {
+		return connectionTime;
+	}
+
+	/**
+	 * @return Time to send the warm-up requests
+	 */
+	public Duration getRequestTime() {
+		return requestTime;
+	}
+
+	public Duration getTotalTime() {
+		return transportTime.plus(connectionTime).plus(requestTime);
+	}
+
+	/**
+	 * @return Number of successful connection requests per target base URL
+	 */
+	public Map<String, Integer> getConnections() {
+		return connections;
+	}
+
+	/**
+	 * @return Number of warm-up requests which have been answered with 2xx
+	 */
+	public int getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return The exceptions of the failed connections and requests
+	 */
+	public List<Exception> getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return true if nothing has failed
+	 */
+	public boolean isSuccess() {
+		return failures.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "WarmUpReport [transport=" + transportTime.toMillis() + "ms, connections="
+				+ connectionTime.toMillis() + "ms " + connections + ", requests=" + requestTime.toMillis() + "ms ("
+				+ requests + "), failures=" + failures.size() + "]";
+	}
+}
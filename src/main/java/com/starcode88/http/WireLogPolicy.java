@@ -0,0 +1,163 @@
+package com.starcode88.http;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Defines what {@link HttpClient} logs about the requests and responses
+ * it sends and receives ("wire log"). An instance is immutable, use
+ * {@link #newBuilder()} to create one and pass it to
+ * {@link HttpClient#setWireLogPolicy(WireLogPolicy)}.
+ * <p>
+ * The wire log is written at INFO level. If the policy is {@link Mode#OFF},
+ * if INFO is disabled or if an exchange is not sampled, nothing is allocated
+ * for logging on the request path.
+ */
+public class WireLogPolicy {
+
+	public enum Mode {
+		/** Nothing is logged */
+		OFF,
+		/** Method, URI, status code and headers are logged */
+		HEADERS,
+		/** Like HEADERS and additionally a preview of the bodies */
+		BODIES
+	}
+
+	/** Headers which are redacted by default because they carry credentials */
+	public static final Set<String> DEFAULT_REDACTED_HEADERS = Collections.unmodifiableSet(
+			caseInsensitiveSet(Arrays.asList("Authorization", "Proxy-Authorization", "Cookie", "Set-Cookie")));
+
+	/** Nothing will be logged */
+	public static final WireLogPolicy OFF = newBuilder().mode(Mode.OFF).build();
+
+	/** Headers and the first 1024 characters of String bodies, credentials are redacted */
+	public static final WireLogPolicy DEFAULT = newBuilder().build();
+
+	private final Mode mode;
+
+	private final int maxBodyPreview;
+
+	private final double sampleRate;
+
+	private final Set<String> redactedHeaders;
+
+	private WireLogPolicy(Builder builder) {
+		this.mode = builder.mode;
+		this.maxBodyPreview = builder.maxBodyPreview;
+		this.sampleRate = builder.sampleRate;
+		this.redactedHeaders = Collections.unmodifiableSet(caseInsensitiveSet(builder.redactedHeaders));
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @return The maximum number of characters of a body which are logged
+	 */
+	public int getMaxBodyPreview() {
+		return maxBodyPreview;
+	}
+
+	/**
+	 * @return The fraction of exchanges which are logged, between 0.0 and 1.0
+	 */
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @return The names of the headers whose values are replaced by "***",
+	 *         the names are compared case insensitive
+	 */
+	public Set<String> getRedactedHeaders() {
+		return redactedHeaders;
+	}
+
+	/**
+	 * @param name Name of the header
+	 * @return true if the value of the header must not be logged
+	 */
+	public boolean isRedacted(String name) {
+		return redactedHeaders.contains(name);
+	}
+
+	private static Set<String> caseInsensitiveSet(Collection<String> names) {
+		Set<String> set = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		set.addAll(names);
+		return set;
+	}
+
+	public static class Builder {
+
+		private Mode mode = Mode.BODIES;
+
+		private int maxBodyPreview = 1024;
+
+		private double sampleRate = 1.0;
+
+		private Collection<String> redactedHeaders = DEFAULT_REDACTED_HEADERS;
+
+		private Builder() {
+		}
+
+		public Builder mode(Mode mode) {
+			if (mode == null) {
+				throw new IllegalArgumentException("The argument <mode> must not be null");
+			}
+			this.mode = mode;
+			return this;
+		}
+
+		/**
+		 * @param maxBodyPreview Maximum number of characters of a body which
+		 *                       are logged, longer bodies are truncated
+		 * @return this builder
+		 */
+		public Builder maxBodyPreview(int maxBodyPreview) {
+			if (maxBodyPreview < 0) {
+				throw new IllegalArgumentException("The argument <maxBodyPreview> must not be negative");
+			}
+			this.maxBodyPreview = maxBodyPreview;
+			return this;
+		}
+
+		/**
+		 * @param sampleRate Fraction of the exchanges which are logged,
+		 *                   1.0 logs all exchanges, 0.01 logs every 100th
+		 * @return this builder
+		 */
+		public Builder sampleRate(double sampleRate) {
+			if (!(sampleRate >= 0.0 && sampleRate <= 1.0)) {
+				throw new IllegalArgumentException("The argument <sampleRate> must be between 0.0 and 1.0");
+			}
+			this.sampleRate = sampleRate;
+			return this;
+		}
+
+		/**
+		 * @param redactedHeaders Names of headers whose values are not logged.
+		 *                        This replaces {@link WireLogPolicy#DEFAULT_REDACTED_HEADERS}.
+		 * @return this builder
+		 */
+		public Builder redactedHeaders(Collection<String> redactedHeaders) {
+			if (redactedHeaders == null) {
+				throw new IllegalArgumentException("The argument <redactedHeaders> must not be null");
+			}
+			this.redactedHeaders = redactedHeaders;
+			return this;
+		}
+
+		public WireLogPolicy build() {
+			return new WireLogPolicy(this);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.starcode88.http;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.starcode88.http.buffer.PooledBody;
+
+/**
+ * Writes the wire log according to a {@link WireLogPolicy}. The caller
+ * first asks {@link #sample()} whether an exchange should be logged at all
+ * and only then calls the log methods. That way nothing is allocated for
+ * exchanges which are not logged.
+ */
+final class WireLogger {
+
+	/** We log with the logger of HttpClient, so existing configurations keep working */
+	private static Logger logger = LogManager.getLogger(HttpClient.class);
+
+	private final WireLogPolicy policy;
+
+	WireLogger(WireLogPolicy policy) {
+		this.policy = policy;
+	}
+
+	WireLogPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Decides whether the next exchange will be logged.
+	 *
+	 * @return true if the request and the response should be logged
+	 */
+	boolean sample() {
+		if (policy.getMode() == WireLogPolicy.Mode.OFF || !logger.isInfoEnabled()) {
+			return false;
+		}
+		double sampleRate = policy.getSampleRate();
+		return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+	}
+
+	/**
+	 * Logs the HTTP request
+	 * @param request The request
+	 * @param body The body which was used to create the request, may be null
+	 */
+	void logRequest(HttpRequest request, Object body) {
+		logger.info("Sending HTTP request: ");
+		logger.info("    {}", request.uri());
+		logger.info("    {}", request.method());
+		logHeaders(request.headers());
+		if (body != null && policy.getMode() == WireLogPolicy.Mode.BODIES) {
+			logBody(body);
+		}
+	}
+
+	/**
+	 * Logs the HTTP response
+	 * @param response The response
+	 */
+	void logResponse(HttpResponse<?> response) {
+		logger.info("Received HTTP response:");
+		int statusCode = response.statusCode();
+		logger.info("    Status code = {} ({})", statusCode, HttpUtils.getStatusText(statusCode));
+		logHeaders(response.headers());
+		Object body = response.body();
+		if (body != null && policy.getMode() == WireLogPolicy.Mode.BODIES) {
+			logBody(body);
+		}
+	}
+
+	/**
+	 * Logs a header which is added to a request, at DEBUG level.
+	 * @param key Name of the header
+	 * @param value Value of the header
+	 */
+	void logHeaderAdded(String key, String value) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Add header '{}' with value '{}'", key, policy.isRedacted(key) ? "***" : value);
+		}
+	}
+
+	private void logHeaders(HttpHeaders headers) {
+		if (headers == null) {
+			return;
+		}
+		logger.info("    Headers:");
+		for (Map.Entry<String, List<String>> entry : headers.map().entrySet()) {
+			String key = entry.getKey();
+			if (policy.isRedacted(key)) {
+				logger.info("        {} = ***", key);
+			} else {
+				List<String> values = entry.getValue();
+				logger.info("        {} = {}", key, values.size() == 1 ? values.get(0) : String.join(", ", values));
+			}
+		}
+	}
+
+	private void logBody(Object body) {
+		if (body instanceof String) {
+			String text = (String) body;
+			int maxBodyPreview = policy.getMaxBodyPreview();
+			if (text.length() <= maxBodyPreview) {
+				logger.info("    Body = {}", text);
+			} else {
+				logger.info("    Body = {}... ({} characters)", text.substring(0, maxBodyPreview), text.length());
+			}
+		} else if (body instanceof byte[]) {
+			logger.info("    Body = <{} bytes>", ((byte[]) body).length);
+		} else if (body instanceof Path) {
+			logger.info("    Body = <file {}>", body);
+		} else if (body instanceof PooledBody) {
+			logger.info("    Body = <{} bytes in pooled buffers>", ((PooledBody) body).size());
+		} else if (body instanceof MultipartBody) {
+			logger.info("    Body = <{}>", body);
+		} else {
+			logger.info("    Body = <{}>", body.getClass().getName());
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package com.starcode88.http.buffer;
+
+import java.lang.ref.Cleaner;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A pool of fixed size buffers for response bodies which are received as
+ * {@link PooledBody}. Each chunk from the transport is copied once into
+ * the pooled buffers, which are returned to the pool when the body is
+ * released. So a large body is neither copied a second time into one
+ * array nor allocated again for the next response.
+ * <p>
+ * A pool is thread safe and can be shared by several clients, see
+ * {@link com.starcode88.http.HttpClient#setBufferPool(BufferPool)}.
+ */
+public final class BufferPool {
+
+	private static Logger logger = LogManager.getLogger(BufferPool.class);
+
+	private final BufferPoolConfig config;
+
+	private final int maxPooledBuffers;
+
+	private final boolean leakDetection;
+
+	/** Used as a stack, so recently used buffers which are still in the CPU cache are reused first */
+	private final ConcurrentLinkedDeque<ByteBuffer> pooled = new ConcurrentLinkedDeque<ByteBuffer>();
+
+	private final AtomicInteger pooledCount = new AtomicInteger();
+
+	private final LongAdder allocated = new LongAdder();
+
+	private final LongAdder reused = new LongAdder();
+
+	private final AtomicInteger inUse = new AtomicInteger();
+
+	private final LongAdder leaks = new LongAdder();
+
+	public BufferPool(BufferPoolConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("The argument <config> must not be null");
+		}
+		this.config = config;
+		this.maxPooledBuffers = (int) Math.min(Integer.MAX_VALUE, config.getMaxPooledBytes() / config.getBufferSize());
+		this.leakDetection = config.isLeakDetection() || logger.isDebugEnabled();
+	}
+
+	public BufferPoolConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * @return A handler which receives the body of a response into buffers of this pool
+	 */
+	public BodyHandler<PooledBody> bodyHandler() {
+		return responseInfo -> bodySubscriber();
+	}
+
+	/**
+	 * @return A subscriber which receives a body into buffers of this pool
+	 */
+	public BodySubscriber<PooledBody> bodySubscriber() {
+		return new PooledBodySubscriber(this);
+	}
+
+	/**
+	 * @return Number of buffers which have been allocated because the pool was empty
+	 */
+	public long getAllocatedBuffers() {
+		return allocated.sum();
+	}
+
+	/**
+	 * @return Number of buffers which have been taken from the pool
+	 */
+	public long getReusedBuffers() {
+		return reused.sum();
+	}
+
+	/**
+	 * @return Number of buffers which are held by bodies that have not been released
+	 */
+	public int getBuffersInUse() {
+		return inUse.get();
+	}
+
+	/**
+	 * @return Number of released buffers which are kept for reuse
+	 */
+	public int getPooledBuffers() {
+		return pooledCount.get();
+	}
+
+	/**
+	 * @return Number of bodies which have been garbage collected without
+	 *         being released, only counted if leak detection is enabled
+	 */
+	public long getLeakCount() {
+		return leaks.sum();
+	}
+
+	/**
+	 * @return An empty buffer of the configured size
+	 */
+	ByteBuffer acquire() {
+		inUse.incrementAndGet();
+		ByteBuffer buffer = pooled.pollFirst();
+		if (buffer != null) {
+			pooledCount.decrementAndGet();
+			reused.increment();
+			return buffer.clear();
+		}
+		allocated.increment();
+		return config.isDirect() ? ByteBuffer.allocateDirect(config.getBufferSize())
+				: ByteBuffer.allocate(config.getBufferSize());
+	}
+
+	/**
+	 * Returns a buffer to the pool. It must not be used afterwards.
+	 *
+	 * @param buffer A buffer which has been acquired from this pool
+	 */
+	void release(ByteBuffer buffer) {
+		inUse.decrementAndGet();
+		if (pooledCount.incrementAndGet() <= maxPooledBuffers) {
+			pooled.offerFirst(buffer);
+		} else {
+			pooledCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Registers a body for leak detection.
+	 *
+	 * @param body The body
+	 * @param buffers The buffers of the body
+	 * @return The tracker which must be closed when the body is released,
+	 *         or null if leak detection is disabled
+	 */
+	LeakTracker track(PooledBody body, ByteBuffer[] buffers) {
+		if (!leakDetection) {
+			return null;
+		}
+		LeakTracker tracker = new LeakTracker(this, buffers.length,
+				new Throwable("The body has been received here"));
+		tracker.cleanable = Cleaners.CLEANER.register(body, tracker);
+		return tracker;
+	}
+
+	/**
+	 * Reports a body which has been garbage collected without being released.
+	 * Its buffers are not returned to the pool, because the caller may
+	 * still hold views of them.
+	 */
+	private void leaked(LeakTracker tracker) {
+		leaks.increment();
+		inUse.addAndGet(-tracker.bufferCount);
+		logger.error("A PooledBody has not been released, its " + tracker.bufferCount
+				+ " buffers are lost for the pool", tracker.allocation);
+	}
+
+	/**
+	 * The Cleaner thread is only started if leak detection is used.
+	 */
+	private static final class Cleaners {
+
+		static final Cleaner CLEANER = Cleaner.create();
+	}
+
+	/**
+	 * Runs when a tracked body becomes unreachable or is released. It must
+	 * not refer to the body, otherwise the body never becomes unreachable.
+	 */
+	static final class LeakTracker implements Runnable {
+
+		private final BufferPool pool;
+
+		private final int bufferCount;
+
+		private final Throwable allocation;
+
+		private volatile boolean released = false;
+
+		private Cleaner.Cleanable cleanable;
+
+		LeakTracker(BufferPool pool, int bufferCount, Throwable allocation) {
+			this.pool = pool;
+			this.bufferCount = bufferCount;
+			this.allocation = allocation;
+		}
+
+		void close() {
+			released = true;
+			cleanable.clean();
+		}
+
+		@Override
+		public void run() {
+			if (!released) {
+				pool.leaked(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package com.starcode88.http.buffer;
+
+/**
+ * Settings of a {@link BufferPool}. An instance is immutable, use
+ * {@link #newBuilder()} to create one.
+ * <p>
+ * The pool hands out buffers of a fixed size, so a large body is held in
+ * many small buffers instead of one large array. With the default size
+ * of 64 KiB no buffer is a humongous object for G1, whose smallest
+ * region size is 1 MiB. Released buffers are kept for reuse up to
+ * {@link #getMaxPooledBytes()}; beyond that they are left to the garbage
+ * collector.
+ */
+public class BufferPoolConfig {
+
+	private static final BufferPoolConfig DEFAULTS = newBuilder().build();
+
+	private final int bufferSize;
+
+	private final long maxPooledBytes;
+
+	private final boolean direct;
+
+	private final boolean leakDetection;
+
+	private BufferPoolConfig(Builder builder) {
+		this.bufferSize = builder.bufferSize;
+		this.maxPooledBytes = builder.maxPooledBytes;
+		this.direct = builder.direct;
+		this.leakDetection = builder.leakDetection;
+	}
+
+	/**
+	 * @return Heap buffers of 64 KiB, at most 64 MiB are kept for reuse
+	 */
+	public static BufferPoolConfig defaults() {
+		return DEFAULTS;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return The size of each buffer in bytes
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * @return Maximum number of bytes of released buffers which are kept for reuse
+	 */
+	public long getMaxPooledBytes() {
+		return maxPooledBytes;
+	}
+
+	/**
+	 * @return true if the buffers are allocated outside of the heap
+	 */
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * @return true if bodies which are garbage collected without having
+	 *         been released are reported. Leak detection is also enabled
+	 *         if DEBUG is enabled for the logger of {@link BufferPool}.
+	 */
+	public boolean isLeakDetection() {
+		return leakDetection;
+	}
+
+	public static class Builder {
+
+		private int bufferSize = 64 * 1024;
+
+		private long maxPooledBytes = 64L * 1024 * 1024;
+
+		private boolean direct = false;
+
+		private boolean leakDetection = false;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param bufferSize The size of each buffer in bytes, at least 1024
+		 * @return this builder
+		 */
+		public Builder bufferSize(int bufferSize) {
+			if (bufferSize < 1024) {
+				throw new IllegalArgumentException("The argument <bufferSize> must be at least 1024");
+			}
+			this.bufferSize = bufferSize;
+			return this;
+		}
+
+		/**
+		 * @param maxPooledBytes Maximum number of bytes of released buffers
+		 *                       which are kept for reuse, 0 disables reuse
+		 * @return this builder
+		 */
+		public Builder maxPooledBytes(long maxPooledBytes) {
+			if (maxPooledBytes < 0) {
+				throw new IllegalArgumentException("The argument <maxPooledBytes> must not be negative");
+			}
+			this.maxPooledBytes = maxPooledBytes;
+			return this;
+		}
+
+		/**
+		 * Direct buffers avoid a copy when the body is written to a channel,
+		 * heap buffers are faster to read as a stream.
+		 *
+		 * @param direct true to allocate the buffers outside of the heap
+		 * @return this builder
+		 */
+		public Builder direct(boolean direct) {
+			this.direct = direct;
+			return this;
+		}
+
+		/**
+		 * Leak detection records where each body has been received, which
+		 * costs a stack trace per body. Use it while testing.
+		 *
+		 * @param leakDetection true to report bodies which are not released
+		 * @return this builder
+		 */
+		public Builder leakDetection(boolean leakDetection) {
+			this.leakDetection = leakDetection;
+			return this;
+		}
+
+		public BufferPoolConfig build() {
+			return new BufferPoolConfig(this);
+		}
+	}
+}
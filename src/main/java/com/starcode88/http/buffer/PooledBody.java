@@ -0,0 +1,318 @@
+package com.starcode88.http.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A response body which is held in buffers of a {@link BufferPool}. It is
+ * a read-only view of the buffers: it can be read as a stream, written to
+ * a channel with one gathering write, or copied into an array.
+ * <p>
+ * The body must be released with {@link #release()} or {@link #close()},
+ * e.g. with try-with-resources, so that its buffers are reused. After the
+ * release the body and its streams throw IllegalStateException or
+ * IOException, and the views returned by {@link #buffers()} must not be
+ * used any more, because their memory belongs to other bodies. A body
+ * is used by one thread at a time.
+ */
+public final class PooledBody implements AutoCloseable {
+
+	/** Size of the array through which the body is copied into streams */
+	private static final int COPY_SIZE = 8192;
+
+	private final BufferPool pool;
+
+	private final long size;
+
+	private ByteBuffer[] buffers;
+
+	private final BufferPool.LeakTracker tracker;
+
+	PooledBody(BufferPool pool, ByteBuffer[] buffers, long size) {
+		this.pool = pool;
+		this.buffers = buffers;
+		this.size = size;
+		this.tracker = pool.track(this, buffers);
+	}
+
+	/**
+	 * @return The number of bytes of the body
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the body has been released
+	 */
+	public boolean isReleased() {
+		return buffers == null;
+	}
+
+	/**
+	 * @return Read-only views of the buffers in order, each positioned at
+	 *         the start of its bytes. They are valid until the body is released.
+	 * @throws IllegalStateException Will be thrown if the body has been released
+	 */
+	public List<ByteBuffer> buffers() {
+		ByteBuffer[] buffers = checkNotReleased();
+		List<ByteBuffer> views = new ArrayList<ByteBuffer>(buffers.length);
+		for (ByteBuffer buffer : buffers) {
+			views.add(buffer.asReadOnlyBuffer());
+		}
+		return Collections.unmodifiableList(views);
+	}
+
+	/**
+	 * @return A new stream which reads the body from the start, closing
+	 *         it does not release the body
+	 * @throws IllegalStateException Will be thrown if the body has been released
+	 */
+	public InputStream inputStream() {
+		checkNotReleased();
+		return new BodyInputStream();
+	}
+
+	/**
+	 * Writes the body to a channel. A {@link GatheringByteChannel}, e.g. a
+	 * FileChannel or SocketChannel, gets all buffers with one call. Direct
+	 * buffers are written without a copy.
+	 *
+	 * @param channel The channel, it is not closed
+	 * @return The number of bytes written, which is {@link #size()}
+	 * @throws IOException Will be thrown if the channel can not be written
+	 * @throws IllegalStateException Will be thrown if the body has been released
+	 */
+	public long writeTo(WritableByteChannel channel) throws IOException {
+		ByteBuffer[] buffers = checkNotReleased();
+		ByteBuffer[] views = new ByteBuffer[buffers.length];
+		for (int i = 0; i < views.length; i++) {
+			views[i] = buffers[i].asReadOnlyBuffer();
+		}
+		long written = 0;
+		if (channel instanceof GatheringByteChannel) {
+			GatheringByteChannel gathering = (GatheringByteChannel) channel;
+			int first = 0;
+			while (written < size) {
+				written += gathering.write(views, first, views.length - first);
+				while (first < views.length && !views[first].hasRemaining()) {
+					first++;
+				}
+			}
+		} else {
+			for (ByteBuffer view : views) {
+				while (view.hasRemaining()) {
+					written += channel.write(view);
+				}
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Writes the body to a stream. The bytes are copied through a small
+	 * array, because a stream may keep the array it gets, and the array of
+	 * a pooled buffer is reused by other bodies after the release.
+	 *
+	 * @param out The stream, it is not closed
+	 * @throws IOException Will be thrown if the stream can not be written
+	 * @throws IllegalStateException Will be thrown if the body has been released
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		ByteBuffer[] buffers = checkNotReleased();
+		byte[] copy = new byte[(int) Math.min(size, COPY_SIZE)];
+		for (ByteBuffer buffer : buffers) {
+			ByteBuffer view = buffer.duplicate();
+			while (view.hasRemaining()) {
+				int count = Math.min(view.remaining(), copy.length);
+				view.get(copy, 0, count);
+				out.write(copy, 0, count);
+			}
+		}
+	}
+
+	/**
+	 * @return A copy of the body, use it only for small bodies
+	 * @throws IllegalStateException Will be thrown if the body has been
+	 *         released or is larger than an array
+	 */
+	public byte[] toByteArray() {
+		ByteBuffer[] buffers = checkNotReleased();
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("The body of " + size + " bytes does not fit into an array");
+		}
+		byte[] bytes = new byte[(int) size];
+		int offset = 0;
+		for (ByteBuffer buffer : buffers) {
+			int count = buffer.remaining();
+			buffer.duplicate().get(bytes, offset, count);
+			offset += count;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the buffers to the pool. Further calls have no effect.
+	 */
+	public void release() {
+		ByteBuffer[] buffers = this.buffers;
+		if (buffers == null) {
+			return;
+		}
+		this.buffers = null;
+		if (tracker != null) {
+			tracker.close();
+		}
+		for (ByteBuffer buffer : buffers) {
+			pool.release(buffer);
+		}
+	}
+
+	/**
+	 * Same as {@link #release()}.
+	 */
+	@Override
+	public void close() {
+		release();
+	}
+
+	private ByteBuffer[] checkNotReleased() {
+		ByteBuffer[] buffers = this.buffers;
+		if (buffers == null) {
+			throw new IllegalStateException("The body has been released");
+		}
+		return buffers;
+	}
+
+	@Override
+	public String toString() {
+		ByteBuffer[] buffers = this.buffers;
+		return "PooledBody [size=" + size + (buffers == null ? ", released" : ", buffers=" + buffers.length) + "]";
+	}
+
+	/**
+	 * Reads the buffers of the body in order.
+	 */
+	private final class BodyInputStream extends InputStream {
+
+		private int index = 0;
+
+		private ByteBuffer current;
+
+		private long position = 0;
+
+		private long mark = 0;
+
+		/**
+		 * @return The buffer with the next bytes, or null at the end of the body
+		 */
+		private ByteBuffer next() throws IOException {
+			ByteBuffer[] buffers = PooledBody.this.buffers;
+			if (buffers == null) {
+				throw new IOException("The body has been released");
+			}
+			while (current == null || !current.hasRemaining()) {
+				if (index == buffers.length) {
+					return null;
+				}
+				current = buffers[index++].duplicate();
+			}
+			return current;
+		}
+
+		@Override
+		public int read() throws IOException {
+			ByteBuffer buffer = next();
+			if (buffer == null) {
+				return -1;
+			}
+			position++;
+			return buffer.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			ByteBuffer buffer = next();
+			if (buffer == null) {
+				return -1;
+			}
+			int total = 0;
+			while (buffer != null && total < length) {
+				int count = Math.min(length - total, buffer.remaining());
+				buffer.get(bytes, offset + total, count);
+				total += count;
+				buffer = total < length ? next() : buffer;
+			}
+			position += total;
+			return total;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = 0;
+			ByteBuffer buffer;
+			while (skipped < n && (buffer = next()) != null) {
+				int count = (int) Math.min(n - skipped, buffer.remaining());
+				buffer.position(buffer.position() + count);
+				skipped += count;
+			}
+			position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			if (PooledBody.this.buffers == null) {
+				throw new IOException("The body has been released");
+			}
+			return (int) Math.min(Integer.MAX_VALUE, size - position);
+		}
+
+		@Override
+		public long transferTo(OutputStream out) throws IOException {
+			long transferred = 0;
+			// Copied like in writeTo, the stream must not see the pooled arrays
+			byte[] copy = null;
+			ByteBuffer buffer;
+			while ((buffer = next()) != null) {
+				if (copy == null) {
+					copy = new byte[COPY_SIZE];
+				}
+				int count = Math.min(buffer.remaining(), copy.length);
+				buffer.get(copy, 0, count);
+				out.write(copy, 0, count);
+				transferred += count;
+			}
+			position += transferred;
+			return transferred;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return true;
+		}
+
+		@Override
+		public synchronized void mark(int readLimit) {
+			mark = position;
+		}
+
+		@Override
+		public synchronized void reset() throws IOException {
+			index = 0;
+			current = null;
+			position = 0;
+			skip(mark);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.starcode88.http.buffer;
+
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Copies the chunks of a body into buffers of a {@link BufferPool}. The
+ * chunks of the transport belong to the transport, so this one copy is
+ * needed; unlike BodyHandlers.ofByteArray() the buffers are not copied
+ * again into one array. If the body fails, the buffers are released.
+ */
+final class PooledBodySubscriber implements BodySubscriber<PooledBody> {
+
+	private final BufferPool pool;
+
+	private final CompletableFuture<PooledBody> body = new CompletableFuture<PooledBody>();
+
+	private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+
+	private ByteBuffer current;
+
+	private long size = 0;
+
+	PooledBodySubscriber(BufferPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public CompletionStage<PooledBody> getBody() {
+		return body;
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		subscription.request(Long.MAX_VALUE);
+	}
+
+	@Override
+	public void onNext(List<ByteBuffer> chunks) {
+		for (ByteBuffer chunk : chunks) {
+			size += chunk.remaining();
+			while (chunk.hasRemaining()) {
+				if (current == null || !current.hasRemaining()) {
+					current = pool.acquire();
+					buffers.add(current);
+				}
+				if (chunk.remaining() <= current.remaining()) {
+					current.put(chunk);
+				} else {
+					int limit = chunk.limit();
+					chunk.limit(chunk.position() + current.remaining());
+					current.put(chunk);
+					chunk.limit(limit);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		releaseAll();
+		body.completeExceptionally(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		ByteBuffer[] received = new ByteBuffer[buffers.size()];
+		for (int i = 0; i < received.length; i++) {
+			received[i] = buffers.get(i).flip();
+		}
+		buffers.clear();
+		current = null;
+		PooledBody pooledBody = new PooledBody(pool, received, size);
+		if (!body.complete(pooledBody)) {
+			pooledBody.release();
+		}
+	}
+
+	private void releaseAll() {
+		for (ByteBuffer buffer : buffers) {
+			pool.release(buffer);
+		}
+		buffers.clear();
+		current = null;
+	}
+}
@@ -0,0 +1,143 @@
+package com.starcode88.http.cache;
+
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * The caching rules of a response, parsed from its Cache-Control and
+ * Expires headers.
+ */
+public final class CacheControl {
+
+	private final boolean noStore;
+
+	private final boolean noCache;
+
+	/** max-age in seconds or -1 if it is not given */
+	private final long maxAge;
+
+	private final boolean varies;
+
+	private CacheControl(boolean noStore, boolean noCache, long maxAge, boolean varies) {
+		this.noStore = noStore;
+		this.noCache = noCache;
+		this.maxAge = maxAge;
+		this.varies = varies;
+	}
+
+	/**
+	 * @param headers The headers of a response
+	 * @return The caching rules
+	 */
+	public static CacheControl of(HttpHeaders headers) {
+		boolean noStore = false;
+		boolean noCache = false;
+		long maxAge = -1;
+		for (String value : headers.allValues("Cache-Control")) {
+			for (String directive : value.split(",")) {
+				String name = directive.trim().toLowerCase();
+				if (name.equals("no-store")) {
+					noStore = true;
+				} else if (name.equals("no-cache")) {
+					noCache = true;
+				} else if (name.startsWith("max-age=")) {
+					maxAge = parseSeconds(name.substring("max-age=".length()));
+				}
+			}
+		}
+		// Only the encoding may vary, decoded bodies are the same for all encodings
+		boolean varies = false;
+		for (String value : headers.allValues("Vary")) {
+			for (String name : value.split(",")) {
+				if (!name.trim().equalsIgnoreCase("Accept-Encoding")) {
+					varies = true;
+				}
+			}
+		}
+		return new CacheControl(noStore, noCache, maxAge, varies);
+	}
+
+	private static long parseSeconds(String value) {
+		try {
+			return Math.max(0, Long.parseLong(value.replace("\"", "").trim()));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	public boolean isNoStore() {
+		return noStore;
+	}
+
+	public boolean isNoCache() {
+		return noCache;
+	}
+
+	/**
+	 * @return max-age in seconds or -1 if it is not given
+	 */
+	public long getMaxAge() {
+		return maxAge;
+	}
+
+	/**
+	 * @return true if the response depends on request headers other
+	 *         than Accept-Encoding (Vary header)
+	 */
+	public boolean isVarying() {
+		return varies;
+	}
+
+	/**
+	 * Computes until when a response is fresh. max-age has precedence over
+	 * the Expires header. A response with no-cache is never fresh and must
+	 * be revalidated on each use.
+	 *
+	 * @param headers The headers of the response
+	 * @param nowMillis When the response has been received
+	 * @return Until when the response is fresh
+	 */
+	public long expiresAtMillis(HttpHeaders headers, long nowMillis) {
+		if (noCache) {
+			return nowMillis;
+		}
+		if (maxAge >= 0) {
+			return nowMillis + maxAge * 1000;
+		}
+		Optional<String> expires = headers.firstValue("Expires");
+		if (expires.isPresent()) {
+			try {
+				return ZonedDateTime.parse(expires.get(), DateTimeFormatter.RFC_1123_DATE_TIME)
+						.toInstant().toEpochMilli();
+			} catch (DateTimeParseException e) {
+				return nowMillis;
+			}
+		}
+		return nowMillis;
+	}
+
+	/**
+	 * Merges the headers of a 304 response into the headers of the cached
+	 * response. Headers of the 304 response replace those of the cached one.
+	 *
+	 * @param cached The headers of the cached response
+	 * @param notModified The headers of the 304 response
+	 * @return The merged headers
+	 */
+	public static HttpHeaders merge(HttpHeaders cached, HttpHeaders notModified) {
+		Map<String, List<String>> merged = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+		merged.putAll(cached.map());
+		for (Map.Entry<String, List<String>> entry : notModified.map().entrySet()) {
+			if (!entry.getKey().equalsIgnoreCase("Content-Length")) {
+				merged.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return HttpHeaders.of(merged, (name, value) -> true);
+	}
+}
@@ -0,0 +1,144 @@
+package com.starcode88.http.cache;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * A cached response. The body is kept either on the heap or in a file of
+ * the on-disk tier of {@link LruResponseCache}. Instances are immutable,
+ * a revalidated entry is a new instance.
+ */
+public final class CacheEntry {
+
+	private final int statusCode;
+
+	private final HttpHeaders headers;
+
+	/** The body if it is kept on the heap, otherwise null */
+	private final byte[] body;
+
+	/** The file of the body if it is kept on disk, otherwise null */
+	private final Path bodyFile;
+
+	private final long bodySize;
+
+	private final long storedAtMillis;
+
+	private final long expiresAtMillis;
+
+	private CacheEntry(int statusCode, HttpHeaders headers, byte[] body, Path bodyFile,
+			long bodySize, long storedAtMillis, long expiresAtMillis) {
+		this.statusCode = statusCode;
+		this.headers = headers;
+		this.body = body;
+		this.bodyFile = bodyFile;
+		this.bodySize = bodySize;
+		this.storedAtMillis = storedAtMillis;
+		this.expiresAtMillis = expiresAtMillis;
+	}
+
+	/**
+	 * @param statusCode The status code of the response
+	 * @param headers The headers of the response
+	 * @param body The body of the response, it must not be changed afterwards
+	 * @param storedAtMillis When the response has been received
+	 * @param expiresAtMillis Until when the response is fresh
+	 * @return The entry
+	 */
+	public static CacheEntry of(int statusCode, HttpHeaders headers, byte[] body,
+			long storedAtMillis, long expiresAtMillis) {
+		return new CacheEntry(statusCode, headers, body, null, body.length, storedAtMillis, expiresAtMillis);
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public HttpHeaders getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * Gets the body. A body on the heap is returned without copying, the
+	 * caller must not change it.
+	 *
+	 * @return The body
+	 * @throws IOException Will be thrown if the body file can not be read,
+	 *                     e.g. because the entry has been evicted meanwhile
+	 */
+	public byte[] getBody() throws IOException {
+		if (body != null) {
+			return body;
+		}
+		return Files.readAllBytes(bodyFile);
+	}
+
+	public long getBodySize() {
+		return bodySize;
+	}
+
+	public boolean isOnDisk() {
+		return bodyFile != null;
+	}
+
+	public long getStoredAtMillis() {
+		return storedAtMillis;
+	}
+
+	public long getExpiresAtMillis() {
+		return expiresAtMillis;
+	}
+
+	/**
+	 * @param nowMillis The current time
+	 * @return true if the entry can be used without asking the server
+	 */
+	public boolean isFresh(long nowMillis) {
+		return nowMillis < expiresAtMillis;
+	}
+
+	public Optional<String> getETag() {
+		return headers.firstValue("ETag");
+	}
+
+	public Optional<String> getLastModified() {
+		return headers.firstValue("Last-Modified");
+	}
+
+	/**
+	 * @return true if the entry can be revalidated with a conditional request
+	 */
+	public boolean hasValidator() {
+		return getETag().isPresent() || getLastModified().isPresent();
+	}
+
+	/**
+	 * Creates the entry after the server has confirmed with 304 that the
+	 * body is still valid.
+	 *
+	 * @param headers The merged headers
+	 * @param storedAtMillis When the 304 response has been received
+	 * @param expiresAtMillis Until when the entry is fresh now
+	 * @return The new entry with the same body
+	 */
+	public CacheEntry revalidated(HttpHeaders headers, long storedAtMillis, long expiresAtMillis) {
+		return new CacheEntry(statusCode, headers, body, bodyFile, bodySize, storedAtMillis, expiresAtMillis);
+	}
+
+	/**
+	 * Creates an entry with the same content whose body is kept in a file.
+	 *
+	 * @param file The file which already contains the body
+	 * @return The new entry
+	 */
+	CacheEntry onDisk(Path file) {
+		return new CacheEntry(statusCode, headers, null, file, bodySize, storedAtMillis, expiresAtMillis);
+	}
+
+	Path getBodyFile() {
+		return bodyFile;
+	}
+}
@@ -0,0 +1,73 @@
+package com.starcode88.http.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the response cache of a {@link com.starcode88.http.HttpClient}.
+ * The counters are updated without locking.
+ */
+public final class CacheStatistics {
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder revalidations = new LongAdder();
+
+	private final LongAdder notModified = new LongAdder();
+
+	public void recordHit() {
+		hits.increment();
+	}
+
+	public void recordMiss() {
+		misses.increment();
+	}
+
+	/**
+	 * Records a conditional request which has been sent for a stale entry.
+	 * @param notModified true if the server answered with 304 Not Modified
+	 */
+	public void recordRevalidation(boolean notModified) {
+		revalidations.increment();
+		if (notModified) {
+			this.notModified.increment();
+		}
+	}
+
+	/**
+	 * @return Number of requests which have been answered from the cache
+	 *         without asking the server
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return Number of requests for which no entry has been found
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return Number of conditional requests for stale entries
+	 */
+	public long getRevalidations() {
+		return revalidations.sum();
+	}
+
+	/**
+	 * @return Number of conditional requests which have been answered with
+	 *         304, the cached body has been used for them
+	 */
+	public long getNotModified() {
+		return notModified.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStatistics [hits=" + getHits() + ", misses=" + getMisses()
+				+ ", revalidations=" + getRevalidations() + ", notModified=" + getNotModified() + "]";
+	}
+}
@@ -0,0 +1,240 @@
+package com.starcode88.http.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A {@link ResponseCache} which is bounded by the number of entries and by
+ * the number of bytes of the bodies. If a bound is exceeded, the least
+ * recently used entries are evicted.
+ * <p>
+ * Optionally large bodies are kept in files of a directory instead of the
+ * heap (on-disk tier). The files are deleted when their entries are evicted.
+ */
+public class LruResponseCache implements ResponseCache {
+
+	private static Logger logger = LogManager.getLogger(LruResponseCache.class);
+
+	private final int maxEntries;
+
+	private final long maxHeapBytes;
+
+	private final Path diskDirectory;
+
+	private final long diskThreshold;
+
+	private final long maxDiskBytes;
+
+	/** Entries in access order, guarded by this */
+	private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+
+	private long heapBytes = 0;
+
+	private long diskBytes = 0;
+
+	private long evictions = 0;
+
+	private LruResponseCache(Builder builder) {
+		this.maxEntries = builder.maxEntries;
+		this.maxHeapBytes = builder.maxHeapBytes;
+		this.diskDirectory = builder.diskDirectory;
+		this.diskThreshold = builder.diskThreshold;
+		this.maxDiskBytes = builder.maxDiskBytes;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	@Override
+	public synchronized CacheEntry get(String key) {
+		return entries.get(key);
+	}
+
+	@Override
+	public void put(String key, CacheEntry entry) {
+		long size = entry.getBodySize();
+		if (!entry.isOnDisk() && diskDirectory != null && size >= diskThreshold) {
+			if (size > maxDiskBytes) {
+				remove(key);
+				return;
+			}
+			entry = writeToDisk(entry);
+			if (entry == null) {
+				remove(key);
+				return;
+			}
+		} else if (!entry.isOnDisk() && size > maxHeapBytes) {
+			remove(key);
+			return;
+		}
+		synchronized (this) {
+			CacheEntry previous = entries.put(key, entry);
+			if (previous != null) {
+				release(previous, entry);
+			}
+			account(entry, 1);
+			evict();
+		}
+	}
+
+	@Override
+	public void remove(String key) {
+		synchronized (this) {
+			CacheEntry previous = entries.remove(key);
+			if (previous != null) {
+				release(previous, null);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		for (CacheEntry entry : entries.values()) {
+			release(entry, null);
+		}
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Number of bytes of the bodies which are kept on the heap
+	 */
+	public synchronized long getHeapBytes() {
+		return heapBytes;
+	}
+
+	/**
+	 * @return Number of bytes of the bodies which are kept on disk
+	 */
+	public synchronized long getDiskBytes() {
+		return diskBytes;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Evicts least recently used entries until all bounds are kept.
+	 * Must be called while holding the lock.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()
+				&& (entries.size() > maxEntries || heapBytes > maxHeapBytes || diskBytes > maxDiskBytes)) {
+			CacheEntry eldest = iterator.next().getValue();
+			iterator.remove();
+			release(eldest, null);
+			evictions++;
+		}
+	}
+
+	/**
+	 * Updates the byte counters and deletes the body file of a removed
+	 * entry, unless the file is still used by the entry which replaced it.
+	 * Must be called while holding the lock.
+	 */
+	private void release(CacheEntry removed, CacheEntry replacement) {
+		account(removed, -1);
+		Path file = removed.getBodyFile();
+		if (file != null && (replacement == null || !file.equals(replacement.getBodyFile()))) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				logger.warn("Failed to delete cache file {}: {}", file, e.getMessage());
+			}
+		}
+	}
+
+	private void account(CacheEntry entry, int sign) {
+		if (entry.isOnDisk()) {
+			diskBytes += sign * entry.getBodySize();
+		} else {
+			heapBytes += sign * entry.getBodySize();
+		}
+	}
+
+	private CacheEntry writeToDisk(CacheEntry entry) {
+		Path file = diskDirectory.resolve(UUID.randomUUID().toString() + ".body");
+		try {
+			Files.write(file, entry.getBody());
+			return entry.onDisk(file);
+		} catch (IOException e) {
+			logger.warn("Failed to write cache file {}: {}", file, e.getMessage());
+			return null;
+		}
+	}
+
+	public static class Builder {
+
+		private int maxEntries = 1000;
+
+		private long maxHeapBytes = 64L * 1024 * 1024;
+
+		private Path diskDirectory;
+
+		private long diskThreshold = 1024 * 1024;
+
+		private long maxDiskBytes = 1024L * 1024 * 1024;
+
+		private Builder() {
+		}
+
+		public Builder maxEntries(int maxEntries) {
+			if (maxEntries < 1) {
+				throw new IllegalArgumentException("The argument <maxEntries> must be at least 1");
+			}
+			this.maxEntries = maxEntries;
+			return this;
+		}
+
+		/**
+		 * @param maxHeapBytes Maximum number of bytes of all bodies on the heap
+		 * @return this builder
+		 */
+		public Builder maxHeapBytes(long maxHeapBytes) {
+			if (maxHeapBytes < 0) {
+				throw new IllegalArgumentException("The argument <maxHeapBytes> must not be negative");
+			}
+			this.maxHeapBytes = maxHeapBytes;
+			return this;
+		}
+
+		/**
+		 * Enables the on-disk tier.
+		 *
+		 * @param directory Directory for the body files, it must exist
+		 * @param threshold Bodies with at least this number of bytes are kept on disk
+		 * @param maxDiskBytes Maximum number of bytes of all bodies on disk
+		 * @return this builder
+		 */
+		public Builder diskTier(Path directory, long threshold, long maxDiskBytes) {
+			if (directory == null || !Files.isDirectory(directory)) {
+				throw new IllegalArgumentException("The argument <directory> must be an existing directory: " + directory);
+			}
+			if (threshold < 0 || maxDiskBytes < 0) {
+				throw new IllegalArgumentException("The arguments <threshold> and <maxDiskBytes> must not be negative");
+			}
+			this.diskDirectory = directory;
+			this.diskThreshold = threshold;
+			this.maxDiskBytes = maxDiskBytes;
+			return this;
+		}
+
+		public LruResponseCache build() {
+			return new LruResponseCache(this);
+		}
+	}
+}
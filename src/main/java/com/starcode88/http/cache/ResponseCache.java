@@ -0,0 +1,35 @@
+package com.starcode88.http.cache;
+
+/**
+ * Storage of cached responses, used by {@link com.starcode88.http.HttpClient}
+ * for GET requests, see {@link com.starcode88.http.HttpClient#setResponseCache(ResponseCache)}.
+ * The client decides what is cached and when an entry is fresh, the cache
+ * only stores the entries. Implementations must be thread safe.
+ */
+public interface ResponseCache {
+
+	/**
+	 * @param key The key, it is built from the URI of the request
+	 * @return The entry or null if there is no entry for the key
+	 */
+	CacheEntry get(String key);
+
+	/**
+	 * Stores an entry, an existing entry with the same key is replaced.
+	 * The cache may decide not to store the entry, e.g. if it is too large.
+	 *
+	 * @param key The key
+	 * @param entry The entry
+	 */
+	void put(String key, CacheEntry entry);
+
+	/**
+	 * @param key The key of the entry to remove
+	 */
+	void remove(String key);
+
+	/**
+	 * Removes all entries.
+	 */
+	void clear();
+}
@@ -0,0 +1,285 @@
+package com.starcode88.http.circuitbreaker;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.starcode88.http.exception.HttpCircuitOpenException;
+
+/**
+ * Circuit breaker of one host, see {@link CircuitBreakerConfig}.
+ * <p>
+ * A caller asks for a permission before each call and reports the outcome
+ * with the permission it got. Outcomes of calls which were permitted in an
+ * earlier state are ignored, so a slow call which started before the
+ * circuit breaker opened does not count as probe call.
+ */
+public final class CircuitBreaker {
+
+	private static Logger logger = LogManager.getLogger(CircuitBreaker.class);
+
+	public enum State {
+		/** Calls pass and their outcome is recorded */
+		CLOSED,
+		/** Calls fail immediately */
+		OPEN,
+		/** A limited number of probe calls pass */
+		HALF_OPEN
+	}
+
+	private static final byte FAILED = 1;
+
+	private static final byte SLOW = 2;
+
+	private final String name;
+
+	private final CircuitBreakerConfig config;
+
+	private final long slowCallNanos;
+
+	private final long waitNanos;
+
+	/** Outcomes of the last calls in closed state, a ring buffer */
+	private final byte[] window;
+
+	private int windowIndex = 0;
+
+	private int windowCount = 0;
+
+	private int windowFailures = 0;
+
+	private int windowSlowCalls = 0;
+
+	private State state = State.CLOSED;
+
+	/** Incremented with each transition, it identifies the permissions of a state */
+	private long generation = 0;
+
+	private long openedAtNanos;
+
+	private int probesStarted;
+
+	private int probesCompleted;
+
+	private int probeFailures;
+
+	private int probeSlowCalls;
+
+	private final LongAdder notPermittedCalls = new LongAdder();
+
+	CircuitBreaker(String name, CircuitBreakerConfig config) {
+		this.name = name;
+		this.config = config;
+		this.slowCallNanos = config.getSlowCallDuration().toNanos();
+		this.waitNanos = config.getWaitDurationInOpenState().toNanos();
+		this.window = new byte[config.getSlidingWindowSize()];
+	}
+
+	/**
+	 * @return The host (and port) this circuit breaker protects
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return Failure rate in percent of the calls in the sliding window,
+	 *         -1 if fewer than the minimum number of calls have been recorded
+	 */
+	public synchronized float getFailureRate() {
+		return windowCount < config.getMinimumNumberOfCalls() ? -1 : 100f * windowFailures / windowCount;
+	}
+
+	/**
+	 * @return Slow call rate in percent of the calls in the sliding window,
+	 *         -1 if fewer than the minimum number of calls have been recorded
+	 */
+	public synchronized float getSlowCallRate() {
+		return windowCount < config.getMinimumNumberOfCalls() ? -1 : 100f * windowSlowCalls / windowCount;
+	}
+
+	/**
+	 * @return Number of calls which have been rejected
+	 */
+	public long getNotPermittedCalls() {
+		return notPermittedCalls.sum();
+	}
+
+	/**
+	 * Asks for the permission of a call.
+	 *
+	 * @return The permission which must be passed to {@link #onResult(long, long, boolean)}
+	 *         or {@link #releasePermission(long)}
+	 * @throws HttpCircuitOpenException Will be thrown if the call is not permitted
+	 */
+	public long acquirePermission() throws HttpCircuitOpenException {
+		State from = null;
+		long permission;
+		synchronized (this) {
+			if (state == State.OPEN) {
+				long waited = System.nanoTime() - openedAtNanos;
+				if (waited < waitNanos) {
+					notPermittedCalls.increment();
+					throw logger.throwing(new HttpCircuitOpenException(name, Duration.ofNanos(waitNanos - waited)));
+				}
+				from = transition(State.HALF_OPEN);
+			}
+			if (state == State.HALF_OPEN) {
+				if (probesStarted >= config.getPermittedCallsInHalfOpenState()) {
+					notPermittedCalls.increment();
+					throw logger.throwing(new HttpCircuitOpenException(name, Duration.ZERO));
+				}
+				probesStarted++;
+			}
+			permission = generation;
+		}
+		if (from != null) {
+			notifyListeners(from, State.HALF_OPEN);
+		}
+		return permission;
+	}
+
+	/**
+	 * Gives back a permission without recording an outcome, e.g. if the
+	 * call has been cancelled.
+	 *
+	 * @param permission The permission of the call
+	 */
+	public synchronized void releasePermission(long permission) {
+		if (permission == generation && state == State.HALF_OPEN) {
+			probesStarted--;
+		}
+	}
+
+	/**
+	 * Records the outcome of a call.
+	 *
+	 * @param permission The permission of the call
+	 * @param durationNanos The duration of the call
+	 * @param failed true if the call failed
+	 */
+	public void onResult(long permission, long durationNanos, boolean failed) {
+		boolean slow = durationNanos > slowCallNanos;
+		State from = null;
+		State to = null;
+		synchronized (this) {
+			if (permission != generation) {
+				return;
+			}
+			if (state == State.CLOSED) {
+				record(failed, slow);
+				if (windowCount >= config.getMinimumNumberOfCalls()
+						&& exceedsThresholds(windowFailures, windowSlowCalls, windowCount)) {
+					to = State.OPEN;
+				}
+			} else if (state == State.HALF_OPEN) {
+				probesCompleted++;
+				probeFailures += failed ? 1 : 0;
+				probeSlowCalls += slow ? 1 : 0;
+				if (probesCompleted >= config.getPermittedCallsInHalfOpenState()) {
+					to = exceedsThresholds(probeFailures, probeSlowCalls, probesCompleted) ? State.OPEN : State.CLOSED;
+				}
+			}
+			if (to != null) {
+				from = transition(to);
+			}
+		}
+		if (from != null) {
+			notifyListeners(from, to);
+		}
+	}
+
+	/**
+	 * Records the outcome of a call which received a response.
+	 *
+	 * @param permission The permission of the call
+	 * @param durationNanos The duration of the call
+	 * @param statusCode The status code of the response
+	 */
+	public void onResponse(long permission, long durationNanos, int statusCode) {
+		onResult(permission, durationNanos, config.isFailure(statusCode));
+	}
+
+	/**
+	 * Closes the circuit breaker and forgets all recorded calls.
+	 */
+	public void reset() {
+		State from;
+		synchronized (this) {
+			from = transition(State.CLOSED);
+		}
+		if (from != State.CLOSED) {
+			notifyListeners(from, State.CLOSED);
+		}
+	}
+
+	private boolean exceedsThresholds(int failures, int slowCalls, int calls) {
+		return 100f * failures / calls >= config.getFailureRateThreshold()
+				|| 100f * slowCalls / calls >= config.getSlowCallRateThreshold();
+	}
+
+	private void record(boolean failed, boolean slow) {
+		if (windowCount == window.length) {
+			byte oldest = window[windowIndex];
+			windowFailures -= (oldest & FAILED) != 0 ? 1 : 0;
+			windowSlowCalls -= (oldest & SLOW) != 0 ? 1 : 0;
+		} else {
+			windowCount++;
+		}
+		window[windowIndex] = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+		windowIndex = (windowIndex + 1) % window.length;
+		windowFailures += failed ? 1 : 0;
+		windowSlowCalls += slow ? 1 : 0;
+	}
+
+	/**
+	 * Changes the state, must be called while holding the lock.
+	 *
+	 * @return The previous state
+	 */
+	private State transition(State to) {
+		State from = state;
+		state = to;
+		generation++;
+		windowIndex = 0;
+		windowCount = 0;
+		windowFailures = 0;
+		windowSlowCalls = 0;
+		probesStarted = 0;
+		probesCompleted = 0;
+		probeFailures = 0;
+		probeSlowCalls = 0;
+		if (to == State.OPEN) {
+			openedAtNanos = System.nanoTime();
+		}
+		return from;
+	}
+
+	private void notifyListeners(State from, State to) {
+		if (to == State.OPEN) {
+			logger.warn("Circuit breaker for {} changed from {} to {}, calls are rejected for {} ms",
+					name, from, to, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+		} else {
+			logger.info("Circuit breaker for {} changed from {} to {}", name, from, to);
+		}
+		for (CircuitBreakerListener listener : config.getListeners()) {
+			try {
+				listener.onStateTransition(this, from, to);
+			} catch (RuntimeException e) {
+				logger.error("Circuit breaker listener failed", e);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreaker [name=" + name + ", state=" + getState() + "]";
+	}
+}
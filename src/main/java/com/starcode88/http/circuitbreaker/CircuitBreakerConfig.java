@@ -0,0 +1,222 @@
+package com.starcode88.http.circuitbreaker;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Settings of the circuit breakers of a {@link com.starcode88.http.HttpClient}.
+ * An instance is immutable, use {@link #newBuilder()} to create one and pass
+ * it to {@link com.starcode88.http.HttpClient#setCircuitBreakerConfig(CircuitBreakerConfig)}.
+ * <p>
+ * The outcome of the last {@link #getSlidingWindowSize()} calls to a host is
+ * recorded. A call fails if it throws an IOException or if its status code
+ * is classified as failure (by default 5xx). A call is slow if it takes
+ * longer than {@link #getSlowCallDuration()}. If at least
+ * {@link #getMinimumNumberOfCalls()} calls have been recorded and the
+ * failure rate or the slow call rate reaches its threshold, the circuit
+ * breaker opens and calls fail immediately. After
+ * {@link #getWaitDurationInOpenState()} it lets
+ * {@link #getPermittedCallsInHalfOpenState()} probe calls pass. Their
+ * rates decide whether it closes again or opens for another period.
+ */
+public class CircuitBreakerConfig {
+
+	private final float failureRateThreshold;
+
+	private final float slowCallRateThreshold;
+
+	private final Duration slowCallDuration;
+
+	private final int slidingWindowSize;
+
+	private final int minimumNumberOfCalls;
+
+	private final Duration waitDurationInOpenState;
+
+	private final int permittedCallsInHalfOpenState;
+
+	private final IntPredicate failureStatusCodes;
+
+	private final List<CircuitBreakerListener> listeners;
+
+	private CircuitBreakerConfig(Builder builder) {
+		this.failureRateThreshold = builder.failureRateThreshold;
+		this.slowCallRateThreshold = builder.slowCallRateThreshold;
+		this.slowCallDuration = builder.slowCallDuration;
+		this.slidingWindowSize = builder.slidingWindowSize;
+		this.minimumNumberOfCalls = builder.minimumNumberOfCalls;
+		this.waitDurationInOpenState = builder.waitDurationInOpenState;
+		this.permittedCallsInHalfOpenState = builder.permittedCallsInHalfOpenState;
+		this.failureStatusCodes = builder.failureStatusCodes;
+		this.listeners = Collections.unmodifiableList(new ArrayList<CircuitBreakerListener>(builder.listeners));
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return Failure rate in percent at which the circuit breaker opens
+	 */
+	public float getFailureRateThreshold() {
+		return failureRateThreshold;
+	}
+
+	/**
+	 * @return Slow call rate in percent at which the circuit breaker opens
+	 */
+	public float getSlowCallRateThreshold() {
+		return slowCallRateThreshold;
+	}
+
+	public Duration getSlowCallDuration() {
+		return slowCallDuration;
+	}
+
+	public int getSlidingWindowSize() {
+		return slidingWindowSize;
+	}
+
+	public int getMinimumNumberOfCalls() {
+		return minimumNumberOfCalls;
+	}
+
+	public Duration getWaitDurationInOpenState() {
+		return waitDurationInOpenState;
+	}
+
+	public int getPermittedCallsInHalfOpenState() {
+		return permittedCallsInHalfOpenState;
+	}
+
+	public List<CircuitBreakerListener> getListeners() {
+		return listeners;
+	}
+
+	/**
+	 * @param statusCode The status code of a response
+	 * @return true if the response counts as failed call
+	 */
+	public boolean isFailure(int statusCode) {
+		return failureStatusCodes.test(statusCode);
+	}
+
+	public static class Builder {
+
+		private float failureRateThreshold = 50;
+
+		private float slowCallRateThreshold = 100;
+
+		private Duration slowCallDuration = Duration.ofSeconds(10);
+
+		private int slidingWindowSize = 100;
+
+		private int minimumNumberOfCalls = 20;
+
+		private Duration waitDurationInOpenState = Duration.ofSeconds(30);
+
+		private int permittedCallsInHalfOpenState = 5;
+
+		private IntPredicate failureStatusCodes = statusCode -> statusCode >= 500;
+
+		private List<CircuitBreakerListener> listeners = new ArrayList<CircuitBreakerListener>();
+
+		private Builder() {
+		}
+
+		/**
+		 * @param threshold Failure rate in percent (1-100) at which the circuit breaker opens
+		 * @return this builder
+		 */
+		public Builder failureRateThreshold(float threshold) {
+			if (threshold <= 0 || threshold > 100) {
+				throw new IllegalArgumentException("The argument <threshold> must be between 1 and 100");
+			}
+			this.failureRateThreshold = threshold;
+			return this;
+		}
+
+		/**
+		 * @param threshold Slow call rate in percent (1-100) at which the circuit breaker opens
+		 * @param slowCallDuration Calls which take longer are slow
+		 * @return this builder
+		 */
+		public Builder slowCallRateThreshold(float threshold, Duration slowCallDuration) {
+			if (threshold <= 0 || threshold > 100) {
+				throw new IllegalArgumentException("The argument <threshold> must be between 1 and 100");
+			}
+			if (slowCallDuration == null || slowCallDuration.isNegative() || slowCallDuration.isZero()) {
+				throw new IllegalArgumentException("The argument <slowCallDuration> must be positive");
+			}
+			this.slowCallRateThreshold = threshold;
+			this.slowCallDuration = slowCallDuration;
+			return this;
+		}
+
+		/**
+		 * @param size Number of calls whose outcome is recorded
+		 * @param minimumNumberOfCalls Number of calls which must be recorded
+		 *                             before the rates are evaluated
+		 * @return this builder
+		 */
+		public Builder slidingWindow(int size, int minimumNumberOfCalls) {
+			if (size < 1) {
+				throw new IllegalArgumentException("The argument <size> must be 1 or greater");
+			}
+			if (minimumNumberOfCalls < 1 || minimumNumberOfCalls > size) {
+				throw new IllegalArgumentException("The argument <minimumNumberOfCalls> must be between 1 and <size>");
+			}
+			this.slidingWindowSize = size;
+			this.minimumNumberOfCalls = minimumNumberOfCalls;
+			return this;
+		}
+
+		public Builder waitDurationInOpenState(Duration waitDuration) {
+			if (waitDuration == null || waitDuration.isNegative()) {
+				throw new IllegalArgumentException("The argument <waitDuration> must not be negative");
+			}
+			this.waitDurationInOpenState = waitDuration;
+			return this;
+		}
+
+		public Builder permittedCallsInHalfOpenState(int permittedCalls) {
+			if (permittedCalls < 1) {
+				throw new IllegalArgumentException("The argument <permittedCalls> must be 1 or greater");
+			}
+			this.permittedCallsInHalfOpenState = permittedCalls;
+			return this;
+		}
+
+		/**
+		 * @param failureStatusCodes Decides which status codes count as
+		 *                           failed call, default is 5xx
+		 * @return this builder
+		 */
+		public Builder failureStatusCodes(IntPredicate failureStatusCodes) {
+			if (failureStatusCodes == null) {
+				throw new IllegalArgumentException("The argument <failureStatusCodes> must not be null");
+			}
+			this.failureStatusCodes = failureStatusCodes;
+			return this;
+		}
+
+		/**
+		 * @param listener Will be notified about state transitions of all circuit breakers
+		 * @return this builder
+		 */
+		public Builder addListener(CircuitBreakerListener listener) {
+			if (listener == null) {
+				throw new IllegalArgumentException("The argument <listener> must not be null");
+			}
+			this.listeners.add(listener);
+			return this;
+		}
+
+		public CircuitBreakerConfig build() {
+			return new CircuitBreakerConfig(this);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.starcode88.http.circuitbreaker;
+
+/**
+ * Is notified when a circuit breaker changes its state. The listener is
+ * called by the thread which caused the transition, after the state has
+ * been changed, so it should return quickly.
+ */
+public interface CircuitBreakerListener {
+
+	/**
+	 * @param circuitBreaker The circuit breaker, its name is the host
+	 * @param from The previous state
+	 * @param to The new state
+	 */
+	void onStateTransition(CircuitBreaker circuitBreaker, CircuitBreaker.State from, CircuitBreaker.State to);
+}
@@ -0,0 +1,54 @@
+package com.starcode88.http.circuitbreaker;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one circuit breaker per host. The circuit breakers are created
+ * on first use with the same settings.
+ */
+public final class CircuitBreakerRegistry {
+
+	private final CircuitBreakerConfig config;
+
+	private final ConcurrentHashMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	public CircuitBreakerRegistry(CircuitBreakerConfig config) {
+		this.config = config;
+	}
+
+	public CircuitBreakerConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * @param uri The URI of a request
+	 * @return The circuit breaker of the host and port of the URI
+	 */
+	public CircuitBreaker forUri(URI uri) {
+		String authority = uri.getAuthority();
+		return get(authority != null ? authority : String.valueOf(uri.getHost()));
+	}
+
+	/**
+	 * @param name The host, with port if it is not the default port
+	 * @return The circuit breaker of the host
+	 */
+	public CircuitBreaker get(String name) {
+		CircuitBreaker circuitBreaker = circuitBreakers.get(name);
+		if (circuitBreaker != null) {
+			return circuitBreaker;
+		}
+		return circuitBreakers.computeIfAbsent(name, key -> new CircuitBreaker(key, config));
+	}
+
+	/**
+	 * @return All circuit breakers which have been created so far
+	 */
+	public Collection<CircuitBreaker> getAll() {
+		return Collections.unmodifiableList(new ArrayList<CircuitBreaker>(circuitBreakers.values()));
+	}
+}
@@ -0,0 +1,41 @@
+package com.starcode88.http.exception;
+
+import java.time.Duration;
+
+/**
+ * Will be thrown instead of sending a request if the circuit breaker of
+ * the target host is open, i.e. the host failed too often recently.
+ */
+public class HttpCircuitOpenException extends HttpException {
+
+	private static final long serialVersionUID = -2871456023387612904L;
+
+	private String host;
+
+	private Duration retryAfter;
+
+	public HttpCircuitOpenException(String host, Duration retryAfter) {
+		this.host = host;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * @return The host (and port) of the circuit breaker
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * @return The time until the circuit breaker lets probe requests pass,
+	 *         zero if all probe requests are already in flight
+	 */
+	public Duration getRetryAfter() {
+		return retryAfter;
+	}
+
+	@Override
+	public String getMessage() {
+		return "Circuit breaker for " + host + " is open";
+	}
+}
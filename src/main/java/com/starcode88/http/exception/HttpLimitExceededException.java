@@ -0,0 +1,39 @@
+package com.starcode88.http.exception;
+
+/**
+ * Will be thrown instead of sending a request if the concurrency limit of
+ * the target host has been reached and the request could not be queued or
+ * has waited too long in the queue.
+ */
+public class HttpLimitExceededException extends HttpException {
+
+	private static final long serialVersionUID = 6410725391843508716L;
+
+	private String host;
+
+	private int limit;
+
+	public HttpLimitExceededException(String host, int limit) {
+		this.host = host;
+		this.limit = limit;
+	}
+
+	/**
+	 * @return The host (and port) of the concurrency limiter
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * @return The limit of requests in flight when the request was rejected
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	@Override
+	public String getMessage() {
+		return "Concurrency limit " + limit + " of " + host + " exceeded";
+	}
+}
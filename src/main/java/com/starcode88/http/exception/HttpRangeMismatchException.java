@@ -0,0 +1,41 @@
+package com.starcode88.http.exception;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Will be thrown if the server answers a range request of a parallel
+ * download with another status code than 206 Partial Content, e.g.
+ * because the file has changed. A retry would get the same answer, so
+ * it is not retried by default.
+ */
+public class HttpRangeMismatchException extends IOException {
+
+	private static final long serialVersionUID = -2671853316254062416L;
+
+	private URI uri;
+
+	private int statusCode;
+
+	public HttpRangeMismatchException(URI uri, int statusCode) {
+		this.uri = uri;
+		this.statusCode = statusCode;
+	}
+
+	public URI getUri() {
+		return uri;
+	}
+
+	/**
+	 * @return The status code of the response to the range request
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	@Override
+	public String getMessage() {
+		return "The server answered the range request for " + uri + " with status code " + statusCode
+				+ ", the file may have changed";
+	}
+}
@@ -0,0 +1,155 @@
+package com.starcode88.http.hedge;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.starcode88.http.metrics.Histogram;
+
+/**
+ * The state of the hedged requests of a client: the current hedge delay,
+ * the latencies from which it is derived and the hedge budget.
+ * <p>
+ * The latencies are recorded into a {@link Histogram}. Each time
+ * {@link HedgingPolicy#getWindowSize()} latencies have been recorded, the
+ * delay is set to their percentile and the histogram is cleared, so the
+ * delay follows the server within one window and recording stays free of
+ * locking and allocation. The budget is a token bucket like
+ * {@link com.starcode88.http.retry.RetryBudget}.
+ */
+public final class Hedger {
+
+	/** Tokens are counted in millionths, so that fractional deposits add up */
+	private static final long UNIT = 1_000_000L;
+
+	private final HedgingPolicy policy;
+
+	private final Histogram window = new Histogram();
+
+	private final AtomicInteger samples = new AtomicInteger();
+
+	private volatile long delayNanos;
+
+	private final long minDelayNanos;
+
+	private final long maxDelayNanos;
+
+	private final long deposit;
+
+	private final long capacity;
+
+	private final AtomicLong balance;
+
+	private final LongAdder hedges = new LongAdder();
+
+	private final LongAdder wins = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	public Hedger(HedgingPolicy policy) {
+		this.policy = policy;
+		this.delayNanos = policy.getDelay().toNanos();
+		this.minDelayNanos = policy.getMinDelay().toNanos();
+		this.maxDelayNanos = policy.getMaxDelay().toNanos();
+		this.deposit = (long) (policy.getBudgetRatio() * UNIT);
+		this.capacity = Math.max(policy.getBudgetMinHedges(), 1) * UNIT;
+		this.balance = new AtomicLong(policy.getBudgetMinHedges() * UNIT);
+	}
+
+	public HedgingPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @return The current hedge delay in nanoseconds
+	 */
+	public long getDelayNanos() {
+		return delayNanos;
+	}
+
+	/**
+	 * Records the latency of a response of the primary request and updates
+	 * the delay when the window is full.
+	 *
+	 * @param nanos The latency in nanoseconds
+	 */
+	public void recordLatency(long nanos) {
+		if (!policy.isAdaptive()) {
+			return;
+		}
+		window.record(nanos);
+		if (samples.incrementAndGet() == policy.getWindowSize()) {
+			long value = window.getValueAtPercentile(policy.getPercentile());
+			window.reset();
+			samples.set(0);
+			this.delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, value));
+		}
+	}
+
+	/**
+	 * Deposits the tokens of one request.
+	 */
+	public void recordRequest() {
+		long current;
+		do {
+			current = balance.get();
+			if (current >= capacity) {
+				return;
+			}
+		} while (!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+	}
+
+	/**
+	 * Withdraws one token for a hedge.
+	 *
+	 * @return true if the hedge may be sent, false if the budget is exhausted
+	 */
+	public boolean tryAcquireHedge() {
+		long current;
+		do {
+			current = balance.get();
+			if (current < UNIT) {
+				rejected.increment();
+				return false;
+			}
+		} while (!balance.compareAndSet(current, current - UNIT));
+		hedges.increment();
+		return true;
+	}
+
+	/**
+	 * Records that the response of a hedge has been used.
+	 */
+	public void recordWin() {
+		wins.increment();
+	}
+
+	/**
+	 * @return Number of hedges which have been sent
+	 */
+	public long getHedges() {
+		return hedges.sum();
+	}
+
+	/**
+	 * @return Number of hedges which have answered before the primary request
+	 */
+	public long getHedgeWins() {
+		return wins.sum();
+	}
+
+	/**
+	 * @return Number of hedges which have not been sent because the budget
+	 *         was exhausted
+	 */
+	public long getRejectedHedges() {
+		return rejected.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "Hedger [delay=" + TimeUnit.NANOSECONDS.toMicros(delayNanos) + "us, hedges=" + getHedges()
+				+ ", hedgeWins=" + getHedgeWins() + ", rejectedHedges=" + getRejectedHedges() + "]";
+	}
+}
@@ -0,0 +1,237 @@
+package com.starcode88.http.hedge;
+
+import java.time.Duration;
+
+/**
+ * Settings of hedged requests. An instance is immutable, use
+ * {@link #newBuilder()} to create one and pass it to
+ * {@link com.starcode88.http.HttpClient#setHedgingPolicy(HedgingPolicy)}.
+ * <p>
+ * If the response of a GET request has not arrived after the hedge delay,
+ * a second copy of the request is sent, optionally to
+ * {@link #getAlternateBaseUrl()}. The first successful response is used
+ * and the other exchange is cancelled. This cuts the tail latency caused
+ * by an occasional slow server or connection, at the cost of some extra
+ * requests.
+ * <p>
+ * By default the delay adapts to the server: it is the
+ * {@link #getPercentile()} of the latencies of the last
+ * {@link #getWindowSize()} responses, within {@link #getMinDelay()} and
+ * {@link #getMaxDelay()}. Until enough latencies have been recorded the
+ * initial {@link #getDelay()} is used. The hedges are limited by a budget
+ * like the retries of {@link com.starcode88.http.retry.RetryPolicy}: each
+ * request earns {@link #getBudgetRatio()} hedges, so hedging can not
+ * double the load when the server becomes slow for all requests.
+ */
+public class HedgingPolicy {
+
+	private final Duration delay;
+
+	private final double percentile;
+
+	private final Duration minDelay;
+
+	private final Duration maxDelay;
+
+	private final int windowSize;
+
+	private final double budgetRatio;
+
+	private final int budgetMinHedges;
+
+	private final String alternateBaseUrl;
+
+	private HedgingPolicy(Builder builder) {
+		this.delay = builder.delay;
+		this.percentile = builder.percentile;
+		this.minDelay = builder.minDelay;
+		this.maxDelay = builder.maxDelay;
+		this.windowSize = builder.windowSize;
+		this.budgetRatio = builder.budgetRatio;
+		this.budgetMinHedges = builder.budgetMinHedges;
+		this.alternateBaseUrl = builder.alternateBaseUrl;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return The hedge delay until enough latencies have been recorded,
+	 *         or always if the delay is not adaptive
+	 */
+	public Duration getDelay() {
+		return delay;
+	}
+
+	/**
+	 * @return true if the delay is derived from the observed latencies
+	 */
+	public boolean isAdaptive() {
+		return percentile > 0;
+	}
+
+	/**
+	 * @return The percentile of the latencies which is used as delay,
+	 *         0 if the delay is fixed
+	 */
+	public double getPercentile() {
+		return percentile;
+	}
+
+	public Duration getMinDelay() {
+		return minDelay;
+	}
+
+	public Duration getMaxDelay() {
+		return maxDelay;
+	}
+
+	/**
+	 * @return Number of latencies after which the adaptive delay is updated
+	 */
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * @return Number of hedges which are earned by each request
+	 */
+	public double getBudgetRatio() {
+		return budgetRatio;
+	}
+
+	/**
+	 * @return Number of hedges which are always possible, even if there
+	 *         have not been any requests before
+	 */
+	public int getBudgetMinHedges() {
+		return budgetMinHedges;
+	}
+
+	/**
+	 * @return The base URL to which the hedges are sent, or null if they
+	 *         are sent to the base URL of the client
+	 */
+	public String getAlternateBaseUrl() {
+		return alternateBaseUrl;
+	}
+
+	@Override
+	public String toString() {
+		return "HedgingPolicy [delay=" + delay + ", percentile=" + percentile + ", minDelay=" + minDelay
+				+ ", maxDelay=" + maxDelay + ", windowSize=" + windowSize + ", budgetRatio=" + budgetRatio
+				+ ", alternateBaseUrl=" + alternateBaseUrl + "]";
+	}
+
+	public static class Builder {
+
+		private Duration delay = Duration.ofMillis(50);
+
+		private double percentile = 95;
+
+		private Duration minDelay = Duration.ofMillis(1);
+
+		private Duration maxDelay = Duration.ofSeconds(1);
+
+		private int windowSize = 1000;
+
+		private double budgetRatio = 0.1;
+
+		private int budgetMinHedges = 10;
+
+		private String alternateBaseUrl = null;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param delay The initial hedge delay of the adaptive delay
+		 * @return this builder
+		 */
+		public Builder delay(Duration delay) {
+			if (delay == null || delay.isNegative()) {
+				throw new IllegalArgumentException("The argument <delay> must not be negative");
+			}
+			this.delay = delay;
+			return this;
+		}
+
+		/**
+		 * Uses always the same delay instead of an adaptive delay.
+		 *
+		 * @param delay The hedge delay
+		 * @return this builder
+		 */
+		public Builder fixedDelay(Duration delay) {
+			delay(delay);
+			this.percentile = 0;
+			return this;
+		}
+
+		/**
+		 * @param percentile The percentile of the latencies which is used
+		 *                   as delay (0-100, exclusive), e.g. 95
+		 * @param minDelay The shortest delay
+		 * @param maxDelay The longest delay
+		 * @return this builder
+		 */
+		public Builder adaptiveDelay(double percentile, Duration minDelay, Duration maxDelay) {
+			if (percentile <= 0 || percentile >= 100) {
+				throw new IllegalArgumentException("The argument <percentile> must be between 0 and 100");
+			}
+			if (minDelay == null || maxDelay == null || minDelay.isNegative() || maxDelay.compareTo(minDelay) < 0) {
+				throw new IllegalArgumentException("The arguments <minDelay> and <maxDelay> must be a valid range");
+			}
+			this.percentile = percentile;
+			this.minDelay = minDelay;
+			this.maxDelay = maxDelay;
+			return this;
+		}
+
+		/**
+		 * @param windowSize Number of latencies after which the adaptive
+		 *                   delay is updated, at least 10
+		 * @return this builder
+		 */
+		public Builder windowSize(int windowSize) {
+			if (windowSize < 10) {
+				throw new IllegalArgumentException("The argument <windowSize> must be at least 10");
+			}
+			this.windowSize = windowSize;
+			return this;
+		}
+
+		/**
+		 * @param ratio Hedges allowed per request, e.g. 0.1 allows hedges
+		 *              for up to 10% of the requests
+		 * @param minHedges Number of hedges which are always available
+		 * @return this builder
+		 */
+		public Builder budget(double ratio, int minHedges) {
+			if (ratio < 0) {
+				throw new IllegalArgumentException("The argument <ratio> must not be negative");
+			}
+			if (minHedges < 0) {
+				throw new IllegalArgumentException("The argument <minHedges> must not be negative");
+			}
+			this.budgetRatio = ratio;
+			this.budgetMinHedges = minHedges;
+			return this;
+		}
+
+		/**
+		 * @param baseUrl The base URL of a replica to which the hedges are
+		 *                sent, e.g. "https://replica2.example.com", or null
+		 * @return this builder
+		 */
+		public Builder alternateBaseUrl(String baseUrl) {
+			this.alternateBaseUrl = baseUrl;
+			return this;
+		}
+
+		public HedgingPolicy build() {
+			return new HedgingPolicy(this);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.starcode88.http.limit;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Additive increase, multiplicative decrease. The limit grows by one for
+ * each successful request while at least half of the limit is in use, and
+ * it is multiplied with the backoff ratio for each dropped request or
+ * request which took longer than the timeout.
+ */
+public final class AimdLimit implements LimitAlgorithm {
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final double backoffRatio;
+
+	private final long timeoutNanos;
+
+	private final AtomicInteger limit;
+
+	private AimdLimit(Builder builder) {
+		this.minLimit = builder.minLimit;
+		this.maxLimit = builder.maxLimit;
+		this.backoffRatio = builder.backoffRatio;
+		this.timeoutNanos = builder.timeout.toNanos();
+		this.limit = new AtomicInteger(builder.initialLimit);
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	@Override
+	public int getLimit() {
+		return limit.get();
+	}
+
+	@Override
+	public int onSample(long rttNanos, int inFlight, boolean dropped) {
+		while (true) {
+			int current = limit.get();
+			int next = current;
+			if (dropped || rttNanos > timeoutNanos) {
+				next = Math.max(minLimit, (int) (current * backoffRatio));
+			} else if (inFlight * 2 >= current) {
+				next = Math.min(maxLimit, current + 1);
+			}
+			if (next == current || limit.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "AimdLimit [limit=" + getLimit() + "]";
+	}
+
+	public static class Builder {
+
+		private int initialLimit = 20;
+
+		private int minLimit = 1;
+
+		private int maxLimit = 200;
+
+		private double backoffRatio = 0.9;
+
+		private Duration timeout = Duration.ofSeconds(5);
+
+		private Builder() {
+		}
+
+		/**
+		 * @param initialLimit The limit before the first request has completed
+		 * @param minLimit The limit never falls below this value
+		 * @param maxLimit The limit never grows above this value
+		 * @return this builder
+		 */
+		public Builder limits(int initialLimit, int minLimit, int maxLimit) {
+			if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+				throw new IllegalArgumentException("The limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+			}
+			this.initialLimit = initialLimit;
+			this.minLimit = minLimit;
+			this.maxLimit = maxLimit;
+			return this;
+		}
+
+		/**
+		 * @param backoffRatio Factor (between 0.5 and 1) for the limit after a dropped request
+		 * @return this builder
+		 */
+		public Builder backoffRatio(double backoffRatio) {
+			if (backoffRatio < 0.5 || backoffRatio >= 1.0) {
+				throw new IllegalArgumentException("The argument <backoffRatio> must be between 0.5 and 1");
+			}
+			this.backoffRatio = backoffRatio;
+			return this;
+		}
+
+		/**
+		 * @param timeout Requests which take longer count as dropped
+		 * @return this builder
+		 */
+		public Builder timeout(Duration timeout) {
+			if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+				throw new IllegalArgumentException("The argument <timeout> must be positive");
+			}
+			this.timeout = timeout;
+			return this;
+		}
+
+		public AimdLimit build() {
+			return new AimdLimit(this);
+		}
+	}
+}
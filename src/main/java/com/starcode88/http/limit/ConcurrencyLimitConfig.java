@@ -0,0 +1,96 @@
+package com.starcode88.http.limit;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Settings of the concurrency limiters of a {@link com.starcode88.http.HttpClient}.
+ * An instance is immutable, use {@link #newBuilder()} to create one and pass
+ * it to {@link com.starcode88.http.HttpClient#setConcurrencyLimitConfig(ConcurrencyLimitConfig)}.
+ * <p>
+ * Each host gets its own limiter with its own {@link LimitAlgorithm}. A
+ * request which exceeds the limit waits in a queue of at most
+ * {@link #getMaxQueueSize()} requests for at most {@link #getMaxWait()}.
+ * If the queue is full or the wait time is over, the request is rejected.
+ */
+public class ConcurrencyLimitConfig {
+
+	private final Supplier<? extends LimitAlgorithm> algorithm;
+
+	private final int maxQueueSize;
+
+	private final Duration maxWait;
+
+	private ConcurrencyLimitConfig(Builder builder) {
+		this.algorithm = builder.algorithm;
+		this.maxQueueSize = builder.maxQueueSize;
+		this.maxWait = builder.maxWait;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return Creates the algorithm of a new limiter
+	 */
+	public Supplier<? extends LimitAlgorithm> getAlgorithm() {
+		return algorithm;
+	}
+
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	public Duration getMaxWait() {
+		return maxWait;
+	}
+
+	public static class Builder {
+
+		private Supplier<? extends LimitAlgorithm> algorithm = () -> AimdLimit.newBuilder().build();
+
+		private int maxQueueSize = 100;
+
+		private Duration maxWait = Duration.ofSeconds(1);
+
+		private Builder() {
+		}
+
+		/**
+		 * @param algorithm Creates the algorithm for each host, e.g.
+		 *                  {@code GradientLimit.newBuilder()::build}.
+		 *                  Default is {@link AimdLimit} with default settings.
+		 * @return this builder
+		 */
+		public Builder algorithm(Supplier<? extends LimitAlgorithm> algorithm) {
+			if (algorithm == null) {
+				throw new IllegalArgumentException("The argument <algorithm> must not be null");
+			}
+			this.algorithm = algorithm;
+			return this;
+		}
+
+		/**
+		 * @param maxQueueSize Maximum number of requests waiting for a free slot,
+		 *                     0 rejects requests immediately
+		 * @param maxWait Maximum time a request waits for a free slot
+		 * @return this builder
+		 */
+		public Builder queue(int maxQueueSize, Duration maxWait) {
+			if (maxQueueSize < 0) {
+				throw new IllegalArgumentException("The argument <maxQueueSize> must not be negative");
+			}
+			if (maxWait == null || maxWait.isNegative()) {
+				throw new IllegalArgumentException("The argument <maxWait> must not be negative");
+			}
+			this.maxQueueSize = maxQueueSize;
+			this.maxWait = maxWait;
+			return this;
+		}
+
+		public ConcurrencyLimitConfig build() {
+			return new ConcurrencyLimitConfig(this);
+		}
+	}
+}
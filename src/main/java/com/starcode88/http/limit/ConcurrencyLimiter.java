@@ -0,0 +1,252 @@
+package com.starcode88.http.limit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.starcode88.http.exception.HttpLimitExceededException;
+
+/**
+ * Limits the number of requests in flight to one host. The limit is taken
+ * from a {@link LimitAlgorithm} which is updated with the round trip time
+ * of every completed request.
+ * <p>
+ * The counters are updated with compare-and-set, so requests below the
+ * limit never block. Only requests above the limit wait until a request
+ * completes or their wait time is over: {@link #acquire()} parks the
+ * thread, {@link #acquireAsync()} queues a future and does not block.
+ */
+public final class ConcurrencyLimiter {
+
+	private static Logger logger = LogManager.getLogger(ConcurrencyLimiter.class);
+
+	private final String name;
+
+	private final LimitAlgorithm algorithm;
+
+	private final int maxQueueSize;
+
+	private final long maxWaitNanos;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicInteger queued = new AtomicInteger();
+
+	private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+
+	private final ConcurrentLinkedQueue<CompletableFuture<Integer>> asyncWaiters =
+			new ConcurrentLinkedQueue<CompletableFuture<Integer>>();
+
+	private final LongAdder rejected = new LongAdder();
+
+	ConcurrencyLimiter(String name, ConcurrencyLimitConfig config) {
+		this.name = name;
+		this.algorithm = config.getAlgorithm().get();
+		this.maxQueueSize = config.getMaxQueueSize();
+		this.maxWaitNanos = config.getMaxWait().toNanos();
+	}
+
+	/**
+	 * @return The host (and port) this limiter protects
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public LimitAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * @return The current limit of requests in flight
+	 */
+	public int getLimit() {
+		return algorithm.getLimit();
+	}
+
+	/**
+	 * @return Number of requests in flight
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return Number of requests waiting for a free slot
+	 */
+	public int getQueueDepth() {
+		return queued.get();
+	}
+
+	/**
+	 * @return Number of requests which have been rejected
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Takes a slot for a request, blocks the thread while it waits. Use
+	 * {@link #acquireAsync()} on threads which must not block.
+	 *
+	 * @return The number of requests in flight including this one, which
+	 *         must be passed to {@link #release(int, long, boolean)}
+	 * @throws HttpLimitExceededException Will be thrown if the queue is full
+	 *                                    or the wait time is over
+	 * @throws InterruptedException Will be thrown if the thread is interrupted while waiting
+	 */
+	public int acquire() throws HttpLimitExceededException, InterruptedException {
+		int taken = tryAcquire();
+		if (taken > 0) {
+			return taken;
+		}
+		if (maxWaitNanos == 0 || queued.incrementAndGet() > maxQueueSize) {
+			if (maxWaitNanos != 0) {
+				queued.decrementAndGet();
+			}
+			throw reject();
+		}
+		Thread current = Thread.currentThread();
+		waiters.add(current);
+		long deadline = System.nanoTime() + maxWaitNanos;
+		try {
+			while (true) {
+				taken = tryAcquire();
+				if (taken > 0) {
+					return taken;
+				}
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					throw reject();
+				}
+				LockSupport.parkNanos(this, remaining);
+				if (Thread.interrupted()) {
+					throw logger.throwing(new InterruptedException());
+				}
+			}
+		} finally {
+			waiters.remove(current);
+			queued.decrementAndGet();
+			// A slot which has been freed for this thread is passed on
+			signalWaiter();
+		}
+	}
+
+	/**
+	 * Takes a slot for a request without blocking. If the limit is reached,
+	 * the future is queued and completed when a request completes, on the
+	 * thread which releases the slot.
+	 *
+	 * @return The number of requests in flight including this one, which
+	 *         must be passed to {@link #release(int, long, boolean)}. The
+	 *         future fails with {@link HttpLimitExceededException} if the
+	 *         queue is full or the wait time is over. If it is cancelled,
+	 *         no slot is taken.
+	 */
+	public CompletableFuture<Integer> acquireAsync() {
+		int taken = tryAcquire();
+		if (taken > 0) {
+			return CompletableFuture.completedFuture(taken);
+		}
+		if (maxWaitNanos == 0 || queued.incrementAndGet() > maxQueueSize) {
+			if (maxWaitNanos != 0) {
+				queued.decrementAndGet();
+			}
+			return CompletableFuture.failedFuture(reject());
+		}
+		CompletableFuture<Integer> waiter = new CompletableFuture<Integer>();
+		// Whoever completes the future first removes it from the queue
+		waiter.whenComplete((slot, throwable) -> {
+			if (throwable != null) {
+				asyncWaiters.remove(waiter);
+			}
+			queued.decrementAndGet();
+		});
+		asyncWaiters.add(waiter);
+		CompletableFuture.delayedExecutor(maxWaitNanos, TimeUnit.NANOSECONDS).execute(() -> {
+			if (!waiter.isDone()) {
+				HttpLimitExceededException e = new HttpLimitExceededException(name, algorithm.getLimit());
+				if (waiter.completeExceptionally(e)) {
+					rejected.increment();
+					logger.throwing(e);
+				}
+			}
+		});
+		// A slot may have been freed before the future was queued
+		signalWaiter();
+		return waiter;
+	}
+
+	/**
+	 * Gives back the slot of a completed request and updates the limit.
+	 *
+	 * @param taken The value returned by {@link #acquire()}
+	 * @param rttNanos The round trip time of the request
+	 * @param dropped true if the request failed in a way which indicates overload
+	 */
+	public void release(int taken, long rttNanos, boolean dropped) {
+		inFlight.decrementAndGet();
+		algorithm.onSample(rttNanos, taken, dropped);
+		signalWaiter();
+	}
+
+	/**
+	 * Gives back the slot of a request which has been cancelled, the limit
+	 * is not updated.
+	 */
+	public void release() {
+		inFlight.decrementAndGet();
+		signalWaiter();
+	}
+
+	private int tryAcquire() {
+		int limit = algorithm.getLimit();
+		while (true) {
+			int current = inFlight.get();
+			if (current >= limit) {
+				return -1;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return current + 1;
+			}
+		}
+	}
+
+	private void signalWaiter() {
+		CompletableFuture<Integer> asyncWaiter;
+		while ((asyncWaiter = asyncWaiters.peek()) != null) {
+			int taken = tryAcquire();
+			if (taken < 0) {
+				return;
+			}
+			asyncWaiters.remove(asyncWaiter);
+			if (!asyncWaiter.complete(taken)) {
+				// The waiter has timed out or was cancelled, the slot is free again
+				inFlight.decrementAndGet();
+			}
+		}
+		if (queued.get() > 0 && inFlight.get() < algorithm.getLimit()) {
+			Thread waiter = waiters.peek();
+			if (waiter != null) {
+				LockSupport.unpark(waiter);
+			}
+		}
+	}
+
+	private HttpLimitExceededException reject() {
+		rejected.increment();
+		return logger.throwing(new HttpLimitExceededException(name, algorithm.getLimit()));
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrencyLimiter [name=" + name + ", limit=" + getLimit() + ", inFlight=" + getInFlight()
+				+ ", queueDepth=" + getQueueDepth() + ", rejected=" + getRejected() + "]";
+	}
+}
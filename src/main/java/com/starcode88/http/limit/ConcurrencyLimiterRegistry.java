@@ -0,0 +1,54 @@
+package com.starcode88.http.limit;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one concurrency limiter per host. The limiters are created on
+ * first use with the same settings.
+ */
+public final class ConcurrencyLimiterRegistry {
+
+	private final ConcurrencyLimitConfig config;
+
+	private final ConcurrentHashMap<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<String, ConcurrencyLimiter>();
+
+	public ConcurrencyLimiterRegistry(ConcurrencyLimitConfig config) {
+		this.config = config;
+	}
+
+	public ConcurrencyLimitConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * @param uri The URI of a request
+	 * @return The limiter of the host and port of the URI
+	 */
+	public ConcurrencyLimiter forUri(URI uri) {
+		String authority = uri.getAuthority();
+		return get(authority != null ? authority : String.valueOf(uri.getHost()));
+	}
+
+	/**
+	 * @param name The host, with port if it is not the default port
+	 * @return The limiter of the host
+	 */
+	public ConcurrencyLimiter get(String name) {
+		ConcurrencyLimiter limiter = limiters.get(name);
+		if (limiter != null) {
+			return limiter;
+		}
+		return limiters.computeIfAbsent(name, key -> new ConcurrencyLimiter(key, config));
+	}
+
+	/**
+	 * @return All limiters which have been created so far
+	 */
+	public Collection<ConcurrencyLimiter> getAll() {
+		return Collections.unmodifiableList(new ArrayList<ConcurrencyLimiter>(limiters.values()));
+	}
+}
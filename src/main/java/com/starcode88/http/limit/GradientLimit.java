@@ -0,0 +1,178 @@
+package com.starcode88.http.limit;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Adjusts the limit by the ratio of the long term round trip time to the
+ * current one. If requests become slower than usual, the gradient falls
+ * below 1 and the limit shrinks. If they are as fast as usual, the limit
+ * grows by a small queue allowance of sqrt(limit). The long term round trip
+ * time is an exponential moving average, so the algorithm adapts if the
+ * server becomes permanently slower.
+ * <p>
+ * The state is replaced atomically with each sample, without locking.
+ */
+public final class GradientLimit implements LimitAlgorithm {
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final double rttTolerance;
+
+	private final double smoothing;
+
+	private final double longWindowFactor;
+
+	private final AtomicReference<State> state;
+
+	private GradientLimit(Builder builder) {
+		this.minLimit = builder.minLimit;
+		this.maxLimit = builder.maxLimit;
+		this.rttTolerance = builder.rttTolerance;
+		this.smoothing = builder.smoothing;
+		this.longWindowFactor = 2.0 / (builder.longWindow + 1);
+		this.state = new AtomicReference<State>(new State(builder.initialLimit, 0));
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	@Override
+	public int getLimit() {
+		return (int) state.get().limit;
+	}
+
+	/**
+	 * @return The long term round trip time in nanoseconds, 0 before the first sample
+	 */
+	public long getLongTermRttNanos() {
+		return (long) state.get().longRtt;
+	}
+
+	@Override
+	public int onSample(long rttNanos, int inFlight, boolean dropped) {
+		while (true) {
+			State current = state.get();
+			State next = next(current, Math.max(1, rttNanos), inFlight, dropped);
+			if (state.compareAndSet(current, next)) {
+				return (int) next.limit;
+			}
+		}
+	}
+
+	private State next(State current, double rtt, int inFlight, boolean dropped) {
+		double longRtt = current.longRtt == 0 ? rtt : current.longRtt + longWindowFactor * (rtt - current.longRtt);
+		if (longRtt / rtt > 2) {
+			// The server is much faster than the long term average says,
+			// e.g. after a load peak. Let the average recover faster.
+			longRtt = longRtt * 0.95;
+		}
+		double limit = current.limit;
+		if (!dropped && inFlight < limit / 2) {
+			// The limit is not used, so the sample says nothing about it
+			return new State(limit, longRtt);
+		}
+		double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / rtt));
+		if (dropped) {
+			gradient = 0.5;
+		}
+		double newLimit = limit * gradient + Math.sqrt(limit);
+		newLimit = limit * (1 - smoothing) + newLimit * smoothing;
+		newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+		return new State(newLimit, longRtt);
+	}
+
+	@Override
+	public String toString() {
+		return "GradientLimit [limit=" + getLimit() + ", longTermRttNanos=" + getLongTermRttNanos() + "]";
+	}
+
+	private static final class State {
+
+		final double limit;
+
+		final double longRtt;
+
+		State(double limit, double longRtt) {
+			this.limit = limit;
+			this.longRtt = longRtt;
+		}
+	}
+
+	public static class Builder {
+
+		private int initialLimit = 20;
+
+		private int minLimit = 1;
+
+		private int maxLimit = 200;
+
+		private double rttTolerance = 1.5;
+
+		private double smoothing = 0.2;
+
+		private int longWindow = 600;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param initialLimit The limit before the first request has completed
+		 * @param minLimit The limit never falls below this value
+		 * @param maxLimit The limit never grows above this value
+		 * @return this builder
+		 */
+		public Builder limits(int initialLimit, int minLimit, int maxLimit) {
+			if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+				throw new IllegalArgumentException("The limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+			}
+			this.initialLimit = initialLimit;
+			this.minLimit = minLimit;
+			this.maxLimit = maxLimit;
+			return this;
+		}
+
+		/**
+		 * @param rttTolerance How much slower (e.g. 1.5 = 50%) than the long term
+		 *                     average a request may be before the limit shrinks
+		 * @return this builder
+		 */
+		public Builder rttTolerance(double rttTolerance) {
+			if (rttTolerance < 1.0) {
+				throw new IllegalArgumentException("The argument <rttTolerance> must be 1.0 or greater");
+			}
+			this.rttTolerance = rttTolerance;
+			return this;
+		}
+
+		/**
+		 * @param smoothing Weight (between 0 and 1) of a new limit compared to the current one
+		 * @return this builder
+		 */
+		public Builder smoothing(double smoothing) {
+			if (smoothing <= 0 || smoothing > 1) {
+				throw new IllegalArgumentException("The argument <smoothing> must be between 0 and 1");
+			}
+			this.smoothing = smoothing;
+			return this;
+		}
+
+		/**
+		 * @param longWindow Number of samples of the long term average
+		 * @return this builder
+		 */
+		public Builder longWindow(int longWindow) {
+			if (longWindow < 1) {
+				throw new IllegalArgumentException("The argument <longWindow> must be 1 or greater");
+			}
+			this.longWindow = longWindow;
+			return this;
+		}
+
+		public GradientLimit build() {
+			return new GradientLimit(this);
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.starcode88.http.limit;
+
+/**
+ * Adjusts the number of requests which may be in flight to one host, based
+ * on the round trip times and failures of the completed requests. An
+ * instance belongs to one {@link ConcurrencyLimiter} and is called by many
+ * threads at the same time, so implementations must be thread safe.
+ */
+public interface LimitAlgorithm {
+
+	/**
+	 * @return The current limit of requests in flight
+	 */
+	int getLimit();
+
+	/**
+	 * Updates the limit with the outcome of a completed request.
+	 *
+	 * @param rttNanos The round trip time of the request
+	 * @param inFlight Number of requests in flight when the request was started, including it
+	 * @param dropped true if the request failed in a way which indicates
+	 *                overload, e.g. a timeout or status code 503
+	 * @return The new limit
+	 */
+	int onSample(long rttNanos, int inFlight, boolean dropped);
+}
@@ -0,0 +1,178 @@
+package com.starcode88.http.loadbalancer;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One base URL of a {@link LoadBalancer} with the state which is used to
+ * select it: the requests in flight, the latency average and whether it
+ * is ejected or has failed its health check. The state is updated without
+ * locking by the requests which are sent to it.
+ */
+public final class Endpoint {
+
+	private final String baseUrl;
+
+	private final URI uri;
+
+	private final AtomicInteger outstanding = new AtomicInteger();
+
+	/** Peak-sensitive moving average of the latency */
+	private final AtomicLong latencyNanos = new AtomicLong();
+
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	/** Number of ejections since the last successful request, for the backoff */
+	private final AtomicInteger ejections = new AtomicInteger();
+
+	private volatile boolean ejected = false;
+
+	private volatile long ejectedUntilNanos;
+
+	private volatile boolean healthy = true;
+
+	Endpoint(String baseUrl) {
+		this.baseUrl = baseUrl;
+		this.uri = URI.create(baseUrl);
+	}
+
+	/**
+	 * @return The base URL, e.g. "https://replica1.example.com:8443/api"
+	 */
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	public URI getUri() {
+		return uri;
+	}
+
+	/**
+	 * @return Number of requests in flight to this endpoint
+	 */
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+
+	/**
+	 * @return Moving average of the latency, 0 before the first response.
+	 *         A latency above the average replaces it at once, so a slow
+	 *         endpoint is noticed with its first slow response.
+	 */
+	public long getLatencyNanos() {
+		return latencyNanos.get();
+	}
+
+	/**
+	 * @return true if the endpoint has been ejected because of failed
+	 *         requests and the ejection time is not over
+	 */
+	public boolean isEjected() {
+		return ejected && System.nanoTime() - ejectedUntilNanos < 0;
+	}
+
+	/**
+	 * @return false if the last health check of the endpoint has failed
+	 */
+	public boolean isHealthy() {
+		return healthy;
+	}
+
+	/**
+	 * @return true if requests may be sent to this endpoint
+	 */
+	public boolean isAvailable() {
+		return healthy && !isEjected();
+	}
+
+	void onStart() {
+		outstanding.incrementAndGet();
+	}
+
+	/**
+	 * @param latency The latency of the request
+	 * @param weight The weight of the new latency in the moving average
+	 */
+	void onSuccess(long latency, double weight) {
+		outstanding.decrementAndGet();
+		long current;
+		long next;
+		do {
+			current = latencyNanos.get();
+			next = current == 0 || latency > current ? latency : current + (long) ((latency - current) * weight);
+		} while (!latencyNanos.compareAndSet(current, next));
+		// Avoid writing the shared counters on every success
+		if (consecutiveFailures.get() != 0) {
+			consecutiveFailures.set(0);
+		}
+		if (ejections.get() != 0 && !isEjected()) {
+			ejections.set(0);
+		}
+	}
+
+	/**
+	 * @return Number of consecutive failures including this one
+	 */
+	int onFailure() {
+		outstanding.decrementAndGet();
+		return consecutiveFailures.incrementAndGet();
+	}
+
+	/**
+	 * Called if the exchange has been cancelled or rejected, it is neither
+	 * a success nor a failure of the endpoint.
+	 */
+	void onRelease() {
+		outstanding.decrementAndGet();
+	}
+
+	/**
+	 * Ejects the endpoint, each ejection without a successful request in
+	 * between doubles the ejection time up to the maximum. This is rare,
+	 * so it may lock.
+	 *
+	 * @return false if the endpoint is already ejected
+	 */
+	synchronized boolean eject(long baseNanos, long maxNanos) {
+		if (isEjected()) {
+			return false;
+		}
+		int count = ejections.getAndIncrement();
+		long duration = count >= 30 ? maxNanos : Math.min(maxNanos, baseNanos << count);
+		if (duration < 0) {
+			duration = maxNanos;
+		}
+		this.ejectedUntilNanos = System.nanoTime() + duration;
+		this.ejected = true;
+		consecutiveFailures.set(0);
+		return true;
+	}
+
+	/**
+	 * @return true if the endpoint was ejected and its ejection time is over
+	 */
+	boolean isEjectionOver(long nowNanos) {
+		return ejected && nowNanos - ejectedUntilNanos >= 0;
+	}
+
+	long getEjectedUntilNanos() {
+		return ejectedUntilNanos;
+	}
+
+	void endEjection() {
+		this.ejected = false;
+	}
+
+	void setHealthy(boolean healthy) {
+		this.healthy = healthy;
+	}
+
+	@Override
+	public String toString() {
+		return "Endpoint [baseUrl=" + baseUrl + ", outstanding=" + getOutstanding() + ", latency="
+				+ TimeUnit.NANOSECONDS.toMicros(getLatencyNanos()) + "us, ejected=" + isEjected() + ", healthy="
+				+ healthy + "]";
+	}
+}
@@ -0,0 +1,33 @@
+package com.starcode88.http.loadbalancer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the endpoint with the fewest requests in flight. The scan starts
+ * at a random endpoint, so ties are spread over all endpoints instead of
+ * sending every request to the first one.
+ */
+public final class LeastOutstandingStrategy implements SelectionStrategy {
+
+	@Override
+	public Endpoint select(Endpoint[] endpoints) {
+		int n = endpoints.length;
+		int start = n == 1 ? 0 : ThreadLocalRandom.current().nextInt(n);
+		Endpoint best = endpoints[start];
+		int fewest = best.getOutstanding();
+		for (int i = 1; i < n && fewest > 0; i++) {
+			Endpoint endpoint = endpoints[(start + i) % n];
+			int outstanding = endpoint.getOutstanding();
+			if (outstanding < fewest) {
+				best = endpoint;
+				fewest = outstanding;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public String toString() {
+		return "LeastOutstandingStrategy";
+	}
+}
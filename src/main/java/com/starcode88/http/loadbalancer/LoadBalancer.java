@@ -0,0 +1,316 @@
+package com.starcode88.http.loadbalancer;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Distributes the requests of a {@link com.starcode88.http.HttpClient}
+ * over several base URLs, see {@link LoadBalancerConfig}.
+ * <p>
+ * The endpoints which may get requests are kept in an immutable snapshot.
+ * Selecting an endpoint reads the snapshot and calls the
+ * {@link SelectionStrategy}, without locking. The snapshot is replaced
+ * with compare-and-set when an endpoint is ejected, its ejection time is
+ * over or its health check changes, so a change is never lost when two
+ * threads update it at the same time. If no endpoint is available, all
+ * endpoints are used: a request which may fail is better than no request.
+ */
+public final class LoadBalancer implements AutoCloseable {
+
+	private static Logger logger = LogManager.getLogger(LoadBalancer.class);
+
+	private final LoadBalancerConfig config;
+
+	private final Endpoint[] endpoints;
+
+	private final SelectionStrategy strategy;
+
+	private final long baseEjectionNanos;
+
+	private final long maxEjectionNanos;
+
+	private final AtomicReference<Snapshot> snapshot;
+
+	private volatile ScheduledExecutorService healthChecks = null;
+
+	/**
+	 * The endpoints which may get requests.
+	 */
+	private static final class Snapshot {
+
+		final Endpoint[] available;
+
+		/** true if an endpoint is ejected, then nextExpiryNanos is valid */
+		final boolean ejected;
+
+		final long nextExpiryNanos;
+
+		Snapshot(Endpoint[] available, boolean ejected, long nextExpiryNanos) {
+			this.available = available;
+			this.ejected = ejected;
+			this.nextExpiryNanos = nextExpiryNanos;
+		}
+	}
+
+	/**
+	 * @param baseUrls The base URLs, at least one
+	 * @param config The settings
+	 */
+	public LoadBalancer(List<String> baseUrls, LoadBalancerConfig config) {
+		if (baseUrls == null || baseUrls.isEmpty()) {
+			throw new IllegalArgumentException("The argument <baseUrls> must not be empty");
+		}
+		if (config == null) {
+			throw new IllegalArgumentException("The argument <config> must not be null");
+		}
+		this.config = config;
+		this.endpoints = new Endpoint[baseUrls.size()];
+		for (int i = 0; i < endpoints.length; i++) {
+			endpoints[i] = new Endpoint(baseUrls.get(i));
+		}
+		this.strategy = config.getStrategy().get();
+		this.baseEjectionNanos = config.getBaseEjectionTime().toNanos();
+		this.maxEjectionNanos = config.getMaxEjectionTime().toNanos();
+		this.snapshot = new AtomicReference<Snapshot>(new Snapshot(endpoints.clone(), false, 0));
+	}
+
+	public LoadBalancerConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * @return All endpoints in the order of the base URLs
+	 */
+	public List<Endpoint> getEndpoints() {
+		return Collections.unmodifiableList(Arrays.asList(endpoints));
+	}
+
+	/**
+	 * @return The endpoints which get requests now
+	 */
+	public List<Endpoint> getAvailableEndpoints() {
+		return Collections.unmodifiableList(Arrays.asList(available()));
+	}
+
+	/**
+	 * @return The endpoint for the next request
+	 */
+	public Endpoint select() {
+		return strategy.select(available());
+	}
+
+	/**
+	 * Selects an endpoint other than the given one, if there is another
+	 * available endpoint, e.g. for a hedge.
+	 *
+	 * @param excluded The endpoint which should not be selected or null
+	 * @return The endpoint for the next request
+	 */
+	public Endpoint select(Endpoint excluded) {
+		Endpoint[] available = available();
+		Endpoint endpoint = strategy.select(available);
+		if (endpoint != excluded || available.length == 1) {
+			return endpoint;
+		}
+		for (int i = 0; i < available.length; i++) {
+			if (available[i] == excluded) {
+				return available[(i + 1) % available.length];
+			}
+		}
+		return endpoint;
+	}
+
+	/**
+	 * Records that a request is sent to the endpoint. It must be followed
+	 * by exactly one of {@link #onResponse(Endpoint, int, long)},
+	 * {@link #onFailure(Endpoint)} and {@link #onRelease(Endpoint)}.
+	 *
+	 * @param endpoint The endpoint
+	 */
+	public void onStart(Endpoint endpoint) {
+		endpoint.onStart();
+	}
+
+	/**
+	 * Records a response. A status code of 500 or above counts as failure.
+	 *
+	 * @param endpoint The endpoint
+	 * @param statusCode The status code of the response
+	 * @param latencyNanos The time until the response was received
+	 */
+	public void onResponse(Endpoint endpoint, int statusCode, long latencyNanos) {
+		if (statusCode >= 500) {
+			onFailure(endpoint);
+		} else {
+			endpoint.onSuccess(latencyNanos, config.getLatencyWeight());
+		}
+	}
+
+	/**
+	 * Records a failed exchange, e.g. a connect failure or timeout. The
+	 * endpoint is ejected if it has failed too often in a row.
+	 *
+	 * @param endpoint The endpoint
+	 */
+	public void onFailure(Endpoint endpoint) {
+		int failures = endpoint.onFailure();
+		int threshold = config.getConsecutiveFailures();
+		if (threshold > 0 && failures >= threshold && mayEject()
+				&& endpoint.eject(baseEjectionNanos, maxEjectionNanos)) {
+			logger.warn("Endpoint {} ejected after {} failures in a row", endpoint.getBaseUrl(), failures);
+			refresh();
+		}
+	}
+
+	/**
+	 * Records an exchange which has been cancelled or rejected before it
+	 * was sent, it is neither a success nor a failure of the endpoint.
+	 *
+	 * @param endpoint The endpoint
+	 */
+	public void onRelease(Endpoint endpoint) {
+		endpoint.onRelease();
+	}
+
+	private boolean mayEject() {
+		int ejected = 0;
+		for (Endpoint endpoint : endpoints) {
+			if (endpoint.isEjected()) {
+				ejected++;
+			}
+		}
+		return (ejected + 1) * 100 <= config.getMaxEjectedPercent() * endpoints.length;
+	}
+
+	/**
+	 * @return The available endpoints, after ending the ejections whose
+	 *         time is over
+	 */
+	private Endpoint[] available() {
+		Snapshot current = snapshot.get();
+		if (current.ejected && System.nanoTime() - current.nextExpiryNanos >= 0) {
+			current = refresh();
+		}
+		return current.available;
+	}
+
+	/**
+	 * Builds the snapshot from the current state of the endpoints.
+	 *
+	 * @return The new snapshot
+	 */
+	private Snapshot refresh() {
+		while (true) {
+			Snapshot current = snapshot.get();
+			long now = System.nanoTime();
+			List<Endpoint> available = new ArrayList<Endpoint>(endpoints.length);
+			boolean ejected = false;
+			long nextExpiryNanos = 0;
+			for (Endpoint endpoint : endpoints) {
+				if (endpoint.isEjectionOver(now)) {
+					endpoint.endEjection();
+					logger.info("Endpoint {} returns after its ejection", endpoint.getBaseUrl());
+				}
+				if (endpoint.isEjected()) {
+					long expiry = endpoint.getEjectedUntilNanos();
+					if (!ejected || expiry - nextExpiryNanos < 0) {
+						nextExpiryNanos = expiry;
+					}
+					ejected = true;
+				} else if (endpoint.isHealthy()) {
+					available.add(endpoint);
+				}
+			}
+			Endpoint[] array = available.isEmpty() ? endpoints.clone() : available.toArray(new Endpoint[0]);
+			Snapshot next = new Snapshot(array, ejected, nextExpiryNanos);
+			if (snapshot.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * Starts the active health checks, if they are configured. They are
+	 * sent with the given transport by a daemon thread until
+	 * {@link #close()} is called.
+	 *
+	 * @param transport Supplies the transport of the client
+	 */
+	public synchronized void startHealthChecks(Supplier<java.net.http.HttpClient> transport) {
+		String path = config.getHealthCheckPath();
+		if (path == null || healthChecks != null) {
+			return;
+		}
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "starcode88-http-health-check");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long intervalNanos = config.getHealthCheckInterval().toNanos();
+		executor.scheduleWithFixedDelay(() -> {
+			try {
+				checkHealth(transport.get(), path);
+			} catch (RuntimeException e) {
+				// An exception would end the schedule
+				logger.error("Health checks failed", e);
+			}
+		}, 0, intervalNanos, TimeUnit.NANOSECONDS);
+		this.healthChecks = executor;
+	}
+
+	private void checkHealth(java.net.http.HttpClient transport, String path) {
+		for (Endpoint endpoint : endpoints) {
+			HttpRequest request;
+			try {
+				request = HttpRequest.newBuilder(URI.create(endpoint.getBaseUrl() + path))
+						.timeout(config.getHealthCheckTimeout()).GET().build();
+			} catch (IllegalArgumentException e) {
+				logger.error("Invalid health check URL for {}", endpoint.getBaseUrl(), e);
+				continue;
+			}
+			transport.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, throwable) -> {
+				boolean healthy = response != null && response.statusCode() >= 200 && response.statusCode() < 300;
+				if (healthy != endpoint.isHealthy()) {
+					endpoint.setHealthy(healthy);
+					if (healthy) {
+						logger.info("Endpoint {} passed its health check", endpoint.getBaseUrl());
+					} else {
+						logger.warn("Endpoint {} failed its health check: {}", endpoint.getBaseUrl(),
+								response != null ? "status code " + response.statusCode() : String.valueOf(throwable));
+					}
+					refresh();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Stops the active health checks.
+	 */
+	@Override
+	public synchronized void close() {
+		ScheduledExecutorService executor = this.healthChecks;
+		if (executor != null) {
+			executor.shutdownNow();
+			this.healthChecks = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LoadBalancer [strategy=" + strategy + ", endpoints=" + Arrays.toString(endpoints) + "]";
+	}
+}
@@ -0,0 +1,214 @@
+package com.starcode88.http.loadbalancer;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Settings of the {@link LoadBalancer} of a
+ * {@link com.starcode88.http.HttpClient} with several base URLs. An
+ * instance is immutable, use {@link #newBuilder()} to create one.
+ * <p>
+ * An endpoint which fails {@link #getConsecutiveFailures()} requests in a
+ * row (IOException or 5xx status code) is ejected for
+ * {@link #getBaseEjectionTime()}, doubled for each further ejection up to
+ * {@link #getMaxEjectionTime()}. At most {@link #getMaxEjectedPercent()}
+ * of the endpoints are ejected at the same time. Active health checks are
+ * optional: every {@link #getHealthCheckInterval()} a GET request is sent
+ * to {@link #getHealthCheckPath()} of each endpoint, and an endpoint which
+ * does not answer with 2xx gets no requests until it does again.
+ */
+public class LoadBalancerConfig {
+
+	private final Supplier<? extends SelectionStrategy> strategy;
+
+	private final double latencyWeight;
+
+	private final int consecutiveFailures;
+
+	private final Duration baseEjectionTime;
+
+	private final Duration maxEjectionTime;
+
+	private final int maxEjectedPercent;
+
+	private final String healthCheckPath;
+
+	private final Duration healthCheckInterval;
+
+	private final Duration healthCheckTimeout;
+
+	private LoadBalancerConfig(Builder builder) {
+		this.strategy = builder.strategy;
+		this.latencyWeight = builder.latencyWeight;
+		this.consecutiveFailures = builder.consecutiveFailures;
+		this.baseEjectionTime = builder.baseEjectionTime;
+		this.maxEjectionTime = builder.maxEjectionTime;
+		this.maxEjectedPercent = builder.maxEjectedPercent;
+		this.healthCheckPath = builder.healthCheckPath;
+		this.healthCheckInterval = builder.healthCheckInterval;
+		this.healthCheckTimeout = builder.healthCheckTimeout;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return Creates the strategy of a new load balancer
+	 */
+	public Supplier<? extends SelectionStrategy> getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * @return The weight of a new latency in the latency average of an endpoint
+	 */
+	public double getLatencyWeight() {
+		return latencyWeight;
+	}
+
+	/**
+	 * @return Number of failures in a row which eject an endpoint, 0 if
+	 *         endpoints are never ejected
+	 */
+	public int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	public Duration getBaseEjectionTime() {
+		return baseEjectionTime;
+	}
+
+	public Duration getMaxEjectionTime() {
+		return maxEjectionTime;
+	}
+
+	public int getMaxEjectedPercent() {
+		return maxEjectedPercent;
+	}
+
+	/**
+	 * @return The path of the health check, e.g. "/health", or null if
+	 *         there are no active health checks
+	 */
+	public String getHealthCheckPath() {
+		return healthCheckPath;
+	}
+
+	public Duration getHealthCheckInterval() {
+		return healthCheckInterval;
+	}
+
+	public Duration getHealthCheckTimeout() {
+		return healthCheckTimeout;
+	}
+
+	public static class Builder {
+
+		private Supplier<? extends SelectionStrategy> strategy = RoundRobinStrategy::new;
+
+		private double latencyWeight = 0.2;
+
+		private int consecutiveFailures = 5;
+
+		private Duration baseEjectionTime = Duration.ofSeconds(30);
+
+		private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+		private int maxEjectedPercent = 50;
+
+		private String healthCheckPath = null;
+
+		private Duration healthCheckInterval = Duration.ofSeconds(10);
+
+		private Duration healthCheckTimeout = Duration.ofSeconds(2);
+
+		private Builder() {
+		}
+
+		/**
+		 * @param strategy Creates the strategy, e.g.
+		 *                 {@code PowerOfTwoChoicesStrategy::new}. Default
+		 *                 is {@link RoundRobinStrategy}.
+		 * @return this builder
+		 */
+		public Builder strategy(Supplier<? extends SelectionStrategy> strategy) {
+			if (strategy == null) {
+				throw new IllegalArgumentException("The argument <strategy> must not be null");
+			}
+			this.strategy = strategy;
+			return this;
+		}
+
+		/**
+		 * @param latencyWeight The weight of a new latency in the moving
+		 *                      average (0-1, exclusive of 0), default 0.2
+		 * @return this builder
+		 */
+		public Builder latencyWeight(double latencyWeight) {
+			if (latencyWeight <= 0 || latencyWeight > 1) {
+				throw new IllegalArgumentException("The argument <latencyWeight> must be between 0 and 1");
+			}
+			this.latencyWeight = latencyWeight;
+			return this;
+		}
+
+		/**
+		 * @param consecutiveFailures Number of failures in a row which
+		 *                            eject an endpoint, 0 disables ejection
+		 * @param baseEjectionTime The time of the first ejection
+		 * @param maxEjectionTime The longest ejection time
+		 * @param maxEjectedPercent Maximum share of the endpoints which may
+		 *                          be ejected at the same time (0-100)
+		 * @return this builder
+		 */
+		public Builder ejection(int consecutiveFailures, Duration baseEjectionTime, Duration maxEjectionTime,
+				int maxEjectedPercent) {
+			if (consecutiveFailures < 0) {
+				throw new IllegalArgumentException("The argument <consecutiveFailures> must not be negative");
+			}
+			if (baseEjectionTime == null || maxEjectionTime == null || baseEjectionTime.isNegative()
+					|| maxEjectionTime.compareTo(baseEjectionTime) < 0) {
+				throw new IllegalArgumentException(
+						"The arguments <baseEjectionTime> and <maxEjectionTime> must be a valid range");
+			}
+			if (maxEjectedPercent < 0 || maxEjectedPercent > 100) {
+				throw new IllegalArgumentException("The argument <maxEjectedPercent> must be between 0 and 100");
+			}
+			this.consecutiveFailures = consecutiveFailures;
+			this.baseEjectionTime = baseEjectionTime;
+			this.maxEjectionTime = maxEjectionTime;
+			this.maxEjectedPercent = maxEjectedPercent;
+			return this;
+		}
+
+		/**
+		 * Enables active health checks.
+		 *
+		 * @param path The path which is added to the base URL of each
+		 *             endpoint, e.g. "/health"
+		 * @param interval The time between two checks of an endpoint
+		 * @param timeout The time after which a check fails
+		 * @return this builder
+		 */
+		public Builder healthCheck(String path, Duration interval, Duration timeout) {
+			if (path == null) {
+				throw new IllegalArgumentException("The argument <path> must not be null");
+			}
+			if (interval == null || interval.isNegative() || interval.isZero()) {
+				throw new IllegalArgumentException("The argument <interval> must be positive");
+			}
+			if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+				throw new IllegalArgumentException("The argument <timeout> must be positive");
+			}
+			this.healthCheckPath = path;
+			this.healthCheckInterval = interval;
+			this.healthCheckTimeout = timeout;
+			return this;
+		}
+
+		public LoadBalancerConfig build() {
+			return new LoadBalancerConfig(this);
+		}
+	}
+}
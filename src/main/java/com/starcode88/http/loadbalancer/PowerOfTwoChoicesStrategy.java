@@ -0,0 +1,40 @@
+package com.starcode88.http.loadbalancer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Power of two choices: picks two endpoints at random and takes the one
+ * with the lower cost, which is its latency average (see
+ * {@link Endpoint#getLatencyNanos()}) times the requests in flight plus
+ * one. This avoids slow endpoints nearly as well as comparing all
+ * endpoints, but reads only two of them and does not send a burst of
+ * requests to the endpoint which has been the fastest a moment ago.
+ */
+public final class PowerOfTwoChoicesStrategy implements SelectionStrategy {
+
+	@Override
+	public Endpoint select(Endpoint[] endpoints) {
+		int n = endpoints.length;
+		if (n == 1) {
+			return endpoints[0];
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(n);
+		int second = random.nextInt(n - 1);
+		if (second >= first) {
+			second++;
+		}
+		Endpoint a = endpoints[first];
+		Endpoint b = endpoints[second];
+		return cost(a) <= cost(b) ? a : b;
+	}
+
+	private static double cost(Endpoint endpoint) {
+		return (double) endpoint.getLatencyNanos() * (endpoint.getOutstanding() + 1);
+	}
+
+	@Override
+	public String toString() {
+		return "PowerOfTwoChoicesStrategy";
+	}
+}
@@ -0,0 +1,21 @@
+package com.starcode88.http.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the endpoints one after the other.
+ */
+public final class RoundRobinStrategy implements SelectionStrategy {
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	@Override
+	public Endpoint select(Endpoint[] endpoints) {
+		return endpoints[(next.getAndIncrement() & Integer.MAX_VALUE) % endpoints.length];
+	}
+
+	@Override
+	public String toString() {
+		return "RoundRobinStrategy";
+	}
+}
@@ -0,0 +1,17 @@
+package com.starcode88.http.loadbalancer;
+
+/**
+ * Picks the endpoint of the next request. An instance belongs to one
+ * {@link LoadBalancer} and is called by many threads at the same time for
+ * every request, so implementations must be thread safe and should not
+ * lock or allocate.
+ */
+public interface SelectionStrategy {
+
+	/**
+	 * @param endpoints The endpoints which are not ejected, at least one.
+	 *                  The array must not be modified.
+	 * @return One of the endpoints
+	 */
+	Endpoint select(Endpoint[] endpoints);
+}
@@ -0,0 +1,169 @@
+package com.starcode88.http.loadtest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.starcode88.http.metrics.Histogram;
+
+/**
+ * Records the outcomes of the requests of a {@link LoadTest}. It is
+ * called concurrently by the threads on which the responses complete.
+ * <p>
+ * Each latency is measured from the time at which the request was due
+ * to be sent, not from the time at which it was actually sent. If the
+ * client falls behind, e.g. because all async slots are in use, the wait
+ * is part of the latency, as it would be for a user. Measuring from the
+ * actual send time would hide it (coordinated omission); that time is
+ * recorded as service time for comparison.
+ */
+final class LoadRecorder {
+
+	/** Each interval has a histogram of about 8 KB, so the timeline is limited */
+	static final int MAX_INTERVALS = 3600;
+
+	private final long measureStart;
+
+	private final long measureEnd;
+
+	private final long intervalNanos;
+
+	private final Histogram latency = new Histogram();
+
+	private final Histogram serviceTime = new Histogram();
+
+	private final LongAdder sent = new LongAdder();
+
+	private final LongAdder succeeded = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	private final LongAdder delayed = new LongAdder();
+
+	private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<String, LongAdder>();
+
+	private final Slot[] slots;
+
+	/**
+	 * Only requests which lie in the measurement, see {@link #isMeasured(long)},
+	 * must be recorded.
+	 *
+	 * @param measureStart The time in nanoseconds when the measurement starts
+	 * @param measureEnd The time in nanoseconds when the measurement ends
+	 * @param intervalNanos The length of each interval of the timeline
+	 */
+	LoadRecorder(long measureStart, long measureEnd, long intervalNanos) {
+		this.measureStart = measureStart;
+		this.measureEnd = measureEnd;
+		this.intervalNanos = intervalNanos;
+		int count = (int) Math.min(MAX_INTERVALS, (measureEnd - measureStart + intervalNanos - 1) / intervalNanos);
+		this.slots = new Slot[count];
+		for (int i = 0; i < count; i++) {
+			slots[i] = new Slot();
+		}
+	}
+
+	/**
+	 * @param intended The time when the request was due
+	 * @return true if the request lies in the measurement
+	 */
+	boolean isMeasured(long intended) {
+		return intended >= measureStart && intended < measureEnd;
+	}
+
+	void sent(long intended) {
+		sent.increment();
+		Slot slot = slotOf(intended);
+		if (slot != null) {
+			slot.sent.increment();
+		}
+	}
+
+	/**
+	 * Records a request which had to wait for a free slot, because the
+	 * maximum number of requests was in flight when it was due.
+	 *
+	 * @param intended The time when the request was due
+	 */
+	void delayed(long intended) {
+		delayed.increment();
+		Slot slot = slotOf(intended);
+		if (slot != null) {
+			slot.delayed.increment();
+		}
+	}
+
+	/**
+	 * Records a request which has completed with a response or an exception.
+	 *
+	 * @param intended The time when the request was due
+	 * @param start The time when the request was sent
+	 * @param end The time when the request completed
+	 * @param outcome "2xx", "4xx", "5xx" or the name of the exception
+	 * @param success true if the status code is 2xx
+	 */
+	void completed(long intended, long start, long end, String outcome, boolean success) {
+		long nanos = end - intended;
+		latency.record(nanos);
+		serviceTime.record(end - start);
+		(success ? succeeded : failed).increment();
+		outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+		Slot slot = slotOf(end);
+		if (slot != null) {
+			slot.latency.record(nanos);
+			if (!success) {
+				slot.failed.increment();
+			}
+		}
+	}
+
+	private Slot slotOf(long time) {
+		if (time < measureStart) {
+			return null;
+		}
+		long index = (time - measureStart) / intervalNanos;
+		return index < slots.length ? slots[(int) index] : null;
+	}
+
+	/**
+	 * @param config The config of the test
+	 * @param elapsedNanos The time from the start of the measurement until
+	 *                     the last request has completed
+	 * @param incomplete Number of requests which were still in flight at the end
+	 * @return The report of the test
+	 */
+	LoadTestReport report(LoadTestConfig config, long elapsedNanos, long incomplete) {
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> entry : outcomes.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().sum());
+		}
+		LoadTestReport.Interval[] intervals = new LoadTestReport.Interval[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			Slot slot = slots[i];
+			long length = Math.min(intervalNanos, measureEnd - measureStart - i * intervalNanos);
+			intervals[i] = new LoadTestReport.Interval(i * intervalNanos, length, slot.sent.sum(),
+					slot.delayed.sum(), slot.latency.getCount(), slot.failed.sum(),
+					slot.latency.getValueAtPercentile(50),
+					slot.latency.getValueAtPercentile(99), slot.latency.getMax());
+		}
+		return new LoadTestReport(config, elapsedNanos, sent.sum(), succeeded.sum(), failed.sum(), delayed.sum(),
+				incomplete, counts, latency, serviceTime, intervals);
+	}
+
+	/**
+	 * The counters of one interval of the timeline. Requests are counted as
+	 * sent in the interval in which they were due and as completed in the
+	 * interval in which they completed.
+	 */
+	private static final class Slot {
+
+		final LongAdder sent = new LongAdder();
+
+		final LongAdder delayed = new LongAdder();
+
+		final LongAdder failed = new LongAdder();
+
+		final Histogram latency = new Histogram();
+	}
+}
@@ -0,0 +1,267 @@
+package com.starcode88.http.loadtest;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.starcode88.http.BatchRequest;
+import com.starcode88.http.HttpClient;
+import com.starcode88.http.exception.HttpStatusCodeException;
+
+/**
+ * An open-loop load generator which sends a mix of requests at a fixed
+ * rate through {@link HttpClient#executeAsync(BatchRequest)}, the same
+ * code path as the application, and reports the latencies corrected for
+ * coordinated omission, see {@link LoadTestReport}.
+ * <pre>
+ * LoadTestReport report = new LoadTest(client, config).run();
+ * System.out.print(report.format());
+ * </pre>
+ * Each request is due at a time which is fixed in advance by the rate. A
+ * single thread sends the requests when they are due, without waiting for
+ * responses; if it falls behind, it sends the overdue requests at once.
+ * If {@link LoadTestConfig#getMaxInFlight()} requests are in flight, a due
+ * request waits in a backlog and is sent when a request completes, so the
+ * wait is part of its corrected latency. The settings of the client apply, e.g. retries, circuit breakers and
+ * {@link HttpClient#setMaxAsyncRequestsInFlight(int)}. With
+ * {@link com.starcode88.http.HttpTransportConfig.Builder#virtualThreads(boolean)}
+ * the responses are handled on virtual threads. The wire log of the
+ * client should be switched off, see {@link com.starcode88.http.WireLogPolicy#OFF}.
+ * <p>
+ * A load test can also be started from the command line, see {@link LoadTestMain}.
+ */
+public final class LoadTest {
+
+	private static Logger logger = LogManager.getLogger(LoadTest.class);
+
+	private final HttpClient client;
+
+	private final LoadTestConfig config;
+
+	private final BatchRequest<?>[] requests;
+
+	/** The cumulated weights of the requests, for the random choice */
+	private final int[] weights;
+
+	/** Requests which have been due and have not completed yet, including the backlog */
+	private final AtomicLong inFlight = new AtomicLong();
+
+	/** Due requests which wait for a free slot, guarded by itself */
+	private final ArrayDeque<Pending> backlog = new ArrayDeque<Pending>();
+
+	/** Number of requests which have been sent and not completed, guarded by the backlog */
+	private int running = 0;
+
+	public LoadTest(HttpClient client, LoadTestConfig config) {
+		if (client == null || config == null) {
+			throw new IllegalArgumentException("The arguments <client> and <config> must not be null");
+		}
+		this.client = client;
+		this.config = config;
+		List<LoadTestConfig.WeightedRequest> mix = config.getRequests();
+		this.requests = new BatchRequest<?>[mix.size()];
+		this.weights = new int[mix.size()];
+		int total = 0;
+		for (int i = 0; i < requests.length; i++) {
+			requests[i] = mix.get(i).getRequest();
+			total += mix.get(i).getWeight();
+			weights[i] = total;
+		}
+	}
+
+	/**
+	 * Runs the test and waits until it is complete: the warm-up, the
+	 * measurement and the drain of the requests in flight.
+	 *
+	 * @return The report
+	 * @throws InterruptedException Will be thrown if the thread is interrupted,
+	 *                              the requests in flight are not cancelled
+	 */
+	public LoadTestReport run() throws InterruptedException {
+		SplittableRandom random = new SplittableRandom(config.getSeed());
+		double intervalNanos = 1e9 / config.getRate();
+		long start = System.nanoTime();
+		long measureStart = start + config.getWarmUp().toNanos();
+		long measureEnd = measureStart + config.getDuration().toNanos();
+		LoadRecorder recorder = new LoadRecorder(measureStart, measureEnd, config.getInterval().toNanos());
+		logger.info("Load test started: {} requests/s for {} after a warm-up of {}", config.getRate(),
+				config.getDuration(), config.getWarmUp());
+
+		// The schedule is computed in double, so a rate which is not a
+		// divisor of one second does not drift
+		double offset = 0;
+		long due = start;
+		AtomicLong lastMeasured = new AtomicLong(measureStart);
+		while (due < measureEnd) {
+			long now = System.nanoTime();
+			if (due > now) {
+				LockSupport.parkNanos(due - now);
+				if (Thread.interrupted()) {
+					throw logger.throwing(new InterruptedException("The load test has been interrupted"));
+				}
+				continue;
+			}
+			submit(due, pick(random), recorder, lastMeasured);
+			offset += config.isPoisson() ? -Math.log(1 - random.nextDouble()) * intervalNanos : intervalNanos;
+			due = start + (long) offset;
+		}
+
+		long drainEnd = System.nanoTime() + config.getDrainTimeout().toNanos();
+		while (inFlight.get() > 0 && System.nanoTime() < drainEnd) {
+			Thread.sleep(1);
+		}
+		long elapsed = Math.max(lastMeasured.get(), measureEnd) - measureStart;
+		LoadTestReport report = recorder.report(config, elapsed, inFlight.get());
+		synchronized (backlog) {
+			// Requests which have not been sent until now are not sent anymore
+			backlog.clear();
+		}
+		logger.info("Load test finished: {} requests sent, {} failed, {} requests/s", report.getSent(),
+				report.getFailed(), String.format("%.1f", report.getThroughput()));
+		return report;
+	}
+
+	/**
+	 * @return A request of the mix, chosen with the probability of its weight
+	 */
+	private BatchRequest<?> pick(SplittableRandom random) {
+		if (requests.length == 1) {
+			return requests[0];
+		}
+		int value = random.nextInt(weights[weights.length - 1]);
+		int index = 0;
+		while (weights[index] <= value) {
+			index++;
+		}
+		return requests[index];
+	}
+
+	/**
+	 * Sends a request which is due now, or puts it into the backlog if the
+	 * maximum number of requests is in flight. This method does not block.
+	 *
+	 * @param due The time when the request is due
+	 * @param request The request
+	 * @param recorder The recorder
+	 * @param lastMeasured The completion time of the last measured request
+	 */
+	private void submit(long due, BatchRequest<?> request, LoadRecorder recorder, AtomicLong lastMeasured) {
+		Pending pending = new Pending(due, request, recorder.isMeasured(due));
+		if (pending.measured) {
+			recorder.sent(due);
+		}
+		inFlight.incrementAndGet();
+		synchronized (backlog) {
+			if (running >= config.getMaxInFlight()) {
+				backlog.add(pending);
+				if (pending.measured) {
+					recorder.delayed(due);
+				}
+				return;
+			}
+			running++;
+		}
+		send(pending, recorder, lastMeasured);
+	}
+
+	/**
+	 * Sends a request whose slot has been taken, and the requests of the
+	 * backlog which get the slot while the responses complete at once.
+	 */
+	private void send(Pending pending, LoadRecorder recorder, AtomicLong lastMeasured) {
+		while (pending != null) {
+			// The service time starts when the request is handed to the client,
+			// the wait in the backlog is only part of the corrected latency
+			long sent = System.nanoTime();
+			CompletableFuture<? extends HttpResponse<?>> response;
+			try {
+				response = client.executeAsync(pending.request);
+			} catch (Exception e) {
+				response = CompletableFuture.failedFuture(e);
+			}
+			Pending current = pending;
+			if (!response.isDone()) {
+				response.whenComplete((received, throwable) -> {
+					completed(current, sent, received, throwable, recorder, lastMeasured);
+					send(next(), recorder, lastMeasured);
+				});
+				return;
+			}
+			// Completed already, e.g. rejected by a circuit breaker: loop
+			// instead of recursion, the backlog may be long
+			response.whenComplete((received, throwable) ->
+					completed(current, sent, received, throwable, recorder, lastMeasured));
+			pending = next();
+		}
+	}
+
+	/**
+	 * Gives the slot of a completed request to the next request of the backlog.
+	 *
+	 * @return The next request or null if the backlog is empty, then the slot is free
+	 */
+	private Pending next() {
+		synchronized (backlog) {
+			Pending next = backlog.poll();
+			if (next == null) {
+				running--;
+			}
+			return next;
+		}
+	}
+
+	private void completed(Pending pending, long sent, HttpResponse<?> received, Throwable throwable,
+			LoadRecorder recorder, AtomicLong lastMeasured) {
+		long end = System.nanoTime();
+		if (pending.measured) {
+			if (throwable == null) {
+				recorder.completed(pending.due, sent, end, received.statusCode() / 100 + "xx", true);
+			} else {
+				Throwable cause = causeOf(throwable);
+				if (cause instanceof HttpStatusCodeException) {
+					int statusCode = ((HttpStatusCodeException) cause).getResponse().statusCode();
+					recorder.completed(pending.due, sent, end, statusCode / 100 + "xx", false);
+				} else {
+					recorder.completed(pending.due, sent, end, cause.getClass().getSimpleName(), false);
+				}
+			}
+			lastMeasured.accumulateAndGet(end, Math::max);
+		}
+		inFlight.decrementAndGet();
+	}
+
+	private static Throwable causeOf(Throwable throwable) {
+		while ((throwable instanceof CompletionException || throwable instanceof ExecutionException)
+				&& throwable.getCause() != null) {
+			throwable = throwable.getCause();
+		}
+		return throwable;
+	}
+
+	/**
+	 * A request which is due.
+	 */
+	private static final class Pending {
+
+		final long due;
+
+		final BatchRequest<?> request;
+
+		final boolean measured;
+
+		Pending(long due, BatchRequest<?> request, boolean measured) {
+			this.due = due;
+			this.request = request;
+			this.measured = measured;
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package com.starcode88.http.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.starcode88.http.BatchRequest;
+
+/**
+ * Settings of a {@link LoadTest}. An instance is immutable, use
+ * {@link #newBuilder()} to create one:
+ * <pre>
+ * LoadTestConfig config = LoadTestConfig.newBuilder()
+ *         .rate(500)
+ *         .duration(Duration.ofSeconds(60))
+ *         .request(BatchRequest.GET("/items", String.class), 9)
+ *         .request(BatchRequest.POST("/items", item, String.class), 1)
+ *         .build();
+ * </pre>
+ * The requests are sent open-loop at the given rate: the send time of
+ * each request is fixed in advance and does not depend on the responses
+ * of earlier requests, like the arrivals of independent users.
+ */
+public class LoadTestConfig {
+
+	private final double rate;
+
+	private final Duration duration;
+
+	private final Duration warmUp;
+
+	private final Duration interval;
+
+	private final boolean poisson;
+
+	private final int maxInFlight;
+
+	private final Duration drainTimeout;
+
+	private final long seed;
+
+	private final List<WeightedRequest> requests;
+
+	private LoadTestConfig(Builder builder) {
+		this.rate = builder.rate;
+		this.duration = builder.duration;
+		this.warmUp = builder.warmUp;
+		this.interval = builder.interval;
+		this.poisson = builder.poisson;
+		this.maxInFlight = builder.maxInFlight;
+		this.drainTimeout = builder.drainTimeout;
+		this.seed = builder.seed;
+		this.requests = Collections.unmodifiableList(new ArrayList<WeightedRequest>(builder.requests));
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return The number of requests which are sent per second
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * @return How long the load is measured, after the warm-up
+	 */
+	public Duration getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return How long the load is sent before it is measured
+	 */
+	public Duration getWarmUp() {
+		return warmUp;
+	}
+
+	/**
+	 * @return The length of each interval of the timeline of the report
+	 */
+	public Duration getInterval() {
+		return interval;
+	}
+
+	/**
+	 * @return true if the time between two requests is exponentially
+	 *         distributed (a Poisson process), false if it is constant
+	 */
+	public boolean isPoisson() {
+		return poisson;
+	}
+
+	/**
+	 * @return Maximum number of requests in flight. A request which is due
+	 *         while the maximum is reached waits until a request completes.
+	 *         It is counted as delayed and the wait is part of its
+	 *         corrected latency.
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * @return How long the test waits for the requests in flight at the end
+	 */
+	public Duration getDrainTimeout() {
+		return drainTimeout;
+	}
+
+	/**
+	 * @return The seed of the random choice of the requests and of the
+	 *         Poisson arrivals, so a test can be repeated
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return The request mix
+	 */
+	public List<WeightedRequest> getRequests() {
+		return requests;
+	}
+
+	/**
+	 * A request of the mix. It is chosen with the probability of its weight
+	 * divided by the sum of all weights.
+	 */
+	public static final class WeightedRequest {
+
+		private final BatchRequest<?> request;
+
+		private final int weight;
+
+		WeightedRequest(BatchRequest<?> request, int weight) {
+			this.request = request;
+			this.weight = weight;
+		}
+
+		public BatchRequest<?> getRequest() {
+			return request;
+		}
+
+		public int getWeight() {
+			return weight;
+		}
+
+		@Override
+		public String toString() {
+			return weight + " x " + request;
+		}
+	}
+
+	public static class Builder {
+
+		private double rate = 100;
+
+		private Duration duration = Duration.ofSeconds(10);
+
+		private Duration warmUp = Duration.ZERO;
+
+		private Duration interval = Duration.ofSeconds(1);
+
+		private boolean poisson = false;
+
+		private int maxInFlight = 10_000;
+
+		private Duration drainTimeout = Duration.ofSeconds(30);
+
+		private long seed = 88;
+
+		private final List<WeightedRequest> requests = new ArrayList<WeightedRequest>();
+
+		private Builder() {
+		}
+
+		/**
+		 * @param rate The number of requests per second
+		 * @return this builder
+		 */
+		public Builder rate(double rate) {
+			if (!(rate > 0) || Double.isInfinite(rate)) {
+				throw new IllegalArgumentException("The argument <rate> must be positive");
+			}
+			this.rate = rate;
+			return this;
+		}
+
+		/**
+		 * @param duration How long the load is measured
+		 * @return this builder
+		 */
+		public Builder duration(Duration duration) {
+			if (duration == null || duration.isNegative() || duration.isZero()) {
+				throw new IllegalArgumentException("The argument <duration> must be positive");
+			}
+			this.duration = duration;
+			return this;
+		}
+
+		/**
+		 * The load during the warm-up is sent like the measured load, so
+		 * connections, caches and the JIT are warm when the measurement starts.
+		 *
+		 * @param warmUp How long the load is sent before it is measured
+		 * @return this builder
+		 */
+		public Builder warmUp(Duration warmUp) {
+			if (warmUp == null || warmUp.isNegative()) {
+				throw new IllegalArgumentException("The argument <warmUp> must not be negative");
+			}
+			this.warmUp = warmUp;
+			return this;
+		}
+
+		/**
+		 * @param interval The length of each interval of the timeline
+		 * @return this builder
+		 */
+		public Builder interval(Duration interval) {
+			if (interval == null || interval.toMillis() < 1) {
+				throw new IllegalArgumentException("The argument <interval> must be at least 1 ms");
+			}
+			this.interval = interval;
+			return this;
+		}
+
+		/**
+		 * @param poisson true for exponentially distributed times between
+		 *                the requests, false for a constant time
+		 * @return this builder
+		 */
+		public Builder poisson(boolean poisson) {
+			this.poisson = poisson;
+			return this;
+		}
+
+		/**
+		 * @param maxInFlight Maximum number of requests in flight
+		 * @return this builder
+		 */
+		public Builder maxInFlight(int maxInFlight) {
+			if (maxInFlight < 1) {
+				throw new IllegalArgumentException("The argument <maxInFlight> must be positive");
+			}
+			this.maxInFlight = maxInFlight;
+			return this;
+		}
+
+		/**
+		 * @param drainTimeout How long the test waits for the requests in
+		 *                     flight at the end, they are reported as incomplete
+		 * @return this builder
+		 */
+		public Builder drainTimeout(Duration drainTimeout) {
+			if (drainTimeout == null || drainTimeout.isNegative()) {
+				throw new IllegalArgumentException("The argument <drainTimeout> must not be negative");
+			}
+			this.drainTimeout = drainTimeout;
+			return this;
+		}
+
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * Adds a request with weight 1 to the mix.
+		 *
+		 * @param request The request
+		 * @return this builder
+		 */
+		public Builder request(BatchRequest<?> request) {
+			return request(request, 1);
+		}
+
+		/**
+		 * Adds a request to the mix.
+		 *
+		 * @param request The request
+		 * @param weight The relative frequency of the request
+		 * @return this builder
+		 */
+		public Builder request(BatchRequest<?> request, int weight) {
+			if (request == null || weight < 1) {
+				throw new IllegalArgumentException("The argument <request> must not be null and <weight> must be positive");
+			}
+			this.requests.add(new WeightedRequest(request, weight));
+			return this;
+		}
+
+		/**
+		 * @return The config
+		 * @throws IllegalArgumentException Will be thrown if no request has been added
+		 */
+		public LoadTestConfig build() {
+			if (requests.isEmpty()) {
+				throw new IllegalArgumentException("The load test needs at least one request");
+			}
+			return new LoadTestConfig(this);
+		}
+	}
+}
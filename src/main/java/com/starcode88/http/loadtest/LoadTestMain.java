@@ -0,0 +1,187 @@
+package com.starcode88.http.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.starcode88.http.BatchRequest;
+import com.starcode88.http.HttpClient;
+import com.starcode88.http.HttpTransportConfig;
+import com.starcode88.http.WireLogPolicy;
+
+/**
+ * Runs a {@link LoadTest} from the command line and prints the report:
+ * <pre>
+ * ./gradlew loadTest --args="--url http://localhost:8080 --rate 500 --duration 60 --request 'GET /items'"
+ * </pre>
+ * Without {@code --url} the requests are sent to an embedded
+ * {@link LoadTestServer}, so the generator can be checked offline, e.g.
+ * {@code --request "GET /?delay=5"}. {@code --serve} only starts the
+ * server, as a target for a load test from another process.
+ */
+public final class LoadTestMain {
+
+	private static final String USAGE = String.join(System.lineSeparator(),
+			"Usage: LoadTestMain [options]",
+			"  --url URL              Base URL of the target, default: an embedded test server",
+			"  --rate N               Requests per second (default 100)",
+			"  --duration SECONDS     Length of the measurement (default 10)",
+			"  --warmup SECONDS       Load before the measurement (default 0)",
+			"  --interval SECONDS     Length of each interval of the timeline (default 1)",
+			"  --request \"[W:]METHOD PATH [BODY]\"",
+			"                         A request of the mix with weight W (default 1),",
+			"                         may be repeated (default \"GET /\")",
+			"  --poisson              Exponentially distributed arrivals instead of constant",
+			"  --max-in-flight N      Requests in flight before requests wait (default 10000)",
+			"  --virtual-threads      Handle the responses on virtual threads (Java 21 and later)",
+			"  --serve PORT           Only run the embedded test server on PORT until stopped");
+
+	private LoadTestMain() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		String url = null;
+		boolean virtualThreads = false;
+		Integer servePort = null;
+		List<String> requests = new ArrayList<String>();
+		LoadTestConfig.Builder config = LoadTestConfig.newBuilder();
+		HttpTransportConfig transportConfig;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String option = args[i];
+				switch (option) {
+				case "--url":
+					url = value(args, ++i, option);
+					break;
+				case "--rate":
+					config.rate(Double.parseDouble(value(args, ++i, option)));
+					break;
+				case "--duration":
+					config.duration(seconds(value(args, ++i, option)));
+					break;
+				case "--warmup":
+					config.warmUp(seconds(value(args, ++i, option)));
+					break;
+				case "--interval":
+					config.interval(seconds(value(args, ++i, option)));
+					break;
+				case "--request":
+					requests.add(value(args, ++i, option));
+					break;
+				case "--poisson":
+					config.poisson(true);
+					break;
+				case "--max-in-flight":
+					config.maxInFlight(Integer.parseInt(value(args, ++i, option)));
+					break;
+				case "--virtual-threads":
+					virtualThreads = true;
+					break;
+				case "--serve":
+					servePort = Integer.valueOf(value(args, ++i, option));
+					break;
+				case "--help":
+				case "-h":
+					System.out.println(USAGE);
+					return;
+				default:
+					throw new IllegalArgumentException("Unknown option " + option);
+				}
+			}
+			if (requests.isEmpty()) {
+				requests.add("GET /");
+			}
+			for (String request : requests) {
+				addRequest(config, request);
+			}
+			transportConfig = HttpTransportConfig.newBuilder()
+					.virtualThreads(virtualThreads)
+					.build();
+		} catch (IllegalArgumentException | UnsupportedOperationException e) {
+			usage(e.getMessage());
+			return;
+		}
+
+		if (servePort != null) {
+			serve(servePort);
+			return;
+		}
+		LoadTestServer server = url == null ? new LoadTestServer() : null;
+		try (HttpClient client = new HttpClient(server != null ? server.getBaseUrl() : url, transportConfig)) {
+			client.setWireLogPolicy(WireLogPolicy.OFF);
+			LoadTestReport report = new LoadTest(client, config.build()).run();
+			System.out.print(report.format());
+		} finally {
+			if (server != null) {
+				server.close();
+			}
+		}
+	}
+
+	private static void serve(int port) throws IOException, InterruptedException {
+		LoadTestServer server = new LoadTestServer(InetAddress.getLoopbackAddress(), port);
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+		System.out.println("Test server listening on " + server.getBaseUrl());
+		Thread.currentThread().join();
+	}
+
+	/**
+	 * Parses a request of the form "[W:]METHOD PATH [BODY]", e.g.
+	 * "9:GET /items" or "POST /items {\"name\":\"a\"}". The body is sent as
+	 * it is and the response body is read as String.
+	 */
+	private static void addRequest(LoadTestConfig.Builder config, String text) {
+		String request = text.trim();
+		int weight = 1;
+		int colon = request.indexOf(':');
+		int space = request.indexOf(' ');
+		if (colon > 0 && (space < 0 || colon < space)) {
+			weight = Integer.parseInt(request.substring(0, colon));
+			request = request.substring(colon + 1).trim();
+		}
+		String[] parts = request.split(" ", 3);
+		if (parts.length < 2) {
+			throw new IllegalArgumentException("Invalid request \"" + text + "\", expected \"[W:]METHOD PATH [BODY]\"");
+		}
+		String path = parts[1];
+		String body = parts.length > 2 ? parts[2] : "";
+		switch (parts[0].toUpperCase(Locale.ROOT)) {
+		case "GET":
+			config.request(BatchRequest.GET(path, String.class), weight);
+			break;
+		case "DELETE":
+			config.request(BatchRequest.DELETE(path, String.class), weight);
+			break;
+		case "POST":
+			config.request(BatchRequest.POST(path, body, String.class), weight);
+			break;
+		case "PUT":
+			config.request(BatchRequest.PUT(path, body, String.class), weight);
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported method in request \"" + text + "\"");
+		}
+	}
+
+	private static String value(String[] args, int index, String option) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException("The option " + option + " needs a value");
+		}
+		return args[index];
+	}
+
+	private static Duration seconds(String value) {
+		return Duration.ofNanos(Math.round(Double.parseDouble(value) * 1e9));
+	}
+
+	private static void usage(String message) {
+		PrintStream err = System.err;
+		err.println(message);
+		err.println(USAGE);
+		System.exit(2);
+	}
+}
@@ -0,0 +1,314 @@
+package com.starcode88.http.loadtest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.starcode88.http.metrics.Histogram;
+
+/**
+ * The result of a {@link LoadTest}. Only the requests which were due
+ * during the measurement are counted, not those of the warm-up.
+ * <p>
+ * {@link #getLatency()} is measured from the time at which each request
+ * was due, so it is corrected for coordinated omission: when the client
+ * or the server stalls, the requests which should have been sent in the
+ * meantime are counted with the time they had to wait.
+ * {@link #getServiceTime()} is measured from the time at which each
+ * request was actually sent, as a closed-loop test would measure it.
+ * A large difference between both means that the client could not keep
+ * up with the rate.
+ */
+public final class LoadTestReport {
+
+	private static final double[] PERCENTILES = { 50, 75, 90, 95, 99, 99.9, 99.99 };
+
+	private final LoadTestConfig config;
+
+	private final long elapsedNanos;
+
+	private final long sent;
+
+	private final long succeeded;
+
+	private final long failed;
+
+	private final long delayed;
+
+	private final long incomplete;
+
+	private final Map<String, Long> outcomes;
+
+	private final Histogram latency;
+
+	private final Histogram serviceTime;
+
+	private final List<Interval> intervals;
+
+	LoadTestReport(LoadTestConfig config, long elapsedNanos, long sent, long succeeded, long failed, long delayed,
+			long incomplete, Map<String, Long> outcomes, Histogram latency, Histogram serviceTime,
+			Interval[] intervals) {
+		this.config = config;
+		this.elapsedNanos = elapsedNanos;
+		this.sent = sent;
+		this.succeeded = succeeded;
+		this.failed = failed;
+		this.delayed = delayed;
+		this.incomplete = incomplete;
+		this.outcomes = Collections.unmodifiableMap(outcomes);
+		this.latency = latency;
+		this.serviceTime = serviceTime;
+		this.intervals = Collections.unmodifiableList(Arrays.asList(intervals));
+	}
+
+	public LoadTestConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * @return Nanoseconds from the start of the measurement until the last
+	 *         measured request has completed
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return Number of requests which have been sent
+	 */
+	public long getSent() {
+		return sent;
+	}
+
+	/**
+	 * @return Number of responses with a 2xx status code
+	 */
+	public long getSucceeded() {
+		return succeeded;
+	}
+
+	/**
+	 * @return Number of requests which have failed with another status code or an exception
+	 */
+	public long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return Number of requests which waited for a free slot, because the
+	 *         maximum number of requests in flight was reached when they
+	 *         were due. The wait is part of their corrected latency.
+	 */
+	public long getDelayed() {
+		return delayed;
+	}
+
+	/**
+	 * @return Number of requests which had not completed when the drain timeout was over
+	 */
+	public long getIncomplete() {
+		return incomplete;
+	}
+
+	/**
+	 * @return The number of completed requests per outcome: "2xx", "4xx",
+	 *         "5xx" or the simple name of the exception
+	 */
+	public Map<String, Long> getOutcomes() {
+		return outcomes;
+	}
+
+	/**
+	 * @return Completed requests per second over the whole test
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : (succeeded + failed) * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * @return Latencies in nanoseconds, measured from the time at which
+	 *         each request was due (corrected for coordinated omission)
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return Latencies in nanoseconds, measured from the time at which
+	 *         each request was sent (not corrected)
+	 */
+	public Histogram getServiceTime() {
+		return serviceTime;
+	}
+
+	/**
+	 * @return The timeline of the test, one entry per interval of
+	 *         {@link LoadTestConfig#getInterval()}
+	 */
+	public List<Interval> getIntervals() {
+		return intervals;
+	}
+
+	/**
+	 * @return The report as text: summary, percentile table and timeline
+	 */
+	public String format() {
+		StringBuilder text = new StringBuilder();
+		text.append(String.format(Locale.ROOT, "Open-loop load test: %.1f requests/s (%s arrivals) for %.1f s, warm-up %.1f s%n",
+				config.getRate(), config.isPoisson() ? "Poisson" : "constant",
+				config.getDuration().toMillis() / 1000.0, config.getWarmUp().toMillis() / 1000.0));
+		text.append(String.format(Locale.ROOT, "Requests: %d sent, %d succeeded, %d failed, %d incomplete%n",
+				sent, succeeded, failed, incomplete));
+		text.append(String.format(Locale.ROOT, "Throughput: %.1f requests/s%n", getThroughput()));
+		text.append("Outcomes:");
+		for (Map.Entry<String, Long> outcome : outcomes.entrySet()) {
+			text.append(' ').append(outcome.getKey()).append('=').append(outcome.getValue());
+		}
+		text.append(String.format("%n%n"));
+
+		text.append(String.format(Locale.ROOT, "%-12s %14s %14s   %d of %d requests delayed by max-in-flight%n",
+				"Latency (ms)", "corrected", "uncorrected", delayed, sent));
+		for (double percentile : PERCENTILES) {
+			text.append(String.format(Locale.ROOT, "  p%-9s %14.3f %14.3f%n", format(percentile),
+					millis(latency.getValueAtPercentile(percentile)),
+					millis(serviceTime.getValueAtPercentile(percentile))));
+		}
+		text.append(String.format(Locale.ROOT, "  %-10s %14.3f %14.3f%n", "max", millis(latency.getMax()),
+				millis(serviceTime.getMax())));
+		text.append(String.format(Locale.ROOT, "  %-10s %14.3f %14.3f%n%n", "mean", latency.getMean() / 1e6,
+				serviceTime.getMean() / 1e6));
+
+		text.append(String.format(Locale.ROOT, "%-10s %9s %9s %9s %9s %10s %10s %10s %10s%n", "Time (s)", "sent",
+				"delayed", "completed", "failed", "req/s", "p50 (ms)", "p99 (ms)", "max (ms)"));
+		for (Interval interval : intervals) {
+			text.append(String.format(Locale.ROOT, "%-10s %9d %9d %9d %9d %10.1f %10.3f %10.3f %10.3f%n",
+					format(interval.getStartNanos() / 1e9) + "-" + format((interval.getStartNanos()
+							+ interval.getLengthNanos()) / 1e9),
+					interval.getSent(), interval.getDelayed(), interval.getCompleted(), interval.getFailed(),
+					interval.getThroughput(),
+					millis(interval.getP50()), millis(interval.getP99()), millis(interval.getMax())));
+		}
+		return text.toString();
+	}
+
+	private static String format(double value) {
+		String text = String.format(Locale.ROOT, "%.2f", value);
+		return text.replaceAll("\\.?0+$", "");
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return format();
+	}
+
+	/**
+	 * One interval of the timeline.
+	 */
+	public static final class Interval {
+
+		private final long startNanos;
+
+		private final long lengthNanos;
+
+		private final long sent;
+
+		private final long delayed;
+
+		private final long completed;
+
+		private final long failed;
+
+		private final long p50;
+
+		private final long p99;
+
+		private final long max;
+
+		Interval(long startNanos, long lengthNanos, long sent, long delayed, long completed, long failed, long p50,
+				long p99, long max) {
+			this.startNanos = startNanos;
+			this.lengthNanos = lengthNanos;
+			this.sent = sent;
+			this.delayed = delayed;
+			this.completed = completed;
+			this.failed = failed;
+			this.p50 = p50;
+			this.p99 = p99;
+			this.max = max;
+		}
+
+		/**
+		 * @return Nanoseconds from the start of the measurement to the start of the interval
+		 */
+		public long getStartNanos() {
+			return startNanos;
+		}
+
+		public long getLengthNanos() {
+			return lengthNanos;
+		}
+
+		/**
+		 * @return Number of requests which were due in the interval
+		 */
+		public long getSent() {
+			return sent;
+		}
+
+		/**
+		 * @return Number of the requests due in the interval which waited
+		 *         for a free slot
+		 */
+		public long getDelayed() {
+			return delayed;
+		}
+
+		/**
+		 * @return Number of requests which have completed in the interval
+		 */
+		public long getCompleted() {
+			return completed;
+		}
+
+		/**
+		 * @return Number of the completed requests which have failed
+		 */
+		public long getFailed() {
+			return failed;
+		}
+
+		/**
+		 * @return Completed requests per second
+		 */
+		public double getThroughput() {
+			return lengthNanos == 0 ? 0 : completed * 1e9 / lengthNanos;
+		}
+
+		/**
+		 * @return Median corrected latency in nanoseconds of the requests completed in the interval
+		 */
+		public long getP50() {
+			return p50;
+		}
+
+		/**
+		 * @return 99th percentile of the corrected latency in nanoseconds
+		 */
+		public long getP99() {
+			return p99;
+		}
+
+		/**
+		 * @return Largest corrected latency in nanoseconds
+		 */
+		public long getMax() {
+			return max;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.starcode88.http.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local target for a {@link LoadTest}, so the load generator can be
+ * tried and tested without a backend and without network access. Every
+ * path is answered; the response is controlled by the query:
+ * <ul>
+ * <li>{@code delay=n} waits n milliseconds before the response (default 0)</li>
+ * <li>{@code size=n} returns a body of n bytes (default 64); the body of
+ * a POST or PUT request is returned if size is not given</li>
+ * <li>{@code status=n} returns the status code n (default 200)</li>
+ * </ul>
+ * For example {@code GET /items?delay=5&size=1024}. {@link #pause(Duration)}
+ * stalls all responses for a while, like a garbage collection pause of a
+ * server, which shows the difference between the corrected and the
+ * uncorrected latencies of the report.
+ */
+public final class LoadTestServer implements AutoCloseable {
+
+	private static final byte[] BODY = new byte[64 * 1024];
+
+	static {
+		Arrays.fill(BODY, (byte) 'x');
+		// Without TCP_NODELAY the separate writes of headers and body meet
+		// the delayed ACK of the client and each response takes about 40 ms.
+		// The property is read once, when the JDK server is first used.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+	private final LongAdder requests = new LongAdder();
+
+	private final Object pauseLock = new Object();
+
+	/** The time in nanoseconds until which responses are held back */
+	private volatile long pausedUntil = 0;
+
+	/**
+	 * Starts a server on a random port of the loopback interface.
+	 *
+	 * @throws IOException Will be thrown if the server can not be started
+	 */
+	public LoadTestServer() throws IOException {
+		this(InetAddress.getLoopbackAddress(), 0);
+	}
+
+	/**
+	 * Starts a server.
+	 *
+	 * @param address The address to listen on
+	 * @param port The port or 0 for a random port
+	 * @throws IOException Will be thrown if the server can not be started
+	 */
+	public LoadTestServer(InetAddress address, int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(address, port), 1024);
+		AtomicInteger threads = new AtomicInteger();
+		// Delayed responses block their thread, the pool grows with the
+		// requests in flight so the server never limits the rate
+		executor = Executors.newCachedThreadPool(task -> {
+			Thread thread = new Thread(task, "LoadTestServer-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", this::respond);
+		server.start();
+	}
+
+	/**
+	 * @return The base URL of the server, e.g. "http://127.0.0.1:49152"
+	 */
+	public String getBaseUrl() {
+		InetSocketAddress address = server.getAddress();
+		String host = address.getAddress().getHostAddress();
+		return "http://" + (host.indexOf(':') >= 0 ? "[" + host + "]" : host) + ":" + address.getPort();
+	}
+
+	/**
+	 * @return Number of requests which have been received
+	 */
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	/**
+	 * Holds back all responses, also of requests which arrive during the
+	 * pause, until the pause is over.
+	 *
+	 * @param pause The length of the pause
+	 */
+	public void pause(Duration pause) {
+		pausedUntil = System.nanoTime() + pause.toNanos();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void respond(HttpExchange exchange) throws IOException {
+		requests.increment();
+		try (InputStream in = exchange.getRequestBody()) {
+			String query = exchange.getRequestURI().getRawQuery();
+			long delay = parameter(query, "delay", 0);
+			long size = parameter(query, "size", -1);
+			int status = (int) parameter(query, "status", 200);
+			byte[] requestBody = in.readAllBytes();
+			waitForPause();
+			if (delay > 0) {
+				Thread.sleep(delay);
+			}
+			waitForPause();
+			if (size < 0 && requestBody.length > 0) {
+				send(exchange, status, requestBody, requestBody.length);
+			} else {
+				send(exchange, status, BODY, size < 0 ? 64 : size);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void waitForPause() throws InterruptedException {
+		long remaining;
+		while ((remaining = pausedUntil - System.nanoTime()) > 0) {
+			synchronized (pauseLock) {
+				TimeUnit.NANOSECONDS.timedWait(pauseLock, remaining);
+			}
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, byte[] bytes, long size) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+		exchange.sendResponseHeaders(status, size == 0 ? -1 : size);
+		try (OutputStream out = exchange.getResponseBody()) {
+			for (long remaining = size; remaining > 0; remaining -= bytes.length) {
+				out.write(bytes, 0, (int) Math.min(remaining, bytes.length));
+			}
+		}
+	}
+
+	/**
+	 * @return The value of a numeric query parameter or the default value
+	 */
+	private static long parameter(String query, String name, long defaultValue) {
+		if (query == null) {
+			return defaultValue;
+		}
+		for (String parameter : query.split("&")) {
+			int separator = parameter.indexOf('=');
+			if (separator > 0 && parameter.substring(0, separator).equals(name)) {
+				try {
+					return Long.parseLong(parameter.substring(separator + 1));
+				} catch (NumberFormatException e) {
+					return defaultValue;
+				}
+			}
+		}
+		return defaultValue;
+	}
+}
@@ -0,0 +1,192 @@
+package com.starcode88.http.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Default {@link MetricsRecorder}. It keeps a {@link RouteMetrics} per
+ * method and route and registers each of them as MBean
+ * <pre>
+ * com.starcode88.http:type=RouteMetrics,client=&lt;name&gt;,method=GET,route="/users/{id}"
+ * </pre>
+ * <p>
+ * Routes should be templates, not paths with ids in them. To protect the
+ * heap and the MBean server, at most {@link Builder#maxRoutes(int)} routes
+ * are tracked, all further routes are recorded as route "(other)".
+ */
+public final class JmxMetricsRecorder implements MetricsRecorder, AutoCloseable {
+
+	private static Logger logger = LogManager.getLogger(JmxMetricsRecorder.class);
+
+	/** Route of all routes above the limit */
+	public static final String OTHER_ROUTE = "(other)";
+
+	private final String name;
+
+	private final int maxRoutes;
+
+	private final MBeanServer mbeanServer;
+
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, RouteMetrics>> metrics = new ConcurrentHashMap<String, ConcurrentHashMap<String, RouteMetrics>>();
+
+	private final AtomicInteger routes = new AtomicInteger();
+
+	private final List<ObjectName> registered = Collections.synchronizedList(new ArrayList<ObjectName>());
+
+	private volatile boolean closed;
+
+	private JmxMetricsRecorder(Builder builder) {
+		this.name = builder.name;
+		this.maxRoutes = builder.maxRoutes;
+		this.mbeanServer = builder.registerMBeans ? ManagementFactory.getPlatformMBeanServer() : null;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public Sample start(String method, String route, long requestBytes) {
+		RouteMetrics routeMetrics = get(method, route);
+		routeMetrics.onStart(requestBytes);
+		return routeMetrics;
+	}
+
+	/**
+	 * @param method The HTTP method
+	 * @param route The route
+	 * @return The metrics of the method and route, they are created if necessary
+	 */
+	public RouteMetrics get(String method, String route) {
+		ConcurrentHashMap<String, RouteMetrics> byRoute = metrics.get(method);
+		if (byRoute == null) {
+			byRoute = metrics.computeIfAbsent(method, key -> new ConcurrentHashMap<String, RouteMetrics>());
+		}
+		RouteMetrics routeMetrics = byRoute.get(route);
+		if (routeMetrics != null) {
+			return routeMetrics;
+		}
+		if (!OTHER_ROUTE.equals(route) && routes.get() >= maxRoutes) {
+			return get(method, OTHER_ROUTE);
+		}
+		return byRoute.computeIfAbsent(route, key -> create(method, key));
+	}
+
+	/**
+	 * @return The metrics of all routes which have been recorded so far
+	 */
+	public Collection<RouteMetrics> getAll() {
+		List<RouteMetrics> result = new ArrayList<RouteMetrics>();
+		metrics.values().forEach(byRoute -> result.addAll(byRoute.values()));
+		return Collections.unmodifiableList(result);
+	}
+
+	private RouteMetrics create(String method, String route) {
+		routes.incrementAndGet();
+		RouteMetrics routeMetrics = new RouteMetrics(method, route);
+		if (mbeanServer != null && !closed) {
+			try {
+				ObjectName objectName = new ObjectName("com.starcode88.http:type=RouteMetrics,client="
+						+ ObjectName.quote(name) + ",method=" + ObjectName.quote(method) + ",route="
+						+ ObjectName.quote(route));
+				mbeanServer.registerMBean(routeMetrics, objectName);
+				registered.add(objectName);
+			} catch (JMException e) {
+				// Metrics are still recorded, they are just not visible in JMX
+				logger.warn("Failed to register MBean of {} {}: {}", method, route, e.getMessage());
+			}
+		}
+		return routeMetrics;
+	}
+
+	/**
+	 * Unregisters the MBeans. Metrics are still recorded, but new routes
+	 * are not registered anymore.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		synchronized (registered) {
+			for (ObjectName objectName : registered) {
+				try {
+					mbeanServer.unregisterMBean(objectName);
+				} catch (JMException e) {
+					logger.warn("Failed to unregister MBean {}: {}", objectName, e.getMessage());
+				}
+			}
+			registered.clear();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "JmxMetricsRecorder [name=" + name + ", routes=" + routes.get() + "]";
+	}
+
+	public static class Builder {
+
+		private String name = "default";
+
+		private int maxRoutes = 1000;
+
+		private boolean registerMBeans = true;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param name Name of the client in the MBean names, must be unique
+		 *             among the clients of the JVM. Default is "default".
+		 * @return this builder
+		 */
+		public Builder name(String name) {
+			if (name == null || name.isEmpty()) {
+				throw new IllegalArgumentException("The argument <name> must not be empty");
+			}
+			this.name = name;
+			return this;
+		}
+
+		/**
+		 * @param maxRoutes Maximum number of tracked method and route combinations
+		 * @return this builder
+		 */
+		public Builder maxRoutes(int maxRoutes) {
+			if (maxRoutes < 1) {
+				throw new IllegalArgumentException("The argument <maxRoutes> must be 1 or greater");
+			}
+			this.maxRoutes = maxRoutes;
+			return this;
+		}
+
+		/**
+		 * @param registerMBeans false records the metrics without JMX, they
+		 *                       can be read with {@link JmxMetricsRecorder#getAll()}
+		 * @return this builder
+		 */
+		public Builder registerMBeans(boolean registerMBeans) {
+			this.registerMBeans = registerMBeans;
+			return this;
+		}
+
+		public JmxMetricsRecorder build() {
+			return new JmxMetricsRecorder(this);
+		}
+	}
+}
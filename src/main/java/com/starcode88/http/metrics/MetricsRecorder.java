@@ -0,0 +1,44 @@
+package com.starcode88.http.metrics;
+
+/**
+ * Receives the metrics of the exchanges of a {@link com.starcode88.http.HttpClient},
+ * see {@link com.starcode88.http.HttpClient#setMetricsRecorder(MetricsRecorder)}.
+ * <p>
+ * The methods are called on the hot path of every exchange, by many
+ * threads at the same time, so implementations must be thread safe and
+ * should neither block nor allocate much. {@link JmxMetricsRecorder} is
+ * the default implementation.
+ */
+public interface MetricsRecorder {
+
+	/**
+	 * Is called before a request is sent.
+	 *
+	 * @param method The HTTP method
+	 * @param route The route of the request, e.g. "/users/{id}"
+	 * @param requestBytes Size of the request body, -1 if unknown
+	 * @return The sample which receives the outcome of this exchange,
+	 *         it may be shared by all exchanges of the same route
+	 */
+	Sample start(String method, String route, long requestBytes);
+
+	/**
+	 * The outcome of one exchange. Exactly one of the methods is called.
+	 */
+	interface Sample {
+
+		/**
+		 * @param statusCode The status code of the response
+		 * @param responseBytes Size of the response body on the wire, -1 if unknown
+		 * @param durationNanos Time until the response headers have been received
+		 */
+		void onResponse(int statusCode, long responseBytes, long durationNanos);
+
+		/**
+		 * @param failure The exception, e.g. an IOException or a rejection
+		 *                by the circuit breaker
+		 * @param durationNanos Time until the exchange failed
+		 */
+		void onFailure(Throwable failure, long durationNanos);
+	}
+}
@@ -0,0 +1,233 @@
+package com.starcode88.http.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one method and route. It is the {@link MetricsRecorder.Sample}
+ * of all exchanges of the route, so recording does not allocate.
+ */
+public final class RouteMetrics implements RouteMetricsMBean, MetricsRecorder.Sample {
+
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	private final String method;
+
+	private final String route;
+
+	private final Histogram latency = new Histogram();
+
+	private final Histogram requestSize = new Histogram();
+
+	private final Histogram responseSize = new Histogram();
+
+	private final LongAdder requests = new LongAdder();
+
+	private final LongAdder inFlight = new LongAdder();
+
+	/** Responses by status class, index 1 is 1xx ... index 5 is 5xx, 0 are others */
+	private final LongAdder[] statusClasses = new LongAdder[6];
+
+	private final LongAdder failures = new LongAdder();
+
+	private final ConcurrentHashMap<Class<?>, LongAdder> failuresByException = new ConcurrentHashMap<Class<?>, LongAdder>();
+
+	RouteMetrics(String method, String route) {
+		this.method = method;
+		this.route = route;
+		for (int i = 0; i < statusClasses.length; i++) {
+			statusClasses[i] = new LongAdder();
+		}
+	}
+
+	void onStart(long requestBytes) {
+		requests.increment();
+		inFlight.increment();
+		if (requestBytes >= 0) {
+			requestSize.record(requestBytes);
+		}
+	}
+
+	@Override
+	public void onResponse(int statusCode, long responseBytes, long durationNanos) {
+		inFlight.decrement();
+		latency.record(durationNanos);
+		int statusClass = statusCode / 100;
+		statusClasses[statusClass >= 1 && statusClass <= 5 ? statusClass : 0].increment();
+		if (responseBytes >= 0) {
+			responseSize.record(responseBytes);
+		}
+	}
+
+	@Override
+	public void onFailure(Throwable failure, long durationNanos) {
+		inFlight.decrement();
+		latency.record(durationNanos);
+		failures.increment();
+		failuresByException.computeIfAbsent(failure.getClass(), c -> new LongAdder()).increment();
+	}
+
+	@Override
+	public String getMethod() {
+		return method;
+	}
+
+	@Override
+	public String getRoute() {
+		return route;
+	}
+
+	/**
+	 * @return Latencies in nanoseconds
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return Sizes of the request bodies with known length
+	 */
+	public Histogram getRequestSize() {
+		return requestSize;
+	}
+
+	/**
+	 * @return Sizes of the response bodies with a Content-Length header
+	 */
+	public Histogram getResponseSize() {
+		return responseSize;
+	}
+
+	@Override
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	@Override
+	public long getInFlight() {
+		return inFlight.sum();
+	}
+
+	@Override
+	public double getLatencyMeanMillis() {
+		return latency.getMean() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getLatencyP50Millis() {
+		return latency.getValueAtPercentile(50) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getLatencyP90Millis() {
+		return latency.getValueAtPercentile(90) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getLatencyP99Millis() {
+		return latency.getValueAtPercentile(99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getLatencyP999Millis() {
+		return latency.getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getLatencyMaxMillis() {
+		return latency.getMax() / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * @param statusClass 1 for 1xx ... 5 for 5xx
+	 * @return Number of responses with a status code of the class
+	 */
+	public long getStatusClassCount(int statusClass) {
+		if (statusClass < 1 || statusClass > 5) {
+			throw new IllegalArgumentException("The argument <statusClass> must be between 1 and 5");
+		}
+		return statusClasses[statusClass].sum();
+	}
+
+	@Override
+	public long getStatus1xx() {
+		return statusClasses[1].sum();
+	}
+
+	@Override
+	public long getStatus2xx() {
+		return statusClasses[2].sum();
+	}
+
+	@Override
+	public long getStatus3xx() {
+		return statusClasses[3].sum();
+	}
+
+	@Override
+	public long getStatus4xx() {
+		return statusClasses[4].sum();
+	}
+
+	@Override
+	public long getStatus5xx() {
+		return statusClasses[5].sum();
+	}
+
+	@Override
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	/**
+	 * @return Number of failures per exception class
+	 */
+	public Map<String, Long> getFailureCounts() {
+		Map<String, Long> result = new TreeMap<String, Long>();
+		failuresByException.forEach((c, n) -> result.put(c.getName(), n.sum()));
+		return result;
+	}
+
+	@Override
+	public String getFailuresByException() {
+		return getFailureCounts().toString();
+	}
+
+	@Override
+	public long getRequestBytes() {
+		return requestSize.getSum();
+	}
+
+	@Override
+	public long getResponseBytes() {
+		return responseSize.getSum();
+	}
+
+	@Override
+	public double getResponseBytesP99() {
+		return responseSize.getValueAtPercentile(99);
+	}
+
+	@Override
+	public void reset() {
+		latency.reset();
+		requestSize.reset();
+		responseSize.reset();
+		requests.reset();
+		for (LongAdder statusClass : statusClasses) {
+			statusClass.reset();
+		}
+		failures.reset();
+		failuresByException.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "RouteMetrics [method=" + method + ", route=" + route + ", requests=" + getRequests() + ", inFlight="
+				+ getInFlight() + ", p50=" + getLatencyP50Millis() + "ms, p99=" + getLatencyP99Millis() + "ms, 2xx="
+				+ getStatus2xx() + ", 4xx=" + getStatus4xx() + ", 5xx=" + getStatus5xx() + ", failures=" + getFailures()
+				+ "]";
+	}
+}
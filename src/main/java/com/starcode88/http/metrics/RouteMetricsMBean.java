@@ -0,0 +1,57 @@
+package com.starcode88.http.metrics;
+
+/**
+ * JMX view of the metrics of one method and route. Latencies are in
+ * milliseconds, sizes in bytes.
+ */
+public interface RouteMetricsMBean {
+
+	String getMethod();
+
+	String getRoute();
+
+	long getRequests();
+
+	long getInFlight();
+
+	double getLatencyMeanMillis();
+
+	double getLatencyP50Millis();
+
+	double getLatencyP90Millis();
+
+	double getLatencyP99Millis();
+
+	double getLatencyP999Millis();
+
+	double getLatencyMaxMillis();
+
+	long getStatus1xx();
+
+	long getStatus2xx();
+
+	long getStatus3xx();
+
+	long getStatus4xx();
+
+	long getStatus5xx();
+
+	long getFailures();
+
+	/**
+	 * @return Number of failures per exception class, e.g.
+	 *         "java.net.ConnectException=3"
+	 */
+	String getFailuresByException();
+
+	long getRequestBytes();
+
+	long getResponseBytes();
+
+	double getResponseBytesP99();
+
+	/**
+	 * Removes all recorded values except the requests in flight.
+	 */
+	void reset();
+}
@@ -0,0 +1,93 @@
+package com.starcode88.http.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket which limits retries to a share of the requests. Each
+ * request deposits {@link RetryPolicy#getBudgetRatio()} tokens and each
+ * retry withdraws one token. The bucket starts with and never holds more
+ * than {@link RetryPolicy#getBudgetMinRetries()} tokens (at least one),
+ * so over time at most ratio * requests + minRetries retries are sent.
+ * The bucket is updated without locking.
+ */
+public final class RetryBudget {
+
+	/** Tokens are counted in millionths, so that fractional deposits add up */
+	private static final long UNIT = 1_000_000L;
+
+	private final long deposit;
+
+	private final long capacity;
+
+	private final AtomicLong balance;
+
+	private final LongAdder retries = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	public RetryBudget(RetryPolicy policy) {
+		this.deposit = (long) (policy.getBudgetRatio() * UNIT);
+		this.capacity = Math.max(policy.getBudgetMinRetries(), 1) * UNIT;
+		this.balance = new AtomicLong(policy.getBudgetMinRetries() * UNIT);
+	}
+
+	/**
+	 * Deposits the tokens of one request.
+	 */
+	public void recordRequest() {
+		long current;
+		do {
+			current = balance.get();
+			if (current >= capacity) {
+				return;
+			}
+		} while (!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+	}
+
+	/**
+	 * Withdraws one token for a retry.
+	 *
+	 * @return true if the retry may be sent, false if the budget is exhausted
+	 */
+	public boolean tryAcquireRetry() {
+		long current;
+		do {
+			current = balance.get();
+			if (current < UNIT) {
+				rejected.increment();
+				return false;
+			}
+		} while (!balance.compareAndSet(current, current - UNIT));
+		retries.increment();
+		return true;
+	}
+
+	/**
+	 * @return Number of retries which could be sent now
+	 */
+	public double getAvailableRetries() {
+		return (double) balance.get() / UNIT;
+	}
+
+	/**
+	 * @return Number of retries which have been sent
+	 */
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	/**
+	 * @return Number of retries which have not been sent because the
+	 *         budget was exhausted
+	 */
+	public long getRejectedRetries() {
+		return rejected.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "RetryBudget [availableRetries=" + getAvailableRetries() + ", retries=" + getRetries()
+				+ ", rejectedRetries=" + getRejectedRetries() + "]";
+	}
+}
@@ -0,0 +1,109 @@
+package com.starcode88.http.retry;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.starcode88.http.exception.HttpStatusCodeException;
+
+/**
+ * The retry state of one request. It is created before the first attempt
+ * and decides after each failed attempt whether and when the request is
+ * repeated. An instance is used by one request at a time.
+ */
+public final class RetryContext {
+
+	private static Logger logger = LogManager.getLogger(RetryContext.class);
+
+	private final RetryPolicy policy;
+
+	private final RetryBudget budget;
+
+	private final String method;
+
+	private final boolean retryableMethod;
+
+	private final long startNanos = System.nanoTime();
+
+	private int attempts = 1;
+
+	/**
+	 * Creates the state for a new request and deposits its share in the budget.
+	 *
+	 * @param policy The retry policy
+	 * @param budget The retry budget of the client
+	 * @param method The HTTP method of the request
+	 */
+	public RetryContext(RetryPolicy policy, RetryBudget budget, String method) {
+		this.policy = policy;
+		this.budget = budget;
+		this.method = method;
+		this.retryableMethod = policy.isRetryableMethod(method);
+		budget.recordRequest();
+	}
+
+	/**
+	 * @return The time left until the deadline or null if there is no deadline
+	 */
+	public Duration remaining() {
+		Duration deadline = policy.getDeadline();
+		if (deadline == null) {
+			return null;
+		}
+		return deadline.minusNanos(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @return Number of attempts which have been started
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * Decides whether the request is repeated after a failed attempt. If it
+	 * is, a token is taken from the budget.
+	 *
+	 * @param failure The exception of the failed attempt
+	 * @return The delay before the next attempt or null if the request
+	 *         must not be repeated
+	 */
+	public Duration nextDelay(Throwable failure) {
+		if (!retryableMethod || attempts >= policy.getMaxAttempts()) {
+			return null;
+		}
+		Duration delay;
+		if (failure instanceof HttpStatusCodeException) {
+			HttpStatusCodeException statusCodeException = (HttpStatusCodeException) failure;
+			if (!policy.isRetryableStatusCode(statusCodeException.getResponse().statusCode())) {
+				return null;
+			}
+			Optional<Duration> retryAfter = policy.retryAfter(statusCodeException.getResponse().headers(),
+					System.currentTimeMillis());
+			if (retryAfter.isPresent() && retryAfter.get().compareTo(policy.getMaxRetryAfter()) > 0) {
+				logger.debug("No retry of {} request, server asks to wait {}", method, retryAfter.get());
+				return null;
+			}
+			delay = retryAfter.isPresent() ? retryAfter.get() : policy.backoff(attempts);
+		} else if (policy.isRetryableException(failure)) {
+			delay = policy.backoff(attempts);
+		} else {
+			return null;
+		}
+		Duration remaining = remaining();
+		if (remaining != null && delay.compareTo(remaining) >= 0) {
+			logger.debug("No retry of {} request, the deadline would be exceeded", method);
+			return null;
+		}
+		if (!budget.tryAcquireRetry()) {
+			logger.debug("No retry of {} request, the retry budget is exhausted", method);
+			return null;
+		}
+		attempts++;
+		logger.debug("Retry {} request in {} ms (attempt {} of {}) after: {}",
+				method, delay.toMillis(), attempts, policy.getMaxAttempts(), failure.toString());
+		return delay;
+	}
+}
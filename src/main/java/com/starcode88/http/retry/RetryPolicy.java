@@ -0,0 +1,426 @@
+package com.starcode88.http.retry;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.CharacterCodingException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.ZipException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.starcode88.http.exception.HttpRangeMismatchException;
+
+/**
+ * Defines when and how often {@link com.starcode88.http.HttpClient} repeats
+ * a failed request. An instance is immutable, use {@link #newBuilder()} to
+ * create one and pass it to
+ * {@link com.starcode88.http.HttpClient#setRetryPolicy(RetryPolicy)}.
+ * <p>
+ * A request is repeated if it failed with one of the retryable status codes
+ * or exceptions and none of the non-retryable exceptions, if its method is idempotent (GET, HEAD, PUT, DELETE,
+ * OPTIONS, TRACE) or non-idempotent retries are enabled, and if the retry
+ * budget of the client has a token left. The delay before a retry is
+ * chosen with exponential backoff and full jitter, i.e. randomly between 0
+ * and min(maxBackoff, initialBackoff * multiplier ^ retry). If the response
+ * contains a Retry-After header, its value is used instead.
+ * <p>
+ * The default retryable exception is IOException, i.e. failures of the
+ * transport. Failures which a retry would repeat are excluded by default,
+ * although they are IOExceptions too: a body which can not be converted
+ * ({@link JsonProcessingException}), decoded ({@link ZipException},
+ * {@link CharacterCodingException}) or a range request which the server
+ * does not answer with a range ({@link HttpRangeMismatchException}).
+ * <p>
+ * The retry budget limits retries to a percentage of the requests, so that
+ * a failing server does not receive a multiple of the normal traffic.
+ */
+public class RetryPolicy {
+
+	private static final Set<String> IDEMPOTENT_METHODS = Collections.unmodifiableSet(
+			new HashSet<String>(Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE")));
+
+	private final int maxAttempts;
+
+	private final Duration initialBackoff;
+
+	private final Duration maxBackoff;
+
+	private final double multiplier;
+
+	private final Set<Integer> retryableStatusCodes;
+
+	private final List<Class<? extends Throwable>> retryableExceptions;
+
+	private final List<Class<? extends Throwable>> nonRetryableExceptions;
+
+	private final boolean retryNonIdempotent;
+
+	private final boolean respectRetryAfter;
+
+	private final Duration maxRetryAfter;
+
+	private final Duration deadline;
+
+	private final double budgetRatio;
+
+	private final int budgetMinRetries;
+
+	private RetryPolicy(Builder builder) {
+		this.maxAttempts = builder.maxAttempts;
+		this.initialBackoff = builder.initialBackoff;
+		this.maxBackoff = builder.maxBackoff;
+		this.multiplier = builder.multiplier;
+		this.retryableStatusCodes = Collections.unmodifiableSet(new HashSet<Integer>(builder.retryableStatusCodes));
+		this.retryableExceptions = Collections.unmodifiableList(
+				new ArrayList<Class<? extends Throwable>>(builder.retryableExceptions));
+		this.nonRetryableExceptions = Collections.unmodifiableList(
+				new ArrayList<Class<? extends Throwable>>(builder.nonRetryableExceptions));
+		this.retryNonIdempotent = builder.retryNonIdempotent;
+		this.respectRetryAfter = builder.respectRetryAfter;
+		this.maxRetryAfter = builder.maxRetryAfter;
+		this.deadline = builder.deadline;
+		this.budgetRatio = builder.budgetRatio;
+		this.budgetMinRetries = builder.budgetMinRetries;
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return Maximum number of attempts including the first one
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public Duration getInitialBackoff() {
+		return initialBackoff;
+	}
+
+	public Duration getMaxBackoff() {
+		return maxBackoff;
+	}
+
+	public double getMultiplier() {
+		return multiplier;
+	}
+
+	public Set<Integer> getRetryableStatusCodes() {
+		return retryableStatusCodes;
+	}
+
+	public List<Class<? extends Throwable>> getRetryableExceptions() {
+		return retryableExceptions;
+	}
+
+	public List<Class<? extends Throwable>> getNonRetryableExceptions() {
+		return nonRetryableExceptions;
+	}
+
+	public boolean isRetryNonIdempotent() {
+		return retryNonIdempotent;
+	}
+
+	public boolean isRespectRetryAfter() {
+		return respectRetryAfter;
+	}
+
+	public Duration getMaxRetryAfter() {
+		return maxRetryAfter;
+	}
+
+	/**
+	 * @return Maximum time for all attempts of a request including the
+	 *         delays between them, or null if there is no deadline
+	 */
+	public Duration getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * @return Number of retry tokens which are earned by each request
+	 */
+	public double getBudgetRatio() {
+		return budgetRatio;
+	}
+
+	/**
+	 * @return Number of retries which are always possible, even if
+	 *         there have not been any requests before
+	 */
+	public int getBudgetMinRetries() {
+		return budgetMinRetries;
+	}
+
+	/**
+	 * @param method The HTTP method of the request
+	 * @return true if requests with this method may be repeated
+	 */
+	public boolean isRetryableMethod(String method) {
+		return retryNonIdempotent || IDEMPOTENT_METHODS.contains(method);
+	}
+
+	public boolean isRetryableStatusCode(int statusCode) {
+		return retryableStatusCodes.contains(statusCode);
+	}
+
+	/**
+	 * @param throwable The exception of a failed attempt
+	 * @return true if it is one of the retryable exceptions and neither it
+	 *         nor one of its causes is a non-retryable exception. The causes
+	 *         are checked because the JDK client wraps an IOException of the
+	 *         body into a new IOException.
+	 */
+	public boolean isRetryableException(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+			for (Class<? extends Throwable> type : nonRetryableExceptions) {
+				if (type.isInstance(cause)) {
+					return false;
+				}
+			}
+		}
+		for (Class<? extends Throwable> type : retryableExceptions) {
+			if (type.isInstance(throwable)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Chooses the delay before a retry with full jitter.
+	 *
+	 * @param retry The number of the retry, 1 for the first retry
+	 * @return The delay
+	 */
+	public Duration backoff(int retry) {
+		double ceiling = initialBackoff.toNanos() * Math.pow(multiplier, retry - 1);
+		long maxNanos = (long) Math.min(maxBackoff.toNanos(), ceiling);
+		if (maxNanos <= 0) {
+			return Duration.ZERO;
+		}
+		return Duration.ofNanos(ThreadLocalRandom.current().nextLong(maxNanos + 1));
+	}
+
+	/**
+	 * Reads the Retry-After header, which contains either a number of
+	 * seconds or an HTTP date.
+	 *
+	 * @param headers The headers of the response
+	 * @param nowMillis The current time
+	 * @return The delay requested by the server, empty if there is no valid header
+	 *         or Retry-After is not respected
+	 */
+	public Optional<Duration> retryAfter(HttpHeaders headers, long nowMillis) {
+		if (!respectRetryAfter) {
+			return Optional.empty();
+		}
+		Optional<String> value = headers.firstValue("Retry-After");
+		if (!value.isPresent()) {
+			return Optional.empty();
+		}
+		String text = value.get().trim();
+		try {
+			return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(text))));
+		} catch (NumberFormatException e) {
+			// not a number, try a date
+		}
+		try {
+			long millis = ZonedDateTime.parse(text, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+			return Optional.of(Duration.ofMillis(Math.max(0, millis - nowMillis)));
+		} catch (DateTimeParseException e) {
+			return Optional.empty();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RetryPolicy [maxAttempts=" + maxAttempts + ", initialBackoff=" + initialBackoff
+				+ ", maxBackoff=" + maxBackoff + ", multiplier=" + multiplier
+				+ ", retryableStatusCodes=" + retryableStatusCodes + ", retryNonIdempotent=" + retryNonIdempotent
+				+ ", deadline=" + deadline + ", budgetRatio=" + budgetRatio + "]";
+	}
+
+	public static class Builder {
+
+		private int maxAttempts = 3;
+
+		private Duration initialBackoff = Duration.ofMillis(100);
+
+		private Duration maxBackoff = Duration.ofSeconds(10);
+
+		private double multiplier = 2.0;
+
+		private Set<Integer> retryableStatusCodes = new HashSet<Integer>(Arrays.asList(408, 429, 502, 503, 504));
+
+		private List<Class<? extends Throwable>> retryableExceptions = new ArrayList<Class<? extends Throwable>>(
+				Collections.singletonList(IOException.class));
+
+		private List<Class<? extends Throwable>> nonRetryableExceptions = new ArrayList<Class<? extends Throwable>>(
+				Arrays.asList(JsonProcessingException.class, ZipException.class, CharacterCodingException.class,
+						HttpRangeMismatchException.class));
+
+		private boolean retryNonIdempotent = false;
+
+		private boolean respectRetryAfter = true;
+
+		private Duration maxRetryAfter = Duration.ofSeconds(60);
+
+		private Duration deadline = null;
+
+		private double budgetRatio = 0.2;
+
+		private int budgetMinRetries = 10;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param maxAttempts Maximum number of attempts including the first one,
+		 *                    1 disables retries
+		 * @return this builder
+		 */
+		public Builder maxAttempts(int maxAttempts) {
+			if (maxAttempts < 1) {
+				throw new IllegalArgumentException("The argument <maxAttempts> must be 1 or greater");
+			}
+			this.maxAttempts = maxAttempts;
+			return this;
+		}
+
+		/**
+		 * @param initialBackoff Upper limit of the delay before the first retry
+		 * @param maxBackoff Upper limit of the delay before any retry
+		 * @param multiplier Factor by which the upper limit grows with each retry
+		 * @return this builder
+		 */
+		public Builder backoff(Duration initialBackoff, Duration maxBackoff, double multiplier) {
+			if (initialBackoff == null || initialBackoff.isNegative()) {
+				throw new IllegalArgumentException("The argument <initialBackoff> must not be negative");
+			}
+			if (maxBackoff == null || maxBackoff.compareTo(initialBackoff) < 0) {
+				throw new IllegalArgumentException("The argument <maxBackoff> must not be less than <initialBackoff>");
+			}
+			if (multiplier < 1.0) {
+				throw new IllegalArgumentException("The argument <multiplier> must be 1.0 or greater");
+			}
+			this.initialBackoff = initialBackoff;
+			this.maxBackoff = maxBackoff;
+			this.multiplier = multiplier;
+			return this;
+		}
+
+		/**
+		 * @param statusCodes Status codes which are retried, default is 408, 429, 502, 503 and 504
+		 * @return this builder
+		 */
+		public Builder retryableStatusCodes(Integer... statusCodes) {
+			this.retryableStatusCodes = new HashSet<Integer>(Arrays.asList(statusCodes));
+			return this;
+		}
+
+		/**
+		 * @param exceptions Exceptions (including subclasses) which are retried,
+		 *                   default is IOException
+		 * @return this builder
+		 */
+		@SafeVarargs
+		public final Builder retryableExceptions(Class<? extends Throwable>... exceptions) {
+			List<Class<? extends Throwable>> types = new ArrayList<Class<? extends Throwable>>(exceptions.length);
+			for (Class<? extends Throwable> type : exceptions) {
+				types.add(type);
+			}
+			this.retryableExceptions = types;
+			return this;
+		}
+
+		/**
+		 * @param exceptions Exceptions (including subclasses) which are never
+		 *                   retried, even if they are retryable exceptions.
+		 *                   Default is JsonProcessingException, ZipException,
+		 *                   CharacterCodingException and HttpRangeMismatchException.
+		 * @return this builder
+		 */
+		@SafeVarargs
+		public final Builder nonRetryableExceptions(Class<? extends Throwable>... exceptions) {
+			List<Class<? extends Throwable>> types = new ArrayList<Class<? extends Throwable>>(exceptions.length);
+			for (Class<? extends Throwable> type : exceptions) {
+				types.add(type);
+			}
+			this.nonRetryableExceptions = types;
+			return this;
+		}
+
+		/**
+		 * @param retryNonIdempotent true if also POST requests may be retried.
+		 *                           Only enable this if the server can detect
+		 *                           duplicate requests.
+		 * @return this builder
+		 */
+		public Builder retryNonIdempotent(boolean retryNonIdempotent) {
+			this.retryNonIdempotent = retryNonIdempotent;
+			return this;
+		}
+
+		/**
+		 * @param respectRetryAfter true if the delay of the Retry-After header is used
+		 * @param maxRetryAfter If the server asks for a longer delay, the
+		 *                      request is not retried
+		 * @return this builder
+		 */
+		public Builder respectRetryAfter(boolean respectRetryAfter, Duration maxRetryAfter) {
+			if (maxRetryAfter == null || maxRetryAfter.isNegative()) {
+				throw new IllegalArgumentException("The argument <maxRetryAfter> must not be negative");
+			}
+			this.respectRetryAfter = respectRetryAfter;
+			this.maxRetryAfter = maxRetryAfter;
+			return this;
+		}
+
+		/**
+		 * @param deadline Maximum time for all attempts of a request including
+		 *                 the delays between them, null for no deadline
+		 * @return this builder
+		 */
+		public Builder deadline(Duration deadline) {
+			if (deadline != null && (deadline.isNegative() || deadline.isZero())) {
+				throw new IllegalArgumentException("The argument <deadline> must be positive");
+			}
+			this.deadline = deadline;
+			return this;
+		}
+
+		/**
+		 * @param ratio Retries allowed per request, e.g. 0.2 allows retries
+		 *              for up to 20% of the requests
+		 * @param minRetries Number of retries which are always available
+		 * @return this builder
+		 */
+		public Builder budget(double ratio, int minRetries) {
+			if (ratio < 0) {
+				throw new IllegalArgumentException("The argument <ratio> must not be negative");
+			}
+			if (minRetries < 0) {
+				throw new IllegalArgumentException("The argument <minRetries> must not be negative");
+			}
+			this.budgetRatio = ratio;
+			this.budgetMinRetries = minRetries;
+			return this;
+		}
+
+		public RetryPolicy build() {
+			return new RetryPolicy(this);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.CompressionBodies.GzipCompressingInputStream;
+
+class CompressionBodiesTest {
+
+	private static final byte[] TEXT = "The quick brown fox jumps over the lazy dog. ".repeat(2000)
+			.getBytes(StandardCharsets.UTF_8);
+
+	@Test
+	void gzipCompressingInputStream() throws IOException {
+		byte[] compressed = readAll(new GzipCompressingInputStream(new ByteArrayInputStream(TEXT),
+				Deflater.DEFAULT_COMPRESSION), 4096);
+		assertArrayEquals(TEXT, gunzip(compressed));
+	}
+
+	@Test
+	void gzipCompressingInputStreamInSingleBytes() throws IOException {
+		InputStream in = new GzipCompressingInputStream(new ByteArrayInputStream(TEXT), Deflater.BEST_SPEED);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) >= 0) {
+			out.write(b);
+		}
+		in.close();
+		assertArrayEquals(TEXT, gunzip(out.toByteArray()));
+	}
+
+	@Test
+	void gzipCompressingInputStreamOfEmptyInput() throws IOException {
+		byte[] compressed = readAll(new GzipCompressingInputStream(new ByteArrayInputStream(new byte[0]),
+				Deflater.DEFAULT_COMPRESSION), 3);
+		assertArrayEquals(new byte[0], gunzip(compressed));
+	}
+
+	@Test
+	void gzipCompressingInputStreamOfIncompressibleInput() throws IOException {
+		// larger than the input buffer and the output of deflate is not smaller
+		byte[] random = new byte[100_000];
+		new Random(42).nextBytes(random);
+		byte[] compressed = readAll(new GzipCompressingInputStream(new ByteArrayInputStream(random),
+				Deflater.BEST_COMPRESSION), 1000);
+		assertArrayEquals(random, gunzip(compressed));
+	}
+
+	@Test
+	void gzipChunks() throws IOException {
+		byte[] first = Arrays.copyOfRange(TEXT, 0, 100);
+		byte[] second = Arrays.copyOfRange(TEXT, 100, TEXT.length);
+		ByteChunksOutputStream compressed = CompressionBodies.gzip(Arrays.asList(first, second),
+				Deflater.BEST_SPEED);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] chunk : compressed.toChunks()) {
+			out.write(chunk);
+		}
+		assertEquals(compressed.size(), out.size());
+		assertArrayEquals(TEXT, gunzip(out.toByteArray()));
+	}
+
+	private static byte[] readAll(InputStream in, int bufferSize) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[bufferSize];
+		int count;
+		while ((count = in.read(buffer, 0, buffer.length)) >= 0) {
+			out.write(buffer, 0, count);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+
+	private static byte[] gunzip(byte[] bytes) throws IOException {
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+			return in.readAllBytes();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.jupiter.api.Test;
+
+class ContentDecoderTest {
+
+	private static final byte[] TEXT = "The quick brown fox jumps over the lazy dog. ".repeat(2000)
+			.getBytes(StandardCharsets.UTF_8);
+
+	@Test
+	void unknownEncoding() {
+		assertNull(ContentDecoder.forEncoding(null));
+		assertNull(ContentDecoder.forEncoding("br"));
+	}
+
+	@Test
+	void emptyBody() throws ZipException {
+		// 204, 304 and HEAD responses may carry Content-Encoding without a body
+		ContentDecoder.forEncoding("gzip").finish();
+		ContentDecoder.forEncoding("deflate").finish();
+		ContentDecoder gzip = ContentDecoder.forEncoding("gzip");
+		gzip.decode(ByteBuffer.allocate(0), new ArrayList<ByteBuffer>());
+		gzip.finish();
+	}
+
+	@Test
+	void gzip() throws IOException {
+		assertArrayEquals(TEXT, decode("gzip", gzip(TEXT), Integer.MAX_VALUE));
+	}
+
+	@Test
+	void gzipInSingleBytes() throws IOException {
+		assertArrayEquals(TEXT, decode("x-gzip", gzip(TEXT), 1));
+	}
+
+	@Test
+	void gzipWithHeaderFields() throws IOException {
+		byte[] compressed = gzip(TEXT);
+		// FEXTRA, FNAME and FCOMMENT between the fixed header and the data
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(compressed, 0, 3);
+		out.write(4 | 8 | 16);
+		out.write(compressed, 4, 6);
+		out.write(new byte[] { 3, 0, 'a', 'b', 'c' });
+		out.write("name.txt\0".getBytes(StandardCharsets.US_ASCII));
+		out.write("comment\0".getBytes(StandardCharsets.US_ASCII));
+		out.write(compressed, 10, compressed.length - 10);
+		assertArrayEquals(TEXT, decode("gzip", out.toByteArray(), 7));
+	}
+
+	@Test
+	void concatenatedGzipMembers() throws IOException {
+		byte[] first = gzip(Arrays.copyOfRange(TEXT, 0, 1000));
+		byte[] second = gzip(Arrays.copyOfRange(TEXT, 1000, TEXT.length));
+		byte[] both = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, both, first.length, second.length);
+		assertArrayEquals(TEXT, decode("gzip", both, 100));
+	}
+
+	@Test
+	void zlibDeflate() throws IOException {
+		assertArrayEquals(TEXT, decode("deflate", deflate(TEXT, false), 13));
+	}
+
+	@Test
+	void rawDeflate() throws IOException {
+		assertArrayEquals(TEXT, decode("deflate", deflate(TEXT, true), 13));
+	}
+
+	@Test
+	void truncatedGzip() throws IOException {
+		byte[] compressed = gzip(TEXT);
+		assertThrows(ZipException.class,
+				() -> decode("gzip", Arrays.copyOf(compressed, compressed.length - 4), 64));
+		assertThrows(ZipException.class, () -> decode("gzip", Arrays.copyOf(compressed, 5), 64));
+	}
+
+	@Test
+	void truncatedDeflate() throws IOException {
+		byte[] compressed = deflate(TEXT, false);
+		assertThrows(ZipException.class, () -> decode("deflate", Arrays.copyOf(compressed, 1), 64));
+		assertThrows(ZipException.class,
+				() -> decode("deflate", Arrays.copyOf(compressed, compressed.length / 2), 64));
+	}
+
+	@Test
+	void corruptGzipTrailer() throws IOException {
+		byte[] compressed = gzip(TEXT);
+		compressed[compressed.length - 8] ^= 1;
+		assertThrows(ZipException.class, () -> decode("gzip", compressed, 64));
+	}
+
+	@Test
+	void notGzip() {
+		assertThrows(ZipException.class, () -> decode("gzip", TEXT, 64));
+	}
+
+	/**
+	 * Decodes the input in chunks of the given size.
+	 */
+	private static byte[] decode(String encoding, byte[] input, int chunkSize) throws ZipException {
+		ContentDecoder decoder = ContentDecoder.forEncoding(encoding);
+		List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+		try {
+			for (int offset = 0; offset < input.length; offset += chunkSize) {
+				int length = Math.min(chunkSize, input.length - offset);
+				decoder.decode(ByteBuffer.wrap(input, offset, length), buffers);
+			}
+			decoder.finish();
+		} finally {
+			decoder.close();
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (ByteBuffer buffer : buffers) {
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			out.write(bytes, 0, bytes.length);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] gzip(byte[] bytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(bytes);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] deflate(byte[] bytes, boolean raw) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+		try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+			deflate.write(bytes);
+		}
+		deflater.end();
+		return out.toByteArray();
+	}
+}
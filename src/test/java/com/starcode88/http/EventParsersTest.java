@@ -0,0 +1,129 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class EventParsersTest {
+
+	@Test
+	void linesWithAllTerminators() throws IOException {
+		assertEquals(Arrays.asList("a", "b", "c", "", "d"), split(1024, "a\nb\rc\r\n\nd"));
+	}
+
+	@Test
+	void crlfSplitAcrossBuffers() throws IOException {
+		// the LF at the start of the second buffer belongs to the CR, it is no empty line
+		assertEquals(Arrays.asList("a", "b"), split(1024, "a\r", "\nb\n"));
+		assertEquals(Arrays.asList("a", "", "b"), split(1024, "a\r", "\r\nb\n"));
+		assertEquals(Arrays.asList("a", "b"), split(1024, "a", "\r", "\n", "b", "\r"));
+	}
+
+	@Test
+	void everySplitPoint() throws IOException {
+		String text = "first\r\nsecond\rthird\n\r\nlast\r\n";
+		List<String> expected = split(1024, text);
+		assertEquals(Arrays.asList("first", "second", "third", "", "last"), expected);
+		for (int i = 0; i <= text.length(); i++) {
+			assertEquals(expected, split(1024, text.substring(0, i), text.substring(i)), "split at " + i);
+		}
+		assertEquals(expected, split(1024, text.split("")));
+	}
+
+	@Test
+	void lineTooLong() {
+		assertThrows(IOException.class, () -> split(4, "12345\n"));
+		assertThrows(IOException.class, () -> split(4, "123", "45\n"));
+		assertThrows(IOException.class, () -> split(4, "12", "34", "5"));
+	}
+
+	@Test
+	void serverSentEventsSplitAtEveryPoint() throws IOException {
+		String stream = "\ufeff: comment\r\nretry: 1500\r\nid: 7\r\nevent: update\r\ndata: a\r\ndata:b\r\n\r\n"
+				+ "data: second\r\r";
+		for (int i = 0; i <= stream.length(); i++) {
+			EventParsers.ServerSentEvents parser = new EventParsers.ServerSentEvents(1024, null);
+			List<ServerSentEvent> events = new ArrayList<ServerSentEvent>();
+			byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+			int at = Math.min(i, bytes.length);
+			parser.parse(ByteBuffer.wrap(bytes, 0, at), events::add);
+			// direct buffers are not backed by an array
+			ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length - at);
+			direct.put(bytes, at, bytes.length - at).flip();
+			parser.parse(direct, events::add);
+
+			assertEquals(2, events.size(), "split at " + i);
+			assertEquals("7", events.get(0).getId());
+			assertEquals("update", events.get(0).getEvent());
+			assertEquals("a\nb", events.get(0).getData());
+			assertEquals("7", events.get(1).getId());
+			assertEquals("message", events.get(1).getEvent());
+			assertEquals("second", events.get(1).getData());
+			assertEquals(1500, parser.getRetryMillis());
+			assertEquals("7", parser.getLastEventId());
+		}
+	}
+
+	@Test
+	void incompleteServerSentEventIsDiscarded() throws IOException {
+		EventParsers.ServerSentEvents parser = new EventParsers.ServerSentEvents(1024, "3");
+		List<ServerSentEvent> events = new ArrayList<ServerSentEvent>();
+		parser.parse(utf8("data: lost\n"), events::add);
+		parser.finish(events::add);
+		parser.reset();
+		parser.parse(utf8("data: kept\n\n"), events::add);
+		assertEquals(1, events.size());
+		assertEquals("kept", events.get(0).getData());
+		assertEquals("3", events.get(0).getId());
+	}
+
+	@Test
+	void serverSentEventTooLarge() {
+		EventParsers.ServerSentEvents parser = new EventParsers.ServerSentEvents(10, null);
+		assertThrows(IOException.class, () -> parser.parse(utf8("data: 12345\ndata: 67890\n\n"), event -> {
+		}));
+	}
+
+	@Test
+	void jsonLinesSplitAtEveryPoint() throws IOException {
+		String stream = "{\"a\":1}\r\n \r\n{\"a\":2}\n{\"a\":3}";
+		byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i <= bytes.length; i++) {
+			EventParsers.JsonLines<Map<?, ?>> parser = new EventParsers.JsonLines<Map<?, ?>>(
+					new ObjectMapper().readerFor(Map.class), 1024);
+			List<Object> values = new ArrayList<Object>();
+			parser.parse(ByteBuffer.wrap(bytes, 0, i), record -> values.add(record.get("a")));
+			parser.parse(ByteBuffer.wrap(bytes, i, bytes.length - i), record -> values.add(record.get("a")));
+			// the last line has no terminator
+			parser.finish(record -> values.add(record.get("a")));
+			assertEquals(Arrays.asList(1, 2, 3), values, "split at " + i);
+		}
+	}
+
+	private static List<String> split(int maxLength, String... buffers) throws IOException {
+		EventParsers.LineSplitter splitter = new EventParsers.LineSplitter(maxLength);
+		List<String> lines = new ArrayList<String>();
+		EventParsers.LineHandler handler = (bytes, offset, length) -> lines
+				.add(new String(bytes, offset, length, StandardCharsets.UTF_8));
+		for (String buffer : buffers) {
+			splitter.split(utf8(buffer), handler);
+		}
+		splitter.flush(handler);
+		return lines;
+	}
+
+	private static ByteBuffer utf8(String text) {
+		return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
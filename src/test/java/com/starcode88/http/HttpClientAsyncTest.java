@@ -0,0 +1,152 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.exception.HttpStatusCodeException;
+
+class HttpClientAsyncTest {
+
+	private TestServer server;
+
+	private HttpClient client;
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new TestServer()
+				.handle("/ok", exchange -> TestServer.respond(exchange, 200, "ok"))
+				.handle("/missing", exchange -> TestServer.respond(exchange, 404, "not here"))
+				.handle("/slow", exchange -> {
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					TestServer.respond(exchange, 200, "slow");
+				});
+		client = new HttpClient(server.getBaseUrl());
+	}
+
+	@AfterEach
+	void stop() {
+		release.countDown();
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void completesWithTheResponse() throws Exception {
+		HttpResponse<String> response = client.GETAsync("/ok", String.class).get(5, TimeUnit.SECONDS);
+		assertEquals(200, response.statusCode());
+		assertEquals("ok", response.body());
+	}
+
+	@Test
+	void failsWithTheStatusCode() throws Exception {
+		CompletableFuture<HttpResponse<String>> future = client.GETAsync("/missing", String.class);
+		ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof HttpStatusCodeException);
+		HttpResponse<?> response = ((HttpStatusCodeException) e.getCause()).getResponse();
+		assertEquals(404, response.statusCode());
+		assertEquals("not here", response.body());
+	}
+
+	@Test
+	void failsWithTheIOException() throws Exception {
+		String baseUrl;
+		try (TestServer stopped = new TestServer()) {
+			baseUrl = stopped.getBaseUrl();
+		}
+		try (HttpClient unreachable = new HttpClient(baseUrl)) {
+			CompletableFuture<HttpResponse<String>> future = unreachable.GETAsync("/ok", String.class);
+			ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+
+	@Test
+	void requestsOverTheLimitWaitWithoutBlocking() throws Exception {
+		client.setMaxAsyncRequestsInFlight(1);
+		long start = System.nanoTime();
+		List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+		for (int i = 0; i < 3; i++) {
+			futures.add(client.GETAsync("/slow", String.class));
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		assertEquals(2, client.getAsyncRequestsQueued());
+		release.countDown();
+		for (CompletableFuture<HttpResponse<String>> future : futures) {
+			assertEquals("slow", future.get(5, TimeUnit.SECONDS).body());
+		}
+		assertEquals(0, client.getAsyncRequestsQueued());
+		assertEquals(3, server.getRequests());
+	}
+
+	@Test
+	void requestsCanBeSentFromACompletion() throws Exception {
+		client.setMaxAsyncRequestsInFlight(1);
+		CompletableFuture<HttpResponse<String>> chain = client.GETAsync("/ok", String.class);
+		for (int i = 0; i < 5; i++) {
+			chain = chain.thenCompose(response -> getAsync("/ok"));
+		}
+		assertEquals("ok", chain.get(5, TimeUnit.SECONDS).body());
+		assertEquals(6, server.getRequests());
+	}
+
+	@Test
+	void higherLimitSendsWaitingRequests() throws Exception {
+		client.setMaxAsyncRequestsInFlight(1);
+		for (int i = 0; i < 3; i++) {
+			client.GETAsync("/slow", String.class);
+		}
+		assertEquals(2, client.getAsyncRequestsQueued());
+		client.setMaxAsyncRequestsInFlight(3);
+		assertEquals(3, client.getMaxAsyncRequestsInFlight());
+		assertEquals(0, client.getAsyncRequestsQueued());
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (server.getRequests() < 3 && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(3, server.getRequests());
+	}
+
+	@Test
+	void cancelledRequestLeavesTheQueue() throws Exception {
+		client.setMaxAsyncRequestsInFlight(1);
+		CompletableFuture<HttpResponse<String>> running = client.GETAsync("/slow", String.class);
+		CompletableFuture<HttpResponse<String>> waiting = client.GETAsync("/ok", String.class);
+		assertEquals(1, client.getAsyncRequestsQueued());
+		waiting.cancel(false);
+		assertEquals(0, client.getAsyncRequestsQueued());
+		release.countDown();
+		running.get(5, TimeUnit.SECONDS);
+		assertTrue(waiting.isCancelled());
+		// A free slot is taken at once
+		assertEquals("ok", client.GETAsync("/ok", String.class).get(5, TimeUnit.SECONDS).body());
+		assertEquals(2, server.getRequests());
+	}
+
+	private CompletableFuture<HttpResponse<String>> getAsync(String path) {
+		try {
+			return client.GETAsync(path, String.class);
+		} catch (Exception e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.exception.HttpStatusCodeException;
+
+class HttpClientBatchTest {
+
+	private TestServer server;
+
+	private HttpClient client;
+
+	private final AtomicInteger concurrent = new AtomicInteger();
+
+	private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new TestServer()
+				.handle("/echo", exchange -> {
+					int now = concurrent.incrementAndGet();
+					maxConcurrent.accumulateAndGet(now, Math::max);
+					// Later requests complete earlier
+					String query = exchange.getRequestURI().getQuery();
+					int i = Integer.parseInt(query.substring(query.indexOf('=') + 1));
+					TestServer.sleep(Math.max(1, 40 - 2 * i));
+					concurrent.decrementAndGet();
+					TestServer.respond(exchange, 200, exchange.getRequestMethod() + " " + query
+							+ " " + exchange.getRequestHeaders().getFirst("X-Item")
+							+ " " + TestServer.readBody(exchange));
+				})
+				.handle("/missing", exchange -> TestServer.respond(exchange, 404, "not here"))
+				.handle("/blocked", exchange -> {
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					TestServer.respond(exchange, 200, "blocked");
+				});
+		client = new HttpClient(server.getBaseUrl());
+	}
+
+	@AfterEach
+	void stop() {
+		release.countDown();
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void resultsAreInTheOrderOfTheRequests() throws Exception {
+		List<BatchRequest<String>> requests = echoRequests(20);
+		List<Integer> completion = new ArrayList<Integer>();
+		List<BatchResult<String>> results = client.executeBatch(requests,
+				BatchConfig.newBuilder().parallelism(5).build(), result -> completion.add(result.getIndex()));
+		assertEquals(20, results.size());
+		for (int i = 0; i < results.size(); i++) {
+			BatchResult<String> result = results.get(i);
+			assertEquals(i, result.getIndex());
+			assertTrue(result.isSuccess());
+			assertEquals("GET i=" + i + " null ", result.getBody());
+			assertTrue(requests.get(i) == result.getRequest());
+		}
+		// The consumer has received every result once
+		assertEquals(20, completion.size());
+		Collections.sort(completion);
+		for (int i = 0; i < completion.size(); i++) {
+			assertEquals(i, completion.get(i));
+		}
+	}
+
+	@Test
+	void parallelismLimitsTheRequestsInFlight() throws Exception {
+		client.executeBatch(echoRequests(15), BatchConfig.newBuilder().parallelism(3).build());
+		assertTrue(maxConcurrent.get() <= 3, "Requests in flight: " + maxConcurrent.get());
+		assertTrue(maxConcurrent.get() > 1, "The requests were not sent in parallel");
+		assertEquals(15, server.getRequests());
+	}
+
+	@Test
+	void failedRequestDoesNotFailTheBatch() throws Exception {
+		List<BatchRequest<String>> requests = new ArrayList<BatchRequest<String>>(echoRequests(4));
+		requests.set(2, BatchRequest.GET("/missing", String.class));
+		List<BatchResult<String>> results = client.executeBatch(requests, BatchConfig.defaults());
+		assertTrue(results.get(0).isSuccess());
+		assertTrue(results.get(1).isSuccess());
+		assertFalse(results.get(2).isSuccess());
+		assertFalse(results.get(2).isCancelled());
+		assertTrue(results.get(2).getException() instanceof HttpStatusCodeException);
+		assertTrue(results.get(3).isSuccess());
+	}
+
+	@Test
+	void failureCancelsTheBatch() throws Exception {
+		List<BatchRequest<String>> requests = new ArrayList<BatchRequest<String>>();
+		requests.add(BatchRequest.GET("/blocked", String.class));
+		requests.add(BatchRequest.GET("/missing", String.class));
+		requests.addAll(echoRequests(10));
+		long start = System.nanoTime();
+		List<BatchResult<String>> results = client.executeBatch(requests,
+				BatchConfig.newBuilder().parallelism(2).cancelOnFailure(true).build());
+		// The blocked request has been interrupted, not waited for
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+		assertTrue(results.get(0).isCancelled());
+		assertTrue(results.get(0).getException() instanceof CancellationException);
+		assertTrue(results.get(1).getException() instanceof HttpStatusCodeException);
+		for (int i = 2; i < results.size(); i++) {
+			assertTrue(results.get(i).isCancelled(), results.get(i).toString());
+		}
+		assertEquals(2, server.getRequests());
+	}
+
+	@Test
+	void requestsAreSentWithTheirMethodBodyAndHeaders() throws Exception {
+		List<BatchRequest<String>> requests = new ArrayList<BatchRequest<String>>();
+		requests.add(BatchRequest.POST("/echo?i=1", "a", String.class).headers(RequestHeaders.of("X-Item", "1")));
+		requests.add(BatchRequest.PUT("/echo?i=2", "b", String.class).headers(RequestHeaders.of("X-Item", "2")));
+		requests.add(BatchRequest.DELETE(UriTemplate.compile("/echo{?i}").expand(3), String.class));
+		List<BatchResult<String>> results = client.executeBatch(requests, BatchConfig.defaults());
+		assertEquals("POST i=1 1 a", results.get(0).getBody());
+		assertEquals("PUT i=2 2 b", results.get(1).getBody());
+		assertEquals("DELETE i=3 null ", results.get(2).getBody());
+	}
+
+	@Test
+	void failingConsumerCancelsTheBatch() throws Exception {
+		List<BatchRequest<String>> requests = new ArrayList<BatchRequest<String>>(echoRequests(3));
+		requests.add(BatchRequest.GET("/blocked", String.class));
+		long start = System.nanoTime();
+		assertThrows(IllegalStateException.class, () -> client.executeBatch(requests,
+				BatchConfig.newBuilder().parallelism(4).build(), result -> {
+					throw new IllegalStateException("consumer failed");
+				}));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+	}
+
+	@Test
+	void emptyBatchHasNoResults() throws Exception {
+		assertTrue(client.executeBatch(new ArrayList<BatchRequest<String>>(), BatchConfig.defaults()).isEmpty());
+		assertThrows(IllegalArgumentException.class, () -> client.executeBatch(null, BatchConfig.defaults()));
+	}
+
+	private static List<BatchRequest<String>> echoRequests(int count) {
+		List<BatchRequest<String>> requests = new ArrayList<BatchRequest<String>>();
+		for (int i = 0; i < count; i++) {
+			requests.add(BatchRequest.GET("/echo?i=" + i, String.class));
+		}
+		return requests;
+	}
+}
@@ -0,0 +1,138 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.limit.ConcurrencyLimitConfig;
+import com.starcode88.http.limit.ConcurrencyLimiter;
+import com.starcode88.http.retry.RetryPolicy;
+
+class HttpClientCoalescingTest {
+
+	private static final int CALLERS = 8;
+
+	private TestServer server;
+
+	private HttpClient client;
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new TestServer()
+				.handle("/slow", exchange -> {
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					TestServer.respond(exchange, 200, "shared");
+				})
+				.handle("/fast", exchange -> TestServer.respond(exchange, 200, "fast"));
+		client = new HttpClient(server.getBaseUrl());
+		client.setRequestCoalescing(true);
+		client.setConcurrencyLimitConfig(ConcurrencyLimitConfig.newBuilder().build());
+	}
+
+	@AfterEach
+	void stop() {
+		release.countDown();
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void identicalRequestsShareOneExchange() throws Exception {
+		ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+		try {
+			List<Future<String>> bodies = new ArrayList<Future<String>>();
+			for (int i = 0; i < CALLERS; i++) {
+				bodies.add(callers.submit(() -> client.GET("/slow", String.class).body()));
+			}
+			// Wait until all callers have joined the exchange
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (client.getCoalescedRequestCount() < CALLERS - 1 && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+			for (Future<String> body : bodies) {
+				assertEquals("shared", body.get(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+		assertEquals(1, server.getRequests());
+		assertEquals(CALLERS - 1, client.getCoalescedRequestCount());
+	}
+
+	@Test
+	void sharedExchangeIsCancelledWhenAllCallersTimeOut() throws Exception {
+		client.setRetryPolicy(RetryPolicy.newBuilder().maxAttempts(1).deadline(Duration.ofMillis(200)).build());
+		ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+		try {
+			List<Future<Exception>> failures = new ArrayList<Future<Exception>>();
+			for (int i = 0; i < CALLERS; i++) {
+				failures.add(callers.submit(() -> {
+					try {
+						client.GET("/slow", String.class);
+						return null;
+					} catch (Exception e) {
+						return e;
+					}
+				}));
+			}
+			for (Future<Exception> failure : failures) {
+				assertTrue(failure.get(5, TimeUnit.SECONDS) instanceof HttpTimeoutException);
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+		// The server still holds the exchange, but the client has cancelled it
+		ConcurrencyLimiter limiter = client.getConcurrencyLimiters().getAll().iterator().next();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+		while (limiter.getInFlight() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(1, server.getRequests());
+
+		// A new request starts a new exchange
+		client.setRetryPolicy(null);
+		assertEquals("fast", client.GET("/fast", String.class).body());
+	}
+
+	@Test
+	void callerWhichTimesOutDoesNotCancelTheOthers() throws Exception {
+		ExecutorService callers = Executors.newFixedThreadPool(2);
+		try {
+			Future<String> patient = callers.submit(() -> client.GET("/slow", String.class).body());
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (server.getRequests() == 0 && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			client.setRetryPolicy(RetryPolicy.newBuilder().maxAttempts(1).deadline(Duration.ofMillis(100)).build());
+			assertThrows(HttpTimeoutException.class, () -> client.GET("/slow", String.class));
+			release.countDown();
+			assertEquals("shared", patient.get(5, TimeUnit.SECONDS));
+		} finally {
+			callers.shutdownNow();
+		}
+		assertEquals(1, server.getRequests());
+	}
+}
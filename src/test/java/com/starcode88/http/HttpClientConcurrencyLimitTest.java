@@ -0,0 +1,175 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.exception.HttpLimitExceededException;
+import com.starcode88.http.exception.HttpStatusCodeException;
+import com.starcode88.http.limit.AimdLimit;
+import com.starcode88.http.limit.ConcurrencyLimitConfig;
+import com.starcode88.http.limit.ConcurrencyLimiter;
+
+class HttpClientConcurrencyLimitTest {
+
+	private TestServer server;
+
+	private HttpClient client;
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final ExecutorService callers = Executors.newCachedThreadPool();
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new TestServer()
+				.handle("/slow", exchange -> {
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					TestServer.respond(exchange, 200, "slow");
+				})
+				.handle("/fast", exchange -> TestServer.respond(exchange, 200, "fast"))
+				.handle("/overloaded", exchange -> TestServer.respond(exchange, 503, "overloaded"));
+		client = new HttpClient(server.getBaseUrl());
+	}
+
+	@AfterEach
+	void stop() {
+		release.countDown();
+		callers.shutdownNow();
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void requestsOverTheLimitWaitForASlot() throws Exception {
+		limit(2, 10, Duration.ofSeconds(5));
+		List<Future<String>> bodies = new ArrayList<Future<String>>();
+		for (int i = 0; i < 4; i++) {
+			bodies.add(callers.submit(() -> client.GET("/slow", String.class).body()));
+		}
+		ConcurrencyLimiter limiter = awaitLimiter();
+		await(() -> server.getRequests() == 2 && limiter.getQueueDepth() == 2);
+		assertEquals(2, limiter.getInFlight());
+		release.countDown();
+		for (Future<String> body : bodies) {
+			assertEquals("slow", body.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(4, server.getRequests());
+		assertEquals(0, limiter.getQueueDepth());
+		assertEquals(0, limiter.getRejected());
+	}
+
+	@Test
+	void requestIsRejectedIfTheQueueIsFull() throws Exception {
+		limit(1, 1, Duration.ofSeconds(5));
+		Future<String> running = callers.submit(() -> client.GET("/slow", String.class).body());
+		ConcurrencyLimiter limiter = awaitLimiter();
+		await(() -> server.getRequests() == 1);
+		Future<String> waiting = callers.submit(() -> client.GET("/slow", String.class).body());
+		await(() -> limiter.getQueueDepth() == 1);
+		assertThrows(HttpLimitExceededException.class, () -> client.GET("/fast", String.class));
+		assertEquals(1, limiter.getRejected());
+		release.countDown();
+		assertEquals("slow", running.get(5, TimeUnit.SECONDS));
+		assertEquals("slow", waiting.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void requestIsRejectedAfterTheWaitTime() throws Exception {
+		limit(1, 10, Duration.ofMillis(100));
+		callers.submit(() -> client.GET("/slow", String.class).body());
+		ConcurrencyLimiter limiter = awaitLimiter();
+		await(() -> server.getRequests() == 1);
+		long start = System.nanoTime();
+		assertThrows(HttpLimitExceededException.class, () -> client.GET("/fast", String.class));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+		assertEquals(0, limiter.getQueueDepth());
+		assertEquals(1, server.getRequests());
+	}
+
+	@Test
+	void asyncRequestsWaitWithoutBlocking() throws Exception {
+		limit(1, 10, Duration.ofSeconds(5));
+		long start = System.nanoTime();
+		List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+		for (int i = 0; i < 3; i++) {
+			futures.add(client.GETAsync("/slow", String.class));
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		ConcurrencyLimiter limiter = awaitLimiter();
+		await(() -> limiter.getQueueDepth() == 2);
+		release.countDown();
+		for (CompletableFuture<HttpResponse<String>> future : futures) {
+			assertEquals("slow", future.get(5, TimeUnit.SECONDS).body());
+		}
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	void asyncRequestFailsAfterTheWaitTime() throws Exception {
+		limit(1, 10, Duration.ofMillis(100));
+		client.GETAsync("/slow", String.class);
+		CompletableFuture<HttpResponse<String>> waiting = client.GETAsync("/fast", String.class);
+		ExecutionException e = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof HttpLimitExceededException);
+	}
+
+	@Test
+	void limitFollowsTheResponses() throws Exception {
+		client.setConcurrencyLimitConfig(ConcurrencyLimitConfig.newBuilder()
+				.algorithm(() -> AimdLimit.newBuilder().limits(4, 1, 100).backoffRatio(0.5).build())
+				.build());
+		assertThrows(HttpStatusCodeException.class, () -> client.GET("/overloaded", String.class));
+		ConcurrencyLimiter limiter = awaitLimiter();
+		assertEquals(2, limiter.getLimit());
+		assertThrows(HttpStatusCodeException.class, () -> client.GET("/overloaded", String.class));
+		assertEquals(1, limiter.getLimit());
+		// One request in flight uses the whole limit, so each success adds one
+		for (int i = 0; i < 3; i++) {
+			client.GET("/fast", String.class);
+		}
+		assertEquals(3, limiter.getLimit());
+	}
+
+	private void limit(int limit, int maxQueueSize, Duration maxWait) {
+		client.setConcurrencyLimitConfig(ConcurrencyLimitConfig.newBuilder()
+				.algorithm(() -> AimdLimit.newBuilder().limits(limit, limit, limit).build())
+				.queue(maxQueueSize, maxWait)
+				.build());
+	}
+
+	private ConcurrencyLimiter awaitLimiter() throws InterruptedException {
+		await(() -> !client.getConcurrencyLimiters().getAll().isEmpty());
+		return client.getConcurrencyLimiters().getAll().iterator().next();
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+}
@@ -0,0 +1,159 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.exception.HttpStatusCodeException;
+
+class HttpClientExecuteTest {
+
+	private TestServer server;
+
+	private HttpClient client;
+
+	private final AtomicInteger concurrent = new AtomicInteger();
+
+	private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new TestServer()
+				.handle("/echo", exchange -> {
+					String query = exchange.getRequestURI().getQuery();
+					int now = concurrent.incrementAndGet();
+					maxConcurrent.accumulateAndGet(now, Math::max);
+					TestServer.sleep(30);
+					concurrent.decrementAndGet();
+					TestServer.respond(exchange, 200, query);
+				})
+				.handle("/missing", exchange -> TestServer.respond(exchange, 404, "not here"))
+				.handle("/blocked", exchange -> {
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					TestServer.respond(exchange, 200, "blocked");
+				});
+		client = new HttpClient(server.getBaseUrl());
+	}
+
+	@AfterEach
+	void stop() {
+		release.countDown();
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void resultsAreInTheOrderOfTheCalls() throws Exception {
+		List<Future<String>> results = client.execute(echoCalls(20));
+		assertEquals(20, results.size());
+		for (int i = 0; i < results.size(); i++) {
+			assertTrue(results.get(i).isDone());
+			assertEquals("i=" + i, results.get(i).get());
+		}
+		assertTrue(maxConcurrent.get() > 1, "The calls did not run concurrently");
+	}
+
+	@Test
+	void parallelismLimitsTheCallsInFlight() throws Exception {
+		List<Future<String>> results = client.execute(echoCalls(12), 3);
+		for (Future<String> result : results) {
+			result.get();
+		}
+		assertTrue(maxConcurrent.get() <= 3, "Calls in flight: " + maxConcurrent.get());
+		assertEquals(12, server.getRequests());
+	}
+
+	@Test
+	void failedCallDoesNotAffectTheOthers() throws Exception {
+		List<Callable<String>> calls = new ArrayList<Callable<String>>(echoCalls(3));
+		calls.add(1, () -> client.GET("/missing", String.class).body());
+		List<Future<String>> results = client.execute(calls);
+		assertEquals("i=0", results.get(0).get());
+		ExecutionException e = assertThrows(ExecutionException.class, () -> results.get(1).get());
+		assertTrue(e.getCause() instanceof HttpStatusCodeException);
+		assertEquals("i=1", results.get(2).get());
+		assertEquals("i=2", results.get(3).get());
+	}
+
+	@Test
+	void interruptCancelsTheCalls() throws Exception {
+		List<Callable<String>> calls = new ArrayList<Callable<String>>();
+		for (int i = 0; i < 2; i++) {
+			calls.add(() -> client.GET("/blocked", String.class).body());
+		}
+		AtomicReference<Exception> thrown = new AtomicReference<Exception>();
+		Thread caller = new Thread(() -> {
+			try {
+				client.execute(calls);
+			} catch (Exception e) {
+				thrown.set(e);
+			}
+		});
+		caller.start();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (server.getRequests() < 2 && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		caller.interrupt();
+		caller.join(TimeUnit.SECONDS.toMillis(5));
+		assertTrue(thrown.get() instanceof InterruptedException, String.valueOf(thrown.get()));
+	}
+
+	@Test
+	void invalidArgumentsAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> client.execute(null));
+		assertThrows(IllegalArgumentException.class, () -> client.execute(echoCalls(1), 0));
+	}
+
+	@Test
+	void transportRunsOnVirtualThreadsIfSupported() throws Exception {
+		if (!HttpTransportConfig.isVirtualThreadsSupported()) {
+			assertThrows(UnsupportedOperationException.class,
+					() -> HttpTransportConfig.newBuilder().virtualThreads(true));
+			return;
+		}
+		HttpTransportConfig config = HttpTransportConfig.newBuilder().virtualThreads(true).build();
+		assertTrue(config.isVirtualThreads());
+		try (HttpClient virtual = new HttpClient(server.getBaseUrl(), config)) {
+			List<Callable<String>> calls = new ArrayList<Callable<String>>();
+			for (int i = 0; i < 50; i++) {
+				int index = i;
+				calls.add(() -> virtual.GET("/echo?i=" + index, String.class).body());
+			}
+			List<Future<String>> results = virtual.execute(calls);
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals("i=" + i, results.get(i).get());
+			}
+		}
+	}
+
+	private List<Callable<String>> echoCalls(int count) {
+		List<Callable<String>> calls = new ArrayList<Callable<String>>();
+		for (int i = 0; i < count; i++) {
+			String path = "/echo?i=" + i;
+			calls.add(() -> client.GET(path, String.class).body());
+		}
+		return calls;
+	}
+}
@@ -0,0 +1,122 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HttpClientHeadersTest {
+
+	private TestServer server;
+
+	private HttpClient client;
+
+	@BeforeEach
+	void start() throws IOException {
+		// Returns all values of X-A, X-B and Authorization, so duplicates show up
+		server = new TestServer().handle("/headers", exchange -> {
+			TestServer.readBody(exchange);
+			TestServer.respond(exchange, 200, exchange.getRequestHeaders().get("X-A")
+					+ " " + exchange.getRequestHeaders().get("X-B")
+					+ " " + exchange.getRequestHeaders().get("Authorization"));
+		});
+		client = new HttpClient(server.getBaseUrl());
+		client.addHeader("X-A", "default");
+	}
+
+	@AfterEach
+	void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void defaultHeadersAreSent() throws Exception {
+		client.addHeader("X-B", "b");
+		assertEquals("[default] [b] null", client.GET("/headers", String.class).body());
+	}
+
+	@Test
+	void requestHeaderReplacesTheDefaultHeader() throws Exception {
+		RequestHeaders headers = RequestHeaders.of("x-a", "override").with("X-B", "b");
+		assertEquals("[override] [b] null", client.GET("/headers", headers, String.class).body());
+		assertEquals("[override] [b] null", client.DELETE("/headers", headers, String.class).body());
+		assertEquals("[override] [b] null", client.POST("/headers", headers, "body", String.class).body());
+		assertEquals("[override] [b] null", client.PUT("/headers", headers, "body", String.class).body());
+		// The default headers are not changed
+		assertEquals("[default] null null", client.GET("/headers", String.class).body());
+		assertEquals(RequestHeaders.of("X-A", "default"), client.getHeaders());
+	}
+
+	@Test
+	void headerWithTheSameNameIsReplaced() throws Exception {
+		client.addHeader("Authorization", "Bearer 1");
+		client.addHeader("authorization", "Bearer 2");
+		assertEquals("Bearer 2", client.getHeader("AUTHORIZATION"));
+		assertEquals("[default] null [Bearer 2]", client.GET("/headers", String.class).body());
+		assertEquals("Bearer 2", client.removeHeader("Authorization"));
+		assertNull(client.getHeader("Authorization"));
+		assertEquals("[default] null null", client.GET("/headers", String.class).body());
+	}
+
+	@Test
+	void setHeadersReplacesAllHeaders() throws Exception {
+		client.setHeaders(RequestHeaders.of("X-B", "b"));
+		assertEquals("null [b] null", client.GET("/headers", String.class).body());
+		assertThrows(IllegalArgumentException.class, () -> client.setHeaders(null));
+	}
+
+	@Test
+	void invalidHeadersAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> client.addHeader("Host", "example.com"));
+		assertThrows(IllegalArgumentException.class, () -> client.addHeader("X-A", "a\r\nX-Injected: b"));
+		assertThrows(IllegalArgumentException.class, () -> RequestHeaders.of("X A", "a"));
+		assertEquals(RequestHeaders.of("X-A", "default"), client.getHeaders());
+	}
+
+	@Test
+	void headerCanBeChangedWhileRequestsAreSent() throws Exception {
+		client.addHeader("Authorization", "Bearer 0");
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService callers = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+			for (int i = 0; i < 4; i++) {
+				results.add(callers.submit(() -> {
+					List<String> bodies = new ArrayList<String>();
+					while (running.get()) {
+						bodies.add(client.GET("/headers", String.class).body());
+					}
+					return bodies;
+				}));
+			}
+			for (int token = 1; token <= 50; token++) {
+				client.addHeader("Authorization", "Bearer " + token);
+				Thread.sleep(2);
+			}
+			running.set(false);
+			for (Future<List<String>> result : results) {
+				for (String body : result.get(5, TimeUnit.SECONDS)) {
+					// Each request has one token and the other headers
+					assertTrue(body.matches("\\[default\\] null \\[Bearer \\d+\\]"), body);
+				}
+			}
+		} finally {
+			running.set(false);
+			callers.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.hedge.Hedger;
+import com.starcode88.http.hedge.HedgingPolicy;
+import com.starcode88.http.limit.ConcurrencyLimitConfig;
+import com.starcode88.http.limit.ConcurrencyLimiter;
+
+class HttpClientHedgingTest {
+
+	private TestServer server;
+
+	private TestServer replica;
+
+	private HttpClient client;
+
+	/** Releases the first request of /first-slow */
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final AtomicInteger firstSlowRequests = new AtomicInteger();
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new TestServer()
+				.handle("/fast", exchange -> TestServer.respond(exchange, 200, "fast"))
+				.handle("/slow", exchange -> {
+					TestServer.sleep(300);
+					TestServer.respond(exchange, 200, "slow");
+				})
+				.handle("/first-slow", exchange -> {
+					if (firstSlowRequests.incrementAndGet() == 1) {
+						try {
+							release.await(5, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						TestServer.respond(exchange, 200, "primary");
+					} else {
+						TestServer.respond(exchange, 200, "hedge");
+					}
+				});
+		replica = new TestServer()
+				.handle("/first-slow", exchange -> TestServer.respond(exchange, 200, "replica"));
+		client = new HttpClient(server.getBaseUrl());
+	}
+
+	@AfterEach
+	void stop() {
+		release.countDown();
+		client.close();
+		server.close();
+		replica.close();
+	}
+
+	@Test
+	void noHedgeWithinTheDelay() throws Exception {
+		client.setHedgingPolicy(HedgingPolicy.newBuilder().fixedDelay(Duration.ofMillis(500)).build());
+		for (int i = 0; i < 5; i++) {
+			assertEquals("fast", client.GET("/fast", String.class).body());
+		}
+		assertEquals(0, client.getHedger().getHedges());
+		assertEquals(5, server.getRequests());
+	}
+
+	@Test
+	void hedgeIsSentAfterTheDelayAndWins() throws Exception {
+		client.setHedgingPolicy(HedgingPolicy.newBuilder().fixedDelay(Duration.ofMillis(50)).build());
+		long start = System.nanoTime();
+		assertEquals("hedge", client.GET("/first-slow", String.class).body());
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+		Hedger hedger = client.getHedger();
+		assertEquals(1, hedger.getHedges());
+		assertEquals(1, hedger.getHedgeWins());
+		assertEquals(2, server.getRequests());
+	}
+
+	@Test
+	void adaptiveDelayFollowsTheLatencies() throws Exception {
+		client.setHedgingPolicy(HedgingPolicy.newBuilder()
+				.delay(Duration.ofMillis(900))
+				.adaptiveDelay(50, Duration.ofMillis(1), Duration.ofSeconds(1))
+				.windowSize(10)
+				.build());
+		for (int i = 0; i < 10; i++) {
+			client.GET("/fast", String.class);
+		}
+		// The latency is recorded when the response has been completed
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+		while (client.getHedger().getDelayNanos() == TimeUnit.MILLISECONDS.toNanos(900)
+				&& System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(client.getHedger().getDelayNanos() < TimeUnit.MILLISECONDS.toNanos(900));
+	}
+
+	@Test
+	void budgetLimitsTheHedges() throws Exception {
+		client.setHedgingPolicy(HedgingPolicy.newBuilder()
+				.fixedDelay(Duration.ofMillis(20))
+				.budget(0, 1)
+				.build());
+		for (int i = 0; i < 3; i++) {
+			assertEquals("slow", client.GET("/slow", String.class).body());
+		}
+		Hedger hedger = client.getHedger();
+		assertEquals(1, hedger.getHedges());
+		assertEquals(2, hedger.getRejectedHedges());
+		assertEquals(4, server.getRequests());
+	}
+
+	@Test
+	void losingRequestIsCancelled() throws Exception {
+		client.setConcurrencyLimitConfig(ConcurrencyLimitConfig.newBuilder().build());
+		client.setHedgingPolicy(HedgingPolicy.newBuilder().fixedDelay(Duration.ofMillis(50)).build());
+		assertEquals("hedge", client.GET("/first-slow", String.class).body());
+		// The first request is still held by the server
+		ConcurrencyLimiter limiter = client.getConcurrencyLimiters().getAll().iterator().next();
+		awaitNoneInFlight(limiter);
+	}
+
+	@Test
+	void hedgeIsSentToTheAlternateBaseUrl() throws Exception {
+		client.setHedgingPolicy(HedgingPolicy.newBuilder()
+				.fixedDelay(Duration.ofMillis(50))
+				.alternateBaseUrl(replica.getBaseUrl())
+				.build());
+		assertEquals("replica", client.GET("/first-slow", String.class).body());
+		assertEquals(1, server.getRequests());
+		assertEquals(1, replica.getRequests());
+	}
+
+	@Test
+	void coalescedRequestsShareOneHedgedExchange() throws Exception {
+		client.setRequestCoalescing(true);
+		client.setConcurrencyLimitConfig(ConcurrencyLimitConfig.newBuilder().build());
+		client.setHedgingPolicy(HedgingPolicy.newBuilder().fixedDelay(Duration.ofMillis(200)).build());
+		ExecutorService callers = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> bodies = new ArrayList<Future<String>>();
+			for (int i = 0; i < 4; i++) {
+				bodies.add(callers.submit(() -> client.GET("/first-slow", String.class).body()));
+			}
+			for (Future<String> body : bodies) {
+				assertEquals("hedge", body.get(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+		assertEquals(1, client.getHedger().getHedges());
+		assertEquals(1, client.getHedger().getHedgeWins());
+		assertEquals(2, server.getRequests());
+		awaitNoneInFlight(client.getConcurrencyLimiters().getAll().iterator().next());
+	}
+
+	private static void awaitNoneInFlight(ConcurrencyLimiter limiter) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+		while (limiter.getInFlight() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(0, limiter.getInFlight());
+	}
+}
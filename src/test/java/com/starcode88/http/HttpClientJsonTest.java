@@ -0,0 +1,122 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.starcode88.http.exception.HttpInvalidResponseBodyType;
+
+class HttpClientJsonTest {
+
+	public static class Item {
+		public String name;
+		public int count;
+
+		public Item() {
+		}
+
+		Item(String name, int count) {
+			this.name = name;
+			this.count = count;
+		}
+	}
+
+	private TestServer server;
+
+	private HttpClient client;
+
+	private final AtomicReference<String> requestBody = new AtomicReference<>();
+
+	private final AtomicReference<String> requestContentType = new AtomicReference<>();
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new TestServer()
+				.handle("/item", exchange -> {
+					requestBody.set(TestServer.readBody(exchange));
+					requestContentType.set(exchange.getRequestHeaders().getFirst("Content-Type"));
+					TestServer.respond(exchange, 200, "{\"name\":\"a\",\"count\":1}");
+				})
+				.handle("/items", exchange -> {
+					requestBody.set(TestServer.readBody(exchange));
+					TestServer.respond(exchange, 200, "[{\"name\":\"a\",\"count\":1},{\"name\":\"b\",\"count\":2}]");
+				})
+				.handle("/broken", exchange -> TestServer.respond(exchange, 200, "{\"name\":"));
+		client = new HttpClient(server.getBaseUrl());
+	}
+
+	@AfterEach
+	void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void getBindsTheResponseToAClass() throws Exception {
+		HttpResponse<Item> response = client.GET("/item", Item.class);
+		assertEquals(200, response.statusCode());
+		assertEquals("a", response.body().name);
+		assertEquals(1, response.body().count);
+	}
+
+	@Test
+	void getBindsTheResponseToAGenericType() throws Exception {
+		HttpResponse<List<Item>> response = client.GET("/items", new TypeReference<List<Item>>() { });
+		assertEquals(2, response.body().size());
+		assertEquals("b", response.body().get(1).name);
+		assertEquals(2, response.body().get(1).count);
+	}
+
+	@Test
+	void postSerializesTheBody() throws Exception {
+		HttpResponse<Item> response = client.POST("/item", new Item("x", 7), Item.class);
+		assertEquals("a", response.body().name);
+		assertEquals("{\"name\":\"x\",\"count\":7}", requestBody.get());
+		assertEquals(JsonBodies.CONTENT_TYPE, requestContentType.get());
+	}
+
+	@Test
+	void postWithoutResponseTypeStillCompiles() throws Exception {
+		HttpResponse<?> response = client.POST("/item", new Item("x", 7), null);
+		assertEquals(200, response.statusCode());
+		assertNull(response.body());
+		assertEquals("{\"name\":\"x\",\"count\":7}", requestBody.get());
+	}
+
+	@Test
+	void postJsonBindsTheResponseToAGenericType() throws Exception {
+		HttpResponse<List<Item>> response = client.POSTJson("/items", new Item("x", 7),
+				new TypeReference<List<Item>>() { });
+		assertEquals(2, response.body().size());
+		assertEquals("{\"name\":\"x\",\"count\":7}", requestBody.get());
+	}
+
+	@Test
+	void putJsonBindsTheResponseToAGenericType() throws Exception {
+		HttpResponse<List<Item>> response = client.PUTJson("/items", new Item("y", 3),
+				new TypeReference<List<Item>>() { });
+		assertEquals("a", response.body().get(0).name);
+		assertEquals("{\"name\":\"y\",\"count\":3}", requestBody.get());
+	}
+
+	@Test
+	void invalidJsonIsAnIOException() {
+		assertThrows(IOException.class, () -> client.GET("/broken", Item.class));
+	}
+
+	@Test
+	void disabledJsonRejectsUnknownTypes() {
+		client.setObjectMapper(null);
+		assertThrows(HttpInvalidResponseBodyType.class, () -> client.GET("/item", Item.class));
+	}
+}
@@ -0,0 +1,210 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.exception.HttpStatusCodeException;
+import com.starcode88.http.loadbalancer.Endpoint;
+import com.starcode88.http.loadbalancer.LoadBalancer;
+import com.starcode88.http.loadbalancer.LoadBalancerConfig;
+import com.starcode88.http.retry.RetryPolicy;
+
+class HttpClientLoadBalancerTest {
+
+	private TestServer serverA;
+
+	private TestServer serverB;
+
+	private HttpClient client;
+
+	private volatile boolean failingB;
+
+	private volatile boolean unhealthyB;
+
+	@BeforeEach
+	void start() throws IOException {
+		serverA = new TestServer()
+				.handle("/who", exchange -> TestServer.respond(exchange, 200, "A"))
+				.handle("/health", exchange -> TestServer.respond(exchange, 200, "ok"));
+		serverB = new TestServer()
+				.handle("/who", exchange -> TestServer.respond(exchange, failingB ? 503 : 200, "B"))
+				.handle("/health", exchange -> TestServer.respond(exchange, unhealthyB ? 503 : 200, "ok"));
+	}
+
+	@AfterEach
+	void stop() {
+		if (client != null) {
+			client.close();
+		}
+		serverA.close();
+		serverB.close();
+	}
+
+	@Test
+	void requestsAreSpreadOverTheEndpoints() throws Exception {
+		client = newClient(LoadBalancerConfig.newBuilder().build());
+		Map<String, Integer> counts = count(10);
+		assertEquals(5, counts.get("A"));
+		assertEquals(5, counts.get("B"));
+		assertEquals(5, serverA.getRequests());
+		assertEquals(5, serverB.getRequests());
+	}
+
+	@Test
+	void failingEndpointIsEjected() throws Exception {
+		client = newClient(LoadBalancerConfig.newBuilder()
+				.ejection(2, Duration.ofMillis(300), Duration.ofSeconds(1), 50)
+				.build());
+		failingB = true;
+		int failures = 0;
+		for (int i = 0; i < 4; i++) {
+			try {
+				assertEquals("A", client.GET("/who", String.class).body());
+			} catch (HttpStatusCodeException e) {
+				assertEquals(503, e.getResponse().statusCode());
+				failures++;
+			}
+		}
+		assertEquals(2, failures);
+		Endpoint endpointB = endpoint(serverB);
+		assertTrue(endpointB.isEjected());
+		assertEquals(1, client.getLoadBalancer().getAvailableEndpoints().size());
+		// Only the healthy endpoint gets requests during the ejection
+		assertEquals(10, (int) count(10).get("A"));
+		assertEquals(2, serverB.getRequests());
+		// The endpoint returns after its ejection time
+		failingB = false;
+		await(() -> client.getLoadBalancer().getAvailableEndpoints().size() == 2);
+		assertFalse(endpointB.isEjected());
+		assertEquals(5, (int) count(10).get("B"));
+	}
+
+	@Test
+	void stoppedEndpointIsEjected() throws Exception {
+		client = newClient(LoadBalancerConfig.newBuilder()
+				.ejection(1, Duration.ofSeconds(30), Duration.ofSeconds(30), 50)
+				.build());
+		serverB.close();
+		int failures = 0;
+		for (int i = 0; i < 2; i++) {
+			try {
+				assertEquals("A", client.GET("/who", String.class).body());
+			} catch (IOException e) {
+				failures++;
+			}
+		}
+		assertEquals(1, failures);
+		assertTrue(endpoint(serverB).isEjected());
+		assertEquals(10, (int) count(10).get("A"));
+	}
+
+	@Test
+	void retryIsSentToTheOtherEndpoint() throws Exception {
+		client = newClient(LoadBalancerConfig.newBuilder()
+				.ejection(0, Duration.ofSeconds(30), Duration.ofSeconds(30), 50)
+				.build());
+		client.setRetryPolicy(RetryPolicy.newBuilder()
+				.maxAttempts(2)
+				.backoff(Duration.ZERO, Duration.ZERO, 1.0)
+				.build());
+		failingB = true;
+		// Without ejection every second exchange reaches B and is retried on A
+		for (int i = 0; i < 6; i++) {
+			assertEquals("A", client.GET("/who", String.class).body());
+		}
+		assertTrue(serverB.getRequests() > 0);
+		assertEquals(6, serverA.getRequests());
+		assertFalse(endpoint(serverB).isEjected());
+	}
+
+	@Test
+	void notMoreThanTheMaximumShareIsEjected() throws Exception {
+		client = newClient(LoadBalancerConfig.newBuilder()
+				.ejection(1, Duration.ofSeconds(30), Duration.ofSeconds(30), 50)
+				.build());
+		serverA.close();
+		serverB.close();
+		for (int i = 0; i < 4; i++) {
+			assertThrows(IOException.class, () -> client.GET("/who", String.class));
+		}
+		LoadBalancer loadBalancer = client.getLoadBalancer();
+		int ejected = 0;
+		for (Endpoint endpoint : loadBalancer.getEndpoints()) {
+			ejected += endpoint.isEjected() ? 1 : 0;
+		}
+		assertEquals(1, ejected);
+		assertEquals(1, loadBalancer.getAvailableEndpoints().size());
+	}
+
+	@Test
+	void failedHealthCheckRemovesTheEndpoint() throws Exception {
+		unhealthyB = true;
+		client = newClient(LoadBalancerConfig.newBuilder()
+				.healthCheck("/health", Duration.ofMillis(50), Duration.ofSeconds(1))
+				.build());
+		Endpoint endpointB = endpoint(serverB);
+		await(() -> !endpointB.isHealthy());
+		assertEquals(10, (int) count(10).get("A"));
+		unhealthyB = false;
+		await(() -> client.getLoadBalancer().getAvailableEndpoints().size() == 2);
+		assertEquals(5, (int) count(10).get("B"));
+	}
+
+	@Test
+	void invalidConfigIsRejected() {
+		assertThrows(IllegalArgumentException.class,
+				() -> LoadBalancerConfig.newBuilder().ejection(-1, Duration.ZERO, Duration.ZERO, 50));
+		assertThrows(IllegalArgumentException.class,
+				() -> LoadBalancerConfig.newBuilder().ejection(1, Duration.ofSeconds(2), Duration.ofSeconds(1), 50));
+		assertThrows(IllegalArgumentException.class,
+				() -> LoadBalancerConfig.newBuilder().healthCheck("/health", Duration.ZERO, Duration.ofSeconds(1)));
+	}
+
+	private HttpClient newClient(LoadBalancerConfig config) {
+		return new HttpClient(Arrays.asList(serverA.getBaseUrl(), serverB.getBaseUrl()), config);
+	}
+
+	private Endpoint endpoint(TestServer server) {
+		for (Endpoint endpoint : client.getLoadBalancer().getEndpoints()) {
+			if (endpoint.getBaseUrl().equals(server.getBaseUrl())) {
+				return endpoint;
+			}
+		}
+		throw new IllegalStateException("No endpoint for " + server.getBaseUrl());
+	}
+
+	/**
+	 * @return The number of responses of each server, by the body
+	 */
+	private Map<String, Integer> count(int requests) throws Exception {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		counts.put("A", 0);
+		counts.put("B", 0);
+		for (int i = 0; i < requests; i++) {
+			counts.merge(client.GET("/who", String.class).body(), 1, Integer::sum);
+		}
+		return counts;
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+}
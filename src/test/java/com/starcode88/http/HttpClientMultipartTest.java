@@ -0,0 +1,167 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.starcode88.http.retry.RetryPolicy;
+
+class HttpClientMultipartTest {
+
+	private static final byte[] CONTENT = new byte[200_000];
+
+	static {
+		for (int i = 0; i < CONTENT.length; i++) {
+			CONTENT[i] = (byte) (i * 13);
+		}
+	}
+
+	@TempDir
+	Path directory;
+
+	private TestServer server;
+
+	private HttpClient client;
+
+	private volatile String contentLength;
+
+	private volatile String transferEncoding;
+
+	private volatile String contentType;
+
+	private volatile byte[] received;
+
+	private final AtomicInteger uploads = new AtomicInteger();
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new TestServer()
+				.handle("/upload", exchange -> {
+					contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+					transferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+					contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+					received = exchange.getRequestBody().readAllBytes();
+					// The first upload to /upload/flaky is refused after it has been received
+					boolean refused = exchange.getRequestURI().getPath().endsWith("/flaky")
+							&& uploads.incrementAndGet() == 1;
+					TestServer.respond(exchange, refused ? 503 : 200, "ok");
+				});
+		client = new HttpClient(server.getBaseUrl());
+	}
+
+	@AfterEach
+	void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void bodyIsSentWithContentLength() throws Exception {
+		Path file = Files.write(directory.resolve("data.bin"), CONTENT);
+		MultipartBody body = MultipartBody.newBuilder()
+				.field("description", "Nightly build")
+				.part("small", "small.txt", "text/plain", "abc".getBytes(StandardCharsets.UTF_8))
+				.file("artifact", file, "application/octet-stream")
+				.stream("stream", "stream.bin", null, () -> new ByteArrayInputStream(CONTENT), CONTENT.length)
+				.build();
+		assertEquals("ok", client.POST("/upload", body, String.class).body());
+		assertEquals(String.valueOf(body.contentLength()), contentLength);
+		assertEquals(body.contentLength(), received.length);
+		assertNull(transferEncoding);
+		assertEquals(body.getContentType(), contentType);
+		assertTrue(body.contentLength() > 2 * CONTENT.length);
+	}
+
+	@Test
+	void partsAreFramedByTheBoundary() throws Exception {
+		MultipartBody body = MultipartBody.newBuilder()
+				.boundary("XyZ")
+				.field("a", "1")
+				.part("b", "b\".txt", "text/plain", "2".getBytes(StandardCharsets.UTF_8))
+				.build();
+		client.POST("/upload", body, String.class);
+		assertEquals("multipart/form-data; boundary=XyZ", contentType);
+		assertEquals("--XyZ\r\n"
+				+ "Content-Disposition: form-data; name=\"a\"\r\n"
+				+ "\r\n"
+				+ "1\r\n"
+				+ "--XyZ\r\n"
+				+ "Content-Disposition: form-data; name=\"b\"; filename=\"b%22.txt\"\r\n"
+				+ "Content-Type: text/plain\r\n"
+				+ "\r\n"
+				+ "2\r\n"
+				+ "--XyZ--\r\n", new String(received, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void streamWithoutLengthIsSentChunked() throws Exception {
+		MultipartBody body = MultipartBody.newBuilder()
+				.field("a", "1")
+				.stream("stream", "stream.bin", null, () -> new ByteArrayInputStream(CONTENT), -1)
+				.build();
+		assertEquals(-1, body.contentLength());
+		client.POST("/upload", body, String.class);
+		assertNull(contentLength);
+		assertEquals("chunked", transferEncoding);
+		assertTrue(contains(received, CONTENT));
+	}
+
+	@Test
+	void contentTypeOfTheRequestIsKept() throws Exception {
+		MultipartBody body = MultipartBody.newBuilder().field("a", "1").build();
+		client.POST("/upload", RequestHeaders.of("Content-Type", "multipart/mixed; boundary=" + body.getBoundary()),
+				body, String.class);
+		assertEquals("multipart/mixed; boundary=" + body.getBoundary(), contentType);
+	}
+
+	@Test
+	void bodyIsSentAgainForARetry() throws Exception {
+		client.setRetryPolicy(RetryPolicy.newBuilder()
+				.backoff(Duration.ZERO, Duration.ZERO, 1.0)
+				.retryNonIdempotent(true)
+				.build());
+		AtomicInteger opened = new AtomicInteger();
+		MultipartBody body = MultipartBody.newBuilder()
+				.stream("stream", "stream.bin", null, () -> {
+					opened.incrementAndGet();
+					return new ByteArrayInputStream(CONTENT);
+				}, CONTENT.length)
+				.build();
+		assertEquals("ok", client.POST("/upload/flaky", body, String.class).body());
+		assertEquals(2, uploads.get());
+		assertEquals(2, opened.get());
+		assertEquals(body.contentLength(), received.length);
+	}
+
+	@Test
+	void streamShorterThanItsLengthFailsTheRequest() {
+		MultipartBody body = MultipartBody.newBuilder()
+				.stream("stream", "stream.bin", null, () -> new ByteArrayInputStream(CONTENT), CONTENT.length + 10)
+				.build();
+		assertThrows(IOException.class, () -> client.POST("/upload", body, String.class));
+	}
+
+	private static boolean contains(byte[] bytes, byte[] part) {
+		for (int start = 0; start + part.length <= bytes.length; start++) {
+			if (Arrays.equals(bytes, start, start + part.length, part, 0, part.length)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,83 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HttpClientRequestTest {
+
+	private TestServer server;
+
+	private HttpClient client;
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new TestServer()
+				.handle("/echo", exchange -> TestServer.respond(exchange, 200,
+						exchange.getRequestMethod() + " " + exchange.getRequestURI()
+						+ " " + exchange.getRequestHeaders().getFirst("X-Default")
+						+ " " + TestServer.readBody(exchange)))
+				.handle("/slow", exchange -> {
+					TestServer.sleep(1000);
+					TestServer.respond(exchange, 200, "slow");
+				});
+		client = new HttpClient(server.getBaseUrl());
+		client.addHeader("X-Default", "d");
+	}
+
+	@AfterEach
+	void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void everyMethodSendsTheUrlAndTheDefaultHeaders() throws Exception {
+		assertEquals("GET /echo?a=1 d ", client.GET("/echo?a=1", String.class).body());
+		assertEquals("DELETE /echo/2 d ", client.DELETE("/echo/2", String.class).body());
+		assertEquals("POST /echo d body", client.POST("/echo", "body", String.class).body());
+		assertEquals("PUT /echo d body", client.PUT("/echo", "body", String.class).body());
+		assertEquals("GET /echo?a=1 d ", client.GETAsync("/echo?a=1", String.class).get(5, TimeUnit.SECONDS).body());
+		assertEquals("DELETE /echo d ", client.DELETEAsync("/echo", String.class).get(5, TimeUnit.SECONDS).body());
+		assertEquals("POST /echo d body",
+				client.POSTAsync("/echo", "body", String.class).get(5, TimeUnit.SECONDS).body());
+		assertEquals("PUT /echo d body",
+				client.PUTAsync("/echo", "body", String.class).get(5, TimeUnit.SECONDS).body());
+	}
+
+	@Test
+	void routesAreSentLikePaths() throws Exception {
+		UriTemplate template = UriTemplate.compile("/echo/{id}{?q}");
+		assertEquals("GET /echo/7?q=a%20b d ", client.GET(template.expand(7, "a b"), String.class).body());
+		assertEquals("POST /echo/7 d body", client.POST(template.expand(7, null), "body", String.class).body());
+	}
+
+	@Test
+	void requestBuilderCarriesTheTimeout() throws Exception {
+		client.setRequestTimeout(Duration.ofMillis(250));
+		HttpRequest request = client.newRequestBuilder("/echo").build();
+		assertEquals(Duration.ofMillis(250), request.timeout().get());
+		assertEquals("d", request.headers().firstValue("X-Default").get());
+	}
+
+	@Test
+	void requestsFailAfterTheTimeout() throws Exception {
+		client.setRequestTimeout(Duration.ofMillis(100));
+		assertThrows(HttpTimeoutException.class, () -> client.GET("/slow", String.class));
+		assertThrows(HttpTimeoutException.class, () -> client.POST("/slow", "body", String.class));
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> client.GETAsync("/slow", String.class).get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof HttpTimeoutException);
+	}
+}
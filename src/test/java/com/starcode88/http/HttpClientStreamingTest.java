@@ -0,0 +1,140 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.exception.HttpStatusCodeException;
+
+class HttpClientStreamingTest {
+
+	private static final byte[] LARGE = new byte[1024 * 1024];
+
+	static {
+		for (int i = 0; i < LARGE.length; i++) {
+			LARGE[i] = (byte) (i * 31);
+		}
+	}
+
+	private TestServer server;
+
+	private HttpClient client;
+
+	/** Releases the second part of /parts */
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new TestServer()
+				.handle("/parts", exchange -> {
+					exchange.sendResponseHeaders(200, 0);
+					try (OutputStream out = exchange.getResponseBody()) {
+						out.write("first ".getBytes(StandardCharsets.UTF_8));
+						out.flush();
+						try {
+							release.await(5, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						out.write("second".getBytes(StandardCharsets.UTF_8));
+					}
+				})
+				.handle("/lines", exchange -> {
+					exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=ISO-8859-1");
+					TestServer.respond(exchange, 200, "a\n\u00e4\r\nc".getBytes(StandardCharsets.ISO_8859_1));
+				})
+				.handle("/large", exchange -> TestServer.respond(exchange, 200, LARGE))
+				.handle("/error", exchange -> {
+					byte[] body = new byte[StreamingBodyHandlers.ERROR_BODY_PREVIEW_LIMIT + 10000];
+					Arrays.fill(body, (byte) 'e');
+					TestServer.respond(exchange, 500, body);
+				});
+		client = new HttpClient(server.getBaseUrl());
+	}
+
+	@AfterEach
+	void stop() {
+		release.countDown();
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void inputStreamIsReturnedWhileTheBodyIsReceived() throws Exception {
+		HttpResponse<InputStream> response = client.GET("/parts", InputStream.class);
+		// The server has not sent the second part yet
+		assertEquals(1, release.getCount());
+		try (InputStream in = response.body()) {
+			assertEquals("first ", new String(in.readNBytes(6), StandardCharsets.UTF_8));
+			release.countDown();
+			assertEquals("second", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	void linesAreDecodedWithTheCharsetOfTheResponse() throws Exception {
+		try (Stream<?> lines = client.GET("/lines", Stream.class).body()) {
+			List<Object> list = lines.collect(Collectors.toList());
+			assertEquals(Arrays.asList("a", "\u00e4", "c"), list);
+		}
+	}
+
+	@Test
+	void chunksArePassedToTheConsumer() throws Exception {
+		ByteArrayOutputStream received = new ByteArrayOutputStream();
+		AtomicInteger chunks = new AtomicInteger();
+		HttpResponse<Void> response = client.GET("/large", buffer -> {
+			chunks.incrementAndGet();
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			received.write(bytes, 0, bytes.length);
+		});
+		assertEquals(200, response.statusCode());
+		assertArrayEquals(LARGE, received.toByteArray());
+		assertTrue(chunks.get() > 1);
+	}
+
+	@Test
+	void failingConsumerFailsTheRequest() {
+		AtomicInteger chunks = new AtomicInteger();
+		assertThrows(IOException.class, () -> client.GET("/large", (ByteBuffer buffer) -> {
+			chunks.incrementAndGet();
+			throw new IllegalStateException("full");
+		}));
+		// The transfer is cancelled after the first chunk
+		assertEquals(1, chunks.get());
+	}
+
+	@Test
+	void errorBodyIsNotStreamed() {
+		AtomicInteger chunks = new AtomicInteger();
+		HttpStatusCodeException e = assertThrows(HttpStatusCodeException.class,
+				() -> client.GET("/error", (ByteBuffer buffer) -> chunks.incrementAndGet()));
+		assertEquals(0, chunks.get());
+		assertEquals(500, e.getResponse().statusCode());
+		assertEquals(StreamingBodyHandlers.ERROR_BODY_PREVIEW_LIMIT, ((String) e.getResponse().body()).length());
+
+		e = assertThrows(HttpStatusCodeException.class, () -> client.GET("/error", InputStream.class));
+		assertTrue(((String) e.getResponse().body()).startsWith("eeee"));
+	}
+}
@@ -0,0 +1,70 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class HttpClientUriTest {
+
+	private static final List<String> BASE_URLS = Arrays.asList(
+			"http://localhost:8080",
+			"https://example.com/api/v1",
+			"http://[::1]:8080/a%20b",
+			"http://localhost:8080/",
+			"http://localhost/a/../b",
+			"http://localhost/a?x=1",
+			"http://user@localhost:8080");
+
+	private static final List<String> PATHS = Arrays.asList(
+			null, "", "/", "/items", "/items/", "/users/42/files/a%2Fb%20c.txt",
+			"/a//b", "//b", "/a/./b", "/a/../b", "/.", "/..", "/a/.", "/a/..", "/.a/..b/...",
+			"/x:y", "/a/x:y", "/items?q=a:b&x=%2F", "/items?q=/../", "/?q=1", "/a%20b/c%2Fd",
+			"/a#f", "/a?b#f", "items", "?q=1", "/\u00e4", "/a b");
+
+	@Test
+	void pathIsAppendedToTheBaseUrl() throws Exception {
+		for (String baseUrl : BASE_URLS) {
+			try (HttpClient client = new HttpClient(baseUrl)) {
+				for (String path : PATHS) {
+					assertEquals(expected(baseUrl, path), actual(client, path), baseUrl + " + " + path);
+				}
+			}
+		}
+	}
+
+	@Test
+	void routeIsAppendedToTheBaseUrl() throws Exception {
+		UriTemplate template = UriTemplate.compile("/users/{id}/files/{name}{?limit}");
+		try (HttpClient client = new HttpClient("http://localhost:8080/api")) {
+			Route route = template.expand(7, "a/b c:d", 10);
+			URI uri = client.newRequestBuilder(route).build().uri();
+			assertEquals("http://localhost:8080/api/users/7/files/a%2Fb%20c%3Ad?limit=10", uri.toString());
+			assertEquals(new URI(uri.toString()), uri);
+			assertEquals("/api/users/7/files/a/b c:d", uri.getPath());
+		}
+	}
+
+	private static String expected(String baseUrl, String path) {
+		try {
+			URI uri = new URI(path == null ? baseUrl : baseUrl + path);
+			return HttpRequest.newBuilder(uri).build().uri().toString();
+		} catch (Exception e) {
+			return e.getClass().getName();
+		}
+	}
+
+	private static String actual(HttpClient client, String path) {
+		try {
+			URI uri = client.newRequestBuilder(path).build().uri();
+			assertEquals(new URI(uri.toString()), uri);
+			return uri.toString();
+		} catch (Exception e) {
+			return e.getClass().getName();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.exception.HttpStatusCodeException;
+import com.starcode88.http.hedge.HedgingPolicy;
+import com.starcode88.http.retry.RetryPolicy;
+
+class HttpClientWarmUpTest {
+
+	private TestServer server;
+
+	private HttpClient client;
+
+	private final AtomicInteger probes = new AtomicInteger();
+
+	private final AtomicInteger items = new AtomicInteger();
+
+	private final AtomicInteger unavailable = new AtomicInteger();
+
+	@BeforeEach
+	void start() throws IOException {
+		server = new TestServer()
+				.handle("/ping", exchange -> {
+					probes.incrementAndGet();
+					exchange.sendResponseHeaders(200, -1);
+				})
+				.handle("/items", exchange -> {
+					items.incrementAndGet();
+					TestServer.respond(exchange, 200, "items");
+				})
+				.handle("/unavailable", exchange -> {
+					unavailable.incrementAndGet();
+					TestServer.respond(exchange, 503, "later");
+				});
+		client = new HttpClient(server.getBaseUrl());
+	}
+
+	@AfterEach
+	void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void opensTheConnectionsAndSendsTheRequests() throws Exception {
+		WarmUpReport report = client.warmUp(WarmUpConfig.newBuilder()
+				.connections(3)
+				.connectionPath("/ping")
+				.request("/items", String.class, 2)
+				.build());
+		assertTrue(report.isSuccess(), report.toString());
+		assertEquals(Map.of(server.getBaseUrl(), 3), report.getConnections());
+		assertEquals(2, report.getRequests());
+		assertEquals(3, probes.get());
+		assertEquals(2, items.get());
+	}
+
+	@Test
+	void failedRequestIsReportedAndNotRepeated() throws Exception {
+		client.setRetryPolicy(RetryPolicy.newBuilder()
+				.maxAttempts(3)
+				.backoff(Duration.ZERO, Duration.ZERO, 1.0)
+				.build());
+		WarmUpReport report = client.warmUp(WarmUpConfig.newBuilder()
+				.connectionPath("/ping")
+				.request("/unavailable", 1)
+				.request("/items", 1)
+				.build());
+		assertFalse(report.isSuccess());
+		assertEquals(1, report.getFailures().size());
+		assertTrue(report.getFailures().get(0) instanceof HttpStatusCodeException);
+		assertEquals(1, report.getRequests());
+		assertEquals(1, unavailable.get());
+		// Requests of the application are repeated again
+		assertThrows(HttpStatusCodeException.class, () -> client.GET("/unavailable", String.class));
+		assertEquals(4, unavailable.get());
+	}
+
+	@Test
+	void unreachableTargetIsReported() throws Exception {
+		String baseUrl;
+		try (TestServer stopped = new TestServer()) {
+			baseUrl = stopped.getBaseUrl();
+		}
+		try (HttpClient unreachable = new HttpClient(baseUrl)) {
+			WarmUpReport report = unreachable.warmUp(WarmUpConfig.newBuilder()
+					.connections(2)
+					.timeout(Duration.ofSeconds(2))
+					.build());
+			assertFalse(report.isSuccess());
+			assertEquals(Map.of(baseUrl, 0), report.getConnections());
+			assertEquals(2, report.getFailures().size());
+			assertTrue(report.getFailures().get(0) instanceof IOException);
+		}
+	}
+
+	@Test
+	void connectionsAreOpenedToTheAlternateBaseUrl() throws Exception {
+		AtomicInteger replicaProbes = new AtomicInteger();
+		try (TestServer replica = new TestServer().handle("/ping", exchange -> {
+			replicaProbes.incrementAndGet();
+			exchange.sendResponseHeaders(200, -1);
+		})) {
+			client.setHedgingPolicy(HedgingPolicy.newBuilder().alternateBaseUrl(replica.getBaseUrl()).build());
+			WarmUpReport report = client.warmUp(WarmUpConfig.newBuilder()
+					.connections(2)
+					.connectionPath("/ping")
+					.build());
+			assertTrue(report.isSuccess(), report.toString());
+			assertEquals(2, report.getConnections().get(replica.getBaseUrl()));
+			assertEquals(2, probes.get());
+			assertEquals(2, replicaProbes.get());
+		}
+	}
+}
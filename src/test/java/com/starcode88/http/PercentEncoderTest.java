@@ -0,0 +1,68 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PercentEncoderTest {
+
+	@Test
+	void unreserved() {
+		assertEquals("a-z_A.Z~09", encode("a-z_A.Z~09", PercentEncoder.UNRESERVED, false));
+		assertEquals("a%20b%2Fc%3F%26%3D%25", encode("a b/c?&=%", PercentEncoder.UNRESERVED, false));
+	}
+
+	@Test
+	void pathSegmentAndReserved() {
+		assertEquals("a:b@c%2Fd", encode("a:b@c/d", PercentEncoder.PATH_SEGMENT, false));
+		assertEquals("/a/b?c=d#e", encode("/a/b?c=d#e", PercentEncoder.RESERVED, false));
+		assertEquals("%22%3C%3E%5C%5E%60%7B%7C%7D", encode("\"<>\\^`{|}", PercentEncoder.RESERVED, false));
+	}
+
+	@Test
+	void utf8() {
+		assertEquals("%C3%A4", encode("\u00e4", PercentEncoder.UNRESERVED, false));
+		assertEquals("%E2%82%AC", encode("\u20ac", PercentEncoder.UNRESERVED, false));
+		assertEquals("%F0%9F%98%80", encode("\ud83d\ude00", PercentEncoder.UNRESERVED, false));
+		// a lone surrogate is replaced like by String.getBytes()
+		assertEquals("%3Fa", encode("\ud83da", PercentEncoder.UNRESERVED, false));
+	}
+
+	@Test
+	void keepEncoded() {
+		assertEquals("a%2Fb%25zz%25", encode("a%2Fb%zz%", PercentEncoder.RESERVED, true));
+		assertEquals("a%252Fb", encode("a%2Fb", PercentEncoder.RESERVED, false));
+	}
+
+	@Test
+	void encodeReturnsTextWithoutEncoding() {
+		String text = "plain-text";
+		assertSame(text, PercentEncoder.encode(text, PercentEncoder.UNRESERVED));
+		assertEquals("plain%20text", PercentEncoder.encode("plain text", PercentEncoder.UNRESERVED));
+	}
+
+	@Test
+	void sameAsUrlEncoder() {
+		Random random = new Random(42);
+		for (int i = 0; i < 10_000; i++) {
+			StringBuilder text = new StringBuilder();
+			for (int j = random.nextInt(20); j > 0; j--) {
+				text.appendCodePoint(random.nextBoolean() ? 0x20 + random.nextInt(0x60) : 0xa0 + random.nextInt(0x2ffff));
+			}
+			String expected = URLEncoder.encode(text.toString(), StandardCharsets.UTF_8)
+					.replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+			assertEquals(expected, PercentEncoder.encode(text.toString(), PercentEncoder.UNRESERVED), text.toString());
+		}
+	}
+
+	private static String encode(String text, boolean[] allowed, boolean keepEncoded) {
+		StringBuilder out = new StringBuilder();
+		PercentEncoder.encode(text, allowed, keepEncoded, out);
+		return out.toString();
+	}
+}
@@ -0,0 +1,214 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RangedDownloadTest {
+
+	private static final URI URI = java.net.URI.create("http://localhost/file.bin");
+
+	private static final DownloadConfig CONFIG = DownloadConfig.newBuilder()
+			.connections(4)
+			.minRangeSize(100)
+			.build();
+
+	private static final byte[] CONTENT = new byte[1000];
+
+	static {
+		for (int i = 0; i < CONTENT.length; i++) {
+			CONTENT[i] = (byte) (i * 31);
+		}
+	}
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void splitsIntoContiguousRanges() throws IOException {
+		Path file = directory.resolve("file.bin");
+		try (RangedDownload download = RangedDownload.open(file, URI, 1003, null, CONFIG)) {
+			List<RangedDownload.Segment> segments = download.getSegments();
+			assertEquals(4, segments.size());
+			long expectedStart = 0;
+			for (RangedDownload.Segment segment : segments) {
+				assertEquals(expectedStart, segment.start);
+				expectedStart = segment.end + 1;
+			}
+			assertEquals(1003, expectedStart);
+			assertEquals(1003, Files.size(RangedDownload.partFileOf(file)));
+		}
+		assertEquals(1, RangedDownload.rangeCount(199, CONFIG));
+		assertEquals(2, RangedDownload.rangeCount(200, CONFIG));
+		assertEquals(4, RangedDownload.rangeCount(1_000_000, CONFIG));
+	}
+
+	@Test
+	void progressRoundTrip() throws IOException {
+		Path file = directory.resolve("file.bin");
+		try (RangedDownload download = RangedDownload.open(file, URI, CONTENT.length, "\"v1\"", CONFIG)) {
+			List<RangedDownload.Segment> segments = download.getSegments();
+			receive(download, segments.get(0), 100);
+			receive(download, segments.get(1), 250);
+			assertEquals(350, download.getCompletedBytes());
+		}
+		assertTrue(Files.exists(RangedDownload.progressFileOf(file)));
+
+		try (RangedDownload download = RangedDownload.open(file, URI, CONTENT.length, "\"v1\"", CONFIG)) {
+			List<RangedDownload.Segment> segments = download.getSegments();
+			assertEquals(350, download.getCompletedBytes());
+			assertEquals("bytes=100-249", segments.get(0).rangeHeader());
+			assertTrue(segments.get(1).isComplete());
+			assertEquals(0, segments.get(2).done);
+			for (RangedDownload.Segment segment : segments) {
+				if (!segment.isComplete()) {
+					receive(download, segment, (int) (segment.end + 1 - segment.position()));
+				}
+			}
+			download.complete();
+		}
+		assertArrayEquals(CONTENT, Files.readAllBytes(file));
+		assertFalse(Files.exists(RangedDownload.partFileOf(file)));
+		assertFalse(Files.exists(RangedDownload.progressFileOf(file)));
+	}
+
+	@Test
+	void progressOfAnotherVersionIsDiscarded() throws IOException {
+		Path file = directory.resolve("file.bin");
+		try (RangedDownload download = RangedDownload.open(file, URI, CONTENT.length, "\"v1\"", CONFIG)) {
+			receive(download, download.getSegments().get(0), 100);
+		}
+		try (RangedDownload download = RangedDownload.open(file, URI, CONTENT.length, "\"v2\"", CONFIG)) {
+			assertEquals(0, download.getCompletedBytes());
+		}
+		try (RangedDownload download = RangedDownload.open(file, URI.resolve("other.bin"), CONTENT.length,
+				"\"v2\"", CONFIG)) {
+			assertEquals(0, download.getCompletedBytes());
+		}
+	}
+
+	@Test
+	void damagedProgressIsDiscarded() throws IOException {
+		Path file = directory.resolve("file.bin");
+		try (RangedDownload download = RangedDownload.open(file, URI, CONTENT.length, "\"v1\"", CONFIG)) {
+			receive(download, download.getSegments().get(0), 100);
+		}
+		Path progressFile = RangedDownload.progressFileOf(file);
+		Files.write(progressFile, new String(Files.readAllBytes(progressFile), "ISO-8859-1")
+				.replace("0-249\\:100", "0-249\\:x").getBytes("ISO-8859-1"));
+		try (RangedDownload download = RangedDownload.open(file, URI, CONTENT.length, "\"v1\"", CONFIG)) {
+			assertEquals(0, download.getCompletedBytes());
+		}
+	}
+
+	@Test
+	void progressIsNotSavedWithoutValidator() throws IOException {
+		Path file = directory.resolve("file.bin");
+		try (RangedDownload download = RangedDownload.open(file, URI, CONTENT.length, null, CONFIG)) {
+			receive(download, download.getSegments().get(0), 100);
+		}
+		assertFalse(Files.exists(RangedDownload.progressFileOf(file)));
+	}
+
+	@Test
+	void incompleteDownloadCanNotComplete() throws IOException {
+		Path file = directory.resolve("file.bin");
+		try (RangedDownload download = RangedDownload.open(file, URI, CONTENT.length, "\"v1\"", CONFIG)) {
+			receive(download, download.getSegments().get(0), 250);
+			assertThrows(IOException.class, download::complete);
+		}
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	void onlyTheRequestedRangeIsWritten() throws IOException {
+		Path file = directory.resolve("file.bin");
+		try (RangedDownload download = RangedDownload.open(file, URI, CONTENT.length, "\"v1\"", CONFIG)) {
+			RangedDownload.Segment segment = download.getSegments().get(1);
+			// the whole file instead of the range
+			assertFalse(RangedDownload.isRange(responseInfo(200, null), segment.position()));
+			deliver(download.handler(segment).apply(responseInfo(200, null)), CONTENT);
+			// another range
+			assertFalse(RangedDownload.isRange(responseInfo(206, "bytes 0-249/1000"), segment.position()));
+			assertEquals(0, download.getCompletedBytes());
+			// more bytes than the range
+			ResponseInfo tooLong = responseInfo(206, "bytes 250-499/1000");
+			assertTrue(RangedDownload.isRange(tooLong, segment.position()));
+			assertThrows(CompletionException.class,
+					() -> deliver(download.handler(segment).apply(tooLong), new byte[251]));
+			// the buffer which fits has been written, nothing beyond the range
+			assertEquals(125, download.getCompletedBytes());
+		}
+	}
+
+	/**
+	 * Delivers the next bytes of the segment like a 206 response.
+	 */
+	private static void receive(RangedDownload download, RangedDownload.Segment segment, int count) {
+		long position = segment.position();
+		ResponseInfo responseInfo = responseInfo(206,
+				"bytes " + position + "-" + segment.end + "/" + CONTENT.length);
+		byte[] bytes = new byte[count];
+		System.arraycopy(CONTENT, (int) position, bytes, 0, count);
+		deliver(download.handler(segment).apply(responseInfo), bytes);
+	}
+
+	private static void deliver(BodySubscriber<?> subscriber, byte[] bytes) {
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+		// two buffers, like the transport delivers them
+		int half = bytes.length / 2;
+		subscriber.onNext(List.of(ByteBuffer.wrap(bytes, 0, half), ByteBuffer.wrap(bytes, half, bytes.length - half)));
+		subscriber.onComplete();
+		subscriber.getBody().toCompletableFuture().join();
+	}
+
+	private static ResponseInfo responseInfo(int statusCode, String contentRange) {
+		Map<String, List<String>> map = contentRange == null ? Collections.emptyMap()
+				: Collections.singletonMap("Content-Range", Collections.singletonList(contentRange));
+		HttpHeaders headers = HttpHeaders.of(map, (name, value) -> true);
+		return new ResponseInfo() {
+			@Override
+			public int statusCode() {
+				return statusCode;
+			}
+
+			@Override
+			public HttpHeaders headers() {
+				return headers;
+			}
+
+			@Override
+			public Version version() {
+				return Version.HTTP_1_1;
+			}
+		};
+	}
+}
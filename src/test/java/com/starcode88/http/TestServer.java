@@ -0,0 +1,109 @@
+package com.starcode88.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server for the tests of {@link HttpClient}. Each test
+ * registers the handlers of its paths, the server counts the requests.
+ */
+final class TestServer implements AutoCloseable {
+
+	static {
+		// Without TCP_NODELAY each response meets the delayed ACK of the client
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final HttpServer server;
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	TestServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Registers the handler of a path and all paths below it.
+	 *
+	 * @param path The path, e.g. "/items"
+	 * @param handler The handler
+	 * @return this server
+	 */
+	TestServer handle(String path, HttpHandler handler) {
+		server.createContext(path, exchange -> {
+			requests.incrementAndGet();
+			try {
+				handler.handle(exchange);
+			} finally {
+				exchange.close();
+			}
+		});
+		return this;
+	}
+
+	String getBaseUrl() {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+	}
+
+	/**
+	 * @return Number of requests which have been received
+	 */
+	int getRequests() {
+		return requests.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+		respond(exchange, statusCode, body.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static void respond(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+		exchange.sendResponseHeaders(statusCode, body.length == 0 ? -1 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	static String readBody(HttpExchange exchange) throws IOException {
+		return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Sleeps without failing the handler, the client may close the
+	 * connection in the meantime.
+	 */
+	static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
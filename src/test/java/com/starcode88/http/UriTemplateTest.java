@@ -0,0 +1,103 @@
+package com.starcode88.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class UriTemplateTest {
+
+	@Test
+	void pathVariables() {
+		UriTemplate template = UriTemplate.compile("/users/{id}/files/{name}");
+		assertEquals(Arrays.asList("id", "name"), template.getVariables());
+		assertEquals("/users/42/files/a%2Fb%20c.txt", template.expand(42, "a/b c.txt").getPath());
+		assertEquals("/users/-7/files/%C3%A4", template.expand(-7L, "\u00e4").getPath());
+	}
+
+	@Test
+	void reservedExpansion() {
+		UriTemplate template = UriTemplate.compile("/files{+path}");
+		assertEquals("/files/a/b%20c/%2F", template.expand("/a/b c/%2F").getPath());
+	}
+
+	@Test
+	void commaSeparatedValues() {
+		assertEquals("/points/1,a%2Cb", UriTemplate.compile("/points/{x,y}").expand(1, "a,b").getPath());
+	}
+
+	@Test
+	void queryParameters() {
+		UriTemplate template = UriTemplate.compile("/users/{id}/orders{?limit,offset}{&sort}");
+		assertEquals(Arrays.asList("id", "limit", "offset", "sort"), template.getVariables());
+		assertEquals("/users/1/orders?limit=10&offset=20&sort=a%20b", template.expand(1, 10, 20, "a b").getPath());
+		assertEquals("/users/1/orders?offset=20", template.expand(1, null, 20, null).getPath());
+		assertEquals("/users/1/orders", template.expand(1, null, null, null).getPath());
+		assertEquals("/users/1/orders&sort=x", template.expand(1, null, null, "x").getPath());
+	}
+
+	@Test
+	void iterableQueryValue() {
+		UriTemplate template = UriTemplate.compile("/search{?tag}");
+		assertEquals("/search?tag=a&tag=b%26c", template.expand(Arrays.asList("a", null, "b&c")).getPath());
+		assertEquals("/search", template.expand(Collections.emptyList()).getPath());
+	}
+
+	@Test
+	void repeatedVariable() {
+		UriTemplate template = UriTemplate.compile("/{id}/copy/{id}");
+		assertEquals(Arrays.asList("id"), template.getVariables());
+		assertEquals("/7/copy/7", template.expand(7).getPath());
+	}
+
+	@Test
+	void namedValues() {
+		UriTemplate template = UriTemplate.compile("/users/{id}{?limit}");
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("id", "x y");
+		assertEquals("/users/x%20y", template.expand(values).getPath());
+		values.put("limit", 5);
+		assertEquals("/users/x%20y?limit=5", template.expand(values).getPath());
+		assertThrows(IllegalArgumentException.class, () -> template.expand(Collections.singletonMap("limit", 5)));
+	}
+
+	@Test
+	void literalsAreEncoded() {
+		assertEquals("/a%20b/%2F/1", UriTemplate.compile("/a b/%2F/{x}").expand(1).getPath());
+	}
+
+	@Test
+	void routeKeepsTemplate() {
+		UriTemplate template = UriTemplate.compile("/users/{id}");
+		Route route = template.expand(1).query("fields", "a b").query("empty", null);
+		assertSame(template, route.getTemplate());
+		assertEquals("/users/1?fields=a%20b", route.getPath());
+		assertEquals("/users/1?fields=a%20b&x=1", route.query("x", 1).getPath());
+		assertEquals(template.expand(1), template.expand(1));
+		assertNotEquals(template.expand(1), UriTemplate.compile("/users/{user}").expand(1));
+	}
+
+	@Test
+	void invalidTemplates() {
+		assertThrows(IllegalArgumentException.class, () -> UriTemplate.compile(null));
+		assertThrows(IllegalArgumentException.class, () -> UriTemplate.compile("/users/{id"));
+		assertThrows(IllegalArgumentException.class, () -> UriTemplate.compile("/users/id}"));
+		assertThrows(IllegalArgumentException.class, () -> UriTemplate.compile("/users/{}"));
+		assertThrows(IllegalArgumentException.class, () -> UriTemplate.compile("/users/{a,}"));
+		assertThrows(IllegalArgumentException.class, () -> UriTemplate.compile("/users/{a-b}"));
+	}
+
+	@Test
+	void invalidValues() {
+		UriTemplate template = UriTemplate.compile("/users/{id}{?limit}");
+		assertThrows(IllegalArgumentException.class, () -> template.expand(1));
+		assertThrows(IllegalArgumentException.class, () -> template.expand(null, 10));
+	}
+}
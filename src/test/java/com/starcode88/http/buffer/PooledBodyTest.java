@@ -0,0 +1,245 @@
+package com.starcode88.http.buffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class PooledBodyTest {
+
+	private static final int BUFFER_SIZE = 1024;
+
+	@Test
+	void bodyIsSplitIntoBuffers() throws IOException {
+		BufferPool pool = pool(false);
+		byte[] content = content(3000, 1);
+		try (PooledBody body = receive(pool, content)) {
+			assertEquals(3000, body.size());
+			assertEquals(3, body.buffers().size());
+			assertEquals(3, pool.getBuffersInUse());
+			assertArrayEquals(content, body.toByteArray());
+			try (InputStream in = body.inputStream()) {
+				assertArrayEquals(content, in.readAllBytes());
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			body.writeTo(out);
+			assertArrayEquals(content, out.toByteArray());
+		}
+	}
+
+	@Test
+	void directBuffersAreWrittenToStreams() throws IOException {
+		byte[] content = content(2500, 2);
+		try (PooledBody body = receive(pool(true), content)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			body.writeTo(out);
+			assertArrayEquals(content, out.toByteArray());
+			out.reset();
+			body.inputStream().transferTo(out);
+			assertArrayEquals(content, out.toByteArray());
+		}
+	}
+
+	@Test
+	void releaseReturnsTheBuffers() {
+		BufferPool pool = pool(false);
+		PooledBody body = receive(pool, content(3000, 1));
+		assertFalse(body.isReleased());
+		body.release();
+		assertTrue(body.isReleased());
+		assertEquals(0, pool.getBuffersInUse());
+		assertEquals(3, pool.getPooledBuffers());
+		// Further calls have no effect
+		body.close();
+		assertEquals(3, pool.getPooledBuffers());
+	}
+
+	@Test
+	void buffersAreReused() {
+		BufferPool pool = pool(false);
+		receive(pool, content(3000, 1)).release();
+		byte[] content = content(2000, 3);
+		try (PooledBody body = receive(pool, content)) {
+			assertArrayEquals(content, body.toByteArray());
+		}
+		assertEquals(3, pool.getAllocatedBuffers());
+		assertEquals(2, pool.getReusedBuffers());
+	}
+
+	@Test
+	void buffersAreNotKeptOverTheLimit() {
+		BufferPool pool = new BufferPool(BufferPoolConfig.newBuilder()
+				.bufferSize(BUFFER_SIZE)
+				.maxPooledBytes(2 * BUFFER_SIZE)
+				.build());
+		receive(pool, content(3000, 1)).release();
+		assertEquals(2, pool.getPooledBuffers());
+		assertEquals(0, pool.getBuffersInUse());
+	}
+
+	@Test
+	void bodyCanNotBeReadAfterRelease() throws IOException {
+		PooledBody body = receive(pool(false), content(3000, 1));
+		InputStream in = body.inputStream();
+		assertEquals(1, in.read());
+		body.release();
+		assertThrows(IllegalStateException.class, () -> body.toByteArray());
+		assertThrows(IllegalStateException.class, () -> body.buffers());
+		assertThrows(IllegalStateException.class, () -> body.inputStream());
+		assertThrows(IllegalStateException.class, () -> body.writeTo(new ByteArrayOutputStream()));
+		assertThrows(IOException.class, () -> in.read());
+		assertThrows(IOException.class, () -> in.available());
+	}
+
+	@Test
+	void streamsDoNotSeeThePooledMemory() throws IOException {
+		BufferPool pool = pool(false);
+		byte[] content = content(3000, 1);
+		ArrayCapturingStream written = new ArrayCapturingStream();
+		ArrayCapturingStream transferred = new ArrayCapturingStream();
+		try (PooledBody body = receive(pool, content)) {
+			body.writeTo(written);
+			body.inputStream().transferTo(transferred);
+		}
+		// The next body overwrites the pooled buffers
+		try (PooledBody body = receive(pool, content(3000, 7))) {
+			assertEquals(3, pool.getReusedBuffers());
+			assertArrayEquals(content(3000, 7), body.toByteArray());
+			assertArrayEquals(content, written.toByteArray());
+			assertArrayEquals(content, transferred.toByteArray());
+			assertFalse(written.changed());
+			assertFalse(transferred.changed());
+		}
+	}
+
+	@Test
+	void bodyWhichIsNotReleasedIsCountedAsLeak() throws InterruptedException {
+		BufferPool pool = new BufferPool(BufferPoolConfig.newBuilder()
+				.bufferSize(BUFFER_SIZE)
+				.leakDetection(true)
+				.build());
+		receive(pool, content(3000, 1));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (pool.getLeakCount() == 0 && System.nanoTime() < deadline) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(1, pool.getLeakCount());
+		assertEquals(0, pool.getBuffersInUse());
+		// The buffers may still be referenced by the caller, so they are not reused
+		assertEquals(0, pool.getPooledBuffers());
+	}
+
+	@Test
+	void releasedBodyIsNotALeak() throws InterruptedException {
+		BufferPool pool = new BufferPool(BufferPoolConfig.newBuilder()
+				.bufferSize(BUFFER_SIZE)
+				.leakDetection(true)
+				.build());
+		receive(pool, content(3000, 1)).release();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(0, pool.getLeakCount());
+		assertEquals(3, pool.getPooledBuffers());
+	}
+
+	private static BufferPool pool(boolean direct) {
+		return new BufferPool(BufferPoolConfig.newBuilder().bufferSize(BUFFER_SIZE).direct(direct).build());
+	}
+
+	private static byte[] content(int size, int seed) {
+		byte[] content = new byte[size];
+		for (int i = 0; i < size; i++) {
+			content[i] = (byte) (i * seed + seed);
+		}
+		return content;
+	}
+
+	/**
+	 * Delivers the content in two chunks, like the transport delivers them.
+	 */
+	private static PooledBody receive(BufferPool pool, byte[] content) {
+		BodySubscriber<PooledBody> subscriber = pool.bodySubscriber();
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+		int half = content.length / 2;
+		subscriber.onNext(List.of(ByteBuffer.wrap(content, 0, half),
+				ByteBuffer.wrap(content, half, content.length - half)));
+		subscriber.onComplete();
+		return subscriber.getBody().toCompletableFuture().join();
+	}
+
+	/**
+	 * Keeps the arrays it gets instead of copying them, like a stream which
+	 * queues the written arrays.
+	 */
+	private static final class ArrayCapturingStream extends OutputStream {
+
+		private final List<byte[]> arrays = new ArrayList<byte[]>();
+
+		private final List<int[]> ranges = new ArrayList<int[]>();
+
+		private final List<byte[]> copies = new ArrayList<byte[]>();
+
+		@Override
+		public void write(int b) {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			arrays.add(bytes);
+			ranges.add(new int[] { offset, length });
+			copies.add(Arrays.copyOfRange(bytes, offset, offset + length));
+		}
+
+		/**
+		 * @return The bytes as they are now in the kept arrays
+		 */
+		byte[] toByteArray() {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			for (int i = 0; i < arrays.size(); i++) {
+				out.write(arrays.get(i), ranges.get(i)[0], ranges.get(i)[1]);
+			}
+			return out.toByteArray();
+		}
+
+		/**
+		 * @return true if a kept array has been changed after it was written
+		 */
+		boolean changed() {
+			for (int i = 0; i < arrays.size(); i++) {
+				int[] range = ranges.get(i);
+				if (!Arrays.equals(copies.get(i),
+						Arrays.copyOfRange(arrays.get(i), range[0], range[0] + range[1]))) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.starcode88.http.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.http.HttpHeaders;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class CacheControlTest {
+
+	private static final long NOW = 1_700_000_000_000L;
+
+	@Test
+	void directives() {
+		CacheControl cacheControl = CacheControl.of(headers("Cache-Control", "No-Store, no-cache, max-age=60"));
+		assertTrue(cacheControl.isNoStore());
+		assertTrue(cacheControl.isNoCache());
+		assertEquals(60, cacheControl.getMaxAge());
+	}
+
+	@Test
+	void directivesInSeveralHeaders() {
+		CacheControl cacheControl = CacheControl.of(headers("Cache-Control", "public", "Cache-Control", "max-age=\"30\""));
+		assertFalse(cacheControl.isNoStore());
+		assertFalse(cacheControl.isNoCache());
+		assertEquals(30, cacheControl.getMaxAge());
+	}
+
+	@Test
+	void invalidMaxAge() {
+		assertEquals(0, CacheControl.of(headers("Cache-Control", "max-age=soon")).getMaxAge());
+		assertEquals(0, CacheControl.of(headers("Cache-Control", "max-age=-5")).getMaxAge());
+		assertEquals(-1, CacheControl.of(headers()).getMaxAge());
+	}
+
+	@Test
+	void vary() {
+		assertFalse(CacheControl.of(headers()).isVarying());
+		assertFalse(CacheControl.of(headers("Vary", "accept-encoding")).isVarying());
+		assertTrue(CacheControl.of(headers("Vary", "Accept-Encoding, Accept-Language")).isVarying());
+		assertTrue(CacheControl.of(headers("Vary", "*")).isVarying());
+	}
+
+	@Test
+	void maxAgeHasPrecedenceOverExpires() {
+		HttpHeaders headers = headers("Cache-Control", "max-age=10", "Expires", "Thu, 01 Jan 2099 00:00:00 GMT");
+		assertEquals(NOW + 10_000, CacheControl.of(headers).expiresAtMillis(headers, NOW));
+	}
+
+	@Test
+	void expires() {
+		HttpHeaders headers = headers("Expires", "Tue, 14 Nov 2023 22:13:20 GMT");
+		assertEquals(1_700_000_000_000L, CacheControl.of(headers).expiresAtMillis(headers, 0));
+	}
+
+	@Test
+	void invalidExpiresIsNotFresh() {
+		HttpHeaders headers = headers("Expires", "0");
+		assertEquals(NOW, CacheControl.of(headers).expiresAtMillis(headers, NOW));
+	}
+
+	@Test
+	void noCacheIsNeverFresh() {
+		HttpHeaders headers = headers("Cache-Control", "no-cache, max-age=60");
+		assertEquals(NOW, CacheControl.of(headers).expiresAtMillis(headers, NOW));
+	}
+
+	@Test
+	void merge() {
+		HttpHeaders cached = headers("ETag", "\"1\"", "Content-Length", "100", "Content-Type", "text/plain");
+		HttpHeaders notModified = headers("etag", "\"2\"", "Content-Length", "0", "Date", "today");
+		HttpHeaders merged = CacheControl.merge(cached, notModified);
+		assertEquals(Arrays.asList("\"2\""), merged.allValues("ETag"));
+		assertEquals(Arrays.asList("100"), merged.allValues("Content-Length"));
+		assertEquals(Arrays.asList("text/plain"), merged.allValues("Content-Type"));
+		assertEquals(Arrays.asList("today"), merged.allValues("Date"));
+	}
+
+	/**
+	 * @param namesAndValues Pairs of header name and value, a name may repeat
+	 */
+	static HttpHeaders headers(String... namesAndValues) {
+		Map<String, List<String>> map = new LinkedHashMap<String, List<String>>();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			map.computeIfAbsent(namesAndValues[i], name -> new ArrayList<String>()).add(namesAndValues[i + 1]);
+		}
+		return HttpHeaders.of(map, (name, value) -> true);
+	}
+}
@@ -0,0 +1,125 @@
+package com.starcode88.http.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LruResponseCacheTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void evictsLeastRecentlyUsedEntry() {
+		LruResponseCache cache = LruResponseCache.newBuilder().maxEntries(2).build();
+		CacheEntry a = entry(10);
+		cache.put("a", a);
+		cache.put("b", entry(10));
+		// a becomes the most recently used entry
+		assertSame(a, cache.get("a"));
+		cache.put("c", entry(10));
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	void boundedByHeapBytes() {
+		LruResponseCache cache = LruResponseCache.newBuilder().maxHeapBytes(100).build();
+		cache.put("a", entry(40));
+		cache.put("b", entry(40));
+		assertEquals(80, cache.getHeapBytes());
+		cache.put("c", entry(40));
+		assertNull(cache.get("a"));
+		assertEquals(80, cache.getHeapBytes());
+		// larger than the whole cache, it is not stored and the old entry is removed
+		cache.put("b", entry(101));
+		assertNull(cache.get("b"));
+		assertEquals(40, cache.getHeapBytes());
+	}
+
+	@Test
+	void replaceUpdatesBytes() {
+		LruResponseCache cache = LruResponseCache.newBuilder().build();
+		cache.put("a", entry(40));
+		cache.put("a", entry(10));
+		assertEquals(1, cache.size());
+		assertEquals(10, cache.getHeapBytes());
+		cache.remove("a");
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHeapBytes());
+	}
+
+	@Test
+	void diskTier() throws IOException {
+		LruResponseCache cache = LruResponseCache.newBuilder().diskTier(directory, 100, 250).build();
+		cache.put("small", entry(50));
+		CacheEntry large = entry(100);
+		cache.put("large", large);
+		assertEquals(50, cache.getHeapBytes());
+		assertEquals(100, cache.getDiskBytes());
+		CacheEntry stored = cache.get("large");
+		assertTrue(stored.isOnDisk());
+		assertFalse(cache.get("small").isOnDisk());
+		assertArrayEquals(large.getBody(), stored.getBody());
+		assertEquals(1, fileCount());
+
+		// the third file exceeds maxDiskBytes, the least recently used one is deleted
+		cache.put("second", entry(100));
+		cache.get("large");
+		cache.put("third", entry(100));
+		assertNull(cache.get("second"));
+		assertEquals(200, cache.getDiskBytes());
+		assertEquals(2, fileCount());
+
+		cache.clear();
+		assertEquals(0, cache.getDiskBytes());
+		assertEquals(0, cache.getHeapBytes());
+		assertEquals(0, fileCount());
+	}
+
+	@Test
+	void bodyLargerThanDiskTierIsNotStored() throws IOException {
+		LruResponseCache cache = LruResponseCache.newBuilder().diskTier(directory, 10, 100).build();
+		cache.put("a", entry(101));
+		assertNull(cache.get("a"));
+		assertEquals(0, fileCount());
+	}
+
+	@Test
+	void invalidSettings() {
+		assertThrows(IllegalArgumentException.class, () -> LruResponseCache.newBuilder().maxEntries(0));
+		assertThrows(IllegalArgumentException.class, () -> LruResponseCache.newBuilder().maxHeapBytes(-1));
+		assertThrows(IllegalArgumentException.class,
+				() -> LruResponseCache.newBuilder().diskTier(directory.resolve("missing"), 0, 0));
+	}
+
+	private long fileCount() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+
+	private static CacheEntry entry(int size) {
+		byte[] body = new byte[size];
+		for (int i = 0; i < size; i++) {
+			body[i] = (byte) i;
+		}
+		return CacheEntry.of(200, CacheControlTest.headers(), body, 0, Long.MAX_VALUE);
+	}
+}
@@ -0,0 +1,162 @@
+package com.starcode88.http.circuitbreaker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.circuitbreaker.CircuitBreaker.State;
+import com.starcode88.http.exception.HttpCircuitOpenException;
+
+class CircuitBreakerTest {
+
+	private static final long FAST = 1_000_000L;
+
+	@Test
+	void opensWhenFailureRateReachesThreshold() throws HttpCircuitOpenException {
+		CircuitBreaker circuitBreaker = circuitBreaker(CircuitBreakerConfig.newBuilder()
+				.failureRateThreshold(50)
+				.slidingWindow(10, 4));
+		call(circuitBreaker, false);
+		call(circuitBreaker, true);
+		call(circuitBreaker, false);
+		assertEquals(-1, circuitBreaker.getFailureRate());
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+		call(circuitBreaker, true);
+		assertEquals(State.OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	void slidingWindowForgetsOldestCalls() throws HttpCircuitOpenException {
+		CircuitBreaker circuitBreaker = circuitBreaker(CircuitBreakerConfig.newBuilder()
+				.failureRateThreshold(75)
+				.slidingWindow(4, 4));
+		for (boolean failed : new boolean[] { true, true, false, false, false, false, true, true }) {
+			call(circuitBreaker, failed);
+		}
+		assertEquals(50f, circuitBreaker.getFailureRate());
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+		call(circuitBreaker, true);
+		assertEquals(State.OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	void opensOnSlowCalls() throws HttpCircuitOpenException {
+		CircuitBreaker circuitBreaker = circuitBreaker(CircuitBreakerConfig.newBuilder()
+				.slowCallRateThreshold(50, Duration.ofMillis(100))
+				.slidingWindow(4, 4));
+		long slow = Duration.ofMillis(101).toNanos();
+		circuitBreaker.onResult(circuitBreaker.acquirePermission(), slow, false);
+		circuitBreaker.onResult(circuitBreaker.acquirePermission(), FAST, false);
+		circuitBreaker.onResult(circuitBreaker.acquirePermission(), FAST, false);
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+		circuitBreaker.onResult(circuitBreaker.acquirePermission(), slow, false);
+		assertEquals(State.OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	void openRejectsCalls() throws HttpCircuitOpenException {
+		CircuitBreaker circuitBreaker = circuitBreaker(CircuitBreakerConfig.newBuilder()
+				.slidingWindow(1, 1)
+				.waitDurationInOpenState(Duration.ofMinutes(1)));
+		call(circuitBreaker, true);
+		HttpCircuitOpenException e = assertThrows(HttpCircuitOpenException.class,
+				circuitBreaker::acquirePermission);
+		assertEquals("host", e.getHost());
+		assertEquals(1, circuitBreaker.getNotPermittedCalls());
+	}
+
+	@Test
+	void halfOpenClosesAfterSuccessfulProbes() throws HttpCircuitOpenException {
+		CircuitBreaker circuitBreaker = openCircuitBreaker(2);
+		long first = circuitBreaker.acquirePermission();
+		assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+		long second = circuitBreaker.acquirePermission();
+		// only two probes are permitted
+		assertThrows(HttpCircuitOpenException.class, circuitBreaker::acquirePermission);
+		circuitBreaker.onResult(first, FAST, false);
+		assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+		circuitBreaker.onResponse(second, FAST, 200);
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	void halfOpenOpensAgainAfterFailedProbes() throws HttpCircuitOpenException {
+		CircuitBreaker circuitBreaker = openCircuitBreaker(2);
+		long first = circuitBreaker.acquirePermission();
+		long second = circuitBreaker.acquirePermission();
+		circuitBreaker.onResult(first, FAST, false);
+		circuitBreaker.onResponse(second, FAST, 503);
+		assertEquals(State.OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	void releasedProbeCanBeRepeated() throws HttpCircuitOpenException {
+		CircuitBreaker circuitBreaker = openCircuitBreaker(1);
+		long probe = circuitBreaker.acquirePermission();
+		assertThrows(HttpCircuitOpenException.class, circuitBreaker::acquirePermission);
+		circuitBreaker.releasePermission(probe);
+		circuitBreaker.onResult(circuitBreaker.acquirePermission(), FAST, false);
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	void outcomesOfEarlierStatesAreIgnored() throws HttpCircuitOpenException {
+		CircuitBreaker circuitBreaker = circuitBreaker(CircuitBreakerConfig.newBuilder()
+				.slidingWindow(2, 2)
+				.waitDurationInOpenState(Duration.ZERO)
+				.permittedCallsInHalfOpenState(1));
+		// a slow call which started before the circuit breaker opened
+		long stale = circuitBreaker.acquirePermission();
+		call(circuitBreaker, true);
+		call(circuitBreaker, true);
+		assertEquals(State.OPEN, circuitBreaker.getState());
+		circuitBreaker.acquirePermission();
+		assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+		circuitBreaker.onResult(stale, FAST, false);
+		assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	void listenersAreNotified() throws HttpCircuitOpenException {
+		List<String> transitions = new ArrayList<String>();
+		CircuitBreaker circuitBreaker = circuitBreaker(CircuitBreakerConfig.newBuilder()
+				.slidingWindow(1, 1)
+				.waitDurationInOpenState(Duration.ZERO)
+				.permittedCallsInHalfOpenState(1)
+				.addListener((breaker, from, to) -> transitions.add(from + "->" + to))
+				.addListener((breaker, from, to) -> {
+					throw new IllegalStateException("a failing listener does not affect the others");
+				}));
+		call(circuitBreaker, true);
+		call(circuitBreaker, false);
+		circuitBreaker.reset();
+		call(circuitBreaker, true);
+		circuitBreaker.reset();
+		assertEquals(Arrays.asList("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED", "CLOSED->OPEN",
+				"OPEN->CLOSED"), transitions);
+	}
+
+	private static CircuitBreaker openCircuitBreaker(int permittedCalls) throws HttpCircuitOpenException {
+		CircuitBreaker circuitBreaker = circuitBreaker(CircuitBreakerConfig.newBuilder()
+				.slidingWindow(1, 1)
+				.waitDurationInOpenState(Duration.ZERO)
+				.permittedCallsInHalfOpenState(permittedCalls));
+		call(circuitBreaker, true);
+		assertEquals(State.OPEN, circuitBreaker.getState());
+		return circuitBreaker;
+	}
+
+	private static CircuitBreaker circuitBreaker(CircuitBreakerConfig.Builder config) {
+		return new CircuitBreaker("host", config.build());
+	}
+
+	private static void call(CircuitBreaker circuitBreaker, boolean failed) throws HttpCircuitOpenException {
+		circuitBreaker.onResult(circuitBreaker.acquirePermission(), FAST, failed);
+	}
+}
@@ -0,0 +1,81 @@
+package com.starcode88.http.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.starcode88.http.BatchRequest;
+import com.starcode88.http.HttpClient;
+import com.starcode88.http.WireLogPolicy;
+
+class LoadTestTest {
+
+	private LoadTestServer server;
+
+	private HttpClient client;
+
+	@BeforeEach
+	void start() throws Exception {
+		server = new LoadTestServer();
+		client = new HttpClient(server.getBaseUrl());
+		client.setWireLogPolicy(WireLogPolicy.OFF);
+	}
+
+	@AfterEach
+	void stop() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void requestsAreSentAtTheRate() throws Exception {
+		LoadTestReport report = new LoadTest(client, config(100, 1000).build()).run();
+		assertEquals(100, report.getSent(), 2);
+		assertEquals(report.getSent(), report.getSucceeded());
+		assertEquals(0, report.getDelayed());
+		assertEquals(0, report.getIncomplete());
+		assertEquals(Long.valueOf(report.getSent()), report.getOutcomes().get("2xx"));
+	}
+
+	@Test
+	void stallOfTheServerIsPartOfTheCorrectedLatency() throws Exception {
+		LoadTestConfig config = config(200, 2000).maxInFlight(4).build();
+		// Stall the server in the middle of the measurement
+		CompletableFuture.delayedExecutor(1200, TimeUnit.MILLISECONDS)
+				.execute(() -> server.pause(Duration.ofMillis(400)));
+		LoadTestReport report = new LoadTest(client, config).run();
+
+		assertEquals(report.getSent(), report.getSucceeded());
+		assertEquals(0, report.getIncomplete());
+		// The requests which were due during the stall waited for a slot
+		assertTrue(report.getDelayed() > 20, report.format());
+		long delayed = 0;
+		for (LoadTestReport.Interval interval : report.getIntervals()) {
+			delayed += interval.getDelayed();
+		}
+		assertEquals(report.getDelayed(), delayed);
+		// They are counted with the time they had to wait, the service time does not show it
+		long corrected = report.getLatency().getValueAtPercentile(90);
+		long uncorrected = report.getServiceTime().getValueAtPercentile(90);
+		assertTrue(corrected > TimeUnit.MILLISECONDS.toNanos(50), report.format());
+		assertTrue(corrected > 5 * uncorrected, report.format());
+		assertTrue(report.getLatency().getMax() >= TimeUnit.MILLISECONDS.toNanos(300), report.format());
+		assertTrue(report.format().contains(report.getDelayed() + " of " + report.getSent() + " requests delayed"));
+	}
+
+	private static LoadTestConfig.Builder config(double rate, long durationMillis) {
+		return LoadTestConfig.newBuilder()
+				.rate(rate)
+				.warmUp(Duration.ofMillis(200))
+				.duration(Duration.ofMillis(durationMillis))
+				.interval(Duration.ofMillis(500))
+				.request(BatchRequest.GET("/items?size=16", byte[].class));
+	}
+}
@@ -0,0 +1,107 @@
+package com.starcode88.http.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramTest {
+
+	private static final int BUCKETS = 960;
+
+	@Test
+	void smallValuesHaveBucketsOfTheirOwn() {
+		for (int value = 0; value < 32; value++) {
+			assertEquals(value, Histogram.indexOf(value));
+			assertEquals(value, Histogram.highestValueOf(value));
+		}
+		assertEquals(32, Histogram.indexOf(32));
+		assertEquals(33, Histogram.highestValueOf(32));
+	}
+
+	@Test
+	void bucketsAreContiguous() {
+		for (int index = 0; index < BUCKETS - 1; index++) {
+			long highest = Histogram.highestValueOf(index);
+			assertEquals(index, Histogram.indexOf(highest), "highest value of bucket " + index);
+			assertEquals(index + 1, Histogram.indexOf(highest + 1), "first value after bucket " + index);
+		}
+		assertEquals(BUCKETS - 1, Histogram.indexOf(Long.MAX_VALUE));
+		assertEquals(Long.MAX_VALUE, Histogram.highestValueOf(BUCKETS - 1));
+	}
+
+	@Test
+	void relativeErrorIsAtMostOneSixteenth() {
+		Random random = new Random(42);
+		for (int i = 0; i < 100_000; i++) {
+			long value = random.nextLong() >>> (1 + random.nextInt(63));
+			long highest = Histogram.highestValueOf(Histogram.indexOf(value));
+			assertTrue(highest >= value, "value " + value);
+			assertTrue(highest - value <= value / 16, "value " + value + ", highest " + highest);
+		}
+	}
+
+	@Test
+	void percentiles() {
+		Histogram histogram = new Histogram();
+		for (int value = 1; value <= 1000; value++) {
+			histogram.record(value);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500, histogram.getSum());
+		assertEquals(500.5, histogram.getMean(), 1e-9);
+		assertEquals(1000, histogram.getMax());
+		long median = histogram.getValueAtPercentile(50);
+		assertTrue(median >= 500 && median <= 500 + 500 / 16, "median " + median);
+		long p99 = histogram.getValueAtPercentile(99);
+		assertTrue(p99 >= 990 && p99 <= 1000, "p99 " + p99);
+		// the upper bound of the last bucket is capped at the maximum
+		assertEquals(1000, histogram.getValueAtPercentile(100));
+		assertEquals(1, histogram.getValueAtPercentile(0));
+	}
+
+	@Test
+	void emptyAndReset() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		assertEquals(0, histogram.getMean());
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	void invalidPercentile() {
+		Histogram histogram = new Histogram();
+		assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(-1));
+		assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(100.1));
+	}
+
+	@Test
+	void concurrentRecording() throws InterruptedException {
+		Histogram histogram = new Histogram();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 1; i <= 10_000; i++) {
+					histogram.record(i);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(40_000, histogram.getCount());
+		assertEquals(10_000, histogram.getMax());
+		assertEquals(4L * 10_000 * 10_001 / 2, histogram.getSum());
+	}
+}
@@ -0,0 +1,72 @@
+package com.starcode88.http.retry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RetryBudgetTest {
+
+	@Test
+	void startsWithMinRetries() {
+		RetryBudget budget = new RetryBudget(RetryPolicy.newBuilder().budget(0.2, 3).build());
+		assertEquals(3.0, budget.getAvailableRetries(), 1e-9);
+		assertTrue(budget.tryAcquireRetry());
+		assertTrue(budget.tryAcquireRetry());
+		assertTrue(budget.tryAcquireRetry());
+		assertFalse(budget.tryAcquireRetry());
+		assertEquals(3, budget.getRetries());
+		assertEquals(1, budget.getRejectedRetries());
+	}
+
+	@Test
+	void requestsEarnRetries() {
+		RetryBudget budget = new RetryBudget(RetryPolicy.newBuilder().budget(0.2, 0).build());
+		assertFalse(budget.tryAcquireRetry());
+		for (int i = 0; i < 4; i++) {
+			budget.recordRequest();
+		}
+		assertFalse(budget.tryAcquireRetry());
+		// the fifth request completes the token
+		budget.recordRequest();
+		assertTrue(budget.tryAcquireRetry());
+		assertFalse(budget.tryAcquireRetry());
+	}
+
+	@Test
+	void balanceIsCapped() {
+		RetryBudget budget = new RetryBudget(RetryPolicy.newBuilder().budget(0.5, 2).build());
+		for (int i = 0; i < 100; i++) {
+			budget.recordRequest();
+		}
+		assertEquals(2.0, budget.getAvailableRetries(), 1e-9);
+	}
+
+	@Test
+	void capacityIsAtLeastOneRetry() {
+		RetryBudget budget = new RetryBudget(RetryPolicy.newBuilder().budget(1.0, 0).build());
+		budget.recordRequest();
+		budget.recordRequest();
+		assertEquals(1.0, budget.getAvailableRetries(), 1e-9);
+	}
+
+	@Test
+	void concurrentUpdates() throws InterruptedException {
+		RetryBudget budget = new RetryBudget(RetryPolicy.newBuilder().budget(0.5, 1000).build());
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 200; i++) {
+					budget.tryAcquireRetry();
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(800, budget.getRetries());
+		assertEquals(200.0, budget.getAvailableRetries(), 1e-9);
+	}
+}
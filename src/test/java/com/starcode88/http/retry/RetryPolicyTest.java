@@ -0,0 +1,135 @@
+package com.starcode88.http.retry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.zip.ZipException;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.starcode88.http.exception.HttpRangeMismatchException;
+
+class RetryPolicyTest {
+
+	private static final long NOW = 1_700_000_000_000L;
+
+	@Test
+	void backoffIsBetweenZeroAndTheCeiling() {
+		RetryPolicy policy = RetryPolicy.newBuilder()
+				.backoff(Duration.ofMillis(100), Duration.ofSeconds(1), 2.0)
+				.build();
+		long[] ceilings = { 100, 200, 400, 800, 1000, 1000 };
+		for (int retry = 1; retry <= ceilings.length; retry++) {
+			long max = 0;
+			for (int i = 0; i < 1000; i++) {
+				Duration backoff = policy.backoff(retry);
+				assertFalse(backoff.isNegative());
+				assertTrue(backoff.toMillis() <= ceilings[retry - 1], "retry " + retry + ": " + backoff);
+				max = Math.max(max, backoff.toMillis());
+			}
+			// full jitter uses the whole range
+			assertTrue(max > ceilings[retry - 1] / 2, "retry " + retry + ": " + max);
+		}
+	}
+
+	@Test
+	void zeroBackoff() {
+		RetryPolicy policy = RetryPolicy.newBuilder().backoff(Duration.ZERO, Duration.ZERO, 1.0).build();
+		assertEquals(Duration.ZERO, policy.backoff(5));
+	}
+
+	@Test
+	void retryAfterInSeconds() {
+		RetryPolicy policy = RetryPolicy.newBuilder().build();
+		assertEquals(Optional.of(Duration.ofSeconds(7)), policy.retryAfter(headers(" 7 "), NOW));
+		assertEquals(Optional.of(Duration.ZERO), policy.retryAfter(headers("-3"), NOW));
+	}
+
+	@Test
+	void retryAfterAsDate() {
+		RetryPolicy policy = RetryPolicy.newBuilder().build();
+		// NOW is Tue, 14 Nov 2023 22:13:20 GMT
+		assertEquals(Optional.of(Duration.ofSeconds(40)),
+				policy.retryAfter(headers("Tue, 14 Nov 2023 22:14:00 GMT"), NOW));
+		assertEquals(Optional.of(Duration.ZERO),
+				policy.retryAfter(headers("Tue, 14 Nov 2023 22:00:00 GMT"), NOW));
+	}
+
+	@Test
+	void invalidOrIgnoredRetryAfter() {
+		RetryPolicy policy = RetryPolicy.newBuilder().build();
+		assertEquals(Optional.empty(), policy.retryAfter(headers("soon"), NOW));
+		assertEquals(Optional.empty(),
+				policy.retryAfter(HttpHeaders.of(Collections.emptyMap(), (name, value) -> true), NOW));
+		RetryPolicy ignoring = RetryPolicy.newBuilder().respectRetryAfter(false, Duration.ofSeconds(60)).build();
+		assertEquals(Optional.empty(), ignoring.retryAfter(headers("7"), NOW));
+	}
+
+	@Test
+	void retryableExceptions() {
+		RetryPolicy policy = RetryPolicy.newBuilder().build();
+		assertTrue(policy.isRetryableException(new ConnectException("refused")));
+		assertTrue(policy.isRetryableException(new IOException("reset")));
+		assertFalse(policy.isRetryableException(new IllegalStateException()));
+		assertFalse(policy.isRetryableException(new JsonParseException(null, "unexpected token")));
+		assertFalse(policy.isRetryableException(new HttpRangeMismatchException(URI.create("http://host/file"), 200)));
+		// the JDK client wraps exceptions of the body subscriber
+		assertFalse(policy.isRetryableException(new IOException("body", new ZipException("not in gzip format"))));
+	}
+
+	@Test
+	void configuredExceptions() {
+		RetryPolicy policy = RetryPolicy.newBuilder()
+				.retryableExceptions(IOException.class, IllegalStateException.class)
+				.nonRetryableExceptions(ConnectException.class)
+				.build();
+		assertTrue(policy.isRetryableException(new IllegalStateException()));
+		assertTrue(policy.isRetryableException(new ZipException()));
+		assertFalse(policy.isRetryableException(new ConnectException("refused")));
+		assertEquals(Arrays.asList(IOException.class, IllegalStateException.class), policy.getRetryableExceptions());
+	}
+
+	@Test
+	void retryableMethods() {
+		RetryPolicy policy = RetryPolicy.newBuilder().build();
+		assertTrue(policy.isRetryableMethod("GET"));
+		assertTrue(policy.isRetryableMethod("PUT"));
+		assertFalse(policy.isRetryableMethod("POST"));
+		assertTrue(RetryPolicy.newBuilder().retryNonIdempotent(true).build().isRetryableMethod("POST"));
+	}
+
+	@Test
+	void retryableStatusCodes() {
+		RetryPolicy policy = RetryPolicy.newBuilder().build();
+		assertTrue(policy.isRetryableStatusCode(503));
+		assertFalse(policy.isRetryableStatusCode(500));
+		assertTrue(RetryPolicy.newBuilder().retryableStatusCodes(500).build().isRetryableStatusCode(500));
+	}
+
+	@Test
+	void invalidSettings() {
+		assertThrows(IllegalArgumentException.class, () -> RetryPolicy.newBuilder().maxAttempts(0));
+		assertThrows(IllegalArgumentException.class,
+				() -> RetryPolicy.newBuilder().backoff(Duration.ofSeconds(2), Duration.ofSeconds(1), 2.0));
+		assertThrows(IllegalArgumentException.class,
+				() -> RetryPolicy.newBuilder().backoff(Duration.ZERO, Duration.ZERO, 0.5));
+		assertThrows(IllegalArgumentException.class, () -> RetryPolicy.newBuilder().deadline(Duration.ZERO));
+		assertThrows(IllegalArgumentException.class, () -> RetryPolicy.newBuilder().budget(-0.1, 0));
+	}
+
+	private static HttpHeaders headers(String retryAfter) {
+		return HttpHeaders.of(Collections.singletonMap("Retry-After", Collections.singletonList(retryAfter)),
+				(name, value) -> true);
+	}
+}